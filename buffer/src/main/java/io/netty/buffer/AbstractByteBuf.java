@@ -1297,6 +1297,16 @@ public abstract class AbstractByteBuf extends ByteBuf {
     }
 
     int forEachByteAsc0(int start, int end, ByteProcessor processor) throws Exception {
+        // The common processors which stop at a fixed set of bytes are served by the SWAR search of ByteBufUtil.
+        if (processor == ByteProcessor.FIND_LF) {
+            return ByteBufUtil.firstIndexOf(this, start, end, (byte) '\n');
+        }
+        if (processor == ByteProcessor.FIND_CRLF) {
+            return ByteBufUtil.firstIndexOf(this, start, end, (byte) '\r', (byte) '\n');
+        }
+        if (processor == ByteProcessor.FIND_NUL) {
+            return ByteBufUtil.firstIndexOf(this, start, end, (byte) 0);
+        }
         for (; start < end; ++start) {
             if (!processor.process(_getByte(start))) {
                 return start;
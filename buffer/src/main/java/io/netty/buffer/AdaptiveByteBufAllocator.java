@@ -0,0 +1,201 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * An auto-tuning pooling allocator, which slices buffers out of larger chunks that are shared between threads.
+ * <p>
+ * The allocator is organized into a list of Magazines, and each magazine has a chunk-buffer that they allocate buffers
+ * from.
+ * <p>
+ * The magazines hold the mutexes that ensure the thread-safety of the allocator, and each thread picks a magazine
+ * based on its thread id, or uses a magazine of its own if it is an event loop thread. The number of shared magazines
+ * grows if contention is observed.
+ * <p>
+ * The chunks are sized based on the sizes of the buffers that were allocated recently, and chunks that are not
+ * in use are released back to the operating system once more of them are idle than can be kept around. The chunks
+ * which stay idle for a while are only released by {@link #trimIdleChunks(long, TimeUnit)}, which is called every
+ * {@code io.netty.allocator.chunkReleaseDelayMillis} if this system property is set.
+ * <p>
+ * The allocator can be selected as the default by setting the {@code io.netty.allocator.type} system property to
+ * {@code adaptive}.
+ */
+@UnstableApi
+public final class AdaptiveByteBufAllocator extends AbstractByteBufAllocator
+        implements ByteBufAllocatorMetricProvider, ByteBufAllocatorMetric {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AdaptiveByteBufAllocator.class);
+    private static final boolean DEFAULT_USE_CACHED_MAGAZINES_FOR_NON_EVENT_LOOP_THREADS;
+    private static final long DEFAULT_CHUNK_RELEASE_DELAY_MILLIS;
+
+    static {
+        DEFAULT_USE_CACHED_MAGAZINES_FOR_NON_EVENT_LOOP_THREADS = SystemPropertyUtil.getBoolean(
+                "io.netty.allocator.useCachedMagazinesForNonEventLoopThreads", false);
+        logger.debug("-Dio.netty.allocator.useCachedMagazinesForNonEventLoopThreads: {}",
+                DEFAULT_USE_CACHED_MAGAZINES_FOR_NON_EVENT_LOOP_THREADS);
+        // Shared with PooledByteBufAllocator, 0 keeps idle chunks until the allocator is collected.
+        DEFAULT_CHUNK_RELEASE_DELAY_MILLIS = SystemPropertyUtil.getLong(
+                "io.netty.allocator.chunkReleaseDelayMillis", 0);
+        logger.debug("-Dio.netty.allocator.chunkReleaseDelayMillis: {}", DEFAULT_CHUNK_RELEASE_DELAY_MILLIS);
+    }
+
+    private final UnpooledByteBufAllocator chunkSource;
+    private final AdaptivePoolingAllocator direct;
+    private final AdaptivePoolingAllocator heap;
+
+    public AdaptiveByteBufAllocator() {
+        this(PlatformDependent.directBufferPreferred());
+    }
+
+    public AdaptiveByteBufAllocator(boolean preferDirect) {
+        this(preferDirect, DEFAULT_USE_CACHED_MAGAZINES_FOR_NON_EVENT_LOOP_THREADS);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param preferDirect {@code true} if {@link #buffer(int)} should try to allocate a direct buffer rather than
+     *                     a heap buffer
+     * @param useCacheForNonEventLoopThreads {@code true} if threads which are not event loop threads should use
+     *                                       a magazine of their own as well, rather than sharing the striped ones.
+     *                                       This only applies to threads which clean up their
+     *                                       {@link io.netty.util.concurrent.FastThreadLocal}s, like
+     *                                       {@link io.netty.util.concurrent.FastThreadLocalThread}s.
+     */
+    public AdaptiveByteBufAllocator(boolean preferDirect, boolean useCacheForNonEventLoopThreads) {
+        super(preferDirect);
+        // The chunks are tracked by the leak detector of this allocator through the buffers that are sliced out
+        // of them, so there is no need to track them on their own.
+        chunkSource = new UnpooledByteBufAllocator(preferDirect, true);
+        direct = new AdaptivePoolingAllocator(this, new AdaptivePoolingAllocator.ChunkAllocator() {
+            @Override
+            public AbstractByteBuf allocate(int initialCapacity, int maxCapacity) {
+                return (AbstractByteBuf) chunkSource.newDirectBuffer(initialCapacity, maxCapacity);
+            }
+        }, useCacheForNonEventLoopThreads);
+        heap = new AdaptivePoolingAllocator(this, new AdaptivePoolingAllocator.ChunkAllocator() {
+            @Override
+            public AbstractByteBuf allocate(int initialCapacity, int maxCapacity) {
+                return (AbstractByteBuf) chunkSource.newHeapBuffer(initialCapacity, maxCapacity);
+            }
+        }, useCacheForNonEventLoopThreads);
+
+        if (DEFAULT_CHUNK_RELEASE_DELAY_MILLIS > 0) {
+            scheduleIdleChunkRelease(this, DEFAULT_CHUNK_RELEASE_DELAY_MILLIS);
+        }
+    }
+
+    private static void scheduleIdleChunkRelease(AdaptiveByteBufAllocator allocator, final long delayMillis) {
+        // Only keep a weak reference, so the task stops once the allocator was collected.
+        final WeakReference<AdaptiveByteBufAllocator> allocatorRef =
+                new WeakReference<AdaptiveByteBufAllocator>(allocator);
+        GlobalEventExecutor.INSTANCE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                AdaptiveByteBufAllocator allocator = allocatorRef.get();
+                if (allocator != null) {
+                    allocator.trimIdleChunks(delayMillis, TimeUnit.MILLISECONDS);
+                    GlobalEventExecutor.INSTANCE.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+        return toLeakAwareBuffer(heap.allocate(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+        return toLeakAwareBuffer(direct.allocate(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public boolean isDirectBufferPooled() {
+        return true;
+    }
+
+    @Override
+    public ByteBufAllocatorMetric metric() {
+        return this;
+    }
+
+    /**
+     * Returns the number of bytes of heap memory that is held by the chunks of this allocator, including the memory
+     * which is not used by any buffer at the moment.
+     */
+    @Override
+    public long usedHeapMemory() {
+        return chunkSource.metric().usedHeapMemory();
+    }
+
+    /**
+     * Returns the number of bytes of direct memory that is held by the chunks of this allocator, including the
+     * memory which is not used by any buffer at the moment.
+     */
+    @Override
+    public long usedDirectMemory() {
+        return chunkSource.metric().usedDirectMemory();
+    }
+
+    /**
+     * Returns the number of heap chunks which are not used at the moment and are kept for reuse.
+     */
+    public int idleHeapChunks() {
+        return heap.idleChunks();
+    }
+
+    /**
+     * Returns the number of direct chunks which are not used at the moment and are kept for reuse.
+     */
+    public int idleDirectChunks() {
+        return direct.idleChunks();
+    }
+
+    /**
+     * Releases the chunks which were not used for at least the given time, and returns the number of bytes that were
+     * released. The chunk that a magazine allocates from is only recognized as unused once this method was called
+     * without an allocation from the magazine since the previous call, so this method must be called periodically,
+     * like it is done every {@code io.netty.allocator.chunkReleaseDelayMillis} if this system property is set.
+     */
+    public long trimIdleChunks(long idleTime, TimeUnit unit) {
+        long idleNanos = unit.toNanos(checkPositiveOrZero(idleTime, "idleTime"));
+        return heap.trimIdleChunks(idleNanos) + direct.trimIdleChunks(idleNanos);
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) +
+                "(usedHeapMemory: " + usedHeapMemory() +
+                "; usedDirectMemory: " + usedDirectMemory() +
+                "; idleHeapChunks: " + idleHeapChunks() +
+                "; idleDirectChunks: " + idleDirectChunks() +
+                "; sharedMagazines: " + direct.sharedMagazines() + ')';
+    }
+}
@@ -0,0 +1,938 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.NettyRuntime;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.internal.MathUtil;
+import io.netty.util.internal.ObjectPool;
+import io.netty.util.internal.ObjectPool.Handle;
+import io.netty.util.internal.ObjectPool.ObjectCreator;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThreadExecutorMap;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The pooling engine behind {@link AdaptiveByteBufAllocator}.
+ * <p>
+ * Buffers are carved out of larger chunks by bumping an offset, and each buffer keeps a reference to the chunk it
+ * came from. Once all buffers of a chunk were released the chunk is recycled as a whole, so there is no per-buffer
+ * bookkeeping like in {@link PoolArena}.
+ * <p>
+ * Chunks are handed out by <em>magazines</em>. The threads of an {@code EventLoop} get a magazine of their own, and
+ * so do other threads which clean up their {@link FastThreadLocal}s if {@code useCacheForNonEventLoopThreads} is set.
+ * All other threads share a set of striped magazines which is expanded if contention is observed, so allocating from
+ * many threads does not serialize on a single lock. Threads which do not clean up their {@link FastThreadLocal}s
+ * never get a magazine of their own, as its chunk could not be released anymore once the thread terminated.
+ * <p>
+ * Every magazine records the requested sizes in a histogram of power-of-two size buckets and sizes new chunks so
+ * that they fit a number of buffers of the 99th percentile size. Chunks that are not used by any magazine anymore
+ * are kept in a bounded central queue which is shared by all magazines, and are released back to the operating
+ * system if the queue is full.
+ * <p>
+ * Without {@link #trimIdleChunks(long)} the central queue and the current chunk of every magazine keep their memory
+ * after a spike for as long as the allocator exists. Trimming gives back the chunks of magazines which did not
+ * allocate anything since the last trim, and the chunks which were queued for longer than the given time.
+ */
+final class AdaptivePoolingAllocator {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AdaptivePoolingAllocator.class);
+
+    private static final int MIN_CHUNK_SIZE = 128 * 1024;
+    private static final int MAX_CHUNK_SIZE = 8 * 1024 * 1024;
+    // Buffers larger than this are allocated on their own and never pooled.
+    private static final int MAX_POOLED_BUF_SIZE = 1024 * 1024;
+    // The number of buffers of the preferred size that a new chunk should be able to hold.
+    private static final int BUFS_PER_CHUNK = 10;
+
+    // The histogram has one bucket per power of two between 64 bytes and MAX_POOLED_BUF_SIZE.
+    private static final int HISTO_MIN_BUCKET_SHIFT = 6;
+    private static final int HISTO_MAX_BUCKET_SHIFT = 20;
+    private static final int HISTO_BUCKET_COUNT = HISTO_MAX_BUCKET_SHIFT - HISTO_MIN_BUCKET_SHIFT + 1;
+    private static final int HISTO_ROTATE_THRESHOLD = 1024;
+
+    private static final int INITIAL_MAGAZINES = 2;
+    private static final int MAX_STRIPES = MathUtil.findNextPositivePowerOfTwo(NettyRuntime.availableProcessors() * 2);
+    private static final int EXPANSION_ATTEMPTS = 3;
+
+    private static final int CENTRAL_QUEUE_CAPACITY;
+
+    static {
+        CENTRAL_QUEUE_CAPACITY = Math.max(2, SystemPropertyUtil.getInt(
+                "io.netty.allocator.centralQueueCapacity", NettyRuntime.availableProcessors()));
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.allocator.centralQueueCapacity: {}", CENTRAL_QUEUE_CAPACITY);
+        }
+    }
+
+    private final ByteBufAllocator parent;
+    private final ChunkAllocator chunkAllocator;
+    private final Queue<Chunk> centralQueue;
+    private final FastThreadLocal<Magazine> threadLocalMagazine;
+    // The magazines of threadLocalMagazine, so they can be trimmed from any thread.
+    private final Set<Magazine> threadLocalMagazines =
+            Collections.newSetFromMap(PlatformDependent.<Magazine, Boolean>newConcurrentHashMap());
+    private final boolean useCacheForNonEventLoopThreads;
+    private volatile Magazine[] magazines;
+
+    AdaptivePoolingAllocator(ByteBufAllocator parent, ChunkAllocator chunkAllocator,
+                             boolean useCacheForNonEventLoopThreads) {
+        this.parent = parent;
+        this.chunkAllocator = chunkAllocator;
+        this.useCacheForNonEventLoopThreads = useCacheForNonEventLoopThreads;
+        centralQueue = PlatformDependent.newFixedMpmcQueue(CENTRAL_QUEUE_CAPACITY);
+        threadLocalMagazine = new FastThreadLocal<Magazine>() {
+            @Override
+            protected Magazine initialValue() {
+                Magazine magazine = new Magazine(AdaptivePoolingAllocator.this);
+                threadLocalMagazines.add(magazine);
+                return magazine;
+            }
+
+            @Override
+            protected void onRemoval(Magazine value) {
+                threadLocalMagazines.remove(value);
+                value.free();
+            }
+        };
+        Magazine[] magazines = new Magazine[Math.min(INITIAL_MAGAZINES, MAX_STRIPES)];
+        for (int i = 0; i < magazines.length; i++) {
+            magazines[i] = new Magazine(this);
+        }
+        this.magazines = magazines;
+    }
+
+    ByteBuf allocate(int size, int maxCapacity) {
+        AdaptiveByteBuf buf = AdaptiveByteBuf.newInstance();
+        allocate(size, maxCapacity, buf);
+        return buf;
+    }
+
+    private void allocate(int size, int maxCapacity, AdaptiveByteBuf into) {
+        if (size > MAX_POOLED_BUF_SIZE) {
+            Chunk chunk = new Chunk(chunkAllocator.allocate(size, size), this, false);
+            chunk.readInitInto(into, size, maxCapacity);
+            // The buffer holds the only reference to the chunk now, so it is released together with the buffer.
+            chunk.release();
+            return;
+        }
+
+        Thread currentThread = Thread.currentThread();
+        if (FastThreadLocalThread.willCleanupFastThreadLocals(currentThread) &&
+                (useCacheForNonEventLoopThreads || ThreadExecutorMap.currentExecutor() != null)) {
+            Magazine magazine = threadLocalMagazine.get();
+            magazine.lock.lock();
+            try {
+                magazine.allocate(size, maxCapacity, into);
+            } finally {
+                magazine.lock.unlock();
+            }
+            return;
+        }
+
+        long threadId = currentThread.getId();
+        Magazine[] mags;
+        for (int attempt = 0; attempt < EXPANSION_ATTEMPTS; attempt++) {
+            mags = magazines;
+            int mask = mags.length - 1;
+            int index = (int) (threadId & mask);
+            for (int i = 0; i < mags.length; i++) {
+                Magazine magazine = mags[index + i & mask];
+                if (magazine.lock.tryLock()) {
+                    try {
+                        magazine.allocate(size, maxCapacity, into);
+                    } finally {
+                        magazine.lock.unlock();
+                    }
+                    return;
+                }
+            }
+            expandMagazines(mags);
+        }
+
+        // All magazines are contended, just wait for the one that belongs to our stripe.
+        mags = magazines;
+        Magazine magazine = mags[(int) (threadId & mags.length - 1)];
+        magazine.lock.lock();
+        try {
+            magazine.allocate(size, maxCapacity, into);
+        } finally {
+            magazine.lock.unlock();
+        }
+    }
+
+    private void expandMagazines(Magazine[] mags) {
+        if (mags.length >= MAX_STRIPES) {
+            return;
+        }
+        synchronized (this) {
+            if (mags != magazines) {
+                // Another thread expanded the magazines already.
+                return;
+            }
+            Magazine[] expanded = Arrays.copyOf(mags, mags.length * 2);
+            for (int i = mags.length; i < expanded.length; i++) {
+                expanded[i] = new Magazine(this);
+            }
+            magazines = expanded;
+        }
+    }
+
+    /**
+     * Reallocate the memory of the given {@link AdaptiveByteBuf} so it can hold at least {@code newCapacity} bytes.
+     */
+    void reallocate(int newCapacity, int maxCapacity, AdaptiveByteBuf into) {
+        Chunk oldChunk = into.chunk;
+        AbstractByteBuf oldRoot = into.rootParent;
+        int oldAdjustment = into.adjustment;
+        int oldCapacity = into.length;
+        int readerIndex = into.readerIndex;
+        int writerIndex = into.writerIndex;
+
+        allocate(newCapacity, maxCapacity, into);
+        oldRoot.getBytes(oldAdjustment, into, 0, oldCapacity);
+        into.setIndex0(readerIndex, writerIndex);
+        oldChunk.release();
+    }
+
+    private Chunk newChunk(int capacity) {
+        return new Chunk(chunkAllocator.allocate(capacity, capacity), this, true);
+    }
+
+    /**
+     * Returns the number of magazines which are shared by threads that do not have a magazine of their own.
+     */
+    int sharedMagazines() {
+        return magazines.length;
+    }
+
+    /**
+     * Returns the number of chunks which are currently not used by any magazine and wait to be reused.
+     */
+    int idleChunks() {
+        return centralQueue.size();
+    }
+
+    /**
+     * Releases the chunks which are not used anymore, and returns the number of bytes that were released.
+     * <p>
+     * The current chunk of a magazine is retired if nothing was allocated from the magazine since the last call,
+     * and chunks that were idle in the central queue for at least {@code idleNanos} are destroyed. So this method must
+     * be called periodically to give back all the memory of an idle allocator.
+     */
+    long trimIdleChunks(long idleNanos) {
+        for (Magazine magazine : magazines) {
+            magazine.trimIfIdle();
+        }
+        for (Magazine magazine : threadLocalMagazines) {
+            magazine.trimIfIdle();
+        }
+
+        long now = System.nanoTime();
+        long bytes = 0;
+        // Look at every queued chunk once, the ones that are kept are added to the end of the queue again.
+        for (int i = centralQueue.size(); i > 0; i--) {
+            Chunk chunk = centralQueue.poll();
+            if (chunk == null) {
+                break;
+            }
+            if (now - chunk.idleSinceNanos < idleNanos && centralQueue.offer(chunk)) {
+                continue;
+            }
+            bytes += chunk.capacity;
+            chunk.destroy();
+        }
+        return bytes;
+    }
+
+    static int sizeBucket(int size) {
+        if (size <= 1 << HISTO_MIN_BUCKET_SHIFT) {
+            return 0;
+        }
+        int bucket = Integer.SIZE - Integer.numberOfLeadingZeros(size - 1) - HISTO_MIN_BUCKET_SHIFT;
+        return Math.min(bucket, HISTO_BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Allocates the memory of the chunks.
+     */
+    interface ChunkAllocator {
+        /**
+         * Allocate the buffer which backs a chunk. This can be any kind of {@link AbstractByteBuf} as long as it
+         * is not shared with anyone else.
+         */
+        AbstractByteBuf allocate(int initialCapacity, int maxCapacity);
+    }
+
+    private static final class Magazine {
+        final ReentrantLock lock = new ReentrantLock();
+        private final AdaptivePoolingAllocator parent;
+        private final int[] histo = new int[HISTO_BUCKET_COUNT];
+        private int datapoints;
+        private int preferredChunkSize = MIN_CHUNK_SIZE;
+        private Chunk current;
+        private boolean allocatedSinceTrim;
+
+        Magazine(AdaptivePoolingAllocator parent) {
+            this.parent = parent;
+        }
+
+        void allocate(int size, int maxCapacity, AdaptiveByteBuf into) {
+            allocatedSinceTrim = true;
+            recordAllocationSize(size);
+            Chunk curr = current;
+            if (curr != null) {
+                if (curr.remainingCapacity() >= size) {
+                    curr.readInitInto(into, size, maxCapacity);
+                    return;
+                }
+                // Retire the chunk, it will be reused once all the buffers that were allocated from it are released.
+                current = null;
+                curr.release();
+            }
+
+            curr = parent.centralQueue.poll();
+            if (curr != null && curr.capacity < size) {
+                // Too small for this allocation and there may be more suitable chunks later, just drop it.
+                curr.destroy();
+                curr = null;
+            }
+            if (curr == null) {
+                curr = parent.newChunk(Math.max(preferredChunkSize, size));
+            }
+            current = curr;
+            curr.readInitInto(into, size, maxCapacity);
+        }
+
+        private void recordAllocationSize(int size) {
+            histo[sizeBucket(size)]++;
+            if (++datapoints == HISTO_ROTATE_THRESHOLD) {
+                rotateHistogram();
+            }
+        }
+
+        private void rotateHistogram() {
+            int total = 0;
+            for (int count : histo) {
+                total += count;
+            }
+            int target = total * 99 / 100;
+            int bucket = 0;
+            for (int sum = 0; bucket < HISTO_BUCKET_COUNT - 1; bucket++) {
+                sum += histo[bucket];
+                if (sum >= target) {
+                    break;
+                }
+            }
+            int percentileSize = 1 << bucket + HISTO_MIN_BUCKET_SHIFT;
+            preferredChunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, percentileSize * BUFS_PER_CHUNK));
+
+            // Age the collected data, so we adapt if the allocation pattern changes.
+            for (int i = 0; i < histo.length; i++) {
+                histo[i] >>>= 1;
+            }
+            datapoints = 0;
+        }
+
+        /**
+         * Retires the current chunk if nothing was allocated from this magazine since the last call.
+         */
+        void trimIfIdle() {
+            if (!lock.tryLock()) {
+                // Someone is allocating right now, so the magazine is not idle.
+                return;
+            }
+            try {
+                if (allocatedSinceTrim) {
+                    allocatedSinceTrim = false;
+                    return;
+                }
+                Chunk curr = current;
+                if (curr != null) {
+                    current = null;
+                    curr.release();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void free() {
+            lock.lock();
+            try {
+                Chunk curr = current;
+                if (curr != null) {
+                    current = null;
+                    curr.release();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Chunk {
+        private static final AtomicIntegerFieldUpdater<Chunk> REFCNT_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Chunk.class, "refCnt");
+
+        final AbstractByteBuf delegate;
+        final AdaptivePoolingAllocator allocator;
+        final int capacity;
+        private final boolean pooled;
+        private int allocatedBytes;
+        // The time when the chunk was added to the central queue.
+        long idleSinceNanos;
+        // The reference held by the owner of the chunk, plus one for each buffer that was allocated from it.
+        private volatile int refCnt = 1;
+
+        Chunk(AbstractByteBuf delegate, AdaptivePoolingAllocator allocator, boolean pooled) {
+            this.delegate = delegate;
+            this.allocator = allocator;
+            this.pooled = pooled;
+            capacity = delegate.capacity();
+        }
+
+        int remainingCapacity() {
+            return capacity - allocatedBytes;
+        }
+
+        void readInitInto(AdaptiveByteBuf buf, int size, int maxCapacity) {
+            int startIndex = allocatedBytes;
+            allocatedBytes = startIndex + size;
+            REFCNT_UPDATER.incrementAndGet(this);
+            buf.init(delegate, this, startIndex, size, maxCapacity);
+        }
+
+        void release() {
+            int refCnt = REFCNT_UPDATER.decrementAndGet(this);
+            assert refCnt >= 0;
+            if (refCnt == 0) {
+                deallocate();
+            }
+        }
+
+        private void deallocate() {
+            if (pooled) {
+                // Nobody references the chunk anymore, so it can be reset before it is published to the queue.
+                allocatedBytes = 0;
+                refCnt = 1;
+                idleSinceNanos = System.nanoTime();
+                if (allocator.centralQueue.offer(this)) {
+                    return;
+                }
+            }
+            destroy();
+        }
+
+        void destroy() {
+            delegate.release();
+        }
+    }
+
+    static final class AdaptiveByteBuf extends AbstractReferenceCountedByteBuf {
+        private static final ObjectPool<AdaptiveByteBuf> RECYCLER = ObjectPool.newPool(
+                new ObjectCreator<AdaptiveByteBuf>() {
+            @Override
+            public AdaptiveByteBuf newObject(Handle<AdaptiveByteBuf> handle) {
+                return new AdaptiveByteBuf(handle);
+            }
+        });
+
+        static AdaptiveByteBuf newInstance() {
+            AdaptiveByteBuf buf = RECYCLER.get();
+            buf.resetRefCnt();
+            buf.discardMarks();
+            return buf;
+        }
+
+        private final Handle<AdaptiveByteBuf> recyclerHandle;
+        AbstractByteBuf rootParent;
+        Chunk chunk;
+        int adjustment;
+        int length;
+        private int maxFastCapacity;
+        private ByteBuffer tmpNioBuf;
+        // Cached so they can still be queried once the buffer was released.
+        private ByteBufAllocator alloc;
+        private boolean hasArray;
+        private boolean hasMemoryAddress;
+        private boolean direct;
+        private long memoryAddress;
+
+        private AdaptiveByteBuf(Handle<AdaptiveByteBuf> recyclerHandle) {
+            super(0);
+            this.recyclerHandle = recyclerHandle;
+        }
+
+        void init(AbstractByteBuf rootParent, Chunk chunk, int adjustment, int capacity, int maxCapacity) {
+            this.rootParent = rootParent;
+            this.chunk = chunk;
+            this.adjustment = adjustment;
+            length = capacity;
+            maxFastCapacity = capacity;
+            tmpNioBuf = null;
+            alloc = chunk.allocator.parent;
+            hasArray = rootParent.hasArray();
+            hasMemoryAddress = rootParent.hasMemoryAddress();
+            direct = rootParent.isDirect();
+            memoryAddress = hasMemoryAddress ? rootParent.memoryAddress() + adjustment : 0;
+            maxCapacity(maxCapacity);
+            setIndex0(0, 0);
+        }
+
+        @Override
+        public int capacity() {
+            return length;
+        }
+
+        @Override
+        public int maxFastWritableBytes() {
+            return Math.min(maxFastCapacity, maxCapacity()) - writerIndex;
+        }
+
+        @Override
+        public ByteBuf capacity(int newCapacity) {
+            if (newCapacity == length) {
+                ensureAccessible();
+                return this;
+            }
+            checkNewCapacity(newCapacity);
+            if (newCapacity <= maxFastCapacity) {
+                // The memory was reserved already, so we only need to adjust the length.
+                length = newCapacity;
+                tmpNioBuf = null;
+                trimIndicesToCapacity(newCapacity);
+                return this;
+            }
+            chunk.allocator.reallocate(newCapacity, maxCapacity(), this);
+            return this;
+        }
+
+        @Override
+        public ByteBufAllocator alloc() {
+            return alloc;
+        }
+
+        @Override
+        public ByteOrder order() {
+            return ByteOrder.BIG_ENDIAN;
+        }
+
+        @Override
+        public ByteBuf unwrap() {
+            return null;
+        }
+
+        @Override
+        public boolean isDirect() {
+            return direct;
+        }
+
+        @Override
+        public boolean isContiguous() {
+            return true;
+        }
+
+        @Override
+        public ByteBuf retainedDuplicate() {
+            return PooledDuplicatedByteBuf.newInstance(this, this, readerIndex(), writerIndex());
+        }
+
+        @Override
+        public ByteBuf retainedSlice() {
+            final int index = readerIndex();
+            return retainedSlice(index, writerIndex() - index);
+        }
+
+        @Override
+        public ByteBuf retainedSlice(int index, int length) {
+            return PooledSlicedByteBuf.newInstance(this, this, index, length);
+        }
+
+        @Override
+        protected void deallocate() {
+            Chunk chunk = this.chunk;
+            if (chunk != null) {
+                this.chunk = null;
+                rootParent = null;
+                tmpNioBuf = null;
+                chunk.release();
+                recyclerHandle.recycle(this);
+            }
+        }
+
+        private int idx(int index) {
+            return adjustment + index;
+        }
+
+        private long addr(int index) {
+            return memoryAddress + index;
+        }
+
+        private ByteBuffer internalNioBuffer() {
+            ByteBuffer tmpNioBuf = this.tmpNioBuf;
+            if (tmpNioBuf == null) {
+                // Never use the internal buffer of the root, it is shared by all buffers of the chunk.
+                this.tmpNioBuf = tmpNioBuf = rootParent.nioBuffer(adjustment, length);
+            } else {
+                tmpNioBuf.clear();
+            }
+            return tmpNioBuf;
+        }
+
+        private ByteBuffer _internalNioBuffer(int index, int length, boolean duplicate) {
+            ByteBuffer buffer = duplicate ? internalNioBuffer().duplicate() : internalNioBuffer();
+            buffer.limit(index + length).position(index);
+            return buffer;
+        }
+
+        @Override
+        public ByteBuffer internalNioBuffer(int index, int length) {
+            checkIndex(index, length);
+            return _internalNioBuffer(index, length, false);
+        }
+
+        @Override
+        public int nioBufferCount() {
+            return 1;
+        }
+
+        @Override
+        public ByteBuffer nioBuffer(int index, int length) {
+            checkIndex(index, length);
+            return rootParent.nioBuffer(idx(index), length);
+        }
+
+        @Override
+        public ByteBuffer[] nioBuffers(int index, int length) {
+            return new ByteBuffer[] { nioBuffer(index, length) };
+        }
+
+        @Override
+        public boolean hasArray() {
+            return hasArray;
+        }
+
+        @Override
+        public byte[] array() {
+            ensureAccessible();
+            return rootParent.array();
+        }
+
+        @Override
+        public int arrayOffset() {
+            ensureAccessible();
+            return idx(rootParent.arrayOffset());
+        }
+
+        @Override
+        public boolean hasMemoryAddress() {
+            return hasMemoryAddress;
+        }
+
+        @Override
+        public long memoryAddress() {
+            ensureAccessible();
+            return addr(0);
+        }
+
+        @Override
+        protected byte _getByte(int index) {
+            return rootParent._getByte(idx(index));
+        }
+
+        @Override
+        protected short _getShort(int index) {
+            return rootParent._getShort(idx(index));
+        }
+
+        @Override
+        protected short _getShortLE(int index) {
+            return rootParent._getShortLE(idx(index));
+        }
+
+        @Override
+        protected int _getUnsignedMedium(int index) {
+            return rootParent._getUnsignedMedium(idx(index));
+        }
+
+        @Override
+        protected int _getUnsignedMediumLE(int index) {
+            return rootParent._getUnsignedMediumLE(idx(index));
+        }
+
+        @Override
+        protected int _getInt(int index) {
+            return rootParent._getInt(idx(index));
+        }
+
+        @Override
+        protected int _getIntLE(int index) {
+            return rootParent._getIntLE(idx(index));
+        }
+
+        @Override
+        protected long _getLong(int index) {
+            return rootParent._getLong(idx(index));
+        }
+
+        @Override
+        protected long _getLongLE(int index) {
+            return rootParent._getLongLE(idx(index));
+        }
+
+        @Override
+        protected void _setByte(int index, int value) {
+            rootParent._setByte(idx(index), value);
+        }
+
+        @Override
+        protected void _setShort(int index, int value) {
+            rootParent._setShort(idx(index), value);
+        }
+
+        @Override
+        protected void _setShortLE(int index, int value) {
+            rootParent._setShortLE(idx(index), value);
+        }
+
+        @Override
+        protected void _setMedium(int index, int value) {
+            rootParent._setMedium(idx(index), value);
+        }
+
+        @Override
+        protected void _setMediumLE(int index, int value) {
+            rootParent._setMediumLE(idx(index), value);
+        }
+
+        @Override
+        protected void _setInt(int index, int value) {
+            rootParent._setInt(idx(index), value);
+        }
+
+        @Override
+        protected void _setIntLE(int index, int value) {
+            rootParent._setIntLE(idx(index), value);
+        }
+
+        @Override
+        protected void _setLong(int index, long value) {
+            rootParent._setLong(idx(index), value);
+        }
+
+        @Override
+        protected void _setLongLE(int index, long value) {
+            rootParent._setLongLE(idx(index), value);
+        }
+
+        // The bulk operations below either work on the memory address, or delegate to the root if it does not use
+        // its own internal ByteBuffer for the operation, as that one is shared by all buffers of the chunk.
+
+        @Override
+        public ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+            if (hasMemoryAddress()) {
+                UnsafeByteBufUtil.getBytes(this, addr(index), index, dst, dstIndex, length);
+            } else {
+                checkDstIndex(index, length, dstIndex, dst.capacity());
+                rootParent.getBytes(idx(index), dst, dstIndex, length);
+            }
+            return this;
+        }
+
+        @Override
+        public ByteBuf getBytes(int index, byte[] dst, int dstIndex, int length) {
+            if (hasMemoryAddress()) {
+                UnsafeByteBufUtil.getBytes(this, addr(index), index, dst, dstIndex, length);
+            } else {
+                checkDstIndex(index, length, dstIndex, dst.length);
+                rootParent.getBytes(idx(index), dst, dstIndex, length);
+            }
+            return this;
+        }
+
+        @Override
+        public ByteBuf getBytes(int index, ByteBuffer dst) {
+            if (hasMemoryAddress()) {
+                UnsafeByteBufUtil.getBytes(this, addr(index), index, dst);
+            } else {
+                checkIndex(index, dst.remaining());
+                dst.put(_internalNioBuffer(index, dst.remaining(), true));
+            }
+            return this;
+        }
+
+        @Override
+        public ByteBuf getBytes(int index, OutputStream out, int length) throws IOException {
+            if (hasMemoryAddress()) {
+                UnsafeByteBufUtil.getBytes(this, addr(index), index, out, length);
+            } else {
+                checkIndex(index, length);
+                if (length != 0) {
+                    ByteBufUtil.readBytes(alloc(), internalNioBuffer().duplicate(), index, length, out);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+            checkIndex(index, length);
+            return out.write(_internalNioBuffer(index, length, true));
+        }
+
+        @Override
+        public int readBytes(GatheringByteChannel out, int length) throws IOException {
+            checkReadableBytes(length);
+            int readBytes = out.write(_internalNioBuffer(readerIndex, length, false));
+            readerIndex += readBytes;
+            return readBytes;
+        }
+
+        @Override
+        public int getBytes(int index, FileChannel out, long position, int length) throws IOException {
+            checkIndex(index, length);
+            return out.write(_internalNioBuffer(index, length, true), position);
+        }
+
+        @Override
+        public int readBytes(FileChannel out, long position, int length) throws IOException {
+            checkReadableBytes(length);
+            int readBytes = out.write(_internalNioBuffer(readerIndex, length, false), position);
+            readerIndex += readBytes;
+            return readBytes;
+        }
+
+        @Override
+        public ByteBuf setBytes(int index, ByteBuf src, int srcIndex, int length) {
+            if (hasMemoryAddress()) {
+                UnsafeByteBufUtil.setBytes(this, addr(index), index, src, srcIndex, length);
+            } else if (hasArray()) {
+                checkSrcIndex(index, length, srcIndex, src.capacity());
+                rootParent.setBytes(idx(index), src, srcIndex, length);
+            } else {
+                checkSrcIndex(index, length, srcIndex, src.capacity());
+                if (src.nioBufferCount() > 0) {
+                    for (ByteBuffer bb: src.nioBuffers(srcIndex, length)) {
+                        int bbLen = bb.remaining();
+                        setBytes(index, bb);
+                        index += bbLen;
+                    }
+                } else {
+                    src.getBytes(srcIndex, this, index, length);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public ByteBuf setBytes(int index, byte[] src, int srcIndex, int length) {
+            if (hasMemoryAddress()) {
+                UnsafeByteBufUtil.setBytes(this, addr(index), index, src, srcIndex, length);
+            } else if (hasArray()) {
+                checkSrcIndex(index, length, srcIndex, src.length);
+                rootParent.setBytes(idx(index), src, srcIndex, length);
+            } else {
+                checkSrcIndex(index, length, srcIndex, src.length);
+                _internalNioBuffer(index, length, false).put(src, srcIndex, length);
+            }
+            return this;
+        }
+
+        @Override
+        public ByteBuf setBytes(int index, ByteBuffer src) {
+            if (hasMemoryAddress()) {
+                UnsafeByteBufUtil.setBytes(this, addr(index), index, src);
+            } else {
+                int length = src.remaining();
+                checkIndex(index, length);
+                ByteBuffer tmpBuf = internalNioBuffer();
+                if (src == tmpBuf) {
+                    src = src.duplicate();
+                }
+                tmpBuf.limit(index + length).position(index);
+                tmpBuf.put(src);
+            }
+            return this;
+        }
+
+        @Override
+        public int setBytes(int index, InputStream in, int length) throws IOException {
+            if (hasMemoryAddress()) {
+                return UnsafeByteBufUtil.setBytes(this, addr(index), index, in, length);
+            }
+            checkIndex(index, length);
+            if (hasArray()) {
+                return rootParent.setBytes(idx(index), in, length);
+            }
+            byte[] tmp = ByteBufUtil.threadLocalTempArray(length);
+            int readBytes = in.read(tmp, 0, length);
+            if (readBytes <= 0) {
+                return readBytes;
+            }
+            _internalNioBuffer(index, readBytes, false).put(tmp, 0, readBytes);
+            return readBytes;
+        }
+
+        @Override
+        public int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+            try {
+                return in.read(internalNioBuffer(index, length));
+            } catch (ClosedChannelException ignored) {
+                return -1;
+            }
+        }
+
+        @Override
+        public int setBytes(int index, FileChannel in, long position, int length) throws IOException {
+            try {
+                return in.read(internalNioBuffer(index, length), position);
+            } catch (ClosedChannelException ignored) {
+                return -1;
+            }
+        }
+
+        @Override
+        public ByteBuf copy(int index, int length) {
+            if (hasMemoryAddress()) {
+                return UnsafeByteBufUtil.copy(this, addr(index), index, length);
+            }
+            checkIndex(index, length);
+            ByteBuf copy = isDirect() ? alloc().directBuffer(length, maxCapacity()) :
+                    alloc().heapBuffer(length, maxCapacity());
+            return copy.writeBytes(this, index, length);
+        }
+    }
+}
@@ -85,6 +85,9 @@ public final class ByteBufUtil {
         } else if ("pooled".equals(allocType)) {
             alloc = PooledByteBufAllocator.DEFAULT;
             logger.debug("-Dio.netty.allocator.type: {}", allocType);
+        } else if ("adaptive".equals(allocType)) {
+            alloc = new AdaptiveByteBufAllocator();
+            logger.debug("-Dio.netty.allocator.type: {}", allocType);
         } else {
             alloc = PooledByteBufAllocator.DEFAULT;
             logger.debug("-Dio.netty.allocator.type: pooled (unknown: {})", allocType);
@@ -202,7 +205,23 @@ public final class ByteBufUtil {
 
         int hashCode = EmptyByteBuf.EMPTY_BYTE_BUF_HASH_CODE;
         int arrayIndex = buffer.readerIndex();
-        if (buffer.order() == ByteOrder.BIG_ENDIAN) {
+        if (intCount > 1 && buffer instanceof AbstractByteBuf) {
+            // Hash two ints per read, which yields the same result as the loops below:
+            // 31 * (31 * h + i1) + i2 == 961 * h + 31 * i1 + i2
+            final AbstractByteBuf buf = (AbstractByteBuf) buffer;
+            buf.checkIndex(arrayIndex, intCount << 2);
+            final boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+            for (int i = intCount >>> 1; i > 0; i --) {
+                final long word = bigEndian? buf._getLong(arrayIndex) : swapLong(buf._getLong(arrayIndex));
+                hashCode = 961 * hashCode + 31 * (int) (word >>> 32) + (int) word;
+                arrayIndex += 8;
+            }
+            if ((intCount & 1) != 0) {
+                final int word = buf._getInt(arrayIndex);
+                hashCode = 31 * hashCode + (bigEndian? word : swapInt(word));
+                arrayIndex += 4;
+            }
+        } else if (buffer.order() == ByteOrder.BIG_ENDIAN) {
             for (int i = intCount; i > 0; i --) {
                 hashCode = 31 * hashCode + buffer.getInt(arrayIndex);
                 arrayIndex += 4;
@@ -256,6 +275,12 @@ public final class ByteBufUtil {
         int j = 0;
         int aStartIndex = needle.readerIndex();
         int bStartIndex = haystack.readerIndex();
+        if (haystack instanceof AbstractByteBuf) {
+            j = firstCandidateIndexOf(needle, aStartIndex, m, (AbstractByteBuf) haystack, bStartIndex, n);
+            if (j < 0) {
+                return j == -1? -1 : j & Integer.MAX_VALUE;
+            }
+        }
         long suffixes =  maxSuf(needle, m, aStartIndex, true);
         long prefixes = maxSuf(needle, m, aStartIndex, false);
         int ell = Math.max((int) (suffixes >> 32), (int) (prefixes >> 32));
@@ -315,6 +340,38 @@ public final class ByteBufUtil {
         return -1;
     }
 
+    /**
+     * Skips ahead to the occurrences of the first byte of {@code needle} in {@code haystack} using
+     * {@link #firstIndexOf(AbstractByteBuf, int, int, byte)} and compares the rest of the needle at each of them.
+     * <p>
+     * The comparisons are bounded by the number of bytes skipped so far, so that needles which start with a
+     * frequent byte do not degrade to quadratic time. Once the budget is exhausted the offset relative to
+     * {@code bStartIndex} which is left to search by the Two-Way algorithm is returned. Otherwise the result is
+     * {@code -1} if there is no match or the index of the match with the sign bit set.
+     */
+    private static int firstCandidateIndexOf(ByteBuf needle, int aStartIndex, int m,
+                                             AbstractByteBuf haystack, int bStartIndex, int n) {
+        final byte first = needle.getByte(aStartIndex);
+        final int end = bStartIndex + n - m + 1;
+        long budget = 64;
+        int offset = bStartIndex;
+        while (offset < end) {
+            final int index = firstIndexOf(haystack, offset, end, first);
+            if (index == -1) {
+                return -1;
+            }
+            budget += index - offset - m;
+            if (budget < 0) {
+                return index - bStartIndex;
+            }
+            if (equals(needle, aStartIndex + 1, haystack, index + 1, m - 1)) {
+                return index | Integer.MIN_VALUE;
+            }
+            offset = index + 1;
+        }
+        return -1;
+    }
+
     private static long maxSuf(ByteBuf x, int m, int start, boolean isSuffix) {
         int p = 1;
         int ms = -1;
@@ -369,7 +426,22 @@ public final class ByteBufUtil {
         final int longCount = length >>> 3;
         final int byteCount = length & 7;
 
-        if (a.order() == b.order()) {
+        if (longCount > 0 && a instanceof AbstractByteBuf && b instanceof AbstractByteBuf) {
+            // Check the bounds once and compare the bytes without a check per word.
+            final AbstractByteBuf bufA = (AbstractByteBuf) a;
+            final AbstractByteBuf bufB = (AbstractByteBuf) b;
+            bufA.checkIndex(aStartIndex, length);
+            bufB.checkIndex(bStartIndex, length);
+            final boolean sameOrder = a.order() == b.order();
+            for (int i = longCount; i > 0; i --) {
+                final long wordB = bufB._getLong(bStartIndex);
+                if (bufA._getLong(aStartIndex) != (sameOrder? wordB : swapLong(wordB))) {
+                    return false;
+                }
+                aStartIndex += 8;
+                bStartIndex += 8;
+            }
+        } else if (a.order() == b.order()) {
             for (int i = longCount; i > 0; i --) {
                 if (a.getLong(aStartIndex) != b.getLong(bStartIndex)) {
                     return false;
@@ -519,10 +591,21 @@ public final class ByteBufUtil {
         }
 
         private static int firstAnyPattern(long word, long pattern, boolean leading) {
+            return getIndex(applyPattern(word, pattern), leading);
+        }
+
+        /**
+         * Returns a word which has the high bit set in exactly the bytes of {@code word} that match the byte
+         * compiled into {@code pattern}, so the results for several patterns can be combined with a bitwise or.
+         */
+        private static long applyPattern(long word, long pattern) {
             long input = word ^ pattern;
             long tmp = (input & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL;
-            tmp = ~(tmp | input | 0x7F7F7F7F7F7F7F7FL);
-            final int binaryPosition = leading? Long.numberOfLeadingZeros(tmp) : Long.numberOfTrailingZeros(tmp);
+            return ~(tmp | input | 0x7F7F7F7F7F7F7F7FL);
+        }
+
+        private static int getIndex(long mask, boolean leading) {
+            final int binaryPosition = leading? Long.numberOfLeadingZeros(mask) : Long.numberOfTrailingZeros(mask);
             return binaryPosition >>> 3;
         }
     }
@@ -582,7 +665,9 @@ public final class ByteBufUtil {
         }
         final int length = toIndex - fromIndex;
         buffer.checkIndex(fromIndex, length);
-        if (!PlatformDependent.isUnaligned()) {
+        // the word reads are only well defined for BIG_ENDIAN buffers: the _getLong/_getLongLE of a
+        // LITTLE_ENDIAN composite of swapped components do not agree on where the first byte ends up
+        if (!PlatformDependent.isUnaligned() || buffer.order() != ByteOrder.BIG_ENDIAN) {
             return linearFirstIndexOf(buffer, fromIndex, toIndex, value);
         }
         assert PlatformDependent.isUnaligned();
@@ -599,14 +684,12 @@ public final class ByteBufUtil {
             }
         }
         final int longCount = length >>> 3;
-        final ByteOrder nativeOrder = ByteOrder.nativeOrder();
-        final boolean isNative = nativeOrder == buffer.order();
-        final boolean useLE = nativeOrder == ByteOrder.LITTLE_ENDIAN;
+        final boolean useLE = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
         final long pattern = SWARByteSearch.compilePattern(value);
         for (int i = 0; i < longCount; i++) {
-            // use the faster available getLong
+            // use the faster available getLong, the first byte is in the low bits of an LE read
             final long word = useLE? buffer._getLongLE(offset) : buffer._getLong(offset);
-            int index = SWARByteSearch.firstAnyPattern(word, pattern, isNative);
+            int index = SWARByteSearch.firstAnyPattern(word, pattern, !useLE);
             if (index < Long.BYTES) {
                 return offset + index;
             }
@@ -615,6 +698,43 @@ public final class ByteBufUtil {
         return -1;
     }
 
+    /**
+     * Like {@link #firstIndexOf(AbstractByteBuf, int, int, byte)}, but searches for the first occurrence of either
+     * {@code value1} or {@code value2}.
+     */
+    static int firstIndexOf(AbstractByteBuf buffer, int fromIndex, int toIndex, byte value1, byte value2) {
+        fromIndex = Math.max(fromIndex, 0);
+        if (fromIndex >= toIndex || buffer.capacity() == 0) {
+            return -1;
+        }
+        final int length = toIndex - fromIndex;
+        buffer.checkIndex(fromIndex, length);
+        int offset = fromIndex;
+        if (PlatformDependent.isUnaligned() && buffer.order() == ByteOrder.BIG_ENDIAN) {
+            final int longCount = length >>> 3;
+            final boolean useLE = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+            final long pattern1 = SWARByteSearch.compilePattern(value1);
+            final long pattern2 = SWARByteSearch.compilePattern(value2);
+            for (int i = 0; i < longCount; i++) {
+                // use the faster available getLong
+                final long word = useLE? buffer._getLongLE(offset) : buffer._getLong(offset);
+                final long mask = SWARByteSearch.applyPattern(word, pattern1) |
+                                  SWARByteSearch.applyPattern(word, pattern2);
+                if (mask != 0) {
+                    return offset + SWARByteSearch.getIndex(mask, !useLE);
+                }
+                offset += Long.BYTES;
+            }
+        }
+        for (; offset < toIndex; offset++) {
+            final byte b = buffer._getByte(offset);
+            if (b == value1 || b == value2) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
     private static int linearFirstIndexOf(AbstractByteBuf buffer, int fromIndex, int toIndex, byte value) {
         for (int i = fromIndex; i < toIndex; i++) {
             if (buffer._getByte(i) == value) {
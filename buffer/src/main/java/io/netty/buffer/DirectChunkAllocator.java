@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates the memory of the chunks of the direct arenas of a {@link PooledByteBufAllocator}, for example to back
+ * them with huge pages instead of memory that was allocated by {@link ByteBuffer#allocateDirect(int)}.
+ * <p>
+ * Only the chunks which are shared by many buffers are allocated by this allocator. Huge buffers that do not fit
+ * into a chunk are still allocated as usual.
+ */
+@UnstableApi
+public interface DirectChunkAllocator {
+
+    /**
+     * Returns a new direct {@link ByteBuffer} with exactly {@code capacity} bytes.
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Releases the memory of a {@link ByteBuffer} that was returned by {@link #allocate(int)}.
+     */
+    void free(ByteBuffer buffer);
+}
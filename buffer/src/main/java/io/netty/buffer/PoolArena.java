@@ -41,7 +41,9 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
     final int numSmallSubpagePools;
     final int directMemoryCacheAlignment;
+    // Each small size class has 1 << subpageStripeShift consecutive subpage pools, see findSubpagePoolHead(int).
     private final PoolSubpage<T>[] smallSubpagePools;
+    private final int subpageStripeShift;
 
     private final PoolChunkList<T> q050;
     private final PoolChunkList<T> q025;
@@ -65,20 +67,35 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
     // We need to use the LongCounter here as this is not guarded via synchronized block.
     private final LongCounter deallocationsHuge = PlatformDependent.newLongCounter();
 
+    // Pooled chunks that were destroyed because they were no longer used.
+    private final LongCounter reclaimedChunks = PlatformDependent.newLongCounter();
+    private final LongCounter reclaimedBytes = PlatformDependent.newLongCounter();
+
     // Number of thread caches backed by this arena.
     final AtomicInteger numThreadCaches = new AtomicInteger();
 
+    // The NUMA node of the threads which were last bound to this arena or -1 if unknown.
+    volatile int numaNode = -1;
+
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
     protected PoolArena(PooledByteBufAllocator parent, int pageSize,
           int pageShifts, int chunkSize, int cacheAlignment) {
+        this(parent, pageSize, pageShifts, chunkSize, cacheAlignment,
+             PooledByteBufAllocator.DEFAULT_SMALL_SUBPAGE_STRIPES);
+    }
+
+    protected PoolArena(PooledByteBufAllocator parent, int pageSize,
+          int pageShifts, int chunkSize, int cacheAlignment, int subpageStripes) {
         super(pageSize, pageShifts, chunkSize, cacheAlignment);
+        assert subpageStripes > 0 && (subpageStripes & subpageStripes - 1) == 0 : subpageStripes;
         this.parent = parent;
         directMemoryCacheAlignment = cacheAlignment;
 
         numSmallSubpagePools = nSubpages;
-        smallSubpagePools = newSubpagePoolArray(numSmallSubpagePools);
+        subpageStripeShift = Integer.numberOfTrailingZeros(subpageStripes);
+        smallSubpagePools = newSubpagePoolArray(numSmallSubpagePools << subpageStripeShift);
         for (int i = 0; i < smallSubpagePools.length; i ++) {
             smallSubpagePools[i] = newSubpagePoolHead();
         }
@@ -154,7 +171,7 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
          * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
          * {@link PoolChunk#free(long)} may modify the doubly linked list as well.
          */
-        final PoolSubpage<T> head = smallSubpagePools[sizeIdx];
+        final PoolSubpage<T> head = findSubpagePoolHead(sizeIdx);
         final boolean needsNormalAllocation;
         synchronized (head) {
             final PoolSubpage<T> s = head.next;
@@ -260,12 +277,47 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
         }
         if (destroyChunk) {
             // destroyChunk not need to be called while holding the synchronized lock.
-            destroyChunk(chunk);
+            reclaimChunk(chunk);
+        }
+    }
+
+    /**
+     * Destroys the pooled {@link PoolChunk}s which were completely unused for at least {@code idleNanos} and returns
+     * the number of bytes that were released. A chunk is only recognized as unused once this method was called while
+     * it was unused, so this method must be called periodically.
+     */
+    long trimIdleChunks(long idleNanos) {
+        List<PoolChunk<T>> idleChunks = new ArrayList<PoolChunk<T>>();
+        synchronized (this) {
+            // All other lists destroy their chunks as soon as they become unused, but qInit keeps them forever.
+            qInit.removeIdleChunks(System.nanoTime(), idleNanos, idleChunks);
         }
+        long bytes = 0;
+        for (PoolChunk<T> chunk : idleChunks) {
+            bytes += chunk.chunkSize();
+            reclaimChunk(chunk);
+        }
+        return bytes;
     }
 
+    private void reclaimChunk(PoolChunk<T> chunk) {
+        int size = chunk.chunkSize();
+        destroyChunk(chunk);
+        reclaimedChunks.increment();
+        reclaimedBytes.add(size);
+    }
+
+    /**
+     * Returns the head of the subpage pool of the given size class which is used by the current thread. If there are
+     * several pools per size class, the threads are spread across them by their id, so threads which allocate
+     * without a thread cache contend for fewer locks.
+     */
     PoolSubpage<T> findSubpagePoolHead(int sizeIdx) {
-        return smallSubpagePools[sizeIdx];
+        if (subpageStripeShift == 0) {
+            return smallSubpagePools[sizeIdx];
+        }
+        int stripe = (int) Thread.currentThread().getId() & (1 << subpageStripeShift) - 1;
+        return smallSubpagePools[sizeIdx << subpageStripeShift | stripe];
     }
 
     void reallocate(PooledByteBuf<T> buf, int newCapacity, boolean freeOldMemory) {
@@ -310,7 +362,7 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
     @Override
     public int numSmallSubpages() {
-        return smallSubpagePools.length;
+        return numSmallSubpagePools;
     }
 
     @Override
@@ -456,6 +508,20 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
         return max(0, val);
     }
 
+    /**
+     * Return the number of pooled chunks that were released by the arena because they were no longer used.
+     */
+    long numReclaimedChunks() {
+        return reclaimedChunks.value();
+    }
+
+    /**
+     * Return the number of bytes that were released by the arena because the chunks were no longer used.
+     */
+    long numReclaimedBytes() {
+        return reclaimedBytes.value();
+    }
+
     /**
      * Return the number of bytes that are currently pinned to buffer instances, by the arena. The pinned memory is not
      * accessible for use by any other allocation, until the buffers using have all been released.
@@ -506,13 +572,13 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
             .append(q100)
             .append(StringUtil.NEWLINE)
             .append("small subpages:");
-        appendPoolSubPages(buf, smallSubpagePools);
+        appendPoolSubPages(buf, smallSubpagePools, subpageStripeShift);
         buf.append(StringUtil.NEWLINE);
 
         return buf.toString();
     }
 
-    private static void appendPoolSubPages(StringBuilder buf, PoolSubpage<?>[] subpages) {
+    private static void appendPoolSubPages(StringBuilder buf, PoolSubpage<?>[] subpages, int stripeShift) {
         for (int i = 0; i < subpages.length; i ++) {
             PoolSubpage<?> head = subpages[i];
             if (head.next == head) {
@@ -520,7 +586,7 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
             }
 
             buf.append(StringUtil.NEWLINE)
-                    .append(i)
+                    .append(i >> stripeShift)
                     .append(": ");
             PoolSubpage<?> s = head.next;
             for (;;) {
@@ -559,8 +625,13 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
         HeapArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
                   int chunkSize) {
+            this(parent, pageSize, pageShifts, chunkSize, PooledByteBufAllocator.DEFAULT_SMALL_SUBPAGE_STRIPES);
+        }
+
+        HeapArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
+                  int chunkSize, int subpageStripes) {
             super(parent, pageSize, pageShifts, chunkSize,
-                  0);
+                  0, subpageStripes);
         }
 
         private static byte[] newByteArray(int size) {
@@ -606,10 +677,20 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
     static final class DirectArena extends PoolArena<ByteBuffer> {
 
+        private final DirectChunkAllocator chunkAllocator;
+
         DirectArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
                     int chunkSize, int directMemoryCacheAlignment) {
+            this(parent, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment, null,
+                 PooledByteBufAllocator.DEFAULT_SMALL_SUBPAGE_STRIPES);
+        }
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
+                    int chunkSize, int directMemoryCacheAlignment, DirectChunkAllocator chunkAllocator,
+                    int subpageStripes) {
             super(parent, pageSize, pageShifts, chunkSize,
-                  directMemoryCacheAlignment);
+                  directMemoryCacheAlignment, subpageStripes);
+            this.chunkAllocator = chunkAllocator;
         }
 
         @Override
@@ -621,12 +702,12 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
         protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxPageIdx,
             int pageShifts, int chunkSize) {
             if (directMemoryCacheAlignment == 0) {
-                ByteBuffer memory = allocateDirect(chunkSize);
+                ByteBuffer memory = allocateChunkMemory(chunkSize);
                 return new PoolChunk<ByteBuffer>(this, memory, memory, pageSize, pageShifts,
                         chunkSize, maxPageIdx);
             }
 
-            final ByteBuffer base = allocateDirect(chunkSize + directMemoryCacheAlignment);
+            final ByteBuffer base = allocateChunkMemory(chunkSize + directMemoryCacheAlignment);
             final ByteBuffer memory = PlatformDependent.alignDirectBuffer(base, directMemoryCacheAlignment);
             return new PoolChunk<ByteBuffer>(this, base, memory, pageSize,
                     pageShifts, chunkSize, maxPageIdx);
@@ -644,6 +725,10 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
             return new PoolChunk<ByteBuffer>(this, base, memory, capacity);
         }
 
+        private ByteBuffer allocateChunkMemory(int capacity) {
+            return chunkAllocator != null ? chunkAllocator.allocate(capacity) : allocateDirect(capacity);
+        }
+
         private static ByteBuffer allocateDirect(int capacity) {
             return PlatformDependent.useDirectBufferNoCleaner() ?
                     PlatformDependent.allocateDirectNoCleaner(capacity) : ByteBuffer.allocateDirect(capacity);
@@ -651,7 +736,9 @@ abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
 
         @Override
         protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
-            if (PlatformDependent.useDirectBufferNoCleaner()) {
+            if (chunkAllocator != null && !chunk.unpooled) {
+                chunkAllocator.free((ByteBuffer) chunk.base);
+            } else if (PlatformDependent.useDirectBufferNoCleaner()) {
                 PlatformDependent.freeDirectNoCleaner((ByteBuffer) chunk.base);
             } else {
                 PlatformDependent.freeDirectBuffer((ByteBuffer) chunk.base);
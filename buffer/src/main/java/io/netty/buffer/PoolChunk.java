@@ -181,6 +181,11 @@ final class PoolChunk<T> implements PoolChunkMetric {
 
     int freeBytes;
 
+    // Set when the chunk was found to be unused by PoolArena.trimIdleChunks(...) and cleared by every allocation.
+    // Both fields are guarded by the arena.
+    boolean idle;
+    long idleSinceNanos;
+
     PoolChunkList<T> parent;
     PoolChunk<T> prev;
     PoolChunk<T> next;
@@ -301,6 +306,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
     }
 
     boolean allocate(PooledByteBuf<T> buf, int reqCapacity, int sizeIdx, PoolThreadCache cache) {
+        idle = false;
         final long handle;
         if (sizeIdx <= arena.smallMaxSizeIdx) {
             // small
@@ -460,12 +466,11 @@ final class PoolChunk<T> implements PoolChunkMetric {
     void free(long handle, int normCapacity, ByteBuffer nioBuffer) {
         int runSize = runSize(pageShifts, handle);
         if (isSubpage(handle)) {
-            int sizeIdx = arena.size2SizeIdx(normCapacity);
-            PoolSubpage<T> head = arena.findSubpagePoolHead(sizeIdx);
-
             int sIdx = runOffset(handle);
             PoolSubpage<T> subpage = subpages[sIdx];
             assert subpage != null && subpage.doNotDestroy;
+            // The subpage may belong to another pool of its size class than the one used by the current thread.
+            PoolSubpage<T> head = subpage.head;
 
             // Obtain the head of the PoolSubPage pool that is owned by the PoolArena and synchronize on it.
             // This is need as we may add it back and so alter the linked-list structure.
@@ -153,6 +153,26 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         return prevList.move(chunk);
     }
 
+    /**
+     * Removes the {@link PoolChunk}s which are completely unused since at least {@code idleNanos} and adds them to
+     * {@code idleChunks}. Unused chunks that were not seen before are only marked as idle.
+     */
+    void removeIdleChunks(long nowNanos, long idleNanos, List<PoolChunk<T>> idleChunks) {
+        for (PoolChunk<T> cur = head; cur != null;) {
+            PoolChunk<T> next = cur.next;
+            if (cur.freeBytes == cur.chunkSize()) {
+                if (!cur.idle) {
+                    cur.idle = true;
+                    cur.idleSinceNanos = nowNanos;
+                } else if (nowNanos - cur.idleSinceNanos >= idleNanos) {
+                    remove(cur);
+                    idleChunks.add(cur);
+                }
+            }
+            cur = next;
+        }
+    }
+
     void add(PoolChunk<T> chunk) {
         if (chunk.freeBytes <= freeMinThreshold) {
             nextList.add(chunk);
@@ -25,6 +25,8 @@ import static io.netty.buffer.SizeClasses.LOG2_QUANTUM;
 final class PoolSubpage<T> implements PoolSubpageMetric {
 
     final PoolChunk<T> chunk;
+    // The head of the subpage pool this subpage is added to when it has elements available.
+    final PoolSubpage<T> head;
     final int elemSize;
     private final int pageShifts;
     private final int runOffset;
@@ -46,6 +48,7 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
     /** Special constructor that creates a linked list head */
     PoolSubpage() {
         chunk = null;
+        head = this;
         pageShifts = -1;
         runOffset = -1;
         elemSize = -1;
@@ -55,6 +58,7 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
 
     PoolSubpage(PoolSubpage<T> head, PoolChunk<T> chunk, int pageShifts, int runOffset, int runSize, int elemSize) {
         this.chunk = chunk;
+        this.head = head;
         this.pageShifts = pageShifts;
         this.runOffset = runOffset;
         this.runSize = runSize;
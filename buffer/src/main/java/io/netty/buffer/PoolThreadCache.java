@@ -59,6 +59,7 @@ final class PoolThreadCache {
     private final AtomicBoolean freed = new AtomicBoolean();
 
     private int allocations;
+    private boolean allocatedSinceIdleCheck;
 
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
@@ -165,6 +166,7 @@ final class PoolThreadCache {
             return false;
         }
         boolean allocated = cache.allocate(buf, reqCapacity, this);
+        allocatedSinceIdleCheck = true;
         if (++ allocations >= freeSweepAllocationThreshold) {
             allocations = 0;
             trim();
@@ -261,6 +263,19 @@ final class PoolThreadCache {
         trim(normalHeapCaches);
     }
 
+    /**
+     * Frees all cached entries if nothing was allocated from this cache since the last call of this method, so the
+     * chunks of an idle thread can be released.
+     */
+    boolean trimIfIdle() {
+        if (allocatedSinceIdleCheck) {
+            allocatedSinceIdleCheck = false;
+            return false;
+        }
+        trim();
+        return true;
+    }
+
     private static void trim(MemoryRegionCache<?>[] caches) {
         if (caches == null) {
             return;
@@ -16,19 +16,24 @@
 
 package io.netty.buffer;
 
+import static io.netty.util.internal.ObjectUtil.checkPositive;
 import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 import io.netty.util.NettyRuntime;
 import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.internal.MathUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.ThreadExecutorMap;
+import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -48,9 +53,11 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     static final int DEFAULT_MAX_CACHED_BUFFER_CAPACITY;
     private static final int DEFAULT_CACHE_TRIM_INTERVAL;
     private static final long DEFAULT_CACHE_TRIM_INTERVAL_MILLIS;
+    private static final long DEFAULT_CHUNK_RELEASE_DELAY_MILLIS;
     private static final boolean DEFAULT_USE_CACHE_FOR_ALL_THREADS;
     private static final int DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT;
     static final int DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK;
+    static final int DEFAULT_SMALL_SUBPAGE_STRIPES;
 
     private static final int MIN_PAGE_SIZE = 4096;
     private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);
@@ -64,6 +71,16 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         }
     };
 
+    private final Runnable idleTrimTask = new Runnable() {
+        @Override
+        public void run() {
+            PoolThreadCache cache = threadCache.getIfExists();
+            if (cache != null) {
+                cache.trimIfIdle();
+            }
+        }
+    };
+
     static {
         int defaultAlignment = SystemPropertyUtil.getInt(
                 "io.netty.allocator.directMemoryCacheAlignment", 0);
@@ -145,6 +162,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                     "io.netty.allocator.cacheTrimIntervalMillis", 0);
         }
 
+        // the time after which chunks that are no longer used are released, 0 keeps them until the arena is collected
+        DEFAULT_CHUNK_RELEASE_DELAY_MILLIS = SystemPropertyUtil.getLong(
+                "io.netty.allocator.chunkReleaseDelayMillis", 0);
+
         DEFAULT_USE_CACHE_FOR_ALL_THREADS = SystemPropertyUtil.getBoolean(
                 "io.netty.allocator.useCacheForAllThreads", false);
 
@@ -153,6 +174,11 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK = SystemPropertyUtil.getInt(
                 "io.netty.allocator.maxCachedByteBuffersPerChunk", 1023);
 
+        // the number of subpage pools per small size class and arena, threads that do not allocate from their thread
+        // cache only contend with other threads that use the same pool
+        DEFAULT_SMALL_SUBPAGE_STRIPES = MathUtil.safeFindNextPositivePowerOfTwo(SystemPropertyUtil.getInt(
+                "io.netty.allocator.smallSubpageStripes", 1));
+
         if (logger.isDebugEnabled()) {
             logger.debug("-Dio.netty.allocator.numHeapArenas: {}", DEFAULT_NUM_HEAP_ARENA);
             logger.debug("-Dio.netty.allocator.numDirectArenas: {}", DEFAULT_NUM_DIRECT_ARENA);
@@ -172,9 +198,11 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             logger.debug("-Dio.netty.allocator.maxCachedBufferCapacity: {}", DEFAULT_MAX_CACHED_BUFFER_CAPACITY);
             logger.debug("-Dio.netty.allocator.cacheTrimInterval: {}", DEFAULT_CACHE_TRIM_INTERVAL);
             logger.debug("-Dio.netty.allocator.cacheTrimIntervalMillis: {}", DEFAULT_CACHE_TRIM_INTERVAL_MILLIS);
+            logger.debug("-Dio.netty.allocator.chunkReleaseDelayMillis: {}", DEFAULT_CHUNK_RELEASE_DELAY_MILLIS);
             logger.debug("-Dio.netty.allocator.useCacheForAllThreads: {}", DEFAULT_USE_CACHE_FOR_ALL_THREADS);
             logger.debug("-Dio.netty.allocator.maxCachedByteBuffersPerChunk: {}",
                     DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK);
+            logger.debug("-Dio.netty.allocator.smallSubpageStripes: {}", DEFAULT_SMALL_SUBPAGE_STRIPES);
         }
     }
 
@@ -265,6 +293,33 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int smallCacheSize, int normalCacheSize,
                                   boolean useCacheForAllThreads, int directMemoryCacheAlignment) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+             smallCacheSize, normalCacheSize,
+             useCacheForAllThreads, directMemoryCacheAlignment, null);
+    }
+
+    /**
+     * Creates a new instance which allocates the memory of the chunks of its direct arenas with the given
+     * {@link DirectChunkAllocator}, or with {@link ByteBuffer#allocateDirect(int)} if it is {@code null}.
+     */
+    @UnstableApi
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  DirectChunkAllocator directChunkAllocator) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder, smallCacheSize, normalCacheSize,
+             useCacheForAllThreads, directMemoryCacheAlignment, directChunkAllocator, DEFAULT_SMALL_SUBPAGE_STRIPES);
+    }
+
+    /**
+     * Like {@link #PooledByteBufAllocator(boolean, int, int, int, int, int, int, boolean, int, DirectChunkAllocator)},
+     * but with the given number of subpage pools per small size class instead of
+     * {@code -Dio.netty.allocator.smallSubpageStripes}.
+     */
+    PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                           int smallCacheSize, int normalCacheSize,
+                           boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                           DirectChunkAllocator directChunkAllocator, int subpageStripes) {
         super(preferDirect);
         threadCache = new PoolThreadLocalCache(useCacheForAllThreads);
         this.smallCacheSize = smallCacheSize;
@@ -297,12 +352,15 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
         int pageShifts = validateAndCalculatePageShifts(pageSize, directMemoryCacheAlignment);
 
+        checkPositive(subpageStripes, "subpageStripes");
+        subpageStripes = MathUtil.safeFindNextPositivePowerOfTwo(subpageStripes);
+
         if (nHeapArena > 0) {
             heapArenas = newArenaArray(nHeapArena);
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(heapArenas.length);
             for (int i = 0; i < heapArenas.length; i ++) {
                 PoolArena.HeapArena arena = new PoolArena.HeapArena(this,
-                        pageSize, pageShifts, chunkSize);
+                        pageSize, pageShifts, chunkSize, subpageStripes);
                 heapArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -317,7 +375,8 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(directArenas.length);
             for (int i = 0; i < directArenas.length; i ++) {
                 PoolArena.DirectArena arena = new PoolArena.DirectArena(
-                        this, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment);
+                        this, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment, directChunkAllocator,
+                        subpageStripes);
                 directArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -327,6 +386,25 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             directArenaMetrics = Collections.emptyList();
         }
         metric = new PooledByteBufAllocatorMetric(this);
+
+        if (DEFAULT_CHUNK_RELEASE_DELAY_MILLIS > 0) {
+            scheduleIdleChunkRelease(this, DEFAULT_CHUNK_RELEASE_DELAY_MILLIS);
+        }
+    }
+
+    private static void scheduleIdleChunkRelease(PooledByteBufAllocator allocator, final long delayMillis) {
+        // Only keep a weak reference, so the task stops once the allocator was collected.
+        final WeakReference<PooledByteBufAllocator> allocatorRef = new WeakReference<PooledByteBufAllocator>(allocator);
+        GlobalEventExecutor.INSTANCE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                PooledByteBufAllocator allocator = allocatorRef.get();
+                if (allocator != null) {
+                    allocator.trimIdleChunks(delayMillis, TimeUnit.MILLISECONDS);
+                    GlobalEventExecutor.INSTANCE.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
     }
 
     @SuppressWarnings("unchecked")
@@ -509,10 +587,12 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
         @Override
         protected synchronized PoolThreadCache initialValue() {
-            final PoolArena<byte[]> heapArena = leastUsedArena(heapArenas);
-            final PoolArena<ByteBuffer> directArena = leastUsedArena(directArenas);
-
             final Thread current = Thread.currentThread();
+            final int numaNode = current instanceof FastThreadLocalThread ?
+                    ((FastThreadLocalThread) current).numaNode() : -1;
+            final PoolArena<byte[]> heapArena = leastUsedArena(heapArenas, numaNode);
+            final PoolArena<ByteBuffer> directArena = leastUsedArena(directArenas, numaNode);
+
             final EventExecutor executor = ThreadExecutorMap.currentExecutor();
 
             if (useCacheForAllThreads ||
@@ -530,6 +610,12 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                         executor.scheduleAtFixedRate(trimTask, DEFAULT_CACHE_TRIM_INTERVAL_MILLIS,
                                 DEFAULT_CACHE_TRIM_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
                     }
+                } else if (DEFAULT_CHUNK_RELEASE_DELAY_MILLIS > 0) {
+                    if (executor != null) {
+                        // Give back the cached memory of idle event loops, as it would keep the chunks in use.
+                        executor.scheduleAtFixedRate(idleTrimTask, DEFAULT_CHUNK_RELEASE_DELAY_MILLIS,
+                                DEFAULT_CHUNK_RELEASE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                    }
                 }
                 return cache;
             }
@@ -542,11 +628,28 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             threadCache.free(false);
         }
 
-        private <T> PoolArena<T> leastUsedArena(PoolArena<T>[] arenas) {
+        private <T> PoolArena<T> leastUsedArena(PoolArena<T>[] arenas, int numaNode) {
             if (arenas == null || arenas.length == 0) {
                 return null;
             }
 
+            if (numaNode >= 0) {
+                // Only share arenas between threads of the same NUMA node, so the memory of an arena is touched
+                // first and then used by a single node. Fall back to any arena if all are used by other nodes.
+                PoolArena<T> minArena = null;
+                for (PoolArena<T> arena : arenas) {
+                    int numThreadCaches = arena.numThreadCaches.get();
+                    if ((numThreadCaches == CACHE_NOT_USED || arena.numaNode == numaNode) &&
+                            (minArena == null || numThreadCaches < minArena.numThreadCaches.get())) {
+                        minArena = arena;
+                    }
+                }
+                if (minArena != null) {
+                    minArena.numaNode = numaNode;
+                    return minArena;
+                }
+            }
+
             PoolArena<T> minArena = arenas[0];
             //optimized
             //If it is the first execution, directly return minarena and reduce the number of for loop comparisons below
@@ -677,6 +780,33 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return usedMemory(directArenas);
     }
 
+    final long numReclaimedChunks() {
+        long chunks = 0;
+        for (PoolArena<?> arena : allArenas()) {
+            chunks += arena.numReclaimedChunks();
+        }
+        return chunks;
+    }
+
+    final long numReclaimedBytes() {
+        long bytes = 0;
+        for (PoolArena<?> arena : allArenas()) {
+            bytes += arena.numReclaimedBytes();
+        }
+        return bytes;
+    }
+
+    private List<PoolArena<?>> allArenas() {
+        List<PoolArena<?>> arenas = new ArrayList<PoolArena<?>>();
+        if (heapArenas != null) {
+            Collections.addAll(arenas, heapArenas);
+        }
+        if (directArenas != null) {
+            Collections.addAll(arenas, directArenas);
+        }
+        return arenas;
+    }
+
     private static long usedMemory(PoolArena<?>[] arenas) {
         if (arenas == null) {
             return -1;
@@ -746,6 +876,30 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return false;
     }
 
+    /**
+     * Releases the pooled chunks of all arenas which were not used for at least the given time, and returns the number
+     * of bytes that were released. A chunk is only recognized as unused once this method was called while it was
+     * unused, so this method must be called periodically, like it is done every
+     * {@code io.netty.allocator.chunkReleaseDelayMillis} if this system property is set.
+     * <p>
+     * Memory that is cached by a thread is still in use, see {@link #trimCurrentThreadCache()}.
+     */
+    public long trimIdleChunks(long idleTime, TimeUnit unit) {
+        long idleNanos = unit.toNanos(checkPositiveOrZero(idleTime, "idleTime"));
+        return trimIdleChunks(heapArenas, idleNanos) + trimIdleChunks(directArenas, idleNanos);
+    }
+
+    private static long trimIdleChunks(PoolArena<?>[] arenas, long idleNanos) {
+        if (arenas == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (PoolArena<?> arena : arenas) {
+            bytes += arena.trimIdleChunks(idleNanos);
+        }
+        return bytes;
+    }
+
     /**
      * Returns the status of the allocator (which contains all metrics) as string. Be aware this may be expensive
      * and so should not called too frequently.
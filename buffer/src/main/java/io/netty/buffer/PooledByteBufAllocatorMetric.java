@@ -16,6 +16,7 @@
 package io.netty.buffer;
 
 import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
 
 import java.util.List;
 
@@ -97,6 +98,24 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
         return allocator.chunkSize();
     }
 
+    /**
+     * Return the number of pooled chunks that were released by the arenas because they were no longer used, see
+     * {@link PooledByteBufAllocator#trimIdleChunks(long, java.util.concurrent.TimeUnit)}.
+     */
+    @UnstableApi
+    public long numReclaimedChunks() {
+        return allocator.numReclaimedChunks();
+    }
+
+    /**
+     * Return the number of bytes that were released by the arenas because the chunks were no longer used, see
+     * {@link PooledByteBufAllocator#trimIdleChunks(long, java.util.concurrent.TimeUnit)}.
+     */
+    @UnstableApi
+    public long numReclaimedBytes() {
+        return allocator.numReclaimedBytes();
+    }
+
     @Override
     public long usedHeapMemory() {
         return allocator.usedHeapMemory();
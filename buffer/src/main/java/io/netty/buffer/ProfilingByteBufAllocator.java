@@ -0,0 +1,451 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.ResourceLeakTracker;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * A {@link ByteBufAllocator} which delegates to another {@link ByteBufAllocator} and records where the buffers are
+ * allocated, how big they are and how long they live until they are released, for a sample of the allocations.
+ * <p>
+ * One out of {@link #samplingInterval()} allocations on average is sampled. The stack of a sampled allocation is
+ * captured and its topmost frames identify the allocation site. The statistics are aggregated per allocation site in
+ * a table with a bounded number of sites, further sites are counted as {@value #OTHER_SITE}. Use
+ * {@link #dumpStats()} or {@link #allocationSites()} to inspect them.
+ * <p>
+ * If the sampling interval is {@code 0} nothing is sampled and the buffers of the delegate are returned as they are,
+ * so the profiler can stay in place and be enabled via {@link #samplingInterval(int)} when needed.
+ */
+@UnstableApi
+public final class ProfilingByteBufAllocator implements ByteBufAllocator {
+
+    /**
+     * The allocation site that is used once the table of allocation sites is full.
+     */
+    public static final String OTHER_SITE = "<other>";
+
+    private static final String CLASS_NAME = ProfilingByteBufAllocator.class.getName();
+    private static final String NESTED_CLASS_PREFIX = CLASS_NAME + '$';
+    private static final int SIZE_CLASSES = Integer.SIZE + 1;
+
+    private final ByteBufAllocator delegate;
+    private final int stackDepth;
+    private final int maxSites;
+    private final ConcurrentMap<String, AllocationSite> sites = PlatformDependent.newConcurrentHashMap();
+    private volatile int samplingInterval;
+
+    /**
+     * Creates a new instance which captures 4 stack frames per allocation site and keeps at most 1024 sites.
+     *
+     * @param delegate         the allocator which allocates the buffers.
+     * @param samplingInterval one out of this number of allocations is sampled, {@code 0} disables sampling.
+     */
+    public ProfilingByteBufAllocator(ByteBufAllocator delegate, int samplingInterval) {
+        this(delegate, samplingInterval, 4, 1024);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate         the allocator which allocates the buffers.
+     * @param samplingInterval one out of this number of allocations is sampled, {@code 0} disables sampling.
+     * @param stackDepth       the number of stack frames which identify an allocation site.
+     * @param maxSites         the maximum number of allocation sites that are kept.
+     */
+    public ProfilingByteBufAllocator(ByteBufAllocator delegate, int samplingInterval, int stackDepth, int maxSites) {
+        this.delegate = checkNotNull(delegate, "delegate");
+        this.samplingInterval = checkPositiveOrZero(samplingInterval, "samplingInterval");
+        this.stackDepth = checkPositive(stackDepth, "stackDepth");
+        this.maxSites = checkPositive(maxSites, "maxSites");
+    }
+
+    /**
+     * Returns the {@link ByteBufAllocator} which allocates the buffers.
+     */
+    public ByteBufAllocator delegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the average number of allocations per sampled allocation, {@code 0} if sampling is disabled.
+     */
+    public int samplingInterval() {
+        return samplingInterval;
+    }
+
+    /**
+     * Sets the average number of allocations per sampled allocation, {@code 0} disables sampling.
+     */
+    public void samplingInterval(int samplingInterval) {
+        this.samplingInterval = checkPositiveOrZero(samplingInterval, "samplingInterval");
+    }
+
+    /**
+     * Returns a snapshot of the allocation sites, ordered by the number of sampled bytes.
+     */
+    public List<AllocationSite> allocationSites() {
+        List<AllocationSite> list = new ArrayList<AllocationSite>(sites.values());
+        Collections.sort(list, new Comparator<AllocationSite>() {
+            @Override
+            public int compare(AllocationSite o1, AllocationSite o2) {
+                long bytes1 = o1.allocatedBytes();
+                long bytes2 = o2.allocatedBytes();
+                return bytes1 < bytes2 ? 1 : bytes1 == bytes2 ? 0 : -1;
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Removes all allocation sites. Buffers that were sampled before and are released later are not recorded anymore.
+     */
+    public void reset() {
+        sites.clear();
+    }
+
+    /**
+     * Returns the statistics of all allocation sites as string, ordered by the number of sampled bytes.
+     */
+    public String dumpStats() {
+        List<AllocationSite> list = allocationSites();
+        StringBuilder buf = new StringBuilder(256)
+                .append(list.size())
+                .append(" allocation site(s), sampling interval: ")
+                .append(samplingInterval)
+                .append(StringUtil.NEWLINE);
+        for (AllocationSite site: list) {
+            buf.append(site);
+        }
+        return buf.toString();
+    }
+
+    private ByteBuf sample(ByteBuf buf) {
+        int interval = samplingInterval;
+        if (interval == 0 || PlatformDependent.threadLocalRandom().nextInt(interval) != 0) {
+            return buf;
+        }
+        AllocationSite site = site(callSite());
+        int capacity = buf.capacity();
+        site.allocated(capacity);
+        return new SimpleLeakAwareByteBuf(buf, new Sample(site));
+    }
+
+    private AllocationSite site(String callSite) {
+        AllocationSite site = sites.get(callSite);
+        if (site == null) {
+            if (sites.size() >= maxSites) {
+                callSite = OTHER_SITE;
+                site = sites.get(callSite);
+                if (site != null) {
+                    return site;
+                }
+            }
+            site = new AllocationSite(callSite);
+            AllocationSite old = sites.putIfAbsent(callSite, site);
+            if (old != null) {
+                site = old;
+            }
+        }
+        return site;
+    }
+
+    private String callSite() {
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        StringBuilder buf = new StringBuilder(128);
+        int frames = 0;
+        for (StackTraceElement element : stack) {
+            String className = element.getClassName();
+            if (className.equals(CLASS_NAME) || className.startsWith(NESTED_CLASS_PREFIX)) {
+                continue;
+            }
+            if (frames > 0) {
+                buf.append(StringUtil.NEWLINE);
+            }
+            buf.append('\t').append(element);
+            if (++frames == stackDepth) {
+                break;
+            }
+        }
+        return buf.toString();
+    }
+
+    static int sizeClass(int capacity) {
+        return capacity <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+
+    @Override
+    public ByteBuf buffer() {
+        return sample(delegate.buffer());
+    }
+
+    @Override
+    public ByteBuf buffer(int initialCapacity) {
+        return sample(delegate.buffer(initialCapacity));
+    }
+
+    @Override
+    public ByteBuf buffer(int initialCapacity, int maxCapacity) {
+        return sample(delegate.buffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public ByteBuf ioBuffer() {
+        return sample(delegate.ioBuffer());
+    }
+
+    @Override
+    public ByteBuf ioBuffer(int initialCapacity) {
+        return sample(delegate.ioBuffer(initialCapacity));
+    }
+
+    @Override
+    public ByteBuf ioBuffer(int initialCapacity, int maxCapacity) {
+        return sample(delegate.ioBuffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public ByteBuf heapBuffer() {
+        return sample(delegate.heapBuffer());
+    }
+
+    @Override
+    public ByteBuf heapBuffer(int initialCapacity) {
+        return sample(delegate.heapBuffer(initialCapacity));
+    }
+
+    @Override
+    public ByteBuf heapBuffer(int initialCapacity, int maxCapacity) {
+        return sample(delegate.heapBuffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public ByteBuf directBuffer() {
+        return sample(delegate.directBuffer());
+    }
+
+    @Override
+    public ByteBuf directBuffer(int initialCapacity) {
+        return sample(delegate.directBuffer(initialCapacity));
+    }
+
+    @Override
+    public ByteBuf directBuffer(int initialCapacity, int maxCapacity) {
+        return sample(delegate.directBuffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public CompositeByteBuf compositeBuffer() {
+        return delegate.compositeBuffer();
+    }
+
+    @Override
+    public CompositeByteBuf compositeBuffer(int maxNumComponents) {
+        return delegate.compositeBuffer(maxNumComponents);
+    }
+
+    @Override
+    public CompositeByteBuf compositeHeapBuffer() {
+        return delegate.compositeHeapBuffer();
+    }
+
+    @Override
+    public CompositeByteBuf compositeHeapBuffer(int maxNumComponents) {
+        return delegate.compositeHeapBuffer(maxNumComponents);
+    }
+
+    @Override
+    public CompositeByteBuf compositeDirectBuffer() {
+        return delegate.compositeDirectBuffer();
+    }
+
+    @Override
+    public CompositeByteBuf compositeDirectBuffer(int maxNumComponents) {
+        return delegate.compositeDirectBuffer(maxNumComponents);
+    }
+
+    @Override
+    public boolean isDirectBufferPooled() {
+        return delegate.isDirectBufferPooled();
+    }
+
+    @Override
+    public int calculateNewCapacity(int minNewCapacity, int maxCapacity) {
+        return delegate.calculateNewCapacity(minNewCapacity, maxCapacity);
+    }
+
+    /**
+     * The statistics of the sampled allocations of one allocation site.
+     */
+    public static final class AllocationSite {
+        private final String callSite;
+        private final LongCounter allocations = PlatformDependent.newLongCounter();
+        private final LongCounter allocatedBytes = PlatformDependent.newLongCounter();
+        private final LongCounter releases = PlatformDependent.newLongCounter();
+        private final LongCounter totalLifetimeNanos = PlatformDependent.newLongCounter();
+        private final AtomicLong maxLifetimeNanos = new AtomicLong();
+        private final AtomicLongArray sizeClassAllocations = new AtomicLongArray(SIZE_CLASSES);
+
+        AllocationSite(String callSite) {
+            this.callSite = callSite;
+        }
+
+        void allocated(int capacity) {
+            allocations.increment();
+            allocatedBytes.add(capacity);
+            sizeClassAllocations.incrementAndGet(sizeClass(capacity));
+        }
+
+        void released(long lifetimeNanos) {
+            releases.increment();
+            totalLifetimeNanos.add(lifetimeNanos);
+            for (;;) {
+                long max = maxLifetimeNanos.get();
+                if (lifetimeNanos <= max || maxLifetimeNanos.compareAndSet(max, lifetimeNanos)) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Returns the topmost stack frames of the allocations, or {@link #OTHER_SITE}.
+         */
+        public String callSite() {
+            return callSite;
+        }
+
+        /**
+         * Returns the number of sampled allocations.
+         */
+        public long allocations() {
+            return allocations.value();
+        }
+
+        /**
+         * Returns the sum of the initial capacities of the sampled allocations.
+         */
+        public long allocatedBytes() {
+            return allocatedBytes.value();
+        }
+
+        /**
+         * Returns the number of sampled buffers which were released.
+         */
+        public long releases() {
+            return releases.value();
+        }
+
+        /**
+         * Returns the number of sampled allocations with an initial capacity of at most {@code 2^sizeClass} bytes,
+         * and more than half of that.
+         */
+        public long allocations(int sizeClass) {
+            return sizeClassAllocations.get(sizeClass);
+        }
+
+        /**
+         * Returns the average time between the allocation and the release of the sampled buffers.
+         */
+        public long averageLifetime(TimeUnit unit) {
+            long releases = releases();
+            return releases == 0 ? 0 : unit.convert(totalLifetimeNanos.value() / releases, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns the longest time between the allocation and the release of a sampled buffer.
+         */
+        public long maxLifetime(TimeUnit unit) {
+            return unit.convert(maxLifetimeNanos.get(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buf = new StringBuilder(256)
+                    .append("Allocations: ")
+                    .append(allocations())
+                    .append(", bytes: ")
+                    .append(allocatedBytes())
+                    .append(", released: ")
+                    .append(releases())
+                    .append(", lifetime avg/max (us): ")
+                    .append(averageLifetime(TimeUnit.MICROSECONDS))
+                    .append('/')
+                    .append(maxLifetime(TimeUnit.MICROSECONDS))
+                    .append(", sizes:");
+            for (int i = 0; i < SIZE_CLASSES; i++) {
+                long count = allocations(i);
+                if (count != 0) {
+                    buf.append(" <=")
+                       .append(1L << i)
+                       .append(": ")
+                       .append(count);
+                }
+            }
+            return buf.append(StringUtil.NEWLINE)
+                      .append(callSite)
+                      .append(StringUtil.NEWLINE)
+                      .toString();
+        }
+    }
+
+    /**
+     * Records the lifetime of a sampled buffer once it is released.
+     */
+    private static final class Sample extends AtomicBoolean implements ResourceLeakTracker<ByteBuf> {
+        private static final long serialVersionUID = -2839617418713284357L;
+
+        private final AllocationSite site;
+        private final long allocationNanos = System.nanoTime();
+
+        Sample(AllocationSite site) {
+            this.site = site;
+        }
+
+        @Override
+        public void record() {
+        }
+
+        @Override
+        public void record(Object hint) {
+        }
+
+        @Override
+        public boolean close(ByteBuf trackedObject) {
+            if (compareAndSet(false, true)) {
+                site.released(System.nanoTime() - allocationNanos);
+                return true;
+            }
+            return false;
+        }
+    }
+}
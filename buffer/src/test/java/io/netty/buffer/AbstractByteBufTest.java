@@ -2506,6 +2506,74 @@ public abstract class AbstractByteBufTest {
         }), is(stop));
     }
 
+    @Test
+    public void testForEachByteCommonProcessors() {
+        buffer.clear();
+        for (int i = 0; i < CAPACITY; i ++) {
+            buffer.writeByte('a');
+        }
+        assertEquals(-1, buffer.forEachByte(ByteProcessor.FIND_LF));
+        assertEquals(-1, buffer.forEachByte(ByteProcessor.FIND_CRLF));
+        assertEquals(-1, buffer.forEachByte(ByteProcessor.FIND_NUL));
+
+        for (int start = 0; start < 9; start ++) {
+            for (int offset = 0; offset < 20; offset ++) {
+                final int index = start + offset;
+                buffer.setByte(index, '\n');
+                assertEquals(index, buffer.forEachByte(start, 24, ByteProcessor.FIND_LF));
+                assertEquals(index, buffer.forEachByte(start, 24, ByteProcessor.FIND_CRLF));
+                assertEquals(-1, buffer.forEachByte(start, 24, ByteProcessor.FIND_NUL));
+                assertEquals(-1, buffer.forEachByte(start, offset, ByteProcessor.FIND_LF));
+
+                buffer.setByte(index, '\r');
+                assertEquals(-1, buffer.forEachByte(start, 24, ByteProcessor.FIND_LF));
+                assertEquals(index, buffer.forEachByte(start, 24, ByteProcessor.FIND_CRLF));
+                assertEquals(-1, buffer.forEachByte(start, offset, ByteProcessor.FIND_CRLF));
+
+                buffer.setByte(index, 0);
+                assertEquals(index, buffer.forEachByte(start, 24, ByteProcessor.FIND_NUL));
+                assertEquals(-1, buffer.forEachByte(start, offset, ByteProcessor.FIND_NUL));
+                buffer.setByte(index, 'a');
+            }
+        }
+
+        buffer.setByte(CAPACITY - 2, '\r');
+        buffer.setByte(CAPACITY - 1, '\n');
+        assertEquals(CAPACITY - 1, buffer.forEachByte(ByteProcessor.FIND_LF));
+        assertEquals(CAPACITY - 2, buffer.forEachByte(ByteProcessor.FIND_CRLF));
+    }
+
+    @Test
+    public void testForEachByteCommonProcessorsLittleEndianComposite() {
+        buffer.clear();
+        for (int i = 0; i < CAPACITY; i ++) {
+            buffer.writeByte('a');
+        }
+        // a composite of swapped components is an AbstractByteBuf with LITTLE_ENDIAN order
+        ByteBuf composite = Unpooled.wrappedUnmodifiableBuffer(
+                buffer.retainedSlice(0, 11).order(LITTLE_ENDIAN),
+                buffer.retainedSlice(11, CAPACITY - 11).order(LITTLE_ENDIAN));
+        try {
+            assertEquals(LITTLE_ENDIAN, composite.order());
+            for (int index = 0; index < 32; index ++) {
+                buffer.setByte(index, '\n');
+                assertEquals(index, composite.forEachByte(ByteProcessor.FIND_LF));
+                assertEquals(index, composite.forEachByte(ByteProcessor.FIND_CRLF));
+                assertEquals(-1, composite.forEachByte(ByteProcessor.FIND_NUL));
+
+                buffer.setByte(index, '\r');
+                assertEquals(-1, composite.forEachByte(0, 32, ByteProcessor.FIND_LF));
+                assertEquals(index, composite.forEachByte(ByteProcessor.FIND_CRLF));
+
+                buffer.setByte(index, 0);
+                assertEquals(index, composite.forEachByte(ByteProcessor.FIND_NUL));
+                buffer.setByte(index, 'a');
+            }
+        } finally {
+            composite.release();
+        }
+    }
+
     @Test
     public void testForEachByteDesc() {
         buffer.clear();
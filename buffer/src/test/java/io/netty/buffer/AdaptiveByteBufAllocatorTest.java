@@ -0,0 +1,185 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class AdaptiveByteBufAllocatorTest extends AbstractByteBufAllocatorTest<AdaptiveByteBufAllocator> {
+    private static final int MIN_CHUNK_SIZE = 128 * 1024;
+
+    @Override
+    protected AdaptiveByteBufAllocator newAllocator(boolean preferDirect) {
+        return new AdaptiveByteBufAllocator(preferDirect, false);
+    }
+
+    @Override
+    protected AdaptiveByteBufAllocator newUnpooledAllocator() {
+        return newAllocator(false);
+    }
+
+    @Override
+    protected long expectedUsedMemory(AdaptiveByteBufAllocator allocator, int capacity) {
+        return MIN_CHUNK_SIZE;
+    }
+
+    @Override
+    protected long expectedUsedMemoryAfterRelease(AdaptiveByteBufAllocator allocator, int capacity) {
+        // The chunk is still used by the magazine.
+        return MIN_CHUNK_SIZE;
+    }
+
+    @Override
+    @Test
+    public void testUnsafeHeapBufferAndUnsafeDirectBuffer() {
+        AdaptiveByteBufAllocator allocator = newUnpooledAllocator();
+        ByteBuf directBuffer = allocator.directBuffer();
+        assertInstanceOf(directBuffer, AdaptivePoolingAllocator.AdaptiveByteBuf.class);
+        directBuffer.release();
+
+        ByteBuf heapBuffer = allocator.heapBuffer();
+        assertInstanceOf(heapBuffer, AdaptivePoolingAllocator.AdaptiveByteBuf.class);
+        heapBuffer.release();
+    }
+
+    @Test
+    public void testBuffersShareChunk() {
+        AdaptiveByteBufAllocator allocator = newAllocator(true);
+        ByteBuf a = allocator.directBuffer(1024);
+        ByteBuf b = allocator.directBuffer(1024);
+        try {
+            assertSame(unwrapAdaptive(a).rootParent, unwrapAdaptive(b).rootParent);
+            assertEquals(MIN_CHUNK_SIZE, allocator.usedDirectMemory());
+
+            a.writeLong(1);
+            b.writeLong(2);
+            assertEquals(1, a.readLong());
+            assertEquals(2, b.readLong());
+        } finally {
+            a.release();
+            b.release();
+        }
+    }
+
+    @Test
+    public void testRetiredChunkIsReused() {
+        AdaptiveByteBufAllocator allocator = newAllocator(true);
+        int size = MIN_CHUNK_SIZE / 2;
+        ByteBuf a = allocator.directBuffer(size, size);
+        ByteBuf b = allocator.directBuffer(size, size);
+        // Does not fit into the first chunk anymore, which is retired.
+        ByteBuf c = allocator.directBuffer(size, size);
+        assertNotSame(unwrapAdaptive(a).rootParent, unwrapAdaptive(c).rootParent);
+        assertEquals(0, allocator.idleDirectChunks());
+
+        a.release();
+        b.release();
+        assertEquals(1, allocator.idleDirectChunks());
+        c.release();
+    }
+
+    @Test
+    public void testLargeBufferIsNotPooled() {
+        AdaptiveByteBufAllocator allocator = newAllocator(true);
+        int size = 4 * 1024 * 1024;
+        ByteBuf buf = allocator.directBuffer(size, size);
+        assertEquals(size, buf.capacity());
+        assertEquals(size, allocator.usedDirectMemory());
+        buf.release();
+        assertEquals(0, allocator.usedDirectMemory());
+        assertEquals(0, allocator.idleDirectChunks());
+    }
+
+    @Test
+    public void testCapacityIncreaseKeepsContent() {
+        AdaptiveByteBufAllocator allocator = newAllocator(false);
+        ByteBuf buf = allocator.heapBuffer(8);
+        try {
+            buf.writeLong(42);
+            buf.capacity(MIN_CHUNK_SIZE * 2);
+            assertEquals(MIN_CHUNK_SIZE * 2, buf.capacity());
+            assertEquals(42, buf.readLong());
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testTerminatedPlainThreadsDoNotKeepChunks() throws Exception {
+        final AdaptiveByteBufAllocator allocator = new AdaptiveByteBufAllocator(true, true);
+        for (int i = 0; i < 10; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    allocator.directBuffer(1024).release();
+                }
+            });
+            thread.start();
+            thread.join();
+            // The threads use the two shared magazines, the magazine of a terminated plain thread would never be
+            // freed as it does not clean up its FastThreadLocals.
+            assertThat(allocator.usedDirectMemory(), lessThanOrEqualTo(2L * MIN_CHUNK_SIZE));
+        }
+    }
+
+    @Test
+    public void testTrimIdleChunks() {
+        AdaptiveByteBufAllocator allocator = newAllocator(true);
+        ByteBuf buf = allocator.directBuffer(1024);
+        // The first call only notices that the magazine allocated since the last trim.
+        assertEquals(0, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        // The magazine retires its chunk now, but it is still used by the buffer.
+        assertEquals(0, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        assertEquals(MIN_CHUNK_SIZE, allocator.usedDirectMemory());
+
+        buf.release();
+        assertEquals(1, allocator.idleDirectChunks());
+        assertEquals(0, allocator.trimIdleChunks(1, TimeUnit.HOURS));
+        assertEquals(1, allocator.idleDirectChunks());
+        assertEquals(MIN_CHUNK_SIZE, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        assertEquals(0, allocator.idleDirectChunks());
+        assertEquals(0, allocator.usedDirectMemory());
+    }
+
+    @Test
+    public void testTrimIdleChunksOfTerminatedThread() throws Exception {
+        final AdaptiveByteBufAllocator allocator = new AdaptiveByteBufAllocator(true, true);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                allocator.directBuffer(1024).release();
+            }
+        });
+        thread.start();
+        thread.join();
+        assertEquals(MIN_CHUNK_SIZE, allocator.usedDirectMemory());
+
+        allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS);
+        assertEquals(MIN_CHUNK_SIZE, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        assertEquals(0, allocator.usedDirectMemory());
+    }
+
+    private static AdaptivePoolingAllocator.AdaptiveByteBuf unwrapAdaptive(ByteBuf buf) {
+        return (AdaptivePoolingAllocator.AdaptiveByteBuf) (buf instanceof SimpleLeakAwareByteBuf ? buf.unwrap() : buf);
+    }
+}
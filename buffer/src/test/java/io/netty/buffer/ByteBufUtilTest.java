@@ -16,6 +16,7 @@
 package io.netty.buffer;
 
 import io.netty.util.AsciiString;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
@@ -153,6 +154,92 @@ public class ByteBufUtilTest {
         needle.release();
     }
 
+    @Test
+    public void testIndexOfLittleEndianComposite() {
+        byte[] bytes = "abcdefghi\nkl\nmnopqrstuvwxyz0123".getBytes(CharsetUtil.US_ASCII);
+        ByteBuf haystack = Unpooled.wrappedUnmodifiableBuffer(
+                Unpooled.wrappedBuffer(bytes, 0, 11).order(ByteOrder.LITTLE_ENDIAN),
+                Unpooled.wrappedBuffer(bytes, 11, bytes.length - 11).order(ByteOrder.LITTLE_ENDIAN));
+        assertEquals(ByteOrder.LITTLE_ENDIAN, haystack.order());
+        assertEquals(9, haystack.forEachByte(ByteProcessor.FIND_LF));
+        assertEquals(9, haystack.forEachByte(ByteProcessor.FIND_CRLF));
+        assertEquals(12, haystack.forEachByte(10, bytes.length - 10, ByteProcessor.FIND_LF));
+        assertEquals(9, ByteBufUtil.indexOf(Unpooled.copiedBuffer("\nkl", CharsetUtil.US_ASCII), haystack));
+        assertEquals(12, ByteBufUtil.indexOf(Unpooled.copiedBuffer("\nmno", CharsetUtil.US_ASCII), haystack));
+        assertEquals(27, ByteBufUtil.indexOf(Unpooled.copiedBuffer("0123", CharsetUtil.US_ASCII), haystack));
+        assertEquals(-1, ByteBufUtil.indexOf(Unpooled.copiedBuffer("\n\n", CharsetUtil.US_ASCII), haystack));
+        haystack.release();
+    }
+
+    @Test
+    public void testIndexOfFrequentFirstByte() {
+        byte[] needleBytes = new byte[64];
+        Arrays.fill(needleBytes, (byte) 'a');
+        needleBytes[needleBytes.length - 1] = 'b';
+        byte[] haystackBytes = new byte[1024];
+        Arrays.fill(haystackBytes, (byte) 'a');
+        ByteBuf needle = Unpooled.wrappedBuffer(needleBytes);
+        ByteBuf haystack = Unpooled.wrappedBuffer(haystackBytes);
+        assertEquals(-1, ByteBufUtil.indexOf(needle, haystack));
+        haystackBytes[700] = 'b';
+        assertEquals(700 - needleBytes.length + 1, ByteBufUtil.indexOf(needle, haystack));
+        haystack.readerIndex(10);
+        assertEquals(700 - needleBytes.length + 1, ByteBufUtil.indexOf(needle, haystack));
+        haystack.release();
+        needle.release();
+    }
+
+    @Test
+    public void testIndexOfRareFirstByte() {
+        Random random = new Random(42);
+        byte[] haystackBytes = new byte[2048];
+        for (int i = 0; i < haystackBytes.length; i++) {
+            haystackBytes[i] = (byte) random(random, 'a', 'z');
+        }
+        ByteBuf haystack = Unpooled.directBuffer(haystackBytes.length).writeBytes(haystackBytes);
+        for (int i = 0; i < 100; i++) {
+            int index = random.nextInt(haystackBytes.length - 8);
+            ByteBuf needle = Unpooled.wrappedBuffer(haystackBytes, index, 2 + random.nextInt(7));
+            int expected = -1;
+            for (int j = 0; j <= haystackBytes.length - needle.readableBytes() && expected == -1; j++) {
+                if (ByteBufUtil.equals(needle, needle.readerIndex(), haystack, j, needle.readableBytes())) {
+                    expected = j;
+                }
+            }
+            assertEquals(expected, ByteBufUtil.indexOf(needle, haystack));
+            needle.release();
+        }
+        haystack.release();
+    }
+
+    @Test
+    public void testHashCodeAndEqualsWithDifferentTypesAndOrder() {
+        byte[] bytes = new byte[37];
+        new Random().nextBytes(bytes);
+        for (int length = 0; length <= bytes.length; length++) {
+            ByteBuf heap = Unpooled.wrappedBuffer(bytes, 0, length);
+            ByteBuf direct = Unpooled.directBuffer(length).writeBytes(bytes, 0, length);
+            ByteBuf swapped = Unpooled.directBuffer(length).order(ByteOrder.LITTLE_ENDIAN).writeBytes(bytes, 0, length);
+            ByteBuf wrapped = new WrappedByteBuf(Unpooled.wrappedBuffer(bytes, 0, length));
+            int expected = ByteBufUtil.hashCode(wrapped);
+            assertEquals(expected, ByteBufUtil.hashCode(heap));
+            assertEquals(expected, ByteBufUtil.hashCode(direct));
+            assertEquals(expected, ByteBufUtil.hashCode(swapped));
+            assertTrue(ByteBufUtil.equals(heap, direct));
+            assertTrue(ByteBufUtil.equals(direct, swapped));
+            assertTrue(ByteBufUtil.equals(swapped, wrapped));
+            if (length > 0) {
+                direct.setByte(length - 1, direct.getByte(length - 1) + 1);
+                assertFalse(ByteBufUtil.equals(heap, direct));
+                assertFalse(ByteBufUtil.equals(swapped, direct));
+            }
+            heap.release();
+            direct.release();
+            swapped.release();
+            wrapped.release();
+        }
+    }
+
     @Test
     public void equalsBufferSubsections() {
         byte[] b1 = new byte[128];
@@ -19,9 +19,16 @@ package io.netty.buffer;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PoolArenaTest {
@@ -102,6 +109,47 @@ public class PoolArenaTest {
         }
     }
 
+    @Test
+    public void testSmallSubpageStripes() throws Exception {
+        final PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 8192, 13, 8192 << 9, 0, null, 4);
+        final PoolThreadCache cache = new PoolThreadCache(null, arena, 0, 0, 0, 0);
+        final List<ByteBuf> buffers = Collections.synchronizedList(new ArrayList<ByteBuf>());
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Set<Long> stripes = new HashSet<Long>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 10; j++) {
+                            buffers.add(arena.allocate(cache, 16, 16));
+                        }
+                    } catch (Throwable cause) {
+                        error.set(cause);
+                    }
+                }
+            });
+            thread.start();
+            thread.join();
+            stripes.add(thread.getId() & 3);
+        }
+        assertNull(error.get());
+        assertEquals(arena.nSubpages, arena.numSmallSubpages());
+        // Every thread allocated from the subpage of its own pool.
+        assertEquals(stripes.size(), arena.smallSubpages().size());
+        assertEquals(40, arena.numActiveSmallAllocations());
+
+        // The buffers are returned to the pools they were allocated from, even if released by another thread.
+        for (ByteBuf buffer : buffers) {
+            assertTrue(buffer.release());
+        }
+        assertEquals(0, arena.numActiveSmallAllocations());
+        assertEquals(stripes.size(), arena.smallSubpages().size());
+        for (PoolSubpageMetric subpage : arena.smallSubpages()) {
+            assertEquals(subpage.maxNumElements(), subpage.numAvailable());
+        }
+    }
+
     @Test
     public void testAllocationCounter() {
         final PooledByteBufAllocator allocator = new PooledByteBufAllocator(
@@ -31,6 +31,7 @@ import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -476,8 +477,43 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         assertEquals(0, allocator.metric().directArenas().get(1).numThreadCaches());
     }
 
+    @Test
+    @Timeout(value = 3000, unit = MILLISECONDS)
+    public void testThreadCacheToArenaMappingsByNumaNode() throws InterruptedException {
+        int numArenas = 4;
+        final PooledByteBufAllocator allocator =
+                new PooledByteBufAllocator(numArenas, numArenas, 8192, 1);
+
+        List<ThreadCache> caches = new ArrayList<ThreadCache>();
+        caches.add(createNewThreadCache(allocator, 0));
+        caches.add(createNewThreadCache(allocator, 0));
+        caches.add(createNewThreadCache(allocator, 1));
+        caches.add(createNewThreadCache(allocator, 1));
+        for (int i = 0; i < numArenas; i++) {
+            assertEquals(1, allocator.metric().heapArenas().get(i).numThreadCaches());
+        }
+
+        // The least used arena is the first one, but it is used by a thread of another node.
+        caches.add(createNewThreadCache(allocator, 1));
+        assertEquals(1, allocator.metric().heapArenas().get(0).numThreadCaches());
+        assertEquals(1, allocator.metric().heapArenas().get(1).numThreadCaches());
+        assertEquals(2, allocator.metric().heapArenas().get(2).numThreadCaches());
+        assertEquals(1, allocator.metric().heapArenas().get(3).numThreadCaches());
+        assertEquals(2, allocator.metric().directArenas().get(2).numThreadCaches());
+
+        for (ThreadCache cache : caches) {
+            cache.destroy();
+        }
+        assertEquals(0, allocator.metric().numThreadLocalCaches());
+    }
+
     private static ThreadCache createNewThreadCache(final PooledByteBufAllocator allocator)
             throws InterruptedException {
+        return createNewThreadCache(allocator, -1);
+    }
+
+    private static ThreadCache createNewThreadCache(final PooledByteBufAllocator allocator, final int numaNode)
+            throws InterruptedException {
         final CountDownLatch latch = new CountDownLatch(1);
         final CountDownLatch cacheLatch = new CountDownLatch(1);
         final Thread t = new FastThreadLocalThread(new Runnable() {
@@ -501,7 +537,12 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
 
                 FastThreadLocal.removeAll();
             }
-        });
+        }) {
+            @Override
+            public int numaNode() {
+                return numaNode;
+            }
+        };
         t.start();
 
         // Wait until we allocated a buffer and so be sure the thread was started and the cache exists.
@@ -699,6 +740,87 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         assertTrue(beforeFreeBytes < afterFreeBytes);
     }
 
+    @Test
+    public void testTrimIdleChunks() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 9, 0, 0, false, 0);
+        PoolArenaMetric arena = allocator.metric().directArenas().get(0);
+        int chunkSize = allocator.metric().chunkSize();
+
+        ByteBuf buffer = allocator.directBuffer(64 * 1024);
+        // The chunk is in use, so it is not released.
+        assertEquals(0, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        assertEquals(0, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        buffer.release();
+
+        // The first call only marks the unused chunk as idle.
+        assertEquals(0, allocator.trimIdleChunks(1, TimeUnit.HOURS));
+        assertEquals(0, allocator.trimIdleChunks(1, TimeUnit.HOURS));
+        assertEquals(chunkSize, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        assertEquals(1, allocator.metric().numReclaimedChunks());
+        assertEquals(chunkSize, allocator.metric().numReclaimedBytes());
+        assertEquals(0, arena.numActiveBytes());
+
+        // An allocation makes the chunk busy again.
+        buffer = allocator.directBuffer(64 * 1024);
+        buffer.release();
+        assertEquals(0, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        allocator.directBuffer(64 * 1024).release();
+        assertEquals(0, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        assertEquals(chunkSize, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        assertEquals(2, allocator.metric().numReclaimedChunks());
+    }
+
+    @Test
+    public void testTrimIdleThreadCache() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 9, 0, 64, true, 0);
+        int chunkSize = allocator.metric().chunkSize();
+
+        // The buffer is cached by the thread when released, so the chunk stays in use.
+        allocator.directBuffer(32 * 1024).release();
+        assertEquals(0, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        assertEquals(0, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+
+        PoolThreadCache cache = allocator.threadCache();
+        assertFalse(cache.trimIfIdle());
+        assertTrue(cache.trimIfIdle());
+        assertEquals(0, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+        assertEquals(chunkSize, allocator.trimIdleChunks(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testDirectChunkAllocator() {
+        final List<ByteBuffer> allocated = new ArrayList<ByteBuffer>();
+        final List<ByteBuffer> freed = new ArrayList<ByteBuffer>();
+        DirectChunkAllocator chunkAllocator = new DirectChunkAllocator() {
+            @Override
+            public ByteBuffer allocate(int capacity) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(capacity);
+                allocated.add(buffer);
+                return buffer;
+            }
+
+            @Override
+            public void free(ByteBuffer buffer) {
+                freed.add(buffer);
+            }
+        };
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 9, 0, 0, false, 0,
+                chunkAllocator);
+        int chunkSize = allocator.metric().chunkSize();
+
+        // A buffer as big as a chunk is allocated from a pooled chunk, which is destroyed once it is released.
+        ByteBuf buffer = allocator.directBuffer(chunkSize);
+        assertEquals(1, allocated.size());
+        assertEquals(chunkSize, allocated.get(0).capacity());
+        buffer.writeLong(42).release();
+        assertEquals(allocated, freed);
+
+        // Huge buffers do not use the chunk allocator.
+        allocator.directBuffer(chunkSize + 1).release();
+        assertEquals(1, allocated.size());
+        assertEquals(1, freed.size());
+    }
+
     @Override
     @Test
     public void testUsedDirectMemory() {
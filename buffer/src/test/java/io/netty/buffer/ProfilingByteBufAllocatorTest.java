@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.PlatformDependent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProfilingByteBufAllocatorTest extends ByteBufAllocatorTest {
+
+    @Override
+    protected boolean isDirectExpected(boolean preferDirect) {
+        return preferDirect && PlatformDependent.hasUnsafe();
+    }
+
+    @Override
+    protected int defaultMaxCapacity() {
+        return AbstractByteBufAllocator.DEFAULT_MAX_CAPACITY;
+    }
+
+    @Override
+    protected int defaultMaxComponents() {
+        return AbstractByteBufAllocator.DEFAULT_MAX_COMPONENTS;
+    }
+
+    @Override
+    protected ByteBufAllocator newAllocator(boolean preferDirect) {
+        // Sample every allocation, so all buffers of the tests are wrapped.
+        return new ProfilingByteBufAllocator(new UnpooledByteBufAllocator(preferDirect), 1);
+    }
+
+    @Test
+    public void testNoSampling() {
+        ProfilingByteBufAllocator allocator = new ProfilingByteBufAllocator(UnpooledByteBufAllocator.DEFAULT, 0);
+        ByteBuf buffer = allocator.heapBuffer(16);
+        assertSame(UnpooledByteBufAllocator.DEFAULT, buffer.alloc());
+        assertThat(buffer).isNotInstanceOf(SimpleLeakAwareByteBuf.class);
+        buffer.release();
+        assertTrue(allocator.allocationSites().isEmpty());
+    }
+
+    @Test
+    public void testRecordsAllocationSites() throws Exception {
+        // Only use the topmost frame, so all allocations of allocateFromHere(...) belong to the same site.
+        ProfilingByteBufAllocator allocator = new ProfilingByteBufAllocator(UnpooledByteBufAllocator.DEFAULT, 1, 1, 16);
+        for (int i = 0; i < 3; i++) {
+            ByteBuf buffer = allocateFromHere(allocator, 100);
+            // Derived buffers share the sample, which is recorded once the last reference is released.
+            ByteBuf slice = buffer.retainedSlice();
+            buffer.release();
+            Thread.sleep(1);
+            slice.release();
+        }
+        allocateFromHere(allocator, 1000);
+
+        List<ProfilingByteBufAllocator.AllocationSite> sites = allocator.allocationSites();
+        assertEquals(1, sites.size());
+        ProfilingByteBufAllocator.AllocationSite site = sites.get(0);
+        assertThat(site.callSite()).contains("allocateFromHere");
+        assertEquals(4, site.allocations());
+        assertEquals(1300, site.allocatedBytes());
+        assertEquals(3, site.releases());
+        assertEquals(3, site.allocations(7));
+        assertEquals(1, site.allocations(10));
+        assertThat(site.maxLifetime(TimeUnit.NANOSECONDS)).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(site.averageLifetime(TimeUnit.NANOSECONDS)).isPositive();
+        assertThat(allocator.dumpStats()).contains("1 allocation site(s)").contains("bytes: 1300");
+
+        allocator.reset();
+        assertTrue(allocator.allocationSites().isEmpty());
+    }
+
+    @Test
+    public void testMaxSites() {
+        ProfilingByteBufAllocator allocator = new ProfilingByteBufAllocator(UnpooledByteBufAllocator.DEFAULT, 1, 1, 1);
+        allocator.heapBuffer(8).release();
+        allocateFromHere(allocator, 8).release();
+        allocateFromHere(allocator, 8).release();
+
+        List<ProfilingByteBufAllocator.AllocationSite> sites = allocator.allocationSites();
+        assertEquals(2, sites.size());
+        assertEquals(ProfilingByteBufAllocator.OTHER_SITE, sites.get(0).callSite());
+        assertEquals(2, sites.get(0).allocations());
+        assertEquals(1, sites.get(1).allocations());
+    }
+
+    @Test
+    public void testSizeClass() {
+        assertEquals(0, ProfilingByteBufAllocator.sizeClass(0));
+        assertEquals(0, ProfilingByteBufAllocator.sizeClass(1));
+        assertEquals(1, ProfilingByteBufAllocator.sizeClass(2));
+        assertEquals(2, ProfilingByteBufAllocator.sizeClass(3));
+        assertEquals(10, ProfilingByteBufAllocator.sizeClass(1024));
+        assertEquals(11, ProfilingByteBufAllocator.sizeClass(1025));
+        assertEquals(31, ProfilingByteBufAllocator.sizeClass(Integer.MAX_VALUE));
+    }
+
+    private static ByteBuf allocateFromHere(ByteBufAllocator allocator, int capacity) {
+        return allocator.heapBuffer(capacity);
+    }
+}
@@ -25,9 +25,11 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DecoderResult;
 import io.netty.handler.codec.PrematureChannelClosureException;
 import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.AsciiString;
 import io.netty.util.ByteProcessor;
-import io.netty.util.internal.AppendableCharSequence;
+import io.netty.util.internal.PlatformDependent;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -85,6 +87,14 @@ import java.util.List;
  *     is set to {@code false}, the {@link ByteBuf} is not decoded into an {@link HttpContent} until
  *     the readable bytes are greater or equal to the chunk size.</td>
  * </tr>
+ * <tr>
+ * <td>{@code lazyHeaders}</td>
+ * <td>{@value #DEFAULT_LAZY_HEADERS}</td>
+ * <td>When set to {@code true}, the headers of the decoded messages keep the header block as it was received and
+ *     only convert the names and values that are asked for. As long as they are not modified, they are written
+ *     by {@link HttpObjectEncoder} with a single copy, which is useful for proxies.
+ *     Only supported by {@link HttpRequestDecoder} and {@link HttpResponseDecoder}.</td>
+ * </tr>
  * </table>
  *
  * <h3>Chunked Content</h3>
@@ -137,6 +147,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
     public static final boolean DEFAULT_VALIDATE_HEADERS = true;
     public static final int DEFAULT_INITIAL_BUFFER_SIZE = 128;
     public static final boolean DEFAULT_ALLOW_DUPLICATE_CONTENT_LENGTHS = false;
+    public static final boolean DEFAULT_LAZY_HEADERS = false;
 
     private static final String EMPTY_VALUE = "";
 
@@ -144,6 +155,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
     private final boolean chunkedSupported;
     private final boolean allowPartialChunks;
     protected final boolean validateHeaders;
+    protected final boolean lazyHeaders;
     private final boolean allowDuplicateContentLengths;
     private final HeaderParser headerParser;
     private final LineParser lineParser;
@@ -235,18 +247,30 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
             int maxInitialLineLength, int maxHeaderSize, int maxChunkSize,
             boolean chunkedSupported, boolean validateHeaders, int initialBufferSize,
             boolean allowDuplicateContentLengths, boolean allowPartialChunks) {
+        this(maxInitialLineLength, maxHeaderSize, maxChunkSize, chunkedSupported, validateHeaders, initialBufferSize,
+            allowDuplicateContentLengths, allowPartialChunks, DEFAULT_LAZY_HEADERS);
+    }
+
+    /**
+     * Creates a new instance with the specified parameters.
+     */
+    protected HttpObjectDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize,
+            boolean chunkedSupported, boolean validateHeaders, int initialBufferSize,
+            boolean allowDuplicateContentLengths, boolean allowPartialChunks, boolean lazyHeaders) {
         checkPositive(maxInitialLineLength, "maxInitialLineLength");
         checkPositive(maxHeaderSize, "maxHeaderSize");
         checkPositive(maxChunkSize, "maxChunkSize");
+        checkPositive(initialBufferSize, "initialBufferSize");
 
-        AppendableCharSequence seq = new AppendableCharSequence(initialBufferSize);
-        lineParser = new LineParser(seq, maxInitialLineLength);
-        headerParser = new HeaderParser(seq, maxHeaderSize);
+        lineParser = new LineParser(initialBufferSize, maxInitialLineLength);
+        headerParser = new HeaderParser(maxHeaderSize);
         this.maxChunkSize = maxChunkSize;
         this.chunkedSupported = chunkedSupported;
         this.validateHeaders = validateHeaders;
         this.allowDuplicateContentLengths = allowDuplicateContentLengths;
         this.allowPartialChunks = allowPartialChunks;
+        this.lazyHeaders = lazyHeaders;
     }
 
     @Override
@@ -259,7 +283,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         case SKIP_CONTROL_CHARS:
             // Fall-through
         case READ_INITIAL: try {
-            AppendableCharSequence line = lineParser.parse(buffer);
+            AsciiString line = lineParser.parse(buffer);
             if (line == null) {
                 return;
             }
@@ -373,7 +397,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
          * read chunk, read and ignore the CRLF and repeat until 0
          */
         case READ_CHUNK_SIZE: try {
-            AppendableCharSequence line = lineParser.parse(buffer);
+            AsciiString line = lineParser.parse(buffer);
             if (line == null) {
                 return;
             }
@@ -575,6 +599,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         contentLength = Long.MIN_VALUE;
         lineParser.reset();
         headerParser.reset();
+        headerParser.headerBlock = null;
         trailer = null;
         if (!isDecodingRequest()) {
             HttpResponse res = (HttpResponse) message;
@@ -622,15 +647,24 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
     private State readHeaders(ByteBuf buffer) {
         final HttpMessage message = this.message;
         final HttpHeaders headers = message.headers();
+        // The lines are copied into the header block of lazy headers as they are parsed.
+        final LazyHttpHeaders lazyHeaders = headers instanceof LazyHttpHeaders ? (LazyHttpHeaders) headers : null;
+        headerParser.headerBlock = lazyHeaders;
 
-        AppendableCharSequence line = headerParser.parse(buffer);
+        AsciiString line = headerParser.parse(buffer);
         if (line == null) {
             return null;
         }
         if (line.length() > 0) {
             do {
-                char firstChar = line.charAtUnsafe(0);
-                if (name != null && (firstChar == ' ' || firstChar == '\t')) {
+                char firstChar = line.charAt(0);
+                if (lazyHeaders != null) {
+                    if (!lazyHeaders.isEmpty() && (firstChar == ' ' || firstChar == '\t')) {
+                        lazyHeaders.appendToLastValue(line.toString().trim());
+                    } else {
+                        splitHeader(line, lazyHeaders);
+                    }
+                } else if (name != null && (firstChar == ' ' || firstChar == '\t')) {
                     //please do not make one line from below code
                     //as it breaks +XX:OptimizeStringConcat optimization
                     String trimmedLine = line.toString().trim();
@@ -640,7 +674,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
                     if (name != null) {
                         headers.add(name, value);
                     }
-                    splitHeader(line);
+                    splitHeader(line, null);
                 }
 
                 line = headerParser.parse(buffer);
@@ -658,6 +692,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         // reset name and value fields
         name = null;
         value = null;
+        headerParser.headerBlock = null;
 
         // Done parsing initial line and headers. Set decoder result.
         HttpMessageDecoderResult decoderResult = new HttpMessageDecoderResult(lineParser.size, headerParser.size);
@@ -672,7 +707,9 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
             // https://tools.ietf.org/html/rfc7230#section-3.3.2:
             contentLength = HttpUtil.normalizeAndGetContentLength(contentLengthFields,
                     isHttp10OrEarlier, allowDuplicateContentLengths);
-            if (contentLength != -1) {
+            if (contentLength != -1 && (contentLengthFields.size() > 1 ||
+                    !contentLengthFields.get(0).equals(Long.toString(contentLength)))) {
+                // Only replace the field if it is not already normalized, which would modify lazy headers.
                 headers.set(HttpHeaderNames.CONTENT_LENGTH, contentLength);
             }
         }
@@ -726,7 +763,8 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
     }
 
     private LastHttpContent readTrailingHeaders(ByteBuf buffer) {
-        AppendableCharSequence line = headerParser.parse(buffer);
+        headerParser.headerBlock = null;
+        AsciiString line = headerParser.parse(buffer);
         if (line == null) {
             return null;
         }
@@ -742,7 +780,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
             trailer = this.trailer = new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER, validateHeaders);
         }
         while (line.length() > 0) {
-            char firstChar = line.charAtUnsafe(0);
+            char firstChar = line.charAt(0);
             if (lastHeader != null && (firstChar == ' ' || firstChar == '\t')) {
                 List<String> current = trailer.trailingHeaders().getAll(lastHeader);
                 if (!current.isEmpty()) {
@@ -754,7 +792,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
                     current.set(lastPos, currentLastPos + lineTrimmed);
                 }
             } else {
-                splitHeader(line);
+                splitHeader(line, null);
                 CharSequence headerName = name;
                 if (!HttpHeaderNames.CONTENT_LENGTH.contentEqualsIgnoreCase(headerName) &&
                         !HttpHeaderNames.TRANSFER_ENCODING.contentEqualsIgnoreCase(headerName) &&
@@ -793,7 +831,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         return Integer.parseInt(hex, 16);
     }
 
-    private static String[] splitInitialLine(AppendableCharSequence sb) {
+    private static String[] splitInitialLine(AsciiString sb) {
         int aStart;
         int aEnd;
         int bStart;
@@ -811,12 +849,12 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         cEnd = findEndOfString(sb);
 
         return new String[] {
-                sb.subStringUnsafe(aStart, aEnd),
-                sb.subStringUnsafe(bStart, bEnd),
-                cStart < cEnd? sb.subStringUnsafe(cStart, cEnd) : "" };
+                sb.toString(aStart, aEnd),
+                sb.toString(bStart, bEnd),
+                cStart < cEnd? sb.toString(cStart, cEnd) : "" };
     }
 
-    private void splitHeader(AppendableCharSequence sb) {
+    private void splitHeader(AsciiString sb, LazyHttpHeaders lazyHeaders) {
         final int length = sb.length();
         int nameStart;
         int nameEnd;
@@ -826,7 +864,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
 
         nameStart = findNonWhitespace(sb, 0);
         for (nameEnd = nameStart; nameEnd < length; nameEnd ++) {
-            char ch = sb.charAtUnsafe(nameEnd);
+            char ch = sb.charAt(nameEnd);
             // https://tools.ietf.org/html/rfc7230#section-3.2.4
             //
             // No whitespace is allowed between the header field-name and colon. In
@@ -852,25 +890,35 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         }
 
         for (colonEnd = nameEnd; colonEnd < length; colonEnd ++) {
-            if (sb.charAtUnsafe(colonEnd) == ':') {
+            if (sb.charAt(colonEnd) == ':') {
                 colonEnd ++;
                 break;
             }
         }
 
-        name = sb.subStringUnsafe(nameStart, nameEnd);
         valueStart = findNonWhitespace(sb, colonEnd);
+        valueEnd = valueStart == length ? length : findEndOfString(sb);
+        if (lazyHeaders != null) {
+            // Whitespace in front of the name or the colon must not be sent again.
+            lazyHeaders.add(sb, nameStart, nameEnd, valueStart, valueEnd, nameStart == 0 && nameEnd == colonEnd - 1);
+            return;
+        }
+
+        // Unless the headers are lazy, the names and values are Strings as they have always been. The String of a
+        // known name is cached by its AsciiString, so only unknown names create a new one.
+        final int offset = sb.arrayOffset();
+        AsciiString knownName = KnownHeaderNames.find(sb.array(), offset + nameStart, offset + nameEnd);
+        name = knownName != null ? knownName.toString() : sb.toString(nameStart, nameEnd);
         if (valueStart == length) {
             value = EMPTY_VALUE;
         } else {
-            valueEnd = findEndOfString(sb);
-            value = sb.subStringUnsafe(valueStart, valueEnd);
+            value = sb.toString(valueStart, valueEnd);
         }
     }
 
-    private static int findNonSPLenient(AppendableCharSequence sb, int offset) {
+    private static int findNonSPLenient(AsciiString sb, int offset) {
         for (int result = offset; result < sb.length(); ++result) {
-            char c = sb.charAtUnsafe(result);
+            char c = sb.charAt(result);
             // See https://tools.ietf.org/html/rfc7230#section-3.5
             if (isSPLenient(c)) {
                 continue;
@@ -884,9 +932,9 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         return sb.length();
     }
 
-    private static int findSPLenient(AppendableCharSequence sb, int offset) {
+    private static int findSPLenient(AsciiString sb, int offset) {
         for (int result = offset; result < sb.length(); ++result) {
-            if (isSPLenient(sb.charAtUnsafe(result))) {
+            if (isSPLenient(sb.charAt(result))) {
                 return result;
             }
         }
@@ -898,9 +946,9 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         return c == ' ' || c == (char) 0x09 || c == (char) 0x0B || c == (char) 0x0C || c == (char) 0x0D;
     }
 
-    private static int findNonWhitespace(AppendableCharSequence sb, int offset) {
+    private static int findNonWhitespace(AsciiString sb, int offset) {
         for (int result = offset; result < sb.length(); ++result) {
-            char c = sb.charAtUnsafe(result);
+            char c = sb.charAt(result);
             if (!Character.isWhitespace(c)) {
                 return result;
             } else if (!isOWS(c)) {
@@ -912,9 +960,9 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         return sb.length();
     }
 
-    private static int findEndOfString(AppendableCharSequence sb) {
+    private static int findEndOfString(AsciiString sb) {
         for (int result = sb.length() - 1; result > 0; --result) {
-            if (!Character.isWhitespace(sb.charAtUnsafe(result))) {
+            if (!Character.isWhitespace(sb.charAt(result))) {
                 return result + 1;
             }
         }
@@ -925,59 +973,226 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         return ch == ' ' || ch == (char) 0x09;
     }
 
-    private static class HeaderParser implements ByteProcessor {
-        private final AppendableCharSequence seq;
-        private final int maxLength;
-        int size;
+    private static final ByteProcessor SKIP_CONTROL_CHARS_BYTES = new ByteProcessor() {
+        @Override
+        public boolean process(byte value) {
+            char c = (char) (value & 0xFF);
+            return Character.isISOControl(c) || Character.isWhitespace(c);
+        }
+    };
 
-        HeaderParser(AppendableCharSequence seq, int maxLength) {
-            this.seq = seq;
-            this.maxLength = maxLength;
+    /**
+     * Looks up the header names which are received most often, so that the same {@link AsciiString} can be used for
+     * all of them instead of creating a new one for every header. A name is only replaced if it is spelled exactly
+     * like the known one, so the headers keep the case they were received with.
+     */
+    static final class KnownHeaderNames {
+        private static final int TABLE_MASK = 127;
+        private static final AsciiString[][] TABLE = new AsciiString[TABLE_MASK + 1][];
+
+        static {
+            AsciiString[] names = {
+                    HttpHeaderNames.ACCEPT,
+                    HttpHeaderNames.ACCEPT_CHARSET,
+                    HttpHeaderNames.ACCEPT_ENCODING,
+                    HttpHeaderNames.ACCEPT_LANGUAGE,
+                    HttpHeaderNames.ACCEPT_RANGES,
+                    HttpHeaderNames.ACCESS_CONTROL_ALLOW_CREDENTIALS,
+                    HttpHeaderNames.ACCESS_CONTROL_ALLOW_HEADERS,
+                    HttpHeaderNames.ACCESS_CONTROL_ALLOW_METHODS,
+                    HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN,
+                    HttpHeaderNames.ACCESS_CONTROL_REQUEST_HEADERS,
+                    HttpHeaderNames.ACCESS_CONTROL_REQUEST_METHOD,
+                    HttpHeaderNames.AGE,
+                    HttpHeaderNames.ALLOW,
+                    HttpHeaderNames.AUTHORIZATION,
+                    HttpHeaderNames.CACHE_CONTROL,
+                    HttpHeaderNames.CONNECTION,
+                    HttpHeaderNames.CONTENT_DISPOSITION,
+                    HttpHeaderNames.CONTENT_ENCODING,
+                    HttpHeaderNames.CONTENT_LANGUAGE,
+                    HttpHeaderNames.CONTENT_LENGTH,
+                    HttpHeaderNames.CONTENT_LOCATION,
+                    HttpHeaderNames.CONTENT_RANGE,
+                    HttpHeaderNames.CONTENT_TYPE,
+                    HttpHeaderNames.COOKIE,
+                    HttpHeaderNames.DATE,
+                    HttpHeaderNames.ETAG,
+                    HttpHeaderNames.EXPECT,
+                    HttpHeaderNames.EXPIRES,
+                    HttpHeaderNames.HOST,
+                    HttpHeaderNames.IF_MATCH,
+                    HttpHeaderNames.IF_MODIFIED_SINCE,
+                    HttpHeaderNames.IF_NONE_MATCH,
+                    HttpHeaderNames.IF_RANGE,
+                    HttpHeaderNames.IF_UNMODIFIED_SINCE,
+                    HttpHeaderNames.KEEP_ALIVE,
+                    HttpHeaderNames.LAST_MODIFIED,
+                    HttpHeaderNames.LOCATION,
+                    HttpHeaderNames.ORIGIN,
+                    HttpHeaderNames.PRAGMA,
+                    HttpHeaderNames.PROXY_AUTHORIZATION,
+                    HttpHeaderNames.PROXY_CONNECTION,
+                    HttpHeaderNames.RANGE,
+                    HttpHeaderNames.REFERER,
+                    HttpHeaderNames.SEC_WEBSOCKET_ACCEPT,
+                    HttpHeaderNames.SEC_WEBSOCKET_EXTENSIONS,
+                    HttpHeaderNames.SEC_WEBSOCKET_KEY,
+                    HttpHeaderNames.SEC_WEBSOCKET_PROTOCOL,
+                    HttpHeaderNames.SEC_WEBSOCKET_VERSION,
+                    HttpHeaderNames.SERVER,
+                    HttpHeaderNames.SET_COOKIE,
+                    HttpHeaderNames.TE,
+                    HttpHeaderNames.TRAILER,
+                    HttpHeaderNames.TRANSFER_ENCODING,
+                    HttpHeaderNames.UPGRADE,
+                    HttpHeaderNames.UPGRADE_INSECURE_REQUESTS,
+                    HttpHeaderNames.USER_AGENT,
+                    HttpHeaderNames.VARY,
+                    HttpHeaderNames.VIA,
+                    HttpHeaderNames.WWW_AUTHENTICATE,
+                    HttpHeaderNames.X_REQUESTED_WITH,
+            };
+            for (AsciiString name : names) {
+                add(name);
+                add(capitalize(name));
+            }
+            // Common spellings which are not simply capitalized.
+            add(AsciiString.cached("ETag"));
+            add(AsciiString.cached("TE"));
+            add(AsciiString.cached("WWW-Authenticate"));
+            add(AsciiString.cached("Sec-WebSocket-Accept"));
+            add(AsciiString.cached("Sec-WebSocket-Extensions"));
+            add(AsciiString.cached("Sec-WebSocket-Key"));
+            add(AsciiString.cached("Sec-WebSocket-Protocol"));
+            add(AsciiString.cached("Sec-WebSocket-Version"));
         }
 
-        public AppendableCharSequence parse(ByteBuf buffer) {
-            final int oldSize = size;
-            seq.reset();
-            int i = buffer.forEachByte(this);
-            if (i == -1) {
-                size = oldSize;
-                return null;
+        private KnownHeaderNames() { }
+
+        private static AsciiString capitalize(AsciiString name) {
+            byte[] bytes = name.toByteArray();
+            boolean wordStart = true;
+            for (int i = 0; i < bytes.length; i++) {
+                byte b = bytes[i];
+                if (wordStart && b >= 'a' && b <= 'z') {
+                    bytes[i] = (byte) (b - 'a' + 'A');
+                }
+                wordStart = b == '-';
             }
-            buffer.readerIndex(i + 1);
-            return seq;
+            return new AsciiString(bytes, false);
         }
 
-        public void reset() {
-            size = 0;
+        private static void add(AsciiString name) {
+            final int index = index(name.array(), name.arrayOffset(), name.length());
+            AsciiString[] bucket = TABLE[index];
+            if (bucket == null) {
+                bucket = new AsciiString[] { name };
+            } else {
+                for (AsciiString known : bucket) {
+                    if (known.equals(name)) {
+                        return;
+                    }
+                }
+                bucket = Arrays.copyOf(bucket, bucket.length + 1);
+                bucket[bucket.length - 1] = name;
+            }
+            TABLE[index] = bucket;
         }
 
-        @Override
-        public boolean process(byte value) throws Exception {
-            char nextByte = (char) (value & 0xFF);
-            if (nextByte == HttpConstants.LF) {
-                int len = seq.length();
-                // Drop CR if we had a CRLF pair
-                if (len >= 1 && seq.charAtUnsafe(len - 1) == HttpConstants.CR) {
-                    -- size;
-                    seq.setLength(len - 1);
+        private static int index(byte[] bytes, int start, int length) {
+            // The length and the first and last character are enough to tell apart most of the names.
+            return (length ^ bytes[start] << 2 ^ bytes[start + length - 1] << 4) & TABLE_MASK;
+        }
+
+        /**
+         * Returns the known name which is spelled exactly like the bytes from {@code start} to {@code end}, or
+         * otherwise an {@link AsciiString} which shares these bytes.
+         */
+        static AsciiString slice(byte[] bytes, int start, int end) {
+            final int length = end - start;
+            if (length == 0) {
+                return AsciiString.EMPTY_STRING;
+            }
+            AsciiString known = find(bytes, start, end);
+            return known != null ? known : new AsciiString(bytes, start, length, false);
+        }
+
+        /**
+         * Returns the known name which is spelled exactly like the bytes from {@code start} to {@code end}, or
+         * {@code null} if there is none.
+         */
+        static AsciiString find(byte[] bytes, int start, int end) {
+            final int length = end - start;
+            if (length == 0) {
+                return null;
+            }
+            AsciiString[] bucket = TABLE[index(bytes, start, length)];
+            if (bucket != null) {
+                for (AsciiString known : bucket) {
+                    if (known.length() == length &&
+                            PlatformDependent.equals(known.array(), known.arrayOffset(), bytes, start, length)) {
+                        return known;
+                    }
                 }
-                return false;
             }
+            return null;
+        }
+    }
 
-            increaseCount();
+    private static class HeaderParser {
+        final int maxLength;
+        int size;
+        // The lazy headers of the message whose headers are parsed, if any.
+        LazyHttpHeaders headerBlock;
 
-            seq.append(nextByte);
-            return true;
+        HeaderParser(int maxLength) {
+            this.maxLength = maxLength;
         }
 
-        protected final void increaseCount() {
-            if (++ size > maxLength) {
-                // TODO: Respond with Bad Request and discard the traffic
-                //    or close the connection.
-                //       No need to notify the upstream handlers - just log.
-                //       If decoding a response, just throw an exception.
-                throw newException(maxLength);
+        public AsciiString parse(ByteBuf buffer) {
+            final int readerIndex = buffer.readerIndex();
+            final int readableBytes = buffer.writerIndex() - readerIndex;
+            // Only look as far as the line may be long. ByteBuf.indexOf(...) scans a long at a time.
+            final int remaining = maxLength - size;
+            final int toScan = readableBytes <= remaining ? readableBytes : remaining + 1;
+            final int lfIndex = buffer.indexOf(readerIndex, readerIndex + toScan, HttpConstants.LF);
+            if (lfIndex == -1) {
+                if (readableBytes > remaining) {
+                    // TODO: Respond with Bad Request and discard the traffic
+                    //    or close the connection.
+                    //       No need to notify the upstream handlers - just log.
+                    //       If decoding a response, just throw an exception.
+                    throw newException(maxLength);
+                }
+                return null;
             }
+            int length = lfIndex - readerIndex;
+            // Drop CR if we had a CRLF pair
+            if (length > 0 && buffer.getByte(lfIndex - 1) == HttpConstants.CR) {
+                -- length;
+            }
+            size += length;
+            buffer.readerIndex(lfIndex + 1);
+            return length == 0 ? AsciiString.EMPTY_STRING : copyLine(buffer, readerIndex, length);
+        }
+
+        /**
+         * Copies the line out of the buffer. The header names and values are slices of the returned
+         * {@link AsciiString}, so every line is copied into its own array or appended to the header block of
+         * {@link LazyHttpHeaders}.
+         */
+        AsciiString copyLine(ByteBuf buffer, int index, int length) {
+            if (headerBlock != null) {
+                return headerBlock.appendLine(buffer, index, length);
+            }
+            byte[] line = new byte[length];
+            buffer.getBytes(index, line);
+            return new AsciiString(line, false);
+        }
+
+        public void reset() {
+            size = 0;
         }
 
         protected TooLongFrameException newException(int maxLength) {
@@ -986,29 +1201,52 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
     }
 
     private final class LineParser extends HeaderParser {
+        // Lines are only needed until they were converted to Strings, so the same array is reused for all of them.
+        private byte[] line;
 
-        LineParser(AppendableCharSequence seq, int maxLength) {
-            super(seq, maxLength);
+        LineParser(int initialBufferSize, int maxLength) {
+            super(maxLength);
+            line = new byte[initialBufferSize];
         }
 
         @Override
-        public AppendableCharSequence parse(ByteBuf buffer) {
+        public AsciiString parse(ByteBuf buffer) {
             // Suppress a warning because HeaderParser.reset() is supposed to be called
             reset();    // lgtm[java/subtle-inherited-call]
+            if (currentState == State.SKIP_CONTROL_CHARS && !skipControlChars(buffer)) {
+                return null;
+            }
             return super.parse(buffer);
         }
 
-        @Override
-        public boolean process(byte value) throws Exception {
-            if (currentState == State.SKIP_CONTROL_CHARS) {
-                char c = (char) (value & 0xFF);
-                if (Character.isISOControl(c) || Character.isWhitespace(c)) {
-                    increaseCount();
-                    return true;
+        private boolean skipControlChars(ByteBuf buffer) {
+            final int readerIndex = buffer.readerIndex();
+            final int readableBytes = buffer.writerIndex() - readerIndex;
+            final int toSkip = Math.min(readableBytes, maxLength);
+            final int i = buffer.forEachByte(readerIndex, toSkip, SKIP_CONTROL_CHARS_BYTES);
+            if (i == -1) {
+                if (readableBytes > maxLength) {
+                    throw newException(maxLength);
                 }
-                currentState = State.READ_INITIAL;
+                // Nothing but control characters, which are of no use anymore.
+                buffer.skipBytes(readableBytes);
+                return false;
+            }
+            // The skipped characters count towards the length of the initial line.
+            size = i - readerIndex;
+            buffer.readerIndex(i);
+            currentState = State.READ_INITIAL;
+            return true;
+        }
+
+        @Override
+        AsciiString copyLine(ByteBuf buffer, int index, int length) {
+            byte[] line = this.line;
+            if (line.length < length) {
+                this.line = line = new byte[length];
             }
-            return super.process(value);
+            buffer.getBytes(index, line, 0, length);
+            return new AsciiString(line, 0, length, false);
         }
 
         @Override
@@ -118,8 +118,28 @@ public class HttpRequestDecoder extends HttpObjectDecoder {
               initialBufferSize, allowDuplicateContentLengths, allowPartialChunks);
     }
 
+    /**
+     * Creates a new instance with the specified parameters.
+     *
+     * @param lazyHeaders {@code true} if the headers of the decoded messages should keep the header block as it was
+     *                    received, so that only the headers which are asked for are converted and unmodified headers
+     *                    can be sent again with a single copy.
+     */
+    public HttpRequestDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders,
+            int initialBufferSize, boolean allowDuplicateContentLengths, boolean allowPartialChunks,
+            boolean lazyHeaders) {
+        super(maxInitialLineLength, maxHeaderSize, maxChunkSize, DEFAULT_CHUNKED_SUPPORTED, validateHeaders,
+              initialBufferSize, allowDuplicateContentLengths, allowPartialChunks, lazyHeaders);
+    }
+
     @Override
     protected HttpMessage createMessage(String[] initialLine) throws Exception {
+        if (lazyHeaders) {
+            return new DefaultHttpRequest(
+                    HttpVersion.valueOf(initialLine[2]),
+                    HttpMethod.valueOf(initialLine[0]), initialLine[1], new LazyHttpHeaders(validateHeaders));
+        }
         return new DefaultHttpRequest(
                 HttpVersion.valueOf(initialLine[2]),
                 HttpMethod.valueOf(initialLine[0]), initialLine[1], validateHeaders);
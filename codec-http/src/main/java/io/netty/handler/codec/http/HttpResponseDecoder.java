@@ -149,8 +149,29 @@ public class HttpResponseDecoder extends HttpObjectDecoder {
               initialBufferSize, allowDuplicateContentLengths, allowPartialChunks);
     }
 
+    /**
+     * Creates a new instance with the specified parameters.
+     *
+     * @param lazyHeaders {@code true} if the headers of the decoded messages should keep the header block as it was
+     *                    received, so that only the headers which are asked for are converted and unmodified headers
+     *                    can be sent again with a single copy.
+     */
+    public HttpResponseDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders,
+            int initialBufferSize, boolean allowDuplicateContentLengths, boolean allowPartialChunks,
+            boolean lazyHeaders) {
+        super(maxInitialLineLength, maxHeaderSize, maxChunkSize, DEFAULT_CHUNKED_SUPPORTED, validateHeaders,
+              initialBufferSize, allowDuplicateContentLengths, allowPartialChunks, lazyHeaders);
+    }
+
     @Override
     protected HttpMessage createMessage(String[] initialLine) {
+        if (lazyHeaders) {
+            return new DefaultHttpResponse(
+                    HttpVersion.valueOf(initialLine[0]),
+                    HttpResponseStatus.valueOf(Integer.parseInt(initialLine[1]), initialLine[2]),
+                    new LazyHttpHeaders(validateHeaders));
+        }
         return new DefaultHttpResponse(
                 HttpVersion.valueOf(initialLine[0]),
                 HttpResponseStatus.valueOf(Integer.parseInt(initialLine[1]), initialLine[2]), validateHeaders);
@@ -0,0 +1,551 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CharSequenceValueConverter;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.EmptyArrays;
+import io.netty.util.internal.MathUtil;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * {@link HttpHeaders} of a decoded message, which keep the header block as it was received and only record where
+ * the names and values are located in it.
+ * <p>
+ * The names and values are only converted to {@link AsciiString}s or {@link String}s when they are asked for, and
+ * an index of the names is built on the first lookup. The first modification copies all headers into a
+ * {@link DefaultHttpHeaders}, which is used from then on. As long as the headers were not modified,
+ * {@link HttpObjectEncoder} writes the received header block with a single copy.
+ * <p>
+ * Instances are created by {@link HttpRequestDecoder} and {@link HttpResponseDecoder} if they were constructed with
+ * {@code lazyHeaders} set to {@code true}.
+ */
+final class LazyHttpHeaders extends HttpHeaders {
+    private static final int MIN_BLOCK_SIZE = 256;
+
+    private final boolean validate;
+    // All header lines in the order they were received, each one terminated by CRLF.
+    private byte[] block = EmptyArrays.EMPTY_BYTES;
+    private int blockLength;
+    // The start and end of the name and the start and end of the value of each header in the block.
+    private int[] bounds = EmptyArrays.EMPTY_INTS;
+    private int size;
+    // The values which were changed by continuation lines, or null if there were none.
+    private String[] foldedValues;
+    // false if the block can not be written as is.
+    private boolean asReceived = true;
+    // Open addressing table which holds the header number + 1 and the hash of its name for every header,
+    // built on the first lookup.
+    private int[] index;
+    // All the headers once they were modified.
+    private DefaultHttpHeaders delegate;
+
+    LazyHttpHeaders(boolean validate) {
+        this.validate = validate;
+    }
+
+    /**
+     * Copies a header line from {@code buffer} to the end of the header block and returns it, without the line
+     * terminator.
+     */
+    AsciiString appendLine(ByteBuf buffer, int index, int length) {
+        assert delegate == null;
+        final int start = blockLength;
+        final int newLength = start + length + 2;
+        if (newLength > block.length) {
+            block = Arrays.copyOf(block, Math.max(newLength, Math.max(MIN_BLOCK_SIZE, block.length << 1)));
+        }
+        buffer.getBytes(index, block, start, length);
+        block[newLength - 2] = HttpConstants.CR;
+        block[newLength - 1] = HttpConstants.LF;
+        blockLength = newLength;
+        return new AsciiString(block, start, length, false);
+    }
+
+    /**
+     * Adds a header which is located in {@code line}, the last line that was returned by
+     * {@link #appendLine(ByteBuf, int, int)}.
+     *
+     * @param asReceived {@code false} if the line needs to be normalized before it can be sent again.
+     */
+    void add(AsciiString line, int nameStart, int nameEnd, int valueStart, int valueEnd, boolean asReceived) {
+        assert line.array() == block;
+        if (validate) {
+            DefaultHttpHeaders.HttpNameValidator.validateName(line.subSequence(nameStart, nameEnd, false));
+            DefaultHttpHeaders.valueConverter(true).convertObject(line.subSequence(valueStart, valueEnd, false));
+        }
+        final int offset = line.arrayOffset();
+        final int i = size << 2;
+        if (i == bounds.length) {
+            bounds = Arrays.copyOf(bounds, Math.max(32, i << 1));
+        }
+        bounds[i] = offset + nameStart;
+        bounds[i + 1] = offset + nameEnd;
+        bounds[i + 2] = offset + valueStart;
+        bounds[i + 3] = offset + valueEnd;
+        size++;
+        this.asReceived &= asReceived;
+        index = null;
+    }
+
+    /**
+     * Appends a continuation line to the value of the last header.
+     */
+    void appendToLastValue(String continuation) {
+        assert size > 0;
+        final int last = size - 1;
+        if (foldedValues == null || foldedValues.length <= last) {
+            foldedValues = foldedValues == null ? new String[size] : Arrays.copyOf(foldedValues, size);
+        }
+        //please do not make one line from below code
+        //as it breaks +XX:OptimizeStringConcat optimization
+        String value = valueAt(last).toString();
+        foldedValues[last] = value + ' ' + continuation;
+        asReceived = false;
+    }
+
+    /**
+     * Writes the header block to {@code buf} if the headers were not modified, and returns {@code true} if it did.
+     */
+    boolean encodeAsReceived(ByteBuf buf) {
+        if (delegate != null || !asReceived) {
+            return false;
+        }
+        buf.writeBytes(block, 0, blockLength);
+        return true;
+    }
+
+    private AsciiString nameAt(int i) {
+        final int[] bounds = this.bounds;
+        return HttpObjectDecoder.KnownHeaderNames.slice(block, bounds[i << 2], bounds[(i << 2) + 1]);
+    }
+
+    private CharSequence valueAt(int i) {
+        final String[] foldedValues = this.foldedValues;
+        if (foldedValues != null && i < foldedValues.length && foldedValues[i] != null) {
+            return foldedValues[i];
+        }
+        final int start = bounds[(i << 2) + 2];
+        final int end = bounds[(i << 2) + 3];
+        return start == end ? AsciiString.EMPTY_STRING : new AsciiString(block, start, end - start, false);
+    }
+
+    private int[] index() {
+        int[] index = this.index;
+        if (index == null) {
+            final int[] bounds = this.bounds;
+            final int mask = MathUtil.findNextPositivePowerOfTwo(Math.max(8, size << 1)) - 1;
+            index = new int[(mask + 1) << 1];
+            for (int i = 0; i < size; i++) {
+                final int nameStart = bounds[i << 2];
+                final int hash = PlatformDependent.hashCodeAscii(block, nameStart, bounds[(i << 2) + 1] - nameStart);
+                int slot = hash & mask;
+                while (index[slot << 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                index[slot << 1] = i + 1;
+                index[(slot << 1) + 1] = hash;
+            }
+            this.index = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of the first header with the given name after the one with the number {@code from},
+     * or {@code -1} if there is none. Headers with the same name are found in the order they were received.
+     */
+    private int next(CharSequence name, int hash, int from) {
+        final int[] index = index();
+        final int mask = (index.length >>> 1) - 1;
+        int slot = hash & mask;
+        for (;;) {
+            final int i = index[slot << 1] - 1;
+            if (i == -1) {
+                return -1;
+            }
+            if (i > from && index[(slot << 1) + 1] == hash && nameEquals(i, name)) {
+                return i;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int first(CharSequence name) {
+        return next(name, AsciiString.hashCode(checkNotNull(name, "name")), -1);
+    }
+
+    private boolean nameEquals(int i, CharSequence name) {
+        final int start = bounds[i << 2];
+        final int length = bounds[(i << 2) + 1] - start;
+        if (name.length() != length) {
+            return false;
+        }
+        final byte[] block = this.block;
+        for (int j = 0; j < length; j++) {
+            if (toLowerCase((char) (block[start + j] & 0xFF)) != toLowerCase(name.charAt(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+    }
+
+    private CharSequence getCharSequence(CharSequence name) {
+        final int i = first(name);
+        return i == -1 ? null : valueAt(i);
+    }
+
+    private DefaultHttpHeaders delegate() {
+        DefaultHttpHeaders delegate = this.delegate;
+        if (delegate == null) {
+            delegate = new DefaultHttpHeaders(validate);
+            for (int i = 0; i < size; i++) {
+                delegate.add(nameAt(i), valueAt(i));
+            }
+            this.delegate = delegate;
+            block = EmptyArrays.EMPTY_BYTES;
+            bounds = EmptyArrays.EMPTY_INTS;
+            foldedValues = null;
+            index = null;
+            size = 0;
+        }
+        return delegate;
+    }
+
+    @Override
+    public String get(String name) {
+        return get((CharSequence) name);
+    }
+
+    @Override
+    public String get(CharSequence name) {
+        if (delegate != null) {
+            return delegate.get(name);
+        }
+        CharSequence value = getCharSequence(name);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public Integer getInt(CharSequence name) {
+        if (delegate != null) {
+            return delegate.getInt(name);
+        }
+        CharSequence value = getCharSequence(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return CharSequenceValueConverter.INSTANCE.convertToInt(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public int getInt(CharSequence name, int defaultValue) {
+        Integer value = getInt(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Short getShort(CharSequence name) {
+        if (delegate != null) {
+            return delegate.getShort(name);
+        }
+        CharSequence value = getCharSequence(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return CharSequenceValueConverter.INSTANCE.convertToShort(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public short getShort(CharSequence name, short defaultValue) {
+        Short value = getShort(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Long getTimeMillis(CharSequence name) {
+        if (delegate != null) {
+            return delegate.getTimeMillis(name);
+        }
+        CharSequence value = getCharSequence(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return CharSequenceValueConverter.INSTANCE.convertToTimeMillis(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public long getTimeMillis(CharSequence name, long defaultValue) {
+        Long value = getTimeMillis(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public List<String> getAll(String name) {
+        return getAll((CharSequence) name);
+    }
+
+    @Override
+    public List<String> getAll(CharSequence name) {
+        if (delegate != null) {
+            return delegate.getAll(name);
+        }
+        final int hash = AsciiString.hashCode(checkNotNull(name, "name"));
+        int i = next(name, hash, -1);
+        if (i == -1) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<String>(4);
+        do {
+            values.add(valueAt(i).toString());
+            i = next(name, hash, i);
+        } while (i != -1);
+        return values;
+    }
+
+    @Override
+    public List<Entry<String, String>> entries() {
+        if (delegate != null) {
+            return delegate.entries();
+        }
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        List<Entry<String, String>> entries = new ArrayList<Entry<String, String>>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new SimpleImmutableEntry<String, String>(nameAt(i).toString(), valueAt(i).toString()));
+        }
+        return entries;
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return contains((CharSequence) name);
+    }
+
+    @Override
+    public boolean contains(CharSequence name) {
+        if (delegate != null) {
+            return delegate.contains(name);
+        }
+        return first(name) != -1;
+    }
+
+    @Override
+    public Iterator<Entry<String, String>> iterator() {
+        if (delegate != null) {
+            return delegate.iterator();
+        }
+        return new HeaderIterator<String>() {
+            @Override
+            Entry<String, String> entry(int i) {
+                return new SimpleImmutableEntry<String, String>(nameAt(i).toString(), valueAt(i).toString());
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Entry<CharSequence, CharSequence>> iteratorCharSequence() {
+        if (delegate != null) {
+            return delegate.iteratorCharSequence();
+        }
+        return new HeaderIterator<CharSequence>() {
+            @Override
+            Entry<CharSequence, CharSequence> entry(int i) {
+                return new SimpleImmutableEntry<CharSequence, CharSequence>(nameAt(i), valueAt(i));
+            }
+        };
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate != null ? delegate.isEmpty() : size == 0;
+    }
+
+    @Override
+    public int size() {
+        return delegate != null ? delegate.size() : size;
+    }
+
+    @Override
+    public Set<String> names() {
+        if (delegate != null) {
+            return delegate.names();
+        }
+        Set<String> names = new LinkedHashSet<String>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(nameAt(i).toString());
+        }
+        return names;
+    }
+
+    @Override
+    public HttpHeaders add(String name, Object value) {
+        delegate().add(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(CharSequence name, Object value) {
+        delegate().add(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(String name, Iterable<?> values) {
+        delegate().add(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(CharSequence name, Iterable<?> values) {
+        delegate().add(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders addInt(CharSequence name, int value) {
+        delegate().addInt(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders addShort(CharSequence name, short value) {
+        delegate().addShort(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(String name, Object value) {
+        delegate().set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(CharSequence name, Object value) {
+        delegate().set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(String name, Iterable<?> values) {
+        delegate().set(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(CharSequence name, Iterable<?> values) {
+        delegate().set(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders setInt(CharSequence name, int value) {
+        delegate().setInt(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders setShort(CharSequence name, short value) {
+        delegate().setShort(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders remove(String name) {
+        delegate().remove(name);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders remove(CharSequence name) {
+        delegate().remove(name);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders clear() {
+        delegate().clear();
+        return this;
+    }
+
+    @Override
+    public HttpHeaders copy() {
+        if (delegate != null) {
+            return delegate.copy();
+        }
+        DefaultHttpHeaders copy = new DefaultHttpHeaders(validate);
+        for (int i = 0; i < size; i++) {
+            copy.add(nameAt(i), valueAt(i));
+        }
+        return copy;
+    }
+
+    private abstract class HeaderIterator<T> implements Iterator<Entry<T, T>> {
+        private final int size = LazyHttpHeaders.this.size;
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<T, T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return entry(next++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        abstract Entry<T, T> entry(int i);
+    }
+}
@@ -0,0 +1,611 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.ThreadExecutorMap;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * {@link ChannelPool} of HTTP/1.1 connections to a single host, which knows when a connection can be used for another
+ * request.
+ * <p>
+ * {@link ChannelPoolHandler#channelCreated(Channel)} needs to add a {@link HttpClientCodec} to the pipeline. The pool
+ * adds a handler right after it, which follows the requests that are written and the responses that are received:
+ * <ul>
+ *   <li>A released {@link Channel} is only handed out again once the response to its last request was received
+ *   completely. It is closed instead if the request or the response did not allow to keep the connection alive, or
+ *   if the protocol was switched.</li>
+ *   <li>If {@code maxPipelinedRequests} is bigger than {@code 1}, a {@link Channel} is also handed out while
+ *   responses are outstanding, as soon as the last request was written completely. This only happens if no idle
+ *   connection is left and no new connection may be opened. The responses are received in the order the requests
+ *   were written, so the handlers need to be prepared for the responses to the requests of others.</li>
+ *   <li>At most {@code maxConnections} connections are open at the same time, and at most
+ *   {@code maxPendingAcquires} acquires wait for a connection. Any further acquire fails.</li>
+ *   <li>Connections on the {@link EventLoop} of the caller are preferred, and new connections are registered to it
+ *   if it belongs to the {@link EventLoopGroup} of the {@link Bootstrap}. In this case the {@link Channel} is
+ *   handed out without going through the task queue of another thread.</li>
+ * </ul>
+ * Every acquire stands for one request: write it, and release the {@link Channel} once the response was handled. As
+ * the pool follows the responses on its own, the {@link Channel} may also be released as soon as the request was
+ * written, if the response is handled by the pipeline.
+ */
+@UnstableApi
+public final class HttpChannelPool implements ChannelPool {
+
+    private static final AttributeKey<Connection> CONNECTION_KEY =
+            AttributeKey.newInstance("io.netty.handler.codec.http.pool.HttpChannelPool");
+
+    private final Bootstrap bootstrap;
+    private final EventLoopGroup group;
+    private final ChannelPoolHandler handler;
+    private final int maxConnections;
+    private final int maxPendingAcquires;
+    private final int maxPipelinedRequests;
+
+    // All of the following is guarded by this.
+    private final List<Connection> connections = new ArrayList<Connection>();
+    private final ArrayDeque<PendingAcquire> pendingAcquires = new ArrayDeque<PendingAcquire>();
+    // Connection attempts which were not completed yet, they count towards maxConnections.
+    private int connecting;
+    private boolean closed;
+
+    /**
+     * Creates a new instance, which does not pipeline requests.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections, with the remote address set.
+     * @param handler the {@link ChannelPoolHandler} that is notified and adds the {@link HttpClientCodec}.
+     * @param maxConnections the maximal number of connections that are open at the same time.
+     * @param maxPendingAcquires the maximal number of acquires that wait for a connection.
+     */
+    public HttpChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, int maxConnections,
+                           int maxPendingAcquires) {
+        this(bootstrap, handler, maxConnections, maxPendingAcquires, 1);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections, with the remote address set.
+     * @param handler the {@link ChannelPoolHandler} that is notified and adds the {@link HttpClientCodec}.
+     * @param maxConnections the maximal number of connections that are open at the same time.
+     * @param maxPendingAcquires the maximal number of acquires that wait for a connection.
+     * @param maxPipelinedRequests the maximal number of requests that are in flight on a single connection.
+     *                             {@code 1} disables pipelining.
+     */
+    public HttpChannelPool(Bootstrap bootstrap, final ChannelPoolHandler handler, int maxConnections,
+                           int maxPendingAcquires, int maxPipelinedRequests) {
+        this.handler = checkNotNull(handler, "handler");
+        this.maxConnections = checkPositive(maxConnections, "maxConnections");
+        this.maxPendingAcquires = checkPositiveOrZero(maxPendingAcquires, "maxPendingAcquires");
+        this.maxPipelinedRequests = checkPositive(maxPipelinedRequests, "maxPipelinedRequests");
+        // Clone the original Bootstrap as we want to set our own handler
+        this.bootstrap = checkNotNull(bootstrap, "bootstrap").clone();
+        this.bootstrap.handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                handler.channelCreated(ch);
+                ChannelHandlerContext codec = ch.pipeline().context(HttpClientCodec.class);
+                if (codec == null) {
+                    throw new IllegalStateException(
+                            "ChannelPoolHandler.channelCreated(...) did not add a HttpClientCodec: " + ch);
+                }
+                Connection connection = new Connection(ch);
+                ch.pipeline().addAfter(codec.name(), null, connection);
+                ch.attr(CONNECTION_KEY).set(connection);
+            }
+        });
+        this.group = this.bootstrap.config().group();
+    }
+
+    /**
+     * Returns the {@link Bootstrap} this pool will use to open new connections.
+     */
+    public Bootstrap bootstrap() {
+        return bootstrap;
+    }
+
+    /**
+     * Returns the {@link ChannelPoolHandler} that will be notified for the different pool actions.
+     */
+    public ChannelPoolHandler handler() {
+        return handler;
+    }
+
+    /**
+     * Returns the number of open connections, including the ones that are still connecting.
+     */
+    public synchronized int connections() {
+        return connections.size() + connecting;
+    }
+
+    /**
+     * Returns the number of acquires that are waiting for a connection.
+     */
+    public synchronized int pendingAcquires() {
+        return pendingAcquires.size();
+    }
+
+    @Override
+    public Future<Channel> acquire() {
+        EventLoop loop = callerEventLoop();
+        return acquire(loop, (loop != null ? loop : group.next()).<Channel>newPromise());
+    }
+
+    @Override
+    public Future<Channel> acquire(Promise<Channel> promise) {
+        return acquire(callerEventLoop(), checkNotNull(promise, "promise"));
+    }
+
+    private Future<Channel> acquire(EventLoop loop, Promise<Channel> promise) {
+        Connection connection = null;
+        boolean connect = false;
+        Throwable cause = null;
+        synchronized (this) {
+            if (closed) {
+                cause = new IllegalStateException("HttpChannelPool was closed");
+            } else {
+                connection = nextConnection(loop);
+                if (connection != null) {
+                    connection.lease();
+                } else if (connections.size() + connecting < maxConnections) {
+                    connecting++;
+                    connect = true;
+                } else if (pendingAcquires.size() < maxPendingAcquires) {
+                    pendingAcquires.add(new PendingAcquire(loop, promise));
+                } else {
+                    cause = new IllegalStateException("Too many outstanding acquire operations");
+                }
+            }
+        }
+        if (connection != null) {
+            notifyAcquired(connection, promise);
+        } else if (connect) {
+            connect(loop, promise);
+        } else if (cause != null) {
+            promise.tryFailure(cause);
+        }
+        return promise;
+    }
+
+    /**
+     * Returns the {@link EventLoop} of the calling thread, if it belongs to the {@link EventLoopGroup} that is used
+     * for the connections.
+     */
+    private EventLoop callerEventLoop() {
+        EventExecutor executor = ThreadExecutorMap.currentExecutor();
+        if (executor instanceof EventLoop && (executor == group || executor.parent() == group)) {
+            return (EventLoop) executor;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the connection that should be used for the next request, or {@code null} if a new connection should be
+     * opened or the acquire needs to wait. Must be called while holding the lock.
+     */
+    private Connection nextConnection(EventLoop loop) {
+        Connection connection = nextConnection(loop, false);
+        if (connection == null && maxPipelinedRequests > 1 && connections.size() + connecting >= maxConnections) {
+            connection = nextConnection(loop, true);
+        }
+        return connection;
+    }
+
+    private Connection nextConnection(EventLoop loop, boolean pipeline) {
+        Connection fallback = null;
+        for (int i = 0; i < connections.size(); i++) {
+            Connection connection = connections.get(i);
+            if (pipeline ? connection.canPipeline() : connection.isIdle()) {
+                if (loop == null || connection.channel.eventLoop() == loop) {
+                    return connection;
+                }
+                if (fallback == null) {
+                    fallback = connection;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    private void connect(EventLoop loop, final Promise<Channel> promise) {
+        final ChannelFuture future;
+        try {
+            future = (loop != null ? bootstrap.clone(loop) : bootstrap).connect();
+        } catch (Throwable cause) {
+            connectFailed(promise, cause);
+            return;
+        }
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    connectFailed(promise, future.cause());
+                    return;
+                }
+                Channel channel = future.channel();
+                Connection connection = channel.attr(CONNECTION_KEY).get();
+                if (connection == null) {
+                    channel.close();
+                    connectFailed(promise, new IllegalStateException("Channel was not initialized: " + channel));
+                    return;
+                }
+                boolean closed;
+                synchronized (HttpChannelPool.this) {
+                    connecting--;
+                    closed = HttpChannelPool.this.closed;
+                    if (!closed) {
+                        connections.add(connection);
+                        connection.lease();
+                    }
+                }
+                if (closed) {
+                    channel.close();
+                    promise.tryFailure(new IllegalStateException("HttpChannelPool was closed"));
+                } else {
+                    notifyAcquired(connection, promise);
+                }
+            }
+        });
+    }
+
+    private void connectFailed(Promise<Channel> promise, Throwable cause) {
+        synchronized (this) {
+            connecting--;
+        }
+        promise.tryFailure(cause);
+        // The connection attempt does not count towards maxConnections anymore, so another one may be started.
+        dispatch();
+    }
+
+    private void notifyAcquired(final Connection connection, final Promise<Channel> promise) {
+        EventLoop loop = connection.channel.eventLoop();
+        if (loop.inEventLoop()) {
+            notifyAcquired0(connection, promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    notifyAcquired0(connection, promise);
+                }
+            });
+        }
+    }
+
+    private void notifyAcquired0(Connection connection, Promise<Channel> promise) {
+        Channel channel = connection.channel;
+        try {
+            handler.channelAcquired(channel);
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+            release0(connection, channel.newPromise());
+            return;
+        }
+        if (!promise.trySuccess(channel)) {
+            // The promise was cancelled, hand the connection back.
+            release0(connection, channel.newPromise());
+        }
+    }
+
+    @Override
+    public Future<Void> release(Channel channel) {
+        checkNotNull(channel, "channel");
+        return release(channel, channel.eventLoop().<Void>newPromise());
+    }
+
+    @Override
+    public Future<Void> release(Channel channel, final Promise<Void> promise) {
+        checkNotNull(channel, "channel");
+        checkNotNull(promise, "promise");
+        final Connection connection = channel.attr(CONNECTION_KEY).get();
+        if (connection == null || connection.pool() != this) {
+            promise.setFailure(new IllegalArgumentException(
+                    "Channel " + channel + " was not acquired from this HttpChannelPool"));
+            return promise;
+        }
+        EventLoop loop = channel.eventLoop();
+        if (loop.inEventLoop()) {
+            release0(connection, promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    release0(connection, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void release0(Connection connection, Promise<Void> promise) {
+        Channel channel = connection.channel;
+        boolean leased;
+        boolean remove = false;
+        synchronized (this) {
+            leased = connection.leases > 0;
+            if (leased) {
+                if (--connection.leases == 0) {
+                    connection.writingRequest = false;
+                    if (connection.partialRequest) {
+                        // The request was abandoned before it was written completely.
+                        connection.keepAlive = false;
+                    }
+                }
+                remove = removeIfUnusable(connection);
+            }
+        }
+        if (!leased) {
+            promise.setFailure(new IllegalStateException("Channel " + channel + " was released already"));
+            return;
+        }
+        try {
+            handler.channelReleased(channel);
+            promise.setSuccess(null);
+        } catch (Throwable cause) {
+            promise.setFailure(cause);
+        } finally {
+            if (remove) {
+                channel.close();
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Removes the connection from the pool if it can not be used anymore and nobody holds it. Must be called while
+     * holding the lock.
+     */
+    private boolean removeIfUnusable(Connection connection) {
+        if (connection.leases == 0 && (closed || !connection.keepAlive || !connection.channel.isActive())) {
+            return connections.remove(connection);
+        }
+        return false;
+    }
+
+    /**
+     * Hands out connections to the pending acquires, as long as there is a connection that can take another request
+     * or a new connection may be opened.
+     */
+    private void dispatch() {
+        for (;;) {
+            PendingAcquire pending;
+            Connection connection;
+            synchronized (this) {
+                pending = pendingAcquires.peek();
+                if (pending == null) {
+                    return;
+                }
+                connection = nextConnection(pending.loop);
+                if (connection != null) {
+                    connection.lease();
+                } else if (connections.size() + connecting < maxConnections) {
+                    connecting++;
+                } else {
+                    return;
+                }
+                pendingAcquires.poll();
+            }
+            if (connection != null) {
+                notifyAcquired(connection, pending.promise);
+            } else {
+                connect(pending.loop, pending.promise);
+            }
+        }
+    }
+
+    private void requestWritten(Connection connection) {
+        synchronized (this) {
+            connection.writingRequest = false;
+        }
+        if (maxPipelinedRequests > 1) {
+            dispatch();
+        }
+    }
+
+    private void responseReceived(Connection connection) {
+        boolean remove;
+        synchronized (this) {
+            if (connection.outstandingResponses > 0) {
+                connection.outstandingResponses--;
+            }
+            remove = removeIfUnusable(connection);
+        }
+        if (remove) {
+            connection.channel.close();
+        }
+        dispatch();
+    }
+
+    private void connectionClosed(Connection connection) {
+        synchronized (this) {
+            connection.keepAlive = false;
+            connection.outstandingResponses = 0;
+            removeIfUnusable(connection);
+        }
+        // The closed connection does not count towards maxConnections anymore once it was removed.
+        dispatch();
+    }
+
+    private void disableKeepAlive(Connection connection) {
+        synchronized (this) {
+            connection.keepAlive = false;
+        }
+    }
+
+    /**
+     * Closes the pool, which fails the pending acquires and closes all connections that are not used. The ones that
+     * are used are closed once they are released. This method does not block, so it is safe to call it from an
+     * {@link EventLoop}.
+     */
+    @Override
+    public void close() {
+        List<PendingAcquire> pending;
+        List<Connection> idle = new ArrayList<Connection>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending = new ArrayList<PendingAcquire>(pendingAcquires);
+            pendingAcquires.clear();
+            for (int i = connections.size() - 1; i >= 0; i--) {
+                Connection connection = connections.get(i);
+                if (connection.leases == 0) {
+                    // Connections that are still used are closed once they are released.
+                    connections.remove(i);
+                    idle.add(connection);
+                }
+            }
+        }
+        for (PendingAcquire acquire : pending) {
+            acquire.promise.tryFailure(new IllegalStateException("HttpChannelPool was closed"));
+        }
+        for (Connection connection : idle) {
+            connection.channel.close();
+        }
+    }
+
+    private static final class PendingAcquire {
+        // The EventLoop of the thread that called acquire, or null if it was not called from one.
+        final EventLoop loop;
+        final Promise<Channel> promise;
+
+        PendingAcquire(EventLoop loop, Promise<Channel> promise) {
+            this.loop = loop;
+            this.promise = promise;
+        }
+    }
+
+    /**
+     * Keeps track of the state of a single connection, by looking at the messages that pass the
+     * {@link HttpClientCodec}. The counters are guarded by the lock of the pool, everything else is only accessed by
+     * the {@link EventLoop} of the {@link Channel}.
+     */
+    private final class Connection extends ChannelDuplexHandler {
+        final Channel channel;
+        // The number of acquires that were not released yet.
+        int leases;
+        // The number of requests that were written, but whose response was not received completely.
+        int outstandingResponses;
+        // The last acquire did not write its request completely yet, so no other request can follow it.
+        boolean writingRequest;
+        // The start of a request was written, but not its end.
+        boolean partialRequest;
+        boolean keepAlive = true;
+        // The response that is received is informational and will be followed by the final one.
+        private boolean informational;
+
+        Connection(Channel channel) {
+            this.channel = channel;
+        }
+
+        HttpChannelPool pool() {
+            return HttpChannelPool.this;
+        }
+
+        void lease() {
+            leases++;
+            writingRequest = true;
+        }
+
+        boolean isIdle() {
+            return leases == 0 && outstandingResponses == 0 && keepAlive && channel.isActive();
+        }
+
+        boolean canPipeline() {
+            return !writingRequest && keepAlive && outstandingResponses < maxPipelinedRequests &&
+                    leases < maxPipelinedRequests && channel.isActive();
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            boolean request = msg instanceof HttpRequest;
+            boolean keepAlive = !request || HttpUtil.isKeepAlive((HttpRequest) msg);
+            boolean last = msg instanceof LastHttpContent;
+            if (request || last) {
+                synchronized (HttpChannelPool.this) {
+                    if (request) {
+                        outstandingResponses++;
+                    }
+                    partialRequest = !last;
+                }
+            }
+            ctx.write(msg, promise);
+            if (!keepAlive) {
+                disableKeepAlive(this);
+            }
+            if (last) {
+                // Handing the connection to the next request only once our write is passed on keeps the order.
+                requestWritten(this);
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof HttpResponse) {
+                HttpResponse response = (HttpResponse) msg;
+                int code = response.status().code();
+                // 101 Switching Protocols is the final response, any other 1xx is followed by one.
+                informational = code >= 100 && code < 200 && code != 101;
+                if (code == 101 || !HttpUtil.isKeepAlive(response)) {
+                    disableKeepAlive(this);
+                }
+            }
+            boolean completed = msg instanceof LastHttpContent && !informational;
+            if (msg instanceof LastHttpContent) {
+                informational = false;
+            }
+            ctx.fireChannelRead(msg);
+            if (completed) {
+                responseReceived(this);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            connectionClosed(this);
+            ctx.fireChannelInactive();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.util.internal.UnstableApi;
+
+import java.net.SocketAddress;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * Keeps a {@link HttpChannelPool} per remote address, so the limits apply to each host on its own.
+ */
+@UnstableApi
+public final class HttpChannelPoolMap extends AbstractChannelPoolMap<SocketAddress, HttpChannelPool> {
+
+    private final Bootstrap bootstrap;
+    private final ChannelPoolHandler handler;
+    private final int maxConnectionsPerHost;
+    private final int maxPendingAcquiresPerHost;
+    private final int maxPipelinedRequests;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} that is used for connections, the remote address is set by the pools.
+     * @param handler the {@link ChannelPoolHandler} that is used by all pools.
+     * @param maxConnectionsPerHost the maximal number of connections to a single host that are open at the same time.
+     * @param maxPendingAcquiresPerHost the maximal number of acquires that wait for a connection to a single host.
+     * @param maxPipelinedRequests the maximal number of requests that are in flight on a single connection.
+     *                             {@code 1} disables pipelining.
+     */
+    public HttpChannelPoolMap(Bootstrap bootstrap, ChannelPoolHandler handler, int maxConnectionsPerHost,
+                              int maxPendingAcquiresPerHost, int maxPipelinedRequests) {
+        this.bootstrap = checkNotNull(bootstrap, "bootstrap");
+        this.handler = checkNotNull(handler, "handler");
+        this.maxConnectionsPerHost = checkPositive(maxConnectionsPerHost, "maxConnectionsPerHost");
+        this.maxPendingAcquiresPerHost = checkPositiveOrZero(maxPendingAcquiresPerHost, "maxPendingAcquiresPerHost");
+        this.maxPipelinedRequests = checkPositive(maxPipelinedRequests, "maxPipelinedRequests");
+    }
+
+    @Override
+    protected HttpChannelPool newPool(SocketAddress key) {
+        return new HttpChannelPool(bootstrap.clone().remoteAddress(key), handler, maxConnectionsPerHost,
+                maxPendingAcquiresPerHost, maxPipelinedRequests);
+    }
+}
@@ -28,6 +28,7 @@ import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibDecoder;
 import io.netty.handler.codec.compression.ZlibEncoder;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.Zstd;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.PlatformDependent;
@@ -173,6 +174,84 @@ public class HttpContentDecoderTest {
         assertFalse(channel.finish()); // assert that no messages are left in channel
     }
 
+    @Test
+    public void testResponseZstdDecompression() throws Throwable {
+        Zstd.ensureAvailability();
+
+        byte[] compressed = com.github.luben.zstd.Zstd.compress(SAMPLE_STRING.getBytes(CharsetUtil.UTF_8));
+        HttpResponseDecoder decoder = new HttpResponseDecoder();
+        HttpContentDecoder decompressor = new HttpContentDecompressor();
+        HttpObjectAggregator aggregator = new HttpObjectAggregator(Integer.MAX_VALUE);
+        EmbeddedChannel channel = new EmbeddedChannel(decoder, decompressor, aggregator);
+
+        String headers = "HTTP/1.1 200 OK\r\n" +
+          "Content-Length: " + compressed.length + "\r\n" +
+          "Content-Encoding: zstd\r\n" +
+          "\r\n";
+        ByteBuf buf = Unpooled.wrappedBuffer(headers.getBytes(CharsetUtil.US_ASCII), compressed);
+        assertTrue(channel.writeInbound(buf));
+
+        Object o = channel.readInbound();
+        assertThat(o, is(instanceOf(FullHttpResponse.class)));
+        FullHttpResponse resp = (FullHttpResponse) o;
+        assertNull(resp.headers().get(HttpHeaderNames.CONTENT_ENCODING), "Content-Encoding header should be removed");
+        assertEquals(SAMPLE_STRING, resp.content().toString(CharsetUtil.UTF_8),
+                "Response body should match uncompressed string");
+        resp.release();
+
+        assertHasInboundMessages(channel, false);
+        assertHasOutboundMessages(channel, false);
+        assertFalse(channel.finish()); // assert that no messages are left in channel
+    }
+
+    @Test
+    public void testResponseChunksZstdDecompression() throws Throwable {
+        Zstd.ensureAvailability();
+
+        // Compress the content as two frames, which are split across the chunks.
+        byte[] sample = SAMPLE_STRING.getBytes(CharsetUtil.UTF_8);
+        byte[] frame1 = com.github.luben.zstd.Zstd.compress(sample);
+        byte[] frame2 = com.github.luben.zstd.Zstd.compress(sample);
+        byte[] compressed = new byte[frame1.length + frame2.length];
+        System.arraycopy(frame1, 0, compressed, 0, frame1.length);
+        System.arraycopy(frame2, 0, compressed, frame1.length, frame2.length);
+
+        HttpResponseDecoder decoder = new HttpResponseDecoder();
+        HttpContentDecoder decompressor = new HttpContentDecompressor();
+        HttpObjectAggregator aggregator = new HttpObjectAggregator(Integer.MAX_VALUE);
+        EmbeddedChannel channel = new EmbeddedChannel(decoder, decompressor, aggregator);
+
+        String headers = "HTTP/1.1 200 OK\r\n" +
+          "Content-Length: " + compressed.length + "\r\n" +
+          "Content-Encoding: zstd\r\n" +
+          "\r\n";
+
+        assertFalse(channel.writeInbound(Unpooled.wrappedBuffer(headers.getBytes(CharsetUtil.US_ASCII))));
+
+        int offset = 0;
+        while (offset < compressed.length) {
+            int len = Math.min(7, compressed.length - offset);
+            boolean available = channel.writeInbound(Unpooled.wrappedBuffer(compressed, offset, len));
+            offset += 7;
+            if (offset < compressed.length) {
+                assertFalse(available);
+            } else {
+                assertTrue(available);
+            }
+        }
+
+        Object o = channel.readInbound();
+        assertThat(o, is(instanceOf(FullHttpResponse.class)));
+        FullHttpResponse resp = (FullHttpResponse) o;
+        assertEquals(SAMPLE_STRING + SAMPLE_STRING, resp.content().toString(CharsetUtil.UTF_8),
+          "Response body should match uncompressed string");
+        resp.release();
+
+        assertHasInboundMessages(channel, false);
+        assertHasOutboundMessages(channel, false);
+        assertFalse(channel.finish()); // assert that no messages are left in channel
+    }
+
     @DisabledIf(value = "isNotSupported", disabledReason = "Brotli is not supported on this platform")
     @Test
     public void testResponseBrotliDecompression() throws Throwable {
@@ -22,7 +22,10 @@ import io.netty.util.AsciiString;
 import io.netty.util.CharsetUtil;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.*;
 import static io.netty.handler.codec.http.HttpHeadersTestUtils.of;
@@ -568,6 +571,65 @@ public class HttpRequestDecoderTest {
         assertFalse(channel.finish());
     }
 
+    @Test
+    public void testHeaderNamesKeepCase() {
+        String requestStr = "GET /some/path HTTP/1.1\r\n" +
+                "Host: example.com\r\n" +
+                "user-agent: netty\r\n" +
+                "ACCEPT: */*\r\n" +
+                "X-Custom: value \r\n\r\n";
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder());
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer(requestStr, CharsetUtil.US_ASCII)));
+        HttpRequest request = channel.readInbound();
+        assertTrue(request.decoderResult().isSuccess());
+        List<String> names = new ArrayList<String>(request.headers().names());
+        assertTrue(names.contains("Host"));
+        assertTrue(names.contains("user-agent"));
+        assertTrue(names.contains("ACCEPT"));
+        assertTrue(names.contains("X-Custom"));
+        assertEquals("example.com", request.headers().get(HOST));
+        assertEquals("netty", request.headers().get(USER_AGENT));
+        assertEquals("*/*", request.headers().get(ACCEPT));
+        assertEquals("value", request.headers().get("x-custom"));
+        LastHttpContent c = channel.readInbound();
+        c.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testHeaderNamesAndValuesAreStrings() {
+        String requestStr = "GET /some/path HTTP/1.1\r\n" +
+                "Host: example.com\r\n" +
+                "X-Custom: value\r\n\r\n";
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder());
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer(requestStr, CharsetUtil.US_ASCII)));
+        HttpRequest request = channel.readInbound();
+        Iterator<Map.Entry<CharSequence, CharSequence>> headers = request.headers().iteratorCharSequence();
+        while (headers.hasNext()) {
+            Map.Entry<CharSequence, CharSequence> header = headers.next();
+            assertThat(header.getKey(), instanceOf(String.class));
+            assertThat(header.getValue(), instanceOf(String.class));
+        }
+        LastHttpContent c = channel.readInbound();
+        c.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testLeadingControlCharsInMultipleBuffers() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder());
+        assertFalse(channel.writeInbound(Unpooled.copiedBuffer("\r\n\r\n", CharsetUtil.US_ASCII)));
+        assertFalse(channel.writeInbound(Unpooled.copiedBuffer("\r\nGET /some/", CharsetUtil.US_ASCII)));
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer("path HTTP/1.1\r\n\r\n", CharsetUtil.US_ASCII)));
+        HttpRequest request = channel.readInbound();
+        assertTrue(request.decoderResult().isSuccess());
+        assertEquals(HttpMethod.GET, request.method());
+        assertEquals("/some/path", request.uri());
+        LastHttpContent c = channel.readInbound();
+        c.release();
+        assertFalse(channel.finish());
+    }
+
     private static void testInvalidHeaders0(String requestStr) {
         testInvalidHeaders0(Unpooled.copiedBuffer(requestStr, CharsetUtil.US_ASCII));
     }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LazyHttpHeadersTest {
+
+    private static final String REQUEST_LINE = "POST /some/path HTTP/1.1\r\n";
+    private static final String HEADERS = "Host: example.com\r\n" +
+            "Content-Length: 5\r\n" +
+            "accept: text/html\r\n" +
+            "X-Multi: a\r\n" +
+            "x-multi: b\r\n" +
+            "X-Empty:\r\n" +
+            "X-Spaces:   value with spaces   \r\n";
+
+    private static HttpRequest decode(String request) {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder(
+                HttpObjectDecoder.DEFAULT_MAX_INITIAL_LINE_LENGTH, HttpObjectDecoder.DEFAULT_MAX_HEADER_SIZE,
+                HttpObjectDecoder.DEFAULT_MAX_CHUNK_SIZE, HttpObjectDecoder.DEFAULT_VALIDATE_HEADERS,
+                HttpObjectDecoder.DEFAULT_INITIAL_BUFFER_SIZE,
+                HttpObjectDecoder.DEFAULT_ALLOW_DUPLICATE_CONTENT_LENGTHS,
+                HttpObjectDecoder.DEFAULT_ALLOW_PARTIAL_CHUNKS, true));
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer(request, CharsetUtil.US_ASCII)));
+        HttpRequest req = channel.readInbound();
+        for (;;) {
+            HttpContent content = channel.readInbound();
+            if (content == null) {
+                break;
+            }
+            content.release();
+        }
+        assertFalse(channel.finish());
+        return req;
+    }
+
+    private static String encode(HttpRequest request) {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestEncoder());
+        assertTrue(channel.writeOutbound(request));
+        ByteBuf buf = channel.readOutbound();
+        try {
+            return buf.toString(CharsetUtil.US_ASCII);
+        } finally {
+            buf.release();
+            assertFalse(channel.finish());
+        }
+    }
+
+    @Test
+    public void testLookups() {
+        HttpRequest request = decode(REQUEST_LINE + HEADERS + "\r\nhello");
+        assertTrue(request.decoderResult().isSuccess());
+        HttpHeaders headers = request.headers();
+        assertThat(headers, instanceOf(LazyHttpHeaders.class));
+
+        assertEquals(7, headers.size());
+        assertFalse(headers.isEmpty());
+        assertEquals("example.com", headers.get(HttpHeaderNames.HOST));
+        assertEquals("example.com", headers.get("HOST"));
+        assertEquals(5, headers.getInt(HttpHeaderNames.CONTENT_LENGTH).intValue());
+        assertEquals(5L, HttpUtil.getContentLength(request));
+        assertNull(headers.getInt(HttpHeaderNames.HOST));
+        assertEquals("text/html", headers.get("Accept"));
+        assertEquals(Arrays.asList("a", "b"), headers.getAll("x-multi"));
+        assertEquals("a", headers.get("X-MULTI"));
+        assertEquals("", headers.get("x-empty"));
+        assertEquals("value with spaces", headers.get("x-spaces"));
+        assertTrue(headers.contains("x-empty"));
+        assertTrue(headers.contains(HttpHeaderNames.ACCEPT, "TEXT/HTML", true));
+        assertFalse(headers.contains(HttpHeaderNames.ACCEPT, "TEXT/HTML", false));
+        assertFalse(headers.contains("x-missing"));
+        assertNull(headers.get("x-missing"));
+        assertEquals(Collections.<String>emptyList(), headers.getAll("x-missing"));
+        assertEquals(Arrays.asList("Host", "Content-Length", "accept", "X-Multi", "x-multi", "X-Empty", "X-Spaces"),
+                Arrays.asList(headers.names().toArray()));
+
+        Iterator<Entry<CharSequence, CharSequence>> iter = headers.iteratorCharSequence();
+        Entry<CharSequence, CharSequence> entry = iter.next();
+        assertEquals("Host", entry.getKey().toString());
+        assertEquals("example.com", entry.getValue().toString());
+        assertEquals(7, headers.entries().size());
+        assertEquals(headers.copy(), new DefaultHttpHeaders().add(headers));
+    }
+
+    @Test
+    public void testManyHeaders() {
+        StringBuilder sb = new StringBuilder(REQUEST_LINE);
+        for (int i = 0; i < 100; i++) {
+            sb.append("X-Header-").append(i).append(": ").append(i).append("\r\n");
+        }
+        HttpHeaders headers = decode(sb.append("\r\n").toString()).headers();
+        assertEquals(100, headers.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), headers.get("x-header-" + i));
+        }
+    }
+
+    @Test
+    public void testModify() {
+        HttpRequest request = decode(REQUEST_LINE + HEADERS + "\r\nhello");
+        HttpHeaders headers = request.headers();
+        headers.add("X-Multi", "c");
+        headers.remove(HttpHeaderNames.HOST);
+        assertEquals(Arrays.asList("a", "b", "c"), headers.getAll("x-multi"));
+        assertNull(headers.get(HttpHeaderNames.HOST));
+        assertEquals("text/html", headers.get("accept"));
+        assertEquals(7, headers.size());
+        headers.clear();
+        assertTrue(headers.isEmpty());
+    }
+
+    @Test
+    public void testEncodeAsReceived() {
+        String headers = "Host: example.com\r\n" +
+                "content-length:5\r\n" +
+                "X-Spaces:   value with spaces   \r\n";
+        HttpRequest request = decode(REQUEST_LINE + headers + "\r\nhello");
+        assertEquals(REQUEST_LINE + headers + "\r\n", encode(request));
+    }
+
+    @Test
+    public void testEncodeLfOnly() {
+        HttpRequest request = decode(REQUEST_LINE + "Host: example.com\nX-Foo: bar\n\n");
+        assertEquals(REQUEST_LINE + "Host: example.com\r\nX-Foo: bar\r\n\r\n", encode(request));
+    }
+
+    @Test
+    public void testEncodeModified() {
+        HttpRequest request = decode(REQUEST_LINE + "Host: example.com\r\nX-Foo:   bar\r\n\r\n");
+        request.headers().set("X-Foo", "baz");
+        assertEquals(REQUEST_LINE + "Host: example.com\r\nX-Foo: baz\r\n\r\n", encode(request));
+    }
+
+    @Test
+    public void testContinuationLine() {
+        HttpRequest request = decode(REQUEST_LINE + "X-Folded: first\r\n  second\r\nHost: example.com\r\n\r\n");
+        assertTrue(request.decoderResult().isSuccess());
+        assertEquals("first second", request.headers().get("x-folded"));
+        assertEquals("example.com", request.headers().get(HttpHeaderNames.HOST));
+        // The folded header can not be sent as it was received.
+        assertEquals(REQUEST_LINE + "X-Folded: first second\r\nHost: example.com\r\n\r\n", encode(request));
+    }
+
+    @Test
+    public void testInvalidHeaderName() {
+        HttpRequest request = decode(REQUEST_LINE + "Host : example.com\r\n\r\n");
+        assertThat(request.decoderResult().cause(), instanceOf(IllegalArgumentException.class));
+    }
+
+    @Test
+    public void testInvalidHeaderValue() {
+        HttpRequest request = decode(REQUEST_LINE + "Host: example\u000bcom\r\n\r\n");
+        assertThat(request.decoderResult().cause(), instanceOf(IllegalArgumentException.class));
+    }
+
+    @Test
+    public void testResponseWhitespaceBeforeColon() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseDecoder(
+                HttpObjectDecoder.DEFAULT_MAX_INITIAL_LINE_LENGTH, HttpObjectDecoder.DEFAULT_MAX_HEADER_SIZE,
+                HttpObjectDecoder.DEFAULT_MAX_CHUNK_SIZE, HttpObjectDecoder.DEFAULT_VALIDATE_HEADERS,
+                HttpObjectDecoder.DEFAULT_INITIAL_BUFFER_SIZE,
+                HttpObjectDecoder.DEFAULT_ALLOW_DUPLICATE_CONTENT_LENGTHS,
+                HttpObjectDecoder.DEFAULT_ALLOW_PARTIAL_CHUNKS, true), new HttpResponseEncoder());
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer(
+                "HTTP/1.1 204 No Content\r\nX-Foo : bar\r\n\r\n", CharsetUtil.US_ASCII)));
+        HttpResponse response = channel.readInbound();
+        assertEquals("bar", response.headers().get("x-foo"));
+        LastHttpContent last = channel.readInbound();
+        last.release();
+
+        assertTrue(channel.writeOutbound(response));
+        ByteBuf buf = channel.readOutbound();
+        assertEquals("HTTP/1.1 204 No Content\r\nX-Foo: bar\r\n\r\n", buf.toString(CharsetUtil.US_ASCII));
+        buf.release();
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpChannelPoolTest {
+
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private Bootstrap bootstrap;
+    // The number of requests the server waits for before it sends the responses.
+    private volatile int batch = 1;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(2);
+        LocalAddress address = new LocalAddress("HttpChannelPoolTest-" + ThreadLocalRandom.current().nextInt());
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(1024),
+                                new BatchingResponder());
+                    }
+                })
+                .bind(address).sync().channel();
+        bootstrap = new Bootstrap().group(group).channel(LocalChannel.class).remoteAddress(address);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        serverChannel.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    private HttpChannelPool newPool(int maxConnections, int maxPendingAcquires, int maxPipelinedRequests) {
+        return new HttpChannelPool(bootstrap, new AbstractChannelPoolHandler() {
+            @Override
+            public void channelCreated(Channel ch) {
+                ch.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(1024),
+                        new SimpleChannelInboundHandler<FullHttpResponse>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+                                responses.add(msg.content().toString(CharsetUtil.US_ASCII));
+                            }
+                        });
+            }
+        }, maxConnections, maxPendingAcquires, maxPipelinedRequests);
+    }
+
+    private static void sendRequest(Channel channel, String uri, boolean keepAlive) {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        HttpUtil.setKeepAlive(request, keepAlive);
+        channel.writeAndFlush(request).syncUninterruptibly();
+    }
+
+    @Test
+    public void testReuseConnection() throws Exception {
+        HttpChannelPool pool = newPool(1, 0, 1);
+        Channel channel = pool.acquire().sync().getNow();
+        sendRequest(channel, "/a", true);
+        assertEquals("/a", responses.take());
+        pool.release(channel).sync();
+
+        Channel channel2 = pool.acquire().sync().getNow();
+        assertSame(channel, channel2);
+        sendRequest(channel2, "/b", true);
+        assertEquals("/b", responses.take());
+        pool.release(channel2).sync();
+        assertEquals(1, pool.connections());
+        pool.close();
+    }
+
+    @Test
+    public void testConnectionCloseIsNotReused() throws Exception {
+        HttpChannelPool pool = newPool(1, 0, 1);
+        Channel channel = pool.acquire().sync().getNow();
+        sendRequest(channel, "/a", false);
+        assertEquals("/a", responses.take());
+        pool.release(channel).sync();
+
+        Channel channel2 = pool.acquire().sync().getNow();
+        assertNotSame(channel, channel2);
+        channel.closeFuture().sync();
+        pool.release(channel2).sync();
+        pool.close();
+    }
+
+    @Test
+    public void testPendingAcquires() throws Exception {
+        HttpChannelPool pool = newPool(1, 1, 1);
+        Channel channel = pool.acquire().sync().getNow();
+        Future<Channel> pending = pool.acquire();
+        Future<Channel> failed = pool.acquire().await();
+        assertThat(failed.cause(), instanceOf(IllegalStateException.class));
+        assertEquals(1, pool.pendingAcquires());
+
+        sendRequest(channel, "/a", true);
+        assertEquals("/a", responses.take());
+        assertFalse(pending.isDone());
+        pool.release(channel).sync();
+        assertSame(channel, pending.sync().getNow());
+        assertEquals(0, pool.pendingAcquires());
+        pool.release(channel).sync();
+        pool.close();
+    }
+
+    @Test
+    public void testPipelining() throws Exception {
+        batch = 2;
+        HttpChannelPool pool = newPool(1, 2, 2);
+        Channel channel = pool.acquire().sync().getNow();
+        Future<Channel> second = pool.acquire();
+        // Not before the first request was written completely.
+        assertFalse(second.isDone());
+        sendRequest(channel, "/a", true);
+        assertSame(channel, second.sync().getNow());
+
+        // Two requests are in flight already.
+        Future<Channel> third = pool.acquire();
+        sendRequest(channel, "/b", true);
+        assertEquals("/a", responses.take());
+        assertEquals("/b", responses.take());
+        assertFalse(third.isDone());
+        pool.release(channel).sync();
+        assertSame(channel, third.sync().getNow());
+        pool.release(channel).sync();
+        pool.release(channel).sync();
+        assertEquals(1, pool.connections());
+        pool.close();
+    }
+
+    @Test
+    public void testPreferCallerEventLoop() throws Exception {
+        final HttpChannelPool pool = newPool(2, 0, 1);
+        List<Channel> channels = new ArrayList<Channel>();
+        for (EventLoop loop : new EventLoop[] { group.next(), group.next() }) {
+            Channel channel = loop.submit(new Callable<Future<Channel>>() {
+                @Override
+                public Future<Channel> call() {
+                    return pool.acquire();
+                }
+            }).sync().getNow().sync().getNow();
+            // New connections are registered to the EventLoop of the caller.
+            assertSame(loop, channel.eventLoop());
+            channels.add(channel);
+        }
+        for (Channel channel : channels) {
+            pool.release(channel).sync();
+        }
+        for (final Channel channel : channels) {
+            Future<Channel> acquired = channel.eventLoop().submit(new Callable<Future<Channel>>() {
+                @Override
+                public Future<Channel> call() {
+                    return pool.acquire();
+                }
+            }).sync().getNow();
+            // Completed right away, without going through the task queue.
+            assertTrue(acquired.isDone());
+            assertSame(channel, acquired.getNow());
+            pool.release(channel).sync();
+        }
+        pool.close();
+    }
+
+    @Test
+    public void testReleaseForeignChannel() throws Exception {
+        HttpChannelPool pool = newPool(1, 0, 1);
+        HttpChannelPool other = newPool(1, 0, 1);
+        Channel channel = pool.acquire().sync().getNow();
+        assertThat(other.release(channel).await().cause(), instanceOf(IllegalArgumentException.class));
+        pool.release(channel).sync();
+        assertThat(pool.release(channel).await().cause(), instanceOf(IllegalStateException.class));
+        pool.close();
+        other.close();
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        HttpChannelPool pool = newPool(1, 1, 1);
+        Channel channel = pool.acquire().sync().getNow();
+        Future<Channel> pending = pool.acquire();
+        pool.close();
+        assertThat(pending.await().cause(), instanceOf(IllegalStateException.class));
+        assertThat(pool.acquire().await().cause(), instanceOf(IllegalStateException.class));
+        // Connections in use are closed once they are released.
+        assertTrue(channel.isActive());
+        pool.release(channel).sync();
+        channel.closeFuture().sync();
+    }
+
+    /**
+     * Answers the requests once {@link #batch} of them were received, with the URI as content.
+     */
+    private final class BatchingResponder extends SimpleChannelInboundHandler<FullHttpRequest> {
+        private final List<FullHttpRequest> requests = new ArrayList<FullHttpRequest>();
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+            requests.add(msg.retain());
+            if (requests.size() < batch) {
+                return;
+            }
+            for (FullHttpRequest request : requests) {
+                FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                        Unpooled.copiedBuffer(request.uri(), CharsetUtil.US_ASCII));
+                HttpUtil.setContentLength(response, response.content().readableBytes());
+                if (HttpUtil.isKeepAlive(request)) {
+                    ctx.writeAndFlush(response);
+                } else {
+                    response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+                    ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+                }
+                request.release();
+            }
+            requests.clear();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import io.netty.channel.ChannelPromise;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http2.Http2TestUtil.Http2Runnable;
@@ -429,8 +430,11 @@ public class DataCompressionHttp2Test {
                         new DefaultHttp2RemoteFlowController(clientConnection));
                 clientConnection.local().flowController(
                         new DefaultHttp2LocalFlowController(clientConnection).frameWriter(frameWriter));
+                // zstd is not part of the defaults, so enable it explicitly to round trip it.
                 clientEncoder = new CompressorHttp2ConnectionEncoder(
-                        new DefaultHttp2ConnectionEncoder(clientConnection, frameWriter));
+                        new DefaultHttp2ConnectionEncoder(clientConnection, frameWriter),
+                        StandardCompressionOptions.brotli(), StandardCompressionOptions.gzip(),
+                        StandardCompressionOptions.deflate(), StandardCompressionOptions.zstd());
 
                 Http2ConnectionDecoder decoder =
                         new DefaultHttp2ConnectionDecoder(clientConnection, clientEncoder,
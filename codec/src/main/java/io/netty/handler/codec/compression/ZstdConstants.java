@@ -36,5 +36,10 @@ final class ZstdConstants {
      */
     static final int DEFAULT_BLOCK_SIZE = 1 << 16;  // 64 KB
 
+    /**
+     * Default maximum size of the buffers which are allocated for decompressed data
+     */
+    static final int DEFAULT_MAX_ALLOCATION_SIZE = 1 << 22;  // 4 MB
+
     private ZstdConstants() { }
 }
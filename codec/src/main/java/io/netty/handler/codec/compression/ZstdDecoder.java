@@ -0,0 +1,204 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.github.luben.zstd.ZstdDirectBufferDecompressingStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.internal.ObjectUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static io.netty.handler.codec.compression.ZstdConstants.DEFAULT_MAX_ALLOCATION_SIZE;
+
+/**
+ * Decompresses a {@link ByteBuf} encoded with the Zstandard format, for example by {@link ZstdEncoder}.
+ * <p>
+ * The data is decompressed as it is received, so a frame may be split across any number of buffers and any number of
+ * frames may follow each other. Direct buffers are passed to zstd as they are, while the content of heap buffers needs
+ * to be copied to direct memory first.
+ *
+ * See <a href="https://facebook.github.io/zstd">Zstandard</a>.
+ */
+public final class ZstdDecoder extends ByteToMessageDecoder {
+
+    static {
+        try {
+            Zstd.ensureAvailability();
+        } catch (Throwable throwable) {
+            throw new ExceptionInInitializerError(throwable);
+        }
+    }
+
+    private static final int MIN_ALLOCATION_SIZE = 4096;
+
+    private final int maximumAllocationSize;
+    private DecompressingStream stream;
+    private boolean corrupted;
+
+    /**
+     * Creates a new Zstd decoder, which allocates buffers of at most 4 MB for the decompressed data.
+     */
+    public ZstdDecoder() {
+        this(DEFAULT_MAX_ALLOCATION_SIZE);
+    }
+
+    /**
+     * Creates a new Zstd decoder.
+     *  @param  maximumAllocationSize
+     *            specifies the maximum size of the buffers which are allocated for the decompressed data. If more
+     *            data is decompressed at once, it is split across several buffers.
+     */
+    public ZstdDecoder(int maximumAllocationSize) {
+        this.maximumAllocationSize = ObjectUtil.checkPositive(maximumAllocationSize, "maximumAllocationSize");
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (corrupted) {
+            in.skipBytes(in.readableBytes());
+            return;
+        }
+
+        final int compressedLength = in.readableBytes();
+        if (compressedLength == 0) {
+            return;
+        }
+
+        ByteBuf input = in;
+        if (!in.isDirect() || in.nioBufferCount() != 1) {
+            // zstd can only access the memory of direct buffers.
+            input = ctx.alloc().directBuffer(compressedLength);
+            input.writeBytes(in, in.readerIndex(), compressedLength);
+        }
+
+        ByteBuf decompressed = null;
+        try {
+            DecompressingStream stream = this.stream;
+            if (stream == null) {
+                this.stream = stream = new DecompressingStream();
+            }
+            ByteBuffer source = input.internalNioBuffer(input.readerIndex(), compressedLength);
+            stream.next = source;
+
+            int allocationSize = Math.min(maximumAllocationSize,
+                    Math.max(MIN_ALLOCATION_SIZE, compressedLength << 1));
+            for (;;) {
+                if (decompressed == null) {
+                    decompressed = ctx.alloc().directBuffer(allocationSize);
+                }
+                final int idx = decompressed.writerIndex();
+                final int produced = stream.read(decompressed.internalNioBuffer(idx, decompressed.writableBytes()));
+                decompressed.writerIndex(idx + produced);
+
+                if (!decompressed.isWritable()) {
+                    // There may be more data to flush, continue with a new buffer.
+                    out.add(decompressed);
+                    decompressed = null;
+                    allocationSize = Math.min(maximumAllocationSize, allocationSize << 1);
+                } else if (!stream.hasRemaining()) {
+                    // The last frame is complete and there is no data left.
+                    destroyStream();
+                    break;
+                } else if (stream.next == null && !source.hasRemaining()) {
+                    // All the data was consumed by zstd, wait for more.
+                    break;
+                }
+            }
+            in.skipBytes(compressedLength);
+
+            if (decompressed.isReadable()) {
+                out.add(decompressed);
+            } else {
+                decompressed.release();
+            }
+            decompressed = null;
+        } catch (IOException e) {
+            corrupted = true;
+            destroyStream();
+            throw new DecompressionException(e);
+        } finally {
+            if (decompressed != null) {
+                decompressed.release();
+            }
+            if (input != in) {
+                input.release();
+            }
+        }
+    }
+
+    private void destroyStream() {
+        DecompressingStream stream = this.stream;
+        if (stream != null) {
+            this.stream = null;
+            try {
+                stream.close();
+            } catch (IOException ignore) {
+                // Only thrown if the stream was closed before.
+            }
+        }
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        try {
+            destroyStream();
+        } finally {
+            super.handlerRemoved0(ctx);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        try {
+            destroyStream();
+        } finally {
+            super.channelInactive(ctx);
+        }
+    }
+
+    /**
+     * Obtains the data to decompress through {@link #refill(ByteBuffer)}, which is called whenever the data that
+     * was handed over before was consumed completely.
+     */
+    private static final class DecompressingStream extends ZstdDirectBufferDecompressingStream {
+        private final ByteBuffer empty;
+        // The data to hand over on the next refill, or null if it was handed over already.
+        ByteBuffer next;
+
+        DecompressingStream() {
+            this(ByteBuffer.allocateDirect(0));
+        }
+
+        private DecompressingStream(ByteBuffer empty) {
+            super(empty);
+            this.empty = empty;
+        }
+
+        @Override
+        protected ByteBuffer refill(ByteBuffer toRefill) {
+            ByteBuffer next = this.next;
+            if (next == null) {
+                return empty;
+            }
+            this.next = null;
+            return next;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ZstdDecoderTest extends AbstractDecoderTest {
+
+    public ZstdDecoderTest() throws Exception {
+    }
+
+    @Override
+    protected EmbeddedChannel createChannel() {
+        return new EmbeddedChannel(new ZstdDecoder());
+    }
+
+    @Test
+    public void testDecompressionOfMultipleFrames() {
+        byte[] frame1 = com.github.luben.zstd.Zstd.compress(BYTES_SMALL);
+        byte[] frame2 = com.github.luben.zstd.Zstd.compress(BYTES_LARGE);
+
+        // Write the first frame on its own, so it ends exactly at the end of the data.
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(frame1)));
+        ByteBuf decompressed = readDecompressed(channel);
+        assertEquals(WRAPPED_BYTES_SMALL.duplicate(), decompressed);
+        decompressed.release();
+
+        // Write both frames at once.
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(frame2, frame1)));
+        decompressed = readDecompressed(channel);
+        assertEquals(Unpooled.wrappedBuffer(BYTES_LARGE, BYTES_SMALL), decompressed);
+        decompressed.release();
+    }
+
+    @Test
+    public void testDecompressionIntoMultipleBuffers() {
+        channel.finishAndReleaseAll();
+        channel = new EmbeddedChannel(new ZstdDecoder(4096));
+
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(compressedBytesLarge)));
+        int buffers = 0;
+        for (;;) {
+            ByteBuf msg = channel.readInbound();
+            if (msg == null) {
+                break;
+            }
+            assertTrue(msg.capacity() <= 4096);
+            buffers++;
+            msg.release();
+        }
+        assertEquals(BYTES_LARGE.length / 4096, buffers);
+    }
+
+    @Test
+    public void testIncompleteFrame() {
+        assertFalse(channel.writeInbound(Unpooled.wrappedBuffer(compressedBytesSmall, 0,
+                compressedBytesSmall.length - 1)));
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void testCorruptedData() {
+        final ByteBuf in = Unpooled.buffer();
+        in.writeInt(0x12345678); // random value, which is not a valid magic number
+        in.writeLong(0);
+
+        assertThrows(DecompressionException.class, new Executable() {
+            @Override
+            public void execute() {
+                channel.writeInbound(in);
+            }
+        });
+
+        // Data after the corruption is skipped.
+        assertFalse(channel.writeInbound(Unpooled.wrappedBuffer(compressedBytesSmall)));
+    }
+
+    @Override
+    protected byte[] compress(byte[] data) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ZstdOutputStream zstdOs = new ZstdOutputStream(os);
+        zstdOs.write(data);
+        zstdOs.close();
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,645 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.internal.MathUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static io.netty.util.internal.ObjectUtil.checkInRange;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.StringUtil.simpleClassName;
+
+/**
+ * A {@link Timer} optimized for large numbers of approximated timeouts which are mostly cancelled before they expire,
+ * like I/O and request timeouts.
+ *
+ * <h3>Differences to {@link HashedWheelTimer}</h3>
+ *
+ * Like {@link HashedWheelTimer}, this timer checks for expired {@link TimerTask}s once per tick, and has the same
+ * accuracy. But it differs in the following points:
+ * <ul>
+ *   <li>It uses a hierarchy of wheels, each of which covers {@code ticksPerWheel} times the time span of the previous
+ *   one. A timeout is added to the wheel which matches its deadline, and moved to the lower wheels as its deadline
+ *   comes closer. So a timeout far in the future is only looked at a few times, instead of on every round of a single
+ *   wheel.</li>
+ *   <li>Timeouts are added to and removed from the wheels right away by the thread that calls
+ *   {@link #newTimeout(TimerTask, long, TimeUnit)} or {@link Timeout#cancel()}, instead of going through queues that
+ *   are drained by the worker thread on the next tick. A cancelled timeout is released at once.</li>
+ *   <li>The wheels are split into shards, which are picked by the calling thread, so threads that add and cancel
+ *   timeouts at the same time rarely contend with each other.</li>
+ *   <li>The expired {@link TimerTask}s may be executed by an {@link EventExecutorGroup}, so the worker thread only
+ *   needs to find them.</li>
+ * </ul>
+ *
+ * <h3>Do not create many instances.</h3>
+ *
+ * {@link HierarchicalWheelTimer} creates a new thread whenever it is instantiated and started. Therefore, you should
+ * make sure to create only one instance and share it across your application.
+ */
+public class HierarchicalWheelTimer implements Timer {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HierarchicalWheelTimer.class);
+
+    private static final long MILLISECOND_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int DEFAULT_TICKS_PER_WHEEL = 64;
+    private static final int MAX_SHARDS = 64;
+    private static final ResourceLeakDetector<HierarchicalWheelTimer> leakDetector =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(HierarchicalWheelTimer.class, 1);
+
+    private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimer> WORKER_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimer.class, "workerState");
+
+    private static final int WORKER_STATE_INIT = 0;
+    private static final int WORKER_STATE_STARTED = 1;
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+    @SuppressWarnings({ "unused", "FieldMayBeFinal" })
+    private volatile int workerState;
+
+    private final ResourceLeakTracker<HierarchicalWheelTimer> leak;
+    private final Worker worker = new Worker();
+    private final Thread workerThread;
+    private final long tickDuration;
+    // The number of bits of a tick that select the bucket of a single wheel.
+    private final int wheelBits;
+    private final int wheelMask;
+    private final int wheels;
+    private final Shard[] shards;
+    private final long maxPendingTimeouts;
+    private final EventExecutorGroup taskExecutorGroup;
+    private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+
+    private volatile long startTime;
+
+    /**
+     * Creates a new timer with the default thread factory ({@link Executors#defaultThreadFactory()}), a tick
+     * duration of 100 milliseconds and 64 ticks per wheel.
+     */
+    public HierarchicalWheelTimer() {
+        this(Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a new timer with a tick duration of 100 milliseconds and 64 ticks per wheel.
+     *
+     * @param threadFactory a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated to
+     *                      finding the expired {@link TimerTask}s.
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory) {
+        this(threadFactory, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new timer with 64 ticks per wheel.
+     *
+     * @param threadFactory a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated to
+     *                      finding the expired {@link TimerTask}s.
+     * @param tickDuration  the duration between tick
+     * @param unit          the time unit of the {@code tickDuration}
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit) {
+        this(threadFactory, tickDuration, unit, DEFAULT_TICKS_PER_WHEEL, 0, null);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory      a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated
+     *                           to finding the expired {@link TimerTask}s.
+     * @param tickDuration       the duration between tick
+     * @param unit               the time unit of the {@code tickDuration}
+     * @param ticksPerWheel      the size of each wheel, it is rounded up to the next power of two.
+     * @param maxPendingTimeouts The maximum number of pending timeouts after which call to {@code newTimeout} will
+     *                           result in {@link RejectedExecutionException} being thrown. No maximum pending
+     *                           timeouts limit is assumed if this value is 0 or negative.
+     * @param taskExecutorGroup  the {@link EventExecutorGroup} which executes the expired {@link TimerTask}s, or
+     *                           {@code null} if they should be executed by the worker thread. The caller is
+     *                           responsible to shutdown the {@link EventExecutorGroup} once it is not needed anymore.
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel,
+                                  long maxPendingTimeouts, EventExecutorGroup taskExecutorGroup) {
+        checkNotNull(threadFactory, "threadFactory");
+        checkNotNull(unit, "unit");
+        checkPositive(tickDuration, "tickDuration");
+        checkInRange(ticksPerWheel, 2, 1 << 16, "ticksPerWheel");
+
+        wheelBits = Integer.numberOfTrailingZeros(MathUtil.findNextPositivePowerOfTwo(ticksPerWheel));
+        wheelMask = (1 << wheelBits) - 1;
+        // Ticks are non-negative longs, the last wheel covers all the bits that are left.
+        wheels = (62 / wheelBits) + 1;
+
+        long duration = unit.toNanos(tickDuration);
+        if (duration < MILLISECOND_NANOS) {
+            logger.warn("Configured tickDuration {} smaller than {}, using 1ms.", tickDuration, MILLISECOND_NANOS);
+            this.tickDuration = MILLISECOND_NANOS;
+        } else {
+            this.tickDuration = duration;
+        }
+
+        shards = new Shard[Math.min(MAX_SHARDS,
+                MathUtil.findNextPositivePowerOfTwo(NettyRuntime.availableProcessors()))];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+
+        this.maxPendingTimeouts = maxPendingTimeouts;
+        this.taskExecutorGroup = taskExecutorGroup;
+        workerThread = threadFactory.newThread(worker);
+        leak = !workerThread.isDaemon() ? leakDetector.track(this) : null;
+    }
+
+    /**
+     * Starts the background thread explicitly.  The background thread will start automatically on demand even if you
+     * did not call this method.
+     *
+     * @throws IllegalStateException if this timer has been {@linkplain #stop() stopped} already
+     */
+    public void start() {
+        switch (WORKER_STATE_UPDATER.get(this)) {
+            case WORKER_STATE_INIT:
+                if (WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            case WORKER_STATE_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+
+        // Wait until the startTime is initialized by the worker.
+        while (startTime == 0) {
+            try {
+                startTimeInitialized.await();
+            } catch (InterruptedException ignore) {
+                // Ignore - it will be ready very soon.
+            }
+        }
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException(
+                    HierarchicalWheelTimer.class.getSimpleName() + ".stop() cannot be called from " +
+                            TimerTask.class.getSimpleName());
+        }
+
+        if (!WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_STARTED, WORKER_STATE_SHUTDOWN)) {
+            // workerState can be 0 or 2 at this moment - let it always be 2.
+            if (WORKER_STATE_UPDATER.getAndSet(this, WORKER_STATE_SHUTDOWN) != WORKER_STATE_SHUTDOWN) {
+                closeLeak();
+            }
+            return Collections.emptySet();
+        }
+
+        try {
+            boolean interrupted = false;
+            while (workerThread.isAlive()) {
+                workerThread.interrupt();
+                try {
+                    workerThread.join(100);
+                } catch (InterruptedException ignored) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            closeLeak();
+        }
+
+        Set<Timeout> unprocessed = new HashSet<Timeout>();
+        for (Shard shard : shards) {
+            shard.clear(unprocessed);
+        }
+        return Collections.unmodifiableSet(unprocessed);
+    }
+
+    private void closeLeak() {
+        if (leak != null) {
+            boolean closed = leak.close(this);
+            assert closed;
+        }
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        checkNotNull(task, "task");
+        checkNotNull(unit, "unit");
+
+        if (maxPendingTimeouts > 0) {
+            long pendingTimeoutsCount = pendingTimeouts();
+            if (pendingTimeoutsCount >= maxPendingTimeouts) {
+                throw new RejectedExecutionException("Number of pending timeouts ("
+                        + pendingTimeoutsCount + ") is greater than or equal to maximum allowed pending "
+                        + "timeouts (" + maxPendingTimeouts + ")");
+            }
+        }
+
+        start();
+
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        // Guard against overflow.
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        Shard shard = shards[(int) Thread.currentThread().getId() & shards.length - 1];
+        WheelTimeout timeout = new WheelTimeout(this, shard, task, deadline);
+        shard.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of pending timeouts of this {@link Timer}.
+     */
+    public long pendingTimeouts() {
+        long pending = 0;
+        for (Shard shard : shards) {
+            pending += shard.pendingTimeouts;
+        }
+        return pending;
+    }
+
+    private void expire(WheelTimeout timeout) {
+        if (taskExecutorGroup == null) {
+            timeout.run();
+            return;
+        }
+        try {
+            taskExecutorGroup.next().execute(timeout);
+        } catch (Throwable t) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("An exception was thrown while submit " + TimerTask.class.getSimpleName()
+                        + " for execution.", t);
+            }
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final List<WheelTimeout> expired = new ArrayList<WheelTimeout>();
+        private long tick;
+
+        @Override
+        public void run() {
+            // Initialize the startTime.
+            startTime = System.nanoTime();
+            if (startTime == 0) {
+                // We use 0 as an indicator for the uninitialized value here, so make sure it's not 0 when initialized.
+                startTime = 1;
+            }
+
+            // Notify the other threads waiting for the initialization at start().
+            startTimeInitialized.countDown();
+
+            do {
+                final long deadline = waitForNextTick();
+                if (deadline > 0) {
+                    for (Shard shard : shards) {
+                        shard.advance(tick, expired);
+                        // Run the tasks without holding the lock of the shard, they may add new timeouts.
+                        for (int i = 0; i < expired.size(); i++) {
+                            expire(expired.get(i));
+                        }
+                        expired.clear();
+                    }
+                    tick++;
+                }
+            } while (WORKER_STATE_UPDATER.get(HierarchicalWheelTimer.this) == WORKER_STATE_STARTED);
+        }
+
+        /**
+         * calculate goal nanoTime from startTime and current tick number,
+         * then wait until that goal has been reached.
+         * @return Long.MIN_VALUE if received a shutdown request,
+         * current time otherwise (with Long.MIN_VALUE changed by +1)
+         */
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+
+            for (;;) {
+                final long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+
+                if (sleepTimeMs <= 0) {
+                    if (currentTime == Long.MIN_VALUE) {
+                        return -Long.MAX_VALUE;
+                    } else {
+                        return currentTime;
+                    }
+                }
+
+                // See https://github.com/netty/netty/issues/356
+                if (PlatformDependent.isWindows()) {
+                    sleepTimeMs = sleepTimeMs / 10 * 10;
+                    if (sleepTimeMs == 0) {
+                        sleepTimeMs = 1;
+                    }
+                }
+
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignored) {
+                    if (WORKER_STATE_UPDATER.get(HierarchicalWheelTimer.this) == WORKER_STATE_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A part of the timeouts with its own hierarchy of wheels, guarded by its own lock.
+     * <p>
+     * A timeout which expires at tick {@code t} is kept in the lowest wheel {@code w} for which {@code t} and the next
+     * tick to process only differ in the bits that select the bucket of wheel {@code w} or of a lower wheel, in the
+     * bucket which is selected by the bits of {@code t} for wheel {@code w}. Once the ticks reach the start of the
+     * time span of that bucket, all of its timeouts are moved to the lower wheels, until they end up in the lowest
+     * wheel and expire.
+     */
+    private final class Shard {
+        // The buckets of the wheels, created on demand.
+        private final WheelBucket[][] buckets = new WheelBucket[wheels][];
+        // The next tick the worker will process.
+        private long nextTick;
+        // Only written while holding the lock, so it can be read without one.
+        volatile long pendingTimeouts;
+
+        synchronized void add(WheelTimeout timeout) {
+            pendingTimeouts++;
+            schedule(timeout);
+        }
+
+        private void schedule(WheelTimeout timeout) {
+            long tick = Math.max(timeout.deadline / tickDuration, nextTick);
+            long diff = tick ^ nextTick;
+            int wheel = diff == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / wheelBits;
+            bucket(wheel, (int) (tick >>> wheel * wheelBits) & wheelMask).add(timeout);
+        }
+
+        private WheelBucket bucket(int wheel, int index) {
+            WheelBucket[] buckets = this.buckets[wheel];
+            if (buckets == null) {
+                buckets = new WheelBucket[wheelMask + 1];
+                for (int i = 0; i < buckets.length; i++) {
+                    buckets[i] = new WheelBucket();
+                }
+                this.buckets[wheel] = buckets;
+            }
+            return buckets[index];
+        }
+
+        synchronized void remove(WheelTimeout timeout) {
+            WheelBucket bucket = timeout.bucket;
+            // The bucket is null if the worker already took the timeout out of the wheel to expire it, but it lost
+            // the race with the cancellation and left the pending count to us.
+            if (bucket != null) {
+                bucket.remove(timeout);
+            }
+            pendingTimeouts--;
+        }
+
+        /**
+         * Processes the given tick, and adds the timeouts that expired to the given list.
+         */
+        synchronized void advance(long tick, List<WheelTimeout> expired) {
+            assert tick == nextTick;
+            // Find the highest wheel whose bucket starts at this tick.
+            int wheel = 0;
+            while (wheel + 1 < wheels && (tick & (1L << (wheel + 1) * wheelBits) - 1) == 0) {
+                wheel++;
+            }
+            // Move the timeouts to the lower wheels, starting with the highest one as its timeouts may end up in
+            // the bucket of the next one.
+            for (; wheel > 0; wheel--) {
+                WheelBucket[] buckets = this.buckets[wheel];
+                if (buckets == null) {
+                    continue;
+                }
+                WheelBucket bucket = buckets[(int) (tick >>> wheel * wheelBits) & wheelMask];
+                for (;;) {
+                    WheelTimeout timeout = bucket.poll();
+                    if (timeout == null) {
+                        break;
+                    }
+                    schedule(timeout);
+                }
+            }
+            WheelBucket[] buckets = this.buckets[0];
+            if (buckets != null) {
+                WheelBucket bucket = buckets[(int) tick & wheelMask];
+                for (;;) {
+                    WheelTimeout timeout = bucket.poll();
+                    if (timeout == null) {
+                        break;
+                    }
+                    assert timeout.deadline / tickDuration <= tick;
+                    if (timeout.compareAndSetState(WheelTimeout.ST_INIT, WheelTimeout.ST_EXPIRED)) {
+                        pendingTimeouts--;
+                        expired.add(timeout);
+                    }
+                }
+            }
+            nextTick = tick + 1;
+        }
+
+        synchronized void clear(Set<Timeout> unprocessed) {
+            for (WheelBucket[] buckets : this.buckets) {
+                if (buckets == null) {
+                    continue;
+                }
+                for (WheelBucket bucket : buckets) {
+                    for (;;) {
+                        WheelTimeout timeout = bucket.poll();
+                        if (timeout == null) {
+                            break;
+                        }
+                        unprocessed.add(timeout);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class WheelTimeout implements Timeout, Runnable {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+        private final HierarchicalWheelTimer timer;
+        private final Shard shard;
+        private final TimerTask task;
+        private final long deadline;
+
+        @SuppressWarnings({ "unused", "FieldMayBeFinal", "RedundantFieldInitialization" })
+        private volatile int state = ST_INIT;
+
+        // This will be used to chain timeouts in WheelBucket via a double-linked-list, guarded by the lock of the
+        // shard.
+        WheelTimeout next;
+        WheelTimeout prev;
+        WheelBucket bucket;
+
+        WheelTimeout(HierarchicalWheelTimer timer, Shard shard, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.shard = shard;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Timer timer() {
+            return timer;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!compareAndSetState(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            shard.remove(this);
+            return true;
+        }
+
+        boolean compareAndSetState(int expected, int state) {
+            return STATE_UPDATER.compareAndSet(this, expected, state);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("An exception was thrown by " + TimerTask.class.getSimpleName() + '.', t);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            final long currentTime = System.nanoTime();
+            long remaining = deadline - currentTime + timer.startTime;
+
+            StringBuilder buf = new StringBuilder(192)
+               .append(simpleClassName(this))
+               .append('(')
+               .append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining)
+                   .append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining)
+                   .append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+
+            return buf.append(", task: ")
+                      .append(task())
+                      .append(')')
+                      .toString();
+        }
+    }
+
+    /**
+     * Bucket that stores {@link WheelTimeout}s in a double-linked-list, so they can be removed in constant time.
+     */
+    private static final class WheelBucket {
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        void add(WheelTimeout timeout) {
+            assert timeout.bucket == null;
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(WheelTimeout timeout) {
+            WheelTimeout next = timeout.next;
+            WheelTimeout prev = timeout.prev;
+            if (prev == null) {
+                head = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                tail = prev;
+            } else {
+                next.prev = prev;
+            }
+            // null out prev, next and bucket to allow for GC.
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        WheelTimeout poll() {
+            WheelTimeout head = this.head;
+            if (head != null) {
+                remove(head);
+            }
+            return head;
+        }
+    }
+}
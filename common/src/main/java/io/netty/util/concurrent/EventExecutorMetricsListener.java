@@ -0,0 +1,51 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Receives measurements of the work done by a {@link SingleThreadEventExecutor}, see
+ * {@link SingleThreadEventExecutor#setMetricsListener(EventExecutorMetricsListener)}.
+ * <p>
+ * Except for {@link #wakeup()}, all methods are called by the thread of the executor, so implementations must be
+ * cheap and must never block.
+ */
+@UnstableApi
+public interface EventExecutorMetricsListener {
+
+    /**
+     * Called after the executor ran a batch of tasks from its task queue.
+     *
+     * @param queuedTasks the number of tasks that were pending when the executor started to run the batch.
+     * @param ranTasks    the number of tasks that were run.
+     * @param nanos       the time it took to run the tasks, in nanoseconds.
+     */
+    void tasksRan(int queuedTasks, int ranTasks, long nanos);
+
+    /**
+     * Called when a scheduled task is taken for execution.
+     *
+     * @param delayNanos the time that passed since the deadline of the task, in nanoseconds.
+     */
+    void scheduledTaskDelayed(long delayNanos);
+
+    /**
+     * Called when a thread other than the one of the executor wakes up the executor to run a task. This method may be
+     * called by any thread.
+     */
+    void wakeup();
+}
@@ -95,6 +95,15 @@ public class FastThreadLocalThread extends Thread {
         this.threadLocalMap = threadLocalMap;
     }
 
+    /**
+     * Returns the NUMA node this thread is bound to or {@code -1} if it is not bound to a node. Allocators may use
+     * this to share memory only between threads of the same node.
+     */
+    @UnstableApi
+    public int numaNode() {
+        return -1;
+    }
+
     /**
      * Returns {@code true} if {@link FastThreadLocal#removeAll()} will be called once {@link #run()} completes.
      */
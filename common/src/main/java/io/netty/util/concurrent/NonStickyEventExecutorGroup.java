@@ -41,6 +41,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public final class NonStickyEventExecutorGroup implements EventExecutorGroup {
     private final EventExecutorGroup group;
     private final int maxTaskExecutePerRun;
+    private final boolean workStealing;
 
     /**
      * Creates a new instance. Be aware that the given {@link EventExecutorGroup} <strong>MUST NOT</strong> contain
@@ -55,8 +56,26 @@ public final class NonStickyEventExecutorGroup implements EventExecutorGroup {
      * any {@link OrderedEventExecutor}s.
      */
     public NonStickyEventExecutorGroup(EventExecutorGroup group, int maxTaskExecutePerRun) {
+        this(group, maxTaskExecutePerRun, false);
+    }
+
+    /**
+     * Creates a new instance. Be aware that the given {@link EventExecutorGroup} <strong>MUST NOT</strong> contain
+     * any {@link OrderedEventExecutor}s.
+     *
+     * @param group                the {@link EventExecutorGroup} which runs the tasks.
+     * @param maxTaskExecutePerRun the maximum number of tasks that are run before the executor is submitted again.
+     * @param workStealing         {@code true} if each time the tasks are submitted again
+     *                             {@link EventExecutorGroup#next()} of the given group should pick the
+     *                             {@link EventExecutor} to run them, so idle executors take over the tasks of busy
+     *                             ones. This works best if the group chooses its executors by their load.
+     *                             {@code false} if the tasks should always be submitted to the same
+     *                             {@link EventExecutor}.
+     */
+    public NonStickyEventExecutorGroup(EventExecutorGroup group, int maxTaskExecutePerRun, boolean workStealing) {
         this.group = verify(group);
         this.maxTaskExecutePerRun = ObjectUtil.checkPositive(maxTaskExecutePerRun, "maxTaskExecutePerRun");
+        this.workStealing = workStealing;
     }
 
     private static EventExecutorGroup verify(EventExecutorGroup group) {
@@ -72,7 +91,7 @@ public final class NonStickyEventExecutorGroup implements EventExecutorGroup {
     }
 
     private NonStickyOrderedEventExecutor newExecutor(EventExecutor executor) {
-        return new NonStickyOrderedEventExecutor(executor, maxTaskExecutePerRun);
+        return new NonStickyOrderedEventExecutor(executor, workStealing ? group : null, maxTaskExecutePerRun);
     }
 
     @Override
@@ -214,6 +233,8 @@ public final class NonStickyEventExecutorGroup implements EventExecutorGroup {
     private static final class NonStickyOrderedEventExecutor extends AbstractEventExecutor
             implements Runnable, OrderedEventExecutor {
         private final EventExecutor executor;
+        // The group to pick the executor from each time the tasks are submitted or null if always using executor.
+        private final EventExecutorGroup stealingGroup;
         private final Queue<Runnable> tasks = PlatformDependent.newMpscQueue();
 
         private static final int NONE = 0;
@@ -223,12 +244,18 @@ public final class NonStickyEventExecutorGroup implements EventExecutorGroup {
         private final AtomicInteger state = new AtomicInteger();
         private final int maxTaskExecutePerRun;
 
-        NonStickyOrderedEventExecutor(EventExecutor executor, int maxTaskExecutePerRun) {
+        NonStickyOrderedEventExecutor(EventExecutor executor, EventExecutorGroup stealingGroup,
+                                      int maxTaskExecutePerRun) {
             super(executor);
             this.executor = executor;
+            this.stealingGroup = stealingGroup;
             this.maxTaskExecutePerRun = maxTaskExecutePerRun;
         }
 
+        private EventExecutor nextExecutor() {
+            return stealingGroup == null ? executor : stealingGroup.next();
+        }
+
         @Override
         public void run() {
             if (!state.compareAndSet(SUBMITTED, RUNNING)) {
@@ -248,7 +275,7 @@ public final class NonStickyEventExecutorGroup implements EventExecutorGroup {
                     if (i == maxTaskExecutePerRun) {
                         try {
                             state.set(SUBMITTED);
-                            executor.execute(this);
+                            nextExecutor().execute(this);
                             return; // done
                         } catch (Throwable ignore) {
                             // Reset the state back to running as we will keep on executing tasks.
@@ -335,7 +362,7 @@ public final class NonStickyEventExecutorGroup implements EventExecutorGroup {
             if (state.compareAndSet(NONE, SUBMITTED)) {
                 // Actually it could happen that the runnable was picked up in between but we not care to much and just
                 // execute ourself. At worst this will be a NOOP when run() is called.
-                executor.execute(this);
+                nextExecutor().execute(this);
             }
         }
     }
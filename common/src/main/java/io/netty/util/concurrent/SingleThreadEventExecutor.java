@@ -91,6 +91,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
     private long lastExecutionTime;
 
+    private volatile EventExecutorMetricsListener metricsListener;
+
     @SuppressWarnings({ "FieldMayBeFinal", "unused" })
     private volatile int state = ST_NOT_STARTED;
 
@@ -265,7 +267,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
                     // scheduled tasks are never executed if there is always one task in the taskQueue.
                     // This is for example true for the read task of OIO Transport
                     // See https://github.com/netty/netty/issues/1614
-                    fetchFromScheduledTaskQueue();
+                    fetchFromScheduledTaskQueue(metricsListener);
                     task = taskQueue.poll();
                 }
 
@@ -276,13 +278,13 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         }
     }
 
-    private boolean fetchFromScheduledTaskQueue() {
+    private boolean fetchFromScheduledTaskQueue(EventExecutorMetricsListener metricsListener) {
         if (scheduledTaskQueue == null || scheduledTaskQueue.isEmpty()) {
             return true;
         }
         long nanoTime = AbstractScheduledEventExecutor.nanoTime();
         for (;;) {
-            Runnable scheduledTask = pollScheduledTask(nanoTime);
+            Runnable scheduledTask = pollScheduledTask(nanoTime, metricsListener);
             if (scheduledTask == null) {
                 return true;
             }
@@ -295,21 +297,40 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
     }
 
     /**
-     * @return {@code true} if at least one scheduled task was executed.
+     * @return the number of scheduled tasks that were executed.
      */
-    private boolean executeExpiredScheduledTasks() {
+    private int executeExpiredScheduledTasks(EventExecutorMetricsListener metricsListener) {
         if (scheduledTaskQueue == null || scheduledTaskQueue.isEmpty()) {
-            return false;
+            return 0;
         }
         long nanoTime = AbstractScheduledEventExecutor.nanoTime();
-        Runnable scheduledTask = pollScheduledTask(nanoTime);
+        Runnable scheduledTask = pollScheduledTask(nanoTime, metricsListener);
         if (scheduledTask == null) {
-            return false;
+            return 0;
         }
+        int ranTasks = 0;
         do {
             safeExecute(scheduledTask);
-        } while ((scheduledTask = pollScheduledTask(nanoTime)) != null);
-        return true;
+            ranTasks++;
+        } while ((scheduledTask = pollScheduledTask(nanoTime, metricsListener)) != null);
+        return ranTasks;
+    }
+
+    private Runnable pollScheduledTask(long nanoTime, EventExecutorMetricsListener metricsListener) {
+        if (metricsListener == null) {
+            return pollScheduledTask(nanoTime);
+        }
+        ScheduledFutureTask<?> scheduledTask = peekScheduledTask();
+        if (scheduledTask == null) {
+            return null;
+        }
+        // Take the deadline before the task is polled, as that resets it.
+        long deadlineNanos = scheduledTask.deadlineNanos();
+        if (pollScheduledTask(nanoTime) == null) {
+            return null;
+        }
+        metricsListener.scheduledTaskDelayed(nanoTime - deadlineNanos);
+        return scheduledTask;
     }
 
     /**
@@ -367,21 +388,25 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      */
     protected boolean runAllTasks() {
         assert inEventLoop();
+        final EventExecutorMetricsListener metricsListener = this.metricsListener;
+        final int queuedTasks = metricsListener != null ? pendingTasks() : 0;
+        final long startTime = metricsListener != null ? ScheduledFutureTask.nanoTime() : 0;
         boolean fetchedAll;
-        boolean ranAtLeastOne = false;
+        int ranTasks = 0;
 
         do {
-            fetchedAll = fetchFromScheduledTaskQueue();
-            if (runAllTasksFrom(taskQueue)) {
-                ranAtLeastOne = true;
-            }
+            fetchedAll = fetchFromScheduledTaskQueue(metricsListener);
+            ranTasks += runTasksFrom(taskQueue);
         } while (!fetchedAll); // keep on processing until we fetched all scheduled tasks.
 
-        if (ranAtLeastOne) {
+        if (ranTasks > 0) {
             lastExecutionTime = ScheduledFutureTask.nanoTime();
         }
         afterRunningAllTasks();
-        return ranAtLeastOne;
+        if (metricsListener != null) {
+            metricsListener.tasksRan(queuedTasks, ranTasks, ScheduledFutureTask.nanoTime() - startTime);
+        }
+        return ranTasks > 0;
     }
 
     /**
@@ -394,18 +419,26 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      */
     protected final boolean runScheduledAndExecutorTasks(final int maxDrainAttempts) {
         assert inEventLoop();
-        boolean ranAtLeastOneTask;
+        final EventExecutorMetricsListener metricsListener = this.metricsListener;
+        final int queuedTasks = metricsListener != null ? pendingTasks() : 0;
+        final long startTime = metricsListener != null ? ScheduledFutureTask.nanoTime() : 0;
+        int ranTasks = 0;
+        int ranTasksInAttempt;
         int drainAttempt = 0;
         do {
             // We must run the taskQueue tasks first, because the scheduled tasks from outside the EventLoop are queued
             // here because the taskQueue is thread safe and the scheduledTaskQueue is not thread safe.
-            ranAtLeastOneTask = runExistingTasksFrom(taskQueue) | executeExpiredScheduledTasks();
-        } while (ranAtLeastOneTask && ++drainAttempt < maxDrainAttempts);
+            ranTasksInAttempt = runExistingTasksFrom(taskQueue) + executeExpiredScheduledTasks(metricsListener);
+            ranTasks += ranTasksInAttempt;
+        } while (ranTasksInAttempt > 0 && ++drainAttempt < maxDrainAttempts);
 
         if (drainAttempt > 0) {
             lastExecutionTime = ScheduledFutureTask.nanoTime();
         }
         afterRunningAllTasks();
+        if (metricsListener != null) {
+            metricsListener.tasksRan(queuedTasks, ranTasks, ScheduledFutureTask.nanoTime() - startTime);
+        }
 
         return drainAttempt > 0;
     }
@@ -418,37 +451,41 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * @return {@code true} if at least one task was executed.
      */
     protected final boolean runAllTasksFrom(Queue<Runnable> taskQueue) {
-        Runnable task = pollTaskFrom(taskQueue);
-        if (task == null) {
-            return false;
-        }
+        return runTasksFrom(taskQueue) > 0;
+    }
+
+    private static int runTasksFrom(Queue<Runnable> taskQueue) {
+        int ranTasks = 0;
         for (;;) {
-            safeExecute(task);
-            task = pollTaskFrom(taskQueue);
+            Runnable task = pollTaskFrom(taskQueue);
             if (task == null) {
-                return true;
+                return ranTasks;
             }
+            safeExecute(task);
+            ranTasks++;
         }
     }
 
     /**
      * What ever tasks are present in {@code taskQueue} when this method is invoked will be {@link Runnable#run()}.
      * @param taskQueue the task queue to drain.
-     * @return {@code true} if at least {@link Runnable#run()} was called.
+     * @return the number of times {@link Runnable#run()} was called.
      */
-    private boolean runExistingTasksFrom(Queue<Runnable> taskQueue) {
+    private int runExistingTasksFrom(Queue<Runnable> taskQueue) {
         Runnable task = pollTaskFrom(taskQueue);
         if (task == null) {
-            return false;
+            return 0;
         }
         int remaining = Math.min(maxPendingTasks, taskQueue.size());
+        int ranTasks = 1;
         safeExecute(task);
         // Use taskQueue.poll() directly rather than pollTaskFrom() since the latter may
         // silently consume more than one item from the queue (skips over WAKEUP_TASK instances)
         while (remaining-- > 0 && (task = taskQueue.poll()) != null) {
             safeExecute(task);
+            ranTasks++;
         }
-        return true;
+        return ranTasks;
     }
 
     /**
@@ -456,10 +493,16 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * the tasks in the task queue and returns if it ran longer than {@code timeoutNanos}.
      */
     protected boolean runAllTasks(long timeoutNanos) {
-        fetchFromScheduledTaskQueue();
+        final EventExecutorMetricsListener metricsListener = this.metricsListener;
+        final int queuedTasks = metricsListener != null ? pendingTasks() : 0;
+        final long startTime = metricsListener != null ? ScheduledFutureTask.nanoTime() : 0;
+        fetchFromScheduledTaskQueue(metricsListener);
         Runnable task = pollTask();
         if (task == null) {
             afterRunningAllTasks();
+            if (metricsListener != null) {
+                metricsListener.tasksRan(queuedTasks, 0, ScheduledFutureTask.nanoTime() - startTime);
+            }
             return false;
         }
 
@@ -489,6 +532,9 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
         afterRunningAllTasks();
         this.lastExecutionTime = lastExecutionTime;
+        if (metricsListener != null) {
+            metricsListener.tasksRan(queuedTasks, (int) runTasks, ScheduledFutureTask.nanoTime() - startTime);
+        }
         return true;
     }
 
@@ -550,10 +596,44 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         if (!inEventLoop) {
             // Use offer as we actually only need this to unblock the thread and if offer fails we do not care as there
             // is already something in the queue.
-            taskQueue.offer(WAKEUP_TASK);
+            if (taskQueue.offer(WAKEUP_TASK)) {
+                wokenUp();
+            }
+        }
+    }
+
+    /**
+     * Must be called by {@link #wakeup(boolean)} implementations when they actually wake up the thread of the
+     * executor, so it is reported to the {@link EventExecutorMetricsListener}.
+     */
+    protected final void wokenUp() {
+        EventExecutorMetricsListener metricsListener = this.metricsListener;
+        if (metricsListener != null) {
+            metricsListener.wakeup();
         }
     }
 
+    /**
+     * Returns the {@link EventExecutorMetricsListener} of this executor, or {@code null} if none was set.
+     */
+    @UnstableApi
+    public final EventExecutorMetricsListener metricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets the {@link EventExecutorMetricsListener} which receives measurements of the tasks run by this executor.
+     * Use {@code null} to stop collecting the measurements, which is the default. The listener is picked up the next
+     * time the executor runs its tasks.
+     * <p>
+     * Only executors that run their tasks via {@link #runAllTasks()}, {@link #runAllTasks(long)} or
+     * {@link #runScheduledAndExecutorTasks(int)} report them, like the I/O event loops of the transports.
+     */
+    @UnstableApi
+    public void setMetricsListener(EventExecutorMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
     @Override
     public boolean inEventLoop(Thread thread) {
         return thread == this.thread;
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EventExecutorGroup} for handlers which block, like handlers which call a database. Each call of
+ * {@link #next()} returns a new {@link OrderedEventExecutor}, so when used via
+ * {@code pipeline.addLast(group, handler)} the events of each channel are processed in order, one at a time, while the
+ * events of different channels are processed concurrently without a limit on the number of channels that block at the
+ * same time.
+ * <p>
+ * The tasks run on virtual threads when running on Java 21 or later and on a cached pool of platform threads
+ * otherwise. The threads are plain {@link Thread}s, not {@link FastThreadLocalThread}s, so BlockHound allows them to
+ * block. Like {@link NonStickyEventExecutorGroup}, the returned executors do not support scheduling tasks.
+ */
+@UnstableApi
+public final class VirtualThreadEventExecutorGroup extends AbstractEventExecutorGroup {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(
+            VirtualThreadEventExecutorGroup.class);
+
+    private final ThreadPerTaskEventExecutor executor;
+    private final NonStickyEventExecutorGroup group;
+
+    /**
+     * Creates a new instance whose threads are named {@code virtualThreadEventExecutorGroup-<n>}.
+     */
+    public VirtualThreadEventExecutorGroup() {
+        this("virtualThreadEventExecutorGroup");
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param threadName the prefix of the names of the threads.
+     */
+    public VirtualThreadEventExecutorGroup(String threadName) {
+        this(threadName, 1024);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param threadName           the prefix of the names of the threads.
+     * @param maxTaskExecutePerRun the maximum number of tasks of one {@link OrderedEventExecutor} that are run on a
+     *                             thread before the remaining ones are handed over to a new thread.
+     */
+    public VirtualThreadEventExecutorGroup(String threadName, int maxTaskExecutePerRun) {
+        ObjectUtil.checkNotNull(threadName, "threadName");
+        executor = new ThreadPerTaskEventExecutor(this, threadName);
+        group = new NonStickyEventExecutorGroup(executor, maxTaskExecutePerRun);
+    }
+
+    /**
+     * Returns {@code true} if the tasks run on virtual threads, {@code false} if they run on platform threads.
+     */
+    public boolean isVirtual() {
+        return executor.virtual;
+    }
+
+    /**
+     * Returns a new {@link OrderedEventExecutor}.
+     */
+    @Override
+    public EventExecutor next() {
+        return group.next();
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return Collections.<EventExecutor>singletonList(executor).iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return executor.isShuttingDown();
+    }
+
+    /**
+     * Stops accepting new tasks. The returned {@link Future} is notified once all tasks completed, the quiet period
+     * and the timeout are not used.
+     */
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        return executor.shutdownGracefully(quietPeriod, timeout, unit);
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return executor.terminationFuture();
+    }
+
+    @Override
+    @Deprecated
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Returns a {@link ThreadFactory} which creates virtual threads or {@code null} if they are not supported.
+     */
+    private static ThreadFactory newVirtualThreadFactory(String threadName) {
+        if (PlatformDependent.javaVersion() < 21) {
+            return null;
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadName + '-', 0L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Throwable cause) {
+            logger.debug("Virtual threads are not available, using platform threads", cause);
+            return null;
+        }
+    }
+
+    /**
+     * An unordered {@link EventExecutor} which runs every task on its own thread.
+     */
+    private static final class ThreadPerTaskEventExecutor extends AbstractEventExecutor {
+        private final boolean virtual;
+        private final ThreadFactory virtualThreadFactory;
+        private final ThreadPoolExecutor platformThreads;
+        private final AtomicInteger runningTasks = new AtomicInteger();
+        private final Promise<?> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+        private volatile boolean shutdown;
+
+        ThreadPerTaskEventExecutor(EventExecutorGroup parent, final String threadName) {
+            super(parent);
+            virtualThreadFactory = newVirtualThreadFactory(threadName);
+            virtual = virtualThreadFactory != null;
+            if (virtual) {
+                platformThreads = null;
+            } else {
+                platformThreads = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                        new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger nextId = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, threadName + '-' + nextId.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            ObjectUtil.checkNotNull(task, "task");
+            runningTasks.incrementAndGet();
+            if (shutdown) {
+                taskDone();
+                throw new RejectedExecutionException("executor shut down");
+            }
+            Runnable wrapped = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        taskDone();
+                    }
+                }
+            };
+            try {
+                if (virtual) {
+                    virtualThreadFactory.newThread(wrapped).start();
+                } else {
+                    platformThreads.execute(wrapped);
+                }
+            } catch (RuntimeException e) {
+                taskDone();
+                throw e;
+            }
+        }
+
+        private void taskDone() {
+            if (runningTasks.decrementAndGet() == 0 && shutdown) {
+                terminate();
+            }
+        }
+
+        private void terminate() {
+            if (terminationFuture.trySuccess(null) && platformThreads != null) {
+                platformThreads.shutdown();
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return false;
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return shutdown;
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            shutdown = true;
+            if (runningTasks.get() == 0) {
+                terminate();
+            }
+            return terminationFuture;
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return terminationFuture;
+        }
+
+        @Override
+        @Deprecated
+        public void shutdown() {
+            shutdownGracefully();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return terminationFuture.isDone();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return terminationFuture.await(timeout, unit);
+        }
+    }
+}
@@ -104,6 +104,11 @@ class Hidden {
                     "io.netty.util.concurrent.SingleThreadEventExecutor",
                     "addTask");
 
+            // Handing a task over to a platform thread of the pool may need to take the lock of the pool.
+            builder.allowBlockingCallsInside(
+                    "io.netty.util.concurrent.VirtualThreadEventExecutorGroup$ThreadPerTaskEventExecutor",
+                    "execute");
+
             builder.allowBlockingCallsInside(
                     "io.netty.handler.ssl.ReferenceCountedOpenSslClientContext$ExtendedTrustManagerVerifyCallback",
                     "verify");
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class HierarchicalWheelTimerTest {
+
+    private static HierarchicalWheelTimer newTimer(int ticksPerWheel, long maxPendingTimeouts,
+                                                   EventExecutorGroup group) {
+        return new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 1, TimeUnit.MILLISECONDS,
+                ticksPerWheel, maxPendingTimeouts, group);
+    }
+
+    @Test
+    public void testScheduleTimeoutShouldNotRunBeforeDelay() throws InterruptedException {
+        final Timer timer = new HierarchicalWheelTimer();
+        final CountDownLatch barrier = new CountDownLatch(1);
+        final Timeout timeout = timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                fail("This should not have run");
+                barrier.countDown();
+            }
+        }, 10, TimeUnit.SECONDS);
+        assertFalse(barrier.await(3, TimeUnit.SECONDS));
+        assertFalse(timeout.isExpired(), "timer should not expire");
+        timer.stop();
+    }
+
+    @Test
+    @org.junit.jupiter.api.Timeout(value = 10000, unit = TimeUnit.MILLISECONDS)
+    public void testTimeoutsMovedThroughWheels() throws InterruptedException {
+        // With 4 ticks per wheel most of the timeouts start in a higher wheel and need to move down.
+        final HierarchicalWheelTimer timer = newTimer(4, 0, null);
+        final int count = 200;
+        final CountDownLatch latch = new CountDownLatch(count);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        for (int i = 0; i < count; i++) {
+            final long delay = i * 7L % 500;
+            final long start = System.nanoTime();
+            timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    if (elapsed < delay) {
+                        failure.set("expired after " + elapsed + "ms instead of " + delay + "ms");
+                    }
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        latch.await();
+        assertNull(failure.get());
+        assertEquals(0, timer.pendingTimeouts());
+        timer.stop();
+    }
+
+    @Test
+    public void testCancelReleasesTimeoutImmediately() {
+        final HierarchicalWheelTimer timer = newTimer(8, 0, null);
+        List<Timeout> timeouts = new ArrayList<Timeout>();
+        for (int i = 0; i < 10; i++) {
+            timeouts.add(timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    fail("This should not have run");
+                }
+            }, 1 + i, TimeUnit.HOURS));
+        }
+        assertEquals(10, timer.pendingTimeouts());
+        for (Timeout timeout : timeouts) {
+            assertTrue(timeout.cancel());
+            assertTrue(timeout.isCancelled());
+            assertFalse(timeout.cancel());
+        }
+        assertEquals(0, timer.pendingTimeouts());
+        assertTrue(timer.stop().isEmpty());
+    }
+
+    @Test
+    @org.junit.jupiter.api.Timeout(value = 3000, unit = TimeUnit.MILLISECONDS)
+    public void testStopTimer() throws InterruptedException {
+        final HierarchicalWheelTimer timer = newTimer(8, 0, null);
+        final CountDownLatch latch = new CountDownLatch(1);
+        timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                latch.countDown();
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+        latch.await();
+
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                fail("This should not have run");
+            }
+        };
+        Timeout timeout = timer.newTimeout(task, 1, TimeUnit.HOURS);
+        timer.newTimeout(task, 1, TimeUnit.HOURS).cancel();
+        Set<Timeout> unprocessed = timer.stop();
+        assertEquals(1, unprocessed.size());
+        assertTrue(unprocessed.contains(timeout));
+        assertTrue(timer.stop().isEmpty());
+        assertThrows(IllegalStateException.class, new Executable() {
+            @Override
+            public void execute() {
+                timer.start();
+            }
+        });
+    }
+
+    @Test
+    public void testRejectedExecutionExceptionWhenTooManyTimeoutsAreAddedBackToBack() {
+        final HierarchicalWheelTimer timer = newTimer(8, 2, null);
+        final TimerTask task = new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+            }
+        };
+        timer.newTimeout(task, 5, TimeUnit.SECONDS);
+        Timeout timeout = timer.newTimeout(task, 5, TimeUnit.SECONDS);
+        assertThrows(RejectedExecutionException.class, new Executable() {
+            @Override
+            public void execute() {
+                timer.newTimeout(task, 1, TimeUnit.MILLISECONDS);
+            }
+        });
+        assertEquals(2, timer.pendingTimeouts());
+        timeout.cancel();
+        timer.newTimeout(task, 5, TimeUnit.SECONDS);
+        assertEquals(2, timer.pendingTimeouts());
+        timer.stop();
+    }
+
+    @Test
+    @org.junit.jupiter.api.Timeout(value = 3000, unit = TimeUnit.MILLISECONDS)
+    public void testTaskExecutedByExecutorGroup() throws InterruptedException {
+        EventExecutorGroup group = new DefaultEventExecutorGroup(1);
+        try {
+            final HierarchicalWheelTimer timer = newTimer(8, 0, group);
+            final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+            final CountDownLatch latch = new CountDownLatch(1);
+            timer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    thread.set(Thread.currentThread());
+                    latch.countDown();
+                }
+            }, 10, TimeUnit.MILLISECONDS);
+            latch.await();
+            assertTrue(group.next().inEventLoop(thread.get()));
+            assertNotSame(Thread.currentThread(), thread.get());
+            timer.stop();
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    @org.junit.jupiter.api.Timeout(value = 3000, unit = TimeUnit.MILLISECONDS)
+    public void testNewTimeoutFromTask() throws InterruptedException {
+        final HierarchicalWheelTimer timer = newTimer(8, 0, ImmediateEventExecutor.INSTANCE);
+        final CountDownLatch latch = new CountDownLatch(3);
+        timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                latch.countDown();
+                if (latch.getCount() > 0) {
+                    timer.newTimeout(this, 5, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, 5, TimeUnit.MILLISECONDS);
+        latch.await();
+        timer.stop();
+    }
+}
@@ -24,12 +24,17 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -128,6 +133,44 @@ public class NonStickyEventExecutorGroupTest {
         }
     }
 
+    @Test
+    @Timeout(value = 10000, unit = TimeUnit.MILLISECONDS)
+    public void testWorkStealing() throws Throwable {
+        EventExecutorGroup group = new MultithreadEventExecutorGroup(2, (Executor) null) {
+            @Override
+            protected EventExecutor newChild(Executor executor, Object... args) {
+                return new UnorderedThreadPoolEventExecutor(1);
+            }
+        };
+        NonStickyEventExecutorGroup nonStickyGroup = new NonStickyEventExecutorGroup(group, 1, true);
+        try {
+            EventExecutor executor = nonStickyGroup.next();
+            final List<Integer> ids = Collections.synchronizedList(new ArrayList<Integer>());
+            final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+            int tasks = 100;
+            final CountDownLatch latch = new CountDownLatch(tasks);
+            for (int i = 0; i < tasks; i++) {
+                final int id = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        ids.add(id);
+                        threads.add(Thread.currentThread());
+                        latch.countDown();
+                    }
+                });
+            }
+            latch.await();
+            for (int i = 0; i < tasks; i++) {
+                assertEquals(i, (int) ids.get(i));
+            }
+            // The tasks are submitted to the executors of the group in turn, as it uses round-robin.
+            assertEquals(2, threads.size());
+        } finally {
+            nonStickyGroup.shutdownGracefully();
+        }
+    }
+
     private static void execute(EventExecutorGroup group, CountDownLatch startLatch) throws Throwable {
         EventExecutor executor = group.next();
         assertTrue(executor instanceof OrderedEventExecutor);
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.PlatformDependent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VirtualThreadEventExecutorGroupTest {
+
+    @Test
+    public void testVirtualOnlyOnJava21() {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup();
+        try {
+            assertEquals(PlatformDependent.javaVersion() >= 21, group.isVirtual());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    @Timeout(value = 10000, unit = TimeUnit.MILLISECONDS)
+    public void testManyBlockedExecutors() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup();
+        int executors = 256;
+        final CountDownLatch allBlocked = new CountDownLatch(executors);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean fastThreadLocalThread = new AtomicBoolean();
+        try {
+            EventExecutor first = group.next();
+            assertTrue(first instanceof OrderedEventExecutor);
+            assertNotSame(first, group.next());
+            for (int i = 0; i < executors; i++) {
+                group.next().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (Thread.currentThread() instanceof FastThreadLocalThread) {
+                            fastThreadLocalThread.set(true);
+                        }
+                        allBlocked.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            // All executors block at the same time, which is more than any fixed sized group would allow.
+            allBlocked.await();
+            assertFalse(fastThreadLocalThread.get());
+        } finally {
+            release.countDown();
+            group.shutdownGracefully().sync();
+        }
+        assertTrue(group.isTerminated());
+    }
+
+    @Test
+    @Timeout(value = 10000, unit = TimeUnit.MILLISECONDS)
+    public void testOrderingPerExecutor() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup("test", 4);
+        try {
+            EventExecutor executor = group.next();
+            final List<Integer> ids = Collections.synchronizedList(new ArrayList<Integer>());
+            int tasks = 1000;
+            final CountDownLatch latch = new CountDownLatch(tasks);
+            for (int i = 0; i < tasks; i++) {
+                final int id = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        ids.add(id);
+                        latch.countDown();
+                    }
+                });
+            }
+            latch.await();
+            for (int i = 0; i < tasks; i++) {
+                assertEquals(i, (int) ids.get(i));
+            }
+        } finally {
+            group.shutdownGracefully().sync();
+        }
+    }
+
+    @Test
+    public void testRejectAfterShutdown() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup();
+        group.shutdownGracefully().sync();
+        assertTrue(group.isShutdown());
+        final EventExecutor executor = group.iterator().next();
+        assertThrows(RejectedExecutionException.class, new Executable() {
+            @Override
+            public void execute() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.channel.socket.KernelTlsChannel;
+import io.netty.channel.socket.KernelTlsChannel.Cipher;
+import io.netty.util.CharsetUtil;
+
+import javax.crypto.spec.SecretKeySpec;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import java.util.Arrays;
+
+/**
+ * The key material which is needed to let the kernel encrypt the outbound records of a TLS 1.2 connection, see
+ * {@link KernelTlsChannel#enableKernelTlsTx(int, Cipher, byte[], byte[], long)}.
+ * <p>
+ * The keys are derived from the master secret as described in
+ * <a href="https://tools.ietf.org/html/rfc5246#section-6.3">RFC 5246, section 6.3</a>. The AEAD ciphers which are
+ * supported by the kernel do not use MAC keys, so the key block is
+ * {@code client_write_key + server_write_key + client_write_IV + server_write_IV}.
+ */
+final class KernelTlsTxKey {
+
+    private static final byte[] KEY_EXPANSION = "key expansion".getBytes(CharsetUtil.US_ASCII);
+
+    /**
+     * The sequence number of the first record after the handshake, as the {@code Finished} message is the only
+     * record that was encrypted with the new keys before.
+     */
+    static final long FIRST_RECORD_SEQUENCE = 1;
+
+    final Cipher cipher;
+    final byte[] key;
+    final byte[] iv;
+
+    private KernelTlsTxKey(Cipher cipher, byte[] key, byte[] iv) {
+        this.cipher = cipher;
+        this.key = key;
+        this.iv = iv;
+    }
+
+    /**
+     * Overwrites the key material, so it does not stay around in the heap.
+     */
+    void destroy() {
+        Arrays.fill(key, (byte) 0);
+        Arrays.fill(iv, (byte) 0);
+    }
+
+    /**
+     * Returns the key that the given {@link SSLEngine} uses to encrypt outbound records or {@code null} if the
+     * negotiated protocol or cipher can not be offloaded to the kernel.
+     */
+    static KernelTlsTxKey of(SSLEngine engine) {
+        if (!(engine instanceof ReferenceCountedOpenSslEngine)) {
+            // Only OpenSSL gives us access to the master secret and the randoms of the handshake.
+            return null;
+        }
+        SSLSession session = engine.getSession();
+        if (!SslProtocols.TLS_v1_2.equals(session.getProtocol())) {
+            return null;
+        }
+        String cipherSuite = session.getCipherSuite();
+        final Cipher cipher;
+        final int keyLength;
+        final int ivLength;
+        if (cipherSuite.endsWith("_WITH_AES_128_GCM_SHA256")) {
+            cipher = Cipher.AES_128_GCM;
+            keyLength = 16;
+            ivLength = 4;
+        } else if (cipherSuite.endsWith("_WITH_AES_256_GCM_SHA384")) {
+            cipher = Cipher.AES_256_GCM;
+            keyLength = 32;
+            ivLength = 4;
+        } else if (cipherSuite.endsWith("_WITH_CHACHA20_POLY1305_SHA256")) {
+            cipher = Cipher.CHACHA20_POLY1305;
+            keyLength = 32;
+            ivLength = 12;
+        } else {
+            return null;
+        }
+
+        ReferenceCountedOpenSslEngine openSslEngine = (ReferenceCountedOpenSslEngine) engine;
+        SecretKeySpec masterKey = openSslEngine.masterKey();
+        byte[] clientRandom = openSslEngine.clientRandom();
+        byte[] serverRandom = openSslEngine.serverRandom();
+        if (masterKey == null || clientRandom == null || serverRandom == null) {
+            return null;
+        }
+        byte[] seed = new byte[serverRandom.length + clientRandom.length];
+        System.arraycopy(serverRandom, 0, seed, 0, serverRandom.length);
+        System.arraycopy(clientRandom, 0, seed, serverRandom.length, clientRandom.length);
+        byte[] keyBlock = PseudoRandomFunction.hash(masterKey.getEncoded(), KEY_EXPANSION, seed,
+                2 * (keyLength + ivLength), cipherSuite.endsWith("_SHA384") ? "HmacSHA384" : "HmacSHA256");
+
+        int keyOffset = engine.getUseClientMode() ? 0 : keyLength;
+        int ivOffset = 2 * keyLength + (engine.getUseClientMode() ? 0 : ivLength);
+        KernelTlsTxKey txKey = new KernelTlsTxKey(cipher,
+                Arrays.copyOfRange(keyBlock, keyOffset, keyOffset + keyLength),
+                Arrays.copyOfRange(keyBlock, ivOffset, ivOffset + ivLength));
+        Arrays.fill(keyBlock, (byte) 0);
+        return txKey;
+    }
+}
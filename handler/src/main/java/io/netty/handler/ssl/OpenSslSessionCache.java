@@ -15,12 +15,17 @@
  */
 package io.netty.handler.ssl;
 
+import io.netty.internal.tcnative.SSL;
 import io.netty.internal.tcnative.SSLSession;
 import io.netty.internal.tcnative.SSLSessionCache;
+import io.netty.util.NettyRuntime;
 import io.netty.util.ResourceLeakDetector;
 import io.netty.util.ResourceLeakDetectorFactory;
 import io.netty.util.ResourceLeakTracker;
 import io.netty.util.internal.EmptyArrays;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.MathUtil;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 
 import javax.security.cert.X509Certificate;
@@ -35,11 +40,17 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * {@link SSLSessionCache} implementation for our native SSL implementation.
+ * <p>
+ * The sessions are spread over a number of shards by their id, each guarded by its own lock, so event loops that
+ * resume sessions concurrently rarely contend. Each shard keeps its sessions in access order, and if the cache is full
+ * the least recently used session of the shard a new session is added to is evicted.
  */
 class OpenSslSessionCache implements SSLSessionCache {
     private static final OpenSslSession[] EMPTY_SESSIONS = new OpenSslSession[0];
+    private static final int EXPUNGE_INTERVAL = 255;
 
     private static final int DEFAULT_CACHE_SIZE;
+    private static final int DEFAULT_SHARDS;
     static {
         // Respect the same system property as the JDK implementation to make it easy to switch between implementations.
         int cacheSize = SystemPropertyUtil.getInt("javax.net.ssl.sessionCacheSize", 20480);
@@ -48,41 +59,45 @@ class OpenSslSessionCache implements SSLSessionCache {
         } else {
             DEFAULT_CACHE_SIZE = 20480;
         }
+        // Use one shard per event loop by default, which matches the default number of threads of an EventLoopGroup.
+        int shards = SystemPropertyUtil.getInt("io.netty.handler.ssl.openssl.sessionCacheShards",
+                NettyRuntime.availableProcessors() * 2);
+        DEFAULT_SHARDS = MathUtil.findNextPositivePowerOfTwo(Math.max(1, Math.min(shards, 1 << 16)));
     }
     private final OpenSslEngineMap engineMap;
 
-    private final Map<OpenSslSessionId, NativeSslSession> sessions =
-            new LinkedHashMap<OpenSslSessionId, NativeSslSession>() {
-
-                private static final long serialVersionUID = -7773696788135734448L;
-
-                @Override
-                protected boolean removeEldestEntry(Map.Entry<OpenSslSessionId, NativeSslSession> eldest) {
-                    int maxSize = maximumCacheSize.get();
-                    if (maxSize >= 0 && size() > maxSize) {
-                        removeSessionWithId(eldest.getKey());
-                    }
-                    // We always need to return false as we modify the map directly.
-                    return false;
-                }
-            };
+    private final Shard[] shards;
+    private final int shardMask;
+    private final AtomicInteger size = new AtomicInteger();
 
     private final AtomicInteger maximumCacheSize = new AtomicInteger(DEFAULT_CACHE_SIZE);
 
     // Let's use the same default value as OpenSSL does.
     // See https://www.openssl.org/docs/man1.1.1/man3/SSL_get_default_timeout.html
     private final AtomicInteger sessionTimeout = new AtomicInteger(300);
-    private int sessionCounter;
+
+    private final LongCounter hits = PlatformDependent.newLongCounter();
+    private final LongCounter misses = PlatformDependent.newLongCounter();
+    private final LongCounter evictions = PlatformDependent.newLongCounter();
 
     OpenSslSessionCache(OpenSslEngineMap engineMap) {
+        this(engineMap, DEFAULT_SHARDS);
+    }
+
+    OpenSslSessionCache(OpenSslEngineMap engineMap, int numShards) {
         this.engineMap = engineMap;
+        numShards = MathUtil.findNextPositivePowerOfTwo(numShards);
+        shards = new Shard[numShards];
+        for (int i = 0; i < numShards; i++) {
+            shards[i] = new Shard();
+        }
+        shardMask = numShards - 1;
     }
 
     final void setSessionTimeout(int seconds) {
         int oldTimeout = sessionTimeout.getAndSet(seconds);
         if (oldTimeout > seconds) {
-            // Drain the whole cache as this way we can use the ordering of the LinkedHashMap to detect early
-            // if there are any other sessions left that are invalid.
+            // Drain the whole cache so no session is kept longer than the new timeout.
             clear();
         }
     }
@@ -92,7 +107,8 @@ class OpenSslSessionCache implements SSLSessionCache {
     }
 
     /**
-     * Called once a new {@link OpenSslSession} was created.
+     * Called once a new {@link OpenSslSession} was created. This method is called while holding the lock of the shard
+     * of the session and so may be called concurrently for sessions of different shards.
      *
      * @param session the new session.
      * @return {@code true} if the session should be cached, {@code false} otherwise.
@@ -102,7 +118,8 @@ class OpenSslSessionCache implements SSLSessionCache {
     }
 
     /**
-     * Called once an {@link OpenSslSession} was removed from the cache.
+     * Called once an {@link OpenSslSession} was removed from the cache. This method is called while holding the lock
+     * of the shard of the session and so may be called concurrently for sessions of different shards.
      *
      * @param session the session to remove.
      */
@@ -120,24 +137,52 @@ class OpenSslSessionCache implements SSLSessionCache {
         return maximumCacheSize.get();
     }
 
-    private void expungeInvalidSessions() {
-        if (sessions.isEmpty()) {
-            return;
-        }
-        long now = System.currentTimeMillis();
-        Iterator<Map.Entry<OpenSslSessionId, NativeSslSession>> iterator = sessions.entrySet().iterator();
-        while (iterator.hasNext()) {
-            NativeSslSession session = iterator.next().getValue();
-            // As we use a LinkedHashMap we can break the while loop as soon as we find a valid session.
-            // This is true as we always drain the cache as soon as we change the timeout to a smaller value as
-            // it was set before. This way its true that the insertion order matches the timeout order.
-            if (session.isValid(now)) {
-                break;
-            }
-            iterator.remove();
+    /**
+     * Returns the number of sessions that were found in the cache and could be reused.
+     */
+    final long hits() {
+        return hits.value();
+    }
 
-            notifyRemovalAndFree(session);
-        }
+    /**
+     * Returns the number of lookups that did not find a reusable session in the cache.
+     */
+    final long misses() {
+        return misses.value();
+    }
+
+    /**
+     * Returns the number of sessions that were removed from the cache because it was full or the session expired.
+     */
+    final long evictions() {
+        return evictions.value();
+    }
+
+    final void hit() {
+        hits.increment();
+    }
+
+    final void miss() {
+        misses.increment();
+    }
+
+    private Shard shardFor(OpenSslSessionId id) {
+        return shards[shardIndex(id)];
+    }
+
+    /**
+     * Returns the index of the shard which holds the session with the given id.
+     */
+    final int shardIndex(OpenSslSessionId id) {
+        int hash = id.hashCode();
+        return (hash ^ hash >>> 16) & shardMask;
+    }
+
+    /**
+     * Returns the number of shards the sessions are spread over.
+     */
+    final int numShards() {
+        return shards.length;
     }
 
     @Override
@@ -150,12 +195,27 @@ class OpenSslSessionCache implements SSLSessionCache {
         NativeSslSession session = new NativeSslSession(sslSession, engine.getPeerHost(), engine.getPeerPort(),
                 getSessionTimeout() * 1000L);
         engine.setSessionId(session.sessionId());
-        synchronized (this) {
+        return cacheSession(session);
+    }
+
+    /**
+     * Adds the given new session to its shard and evicts sessions if the cache is full.
+     *
+     * @return {@code true} if the session was cached, {@code false} if it was closed instead.
+     */
+    final boolean cacheSession(NativeSslSession session) {
+        if (maximumCacheSize.get() == 0) {
+            // Caching is disabled, we also need to call close() to ensure we close the ResourceLeakTracker.
+            session.close();
+            return false;
+        }
+        final Shard shard = shardFor(session.sessionId());
+        synchronized (shard) {
             // Mimic what OpenSSL is doing and expunge every 255 new sessions
             // See https://www.openssl.org/docs/man1.0.2/man3/SSL_CTX_flush_sessions.html
-            if (++sessionCounter == 255) {
-                sessionCounter = 0;
-                expungeInvalidSessions();
+            if (++shard.sessionCounter == EXPUNGE_INTERVAL) {
+                shard.sessionCounter = 0;
+                expungeInvalidSessions(shard);
             }
 
             if (!sessionCreated(session)) {
@@ -165,21 +225,90 @@ class OpenSslSessionCache implements SSLSessionCache {
                 return false;
             }
 
-            final NativeSslSession old = sessions.put(session.sessionId(), session);
+            final NativeSslSession old = shard.put(session.sessionId(), session);
             if (old != null) {
                 notifyRemovalAndFree(old);
+            } else {
+                size.incrementAndGet();
             }
         }
+        evictIfFull(shard);
         return true;
     }
 
+    private void expungeInvalidSessions(Shard shard) {
+        assert Thread.holdsLock(shard);
+        if (shard.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Only look at as many of the least recently used sessions as were added since the last expunge, so the cost
+        // per new session stays constant however large the shard is. Expired sessions that were used more recently
+        // are removed once they are looked up or become the least recently used ones.
+        Iterator<NativeSslSession> iterator = shard.values().iterator();
+        for (int i = 0; i < EXPUNGE_INTERVAL && iterator.hasNext(); i++) {
+            NativeSslSession session = iterator.next();
+            if (!session.isValid(now)) {
+                iterator.remove();
+                size.decrementAndGet();
+                evictions.increment();
+                notifyRemovalAndFree(session);
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used sessions of the shard the new session was added to. Only if this shard holds
+     * nothing but the new session the other shards are evicted from, so the new session is always kept. Only one shard
+     * lock is held at a time.
+     */
+    private void evictIfFull(Shard current) {
+        final int maxSize = maximumCacheSize.get();
+        if (maxSize < 0 || size.get() <= maxSize) {
+            return;
+        }
+        synchronized (current) {
+            while (size.get() > maxSize && current.size() > 1) {
+                evictEldest(current);
+            }
+        }
+        if (size.get() <= maxSize) {
+            return;
+        }
+        int start = 0;
+        while (shards[start] != current) {
+            start++;
+        }
+        for (int i = 1; i < shards.length && size.get() > maxSize; i++) {
+            Shard shard = shards[(start + i) & shardMask];
+            synchronized (shard) {
+                while (size.get() > maxSize && !shard.isEmpty()) {
+                    evictEldest(shard);
+                }
+            }
+        }
+    }
+
+    private void evictEldest(Shard shard) {
+        assert Thread.holdsLock(shard);
+        Iterator<NativeSslSession> iterator = shard.values().iterator();
+        NativeSslSession eldest = iterator.next();
+        iterator.remove();
+        size.decrementAndGet();
+        evictions.increment();
+        notifyRemovalAndFree(eldest);
+    }
+
     @Override
     public final long getSession(long ssl, byte[] sessionId) {
         OpenSslSessionId id = new OpenSslSessionId(sessionId);
+        final Shard shard = shardFor(id);
         final NativeSslSession session;
-        synchronized (this) {
-            session = sessions.get(id);
+        final long sessionAddress;
+        synchronized (shard) {
+            session = shard.get(id);
             if (session == null) {
+                misses.increment();
                 return -1;
             }
 
@@ -192,31 +321,67 @@ class OpenSslSessionCache implements SSLSessionCache {
                     // find a session for re-use.
                     !session.upRef()) {
                 // Remove the session from the cache. This will also take care of calling SSL_SESSION_free(...)
-                removeSessionWithId(session.sessionId());
+                removeSessionWithId(shard, session.sessionId());
+                misses.increment();
                 return -1;
             }
 
-            // At this point we already incremented the reference count via SSL_SESSION_up_ref(...).
+            // At this point we already incremented the reference count via SSL_SESSION_up_ref(...). Take the address
+            // while holding the lock, as the session may be evicted and freed concurrently once it is released.
+            sessionAddress = session.session();
             if (session.shouldBeSingleUse()) {
                 // Should only be used once. In this case invalidate the session which will also ensure we remove it
                 // from the cache and call SSL_SESSION_free(...).
-                removeSessionWithId(session.sessionId());
+                removeSessionWithId(shard, session.sessionId());
             }
         }
+        hits.increment();
         session.updateLastAccessedTime();
-        return session.session();
+        return sessionAddress;
     }
 
     void setSession(long ssl, String host, int port) {
         // Do nothing by default as this needs special handling for the client side.
     }
 
+    /**
+     * Sets the given cached session for the given {@code SSL*} while holding the lock of its shard, so it can not be
+     * freed concurrently.
+     *
+     * @return {@code true} if OpenSSL will reuse the session and so incremented its reference count.
+     */
+    final boolean setSessionIfCached(long ssl, NativeSslSession session) {
+        final Shard shard = shardFor(session.sessionId());
+        synchronized (shard) {
+            if (shard.get(session.sessionId()) != session) {
+                // Removed from the cache in the meantime.
+                return false;
+            }
+            if (!session.isValid()) {
+                removeSessionWithId(shard, session.sessionId());
+                return false;
+            }
+            // Try to set the session, if true is returned OpenSSL incremented the reference count
+            // of the underlying SSL_SESSION*.
+            return SSL.setSession(ssl, session.session());
+        }
+    }
+
     /**
      * Remove the session with the given id from the cache
      */
-    final synchronized void removeSessionWithId(OpenSslSessionId id) {
-        NativeSslSession sslSession = sessions.remove(id);
+    final void removeSessionWithId(OpenSslSessionId id) {
+        Shard shard = shardFor(id);
+        synchronized (shard) {
+            removeSessionWithId(shard, id);
+        }
+    }
+
+    private void removeSessionWithId(Shard shard, OpenSslSessionId id) {
+        assert Thread.holdsLock(shard);
+        NativeSslSession sslSession = shard.remove(id);
         if (sslSession != null) {
+            size.decrementAndGet();
             notifyRemovalAndFree(sslSession);
         }
     }
@@ -224,8 +389,11 @@ class OpenSslSessionCache implements SSLSessionCache {
     /**
      * Returns {@code true} if there is a session for the given id in the cache.
      */
-    final synchronized boolean containsSessionWithId(OpenSslSessionId id) {
-        return sessions.containsKey(id);
+    final boolean containsSessionWithId(OpenSslSessionId id) {
+        Shard shard = shardFor(id);
+        synchronized (shard) {
+            return shard.containsKey(id);
+        }
     }
 
     private void notifyRemovalAndFree(NativeSslSession session) {
@@ -236,29 +404,34 @@ class OpenSslSessionCache implements SSLSessionCache {
     /**
      * Return the {@link OpenSslSession} which is cached for the given id.
      */
-    final synchronized OpenSslSession getSession(OpenSslSessionId id) {
-        NativeSslSession session = sessions.get(id);
-        if (session != null && !session.isValid()) {
-            // The session is not valid anymore, let's remove it and just signal back that there is no session
-            // with the given ID in the cache anymore. This also takes care of calling SSL_SESSION_free(...)
-            removeSessionWithId(session.sessionId());
-            return null;
+    final OpenSslSession getSession(OpenSslSessionId id) {
+        Shard shard = shardFor(id);
+        synchronized (shard) {
+            NativeSslSession session = shard.get(id);
+            if (session != null && !session.isValid()) {
+                // The session is not valid anymore, let's remove it and just signal back that there is no session
+                // with the given ID in the cache anymore. This also takes care of calling SSL_SESSION_free(...)
+                removeSessionWithId(shard, session.sessionId());
+                return null;
+            }
+            return session;
         }
-        return session;
     }
 
     /**
      * Returns a snapshot of the session ids of the current valid sessions.
      */
     final List<OpenSslSessionId> getIds() {
-        final OpenSslSession[] sessionsArray;
-        synchronized (this) {
-            sessionsArray = sessions.values().toArray(EMPTY_SESSIONS);
-        }
-        List<OpenSslSessionId> ids = new ArrayList<OpenSslSessionId>(sessionsArray.length);
-        for (OpenSslSession session: sessionsArray) {
-            if (session.isValid()) {
-                ids.add(session.sessionId());
+        List<OpenSslSessionId> ids = new ArrayList<OpenSslSessionId>();
+        for (Shard shard : shards) {
+            final OpenSslSession[] sessionsArray;
+            synchronized (shard) {
+                sessionsArray = shard.values().toArray(EMPTY_SESSIONS);
+            }
+            for (OpenSslSession session: sessionsArray) {
+                if (session.isValid()) {
+                    ids.add(session.sessionId());
+                }
             }
         }
         return ids;
@@ -267,21 +440,39 @@ class OpenSslSessionCache implements SSLSessionCache {
     /**
      * Clear the cache and free all cached SSL_SESSION*.
      */
-    synchronized void clear() {
-        Iterator<Map.Entry<OpenSslSessionId, NativeSslSession>> iterator = sessions.entrySet().iterator();
-        while (iterator.hasNext()) {
-            NativeSslSession session = iterator.next().getValue();
-            iterator.remove();
+    void clear() {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                Iterator<Map.Entry<OpenSslSessionId, NativeSslSession>> iterator = shard.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    NativeSslSession session = iterator.next().getValue();
+                    iterator.remove();
+                    size.decrementAndGet();
+
+                    // Notify about removal. This also takes care of calling SSL_SESSION_free(...).
+                    notifyRemovalAndFree(session);
+                }
+            }
+        }
+    }
 
-            // Notify about removal. This also takes care of calling SSL_SESSION_free(...).
-            notifyRemovalAndFree(session);
+    /**
+     * The sessions of one shard in access order, guarded by the monitor of the shard.
+     */
+    private static final class Shard extends LinkedHashMap<OpenSslSessionId, NativeSslSession> {
+        private static final long serialVersionUID = -2453127613787396427L;
+
+        int sessionCounter;
+
+        Shard() {
+            super(16, 0.75f, true);
         }
     }
 
     /**
      * {@link OpenSslSession} implementation which wraps the native SSL_SESSION* while in cache.
      */
-    static final class NativeSslSession implements OpenSslSession {
+    static class NativeSslSession implements OpenSslSession {
         static final ResourceLeakDetector<NativeSslSession> LEAK_DETECTOR = ResourceLeakDetectorFactory.instance()
                 .newResourceLeakDetector(NativeSslSession.class);
         private final ResourceLeakTracker<NativeSslSession> leakTracker;
@@ -296,11 +487,15 @@ class OpenSslSessionCache implements SSLSessionCache {
         private boolean freed;
 
         NativeSslSession(long session, String peerHost, int peerPort, long timeout) {
+            this(session, new OpenSslSessionId(SSLSession.getSessionId(session)), peerHost, peerPort, timeout);
+        }
+
+        NativeSslSession(long session, OpenSslSessionId id, String peerHost, int peerPort, long timeout) {
             this.session = session;
             this.peerHost = peerHost;
             this.peerPort = peerPort;
             this.timeout = timeout;
-            this.id = new OpenSslSessionId(io.netty.internal.tcnative.SSLSession.getSessionId(session));
+            this.id = id;
             leakTracker = LEAK_DETECTOR.track(this);
         }
 
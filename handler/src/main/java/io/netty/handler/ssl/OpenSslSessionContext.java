@@ -53,7 +53,7 @@ public abstract class OpenSslSessionContext implements SSLSessionContext {
         this.context = context;
         this.provider = provider;
         this.mask = mask;
-        stats = new OpenSslSessionStats(context);
+        stats = new OpenSslSessionStats(context, cache);
         sessionCache = cache;
         SSLContext.setSSLSessionCache(context.ctx, cache);
     }
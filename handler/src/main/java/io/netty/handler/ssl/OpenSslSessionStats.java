@@ -28,13 +28,15 @@ import java.util.concurrent.locks.Lock;
 public final class OpenSslSessionStats {
 
     private final ReferenceCountedOpenSslContext context;
+    private final OpenSslSessionCache sessionCache;
 
     // IMPORTANT: We take the OpenSslContext and not just the long (which points the native instance) to prevent
     //            the GC to collect OpenSslContext as this would also free the pointer and so could result in a
     //            segfault when the user calls any of the methods here that try to pass the pointer down to the native
     //            level.
-    OpenSslSessionStats(ReferenceCountedOpenSslContext context) {
+    OpenSslSessionStats(ReferenceCountedOpenSslContext context, OpenSslSessionCache sessionCache) {
         this.context = context;
+        this.sessionCache = sessionCache;
     }
 
     /**
@@ -250,4 +252,26 @@ public final class OpenSslSessionStats {
             readerLock.unlock();
         }
     }
+
+    /**
+     * Returns the number of sessions that were found in the session cache of netty and reused.
+     */
+    public long sessionCacheHits() {
+        return sessionCache.hits();
+    }
+
+    /**
+     * Returns the number of times no reusable session was found in the session cache of netty.
+     */
+    public long sessionCacheMisses() {
+        return sessionCache.misses();
+    }
+
+    /**
+     * Returns the number of sessions that were removed from the session cache of netty because it was full or the
+     * session timed out.
+     */
+    public long sessionCacheEvictions() {
+        return sessionCache.evictions();
+    }
 }
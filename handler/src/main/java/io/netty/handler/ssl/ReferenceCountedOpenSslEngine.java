@@ -433,6 +433,20 @@ public class ReferenceCountedOpenSslEngine extends SSLEngine implements Referenc
         return new SecretKeySpec(SSL.getMasterKey(ssl), "AES");
     }
 
+    final synchronized byte[] clientRandom() {
+        if (isDestroyed()) {
+            return null;
+        }
+        return SSL.getClientRandom(ssl);
+    }
+
+    final synchronized byte[] serverRandom() {
+        if (isDestroyed()) {
+            return null;
+        }
+        return SSL.getServerRandom(ssl);
+    }
+
     synchronized boolean isSessionReused() {
         if (isDestroyed()) {
             return false;
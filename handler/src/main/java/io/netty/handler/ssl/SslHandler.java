@@ -33,6 +33,8 @@ import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.socket.KernelTlsChannel;
+import io.netty.channel.socket.KernelTlsRecord;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DecoderException;
 import io.netty.handler.codec.UnsupportedMessageTypeException;
@@ -56,6 +58,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
@@ -73,6 +76,7 @@ import javax.net.ssl.SSLSession;
 import static io.netty.buffer.ByteBufUtil.ensureWritableSuccess;
 import static io.netty.handler.ssl.SslUtils.getEncryptedPacketLength;
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
 import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 /**
@@ -190,6 +194,31 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      */
     private static final int STATE_FIRE_CHANNEL_READ = 1 << 8;
     private static final int STATE_UNWRAP_REENTRY = 1 << 9;
+    /**
+     * Set while we wait for the records that were encrypted by the {@link SSLEngine} to be written, before the
+     * encryption is handed over to the kernel.
+     */
+    private static final int STATE_KERNEL_TLS_PENDING = 1 << 10;
+    /**
+     * Set once the kernel encrypts the outbound records, {@link #write(ChannelHandlerContext, Object, ChannelPromise)}
+     * passes everything through as is from then on.
+     */
+    private static final int STATE_KERNEL_TLS_TX = 1 << 11;
+    /**
+     * Set if the {@link SSLEngine} encrypted a record after the handshake (or application data during the handshake)
+     * which means the record sequence is not known and the encryption can not be handed over to the kernel.
+     */
+    private static final int STATE_KERNEL_TLS_UNSAFE = 1 << 12;
+    /**
+     * Set once the {@code close_notify} alert was written while the kernel encrypts the outbound records.
+     */
+    private static final int STATE_KERNEL_TLS_CLOSE_NOTIFY = 1 << 13;
+
+    /**
+     * The <a href="https://tools.ietf.org/html/rfc5246#section-7.2">alert</a> level warning(1) followed by the
+     * description close_notify(0).
+     */
+    private static final byte[] CLOSE_NOTIFY_ALERT = { 1, 0 };
 
     /**
      * <a href="https://tools.ietf.org/html/rfc5246#section-6.2">2^14</a> which is the maximum sized plaintext chunk
@@ -197,6 +226,12 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      */
     private static final int MAX_PLAINTEXT_LENGTH = 16 * 1024;
 
+    /**
+     * The default for the maximum number of records which are encrypted into one buffer, see
+     * {@link #setWrapBatchSize(int)}. The OpenSSL engine sizes its wrap buffer for up to 16 records.
+     */
+    private static final int DEFAULT_WRAP_BATCH_SIZE = 16;
+
     private enum SslEngineType {
         TCNATIVE(true, COMPOSITE_CUMULATOR) {
             @Override
@@ -389,6 +424,12 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      */
     private final ByteBuffer[] singleBuffer = new ByteBuffer[1];
 
+    // Used by wrapBatch(...) and allocated on first use.
+    private ByteBuf[] batchBuffers;
+    private ByteBuf[] batchDirectBuffers;
+    private ChannelPromise[] batchPromises;
+    private ByteBuffer[] batchNioBuffers;
+
     private final boolean startTls;
 
     private final SslTasksRunner sslTaskRunnerForUnwrap = new SslTasksRunner(true);
@@ -405,6 +446,8 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
     private volatile long closeNotifyFlushTimeoutMillis = 3000;
     private volatile long closeNotifyReadTimeoutMillis;
     volatile int wrapDataSize = MAX_PLAINTEXT_LENGTH;
+    private volatile int wrapBatchSize = DEFAULT_WRAP_BATCH_SIZE;
+    private volatile boolean kernelTlsEnabled;
 
     /**
      * Creates a new instance which runs all delegated tasks directly on the {@link EventExecutor}.
@@ -493,6 +536,72 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         this.wrapDataSize = wrapDataSize;
     }
 
+    /**
+     * Sets the maximum number of records which are encrypted into a single buffer when more than
+     * {@code wrapDataSize} bytes (see {@link #setWrapDataSize(int)}) are flushed at once.
+     * <p>
+     * If the {@link SSLEngine} is provided by {@link SslProvider#OPENSSL} or {@link SslProvider#OPENSSL_REFCNT} the
+     * pending data is split into chunks of {@code wrapDataSize} bytes, which are passed to a single
+     * {@link SSLEngine#wrap(ByteBuffer[], ByteBuffer)} call. The engine writes one record per chunk back to back into
+     * one buffer, which is then written to the {@link Channel} as a whole. This saves a buffer allocation and a write
+     * per record for many small writes that are flushed together. Other {@link SSLEngine}s produce one record per
+     * wrap call and ignore this setting.
+     *
+     * @param wrapBatchSize the maximum number of records per buffer, {@code 1} disables batching.
+     */
+    @UnstableApi
+    public final void setWrapBatchSize(int wrapBatchSize) {
+        this.wrapBatchSize = checkPositive(wrapBatchSize, "wrapBatchSize");
+    }
+
+    /**
+     * Returns the maximum number of records which are encrypted into a single buffer, see
+     * {@link #setWrapBatchSize(int)}.
+     */
+    @UnstableApi
+    public final int getWrapBatchSize() {
+        return wrapBatchSize;
+    }
+
+    /**
+     * Sets if the encryption of outbound records should be handed over to the kernel once the handshake is done,
+     * which is called kernel TLS. This must be set before the handshake completes.
+     * <p>
+     * Kernel TLS is only used if the {@link Channel} is a {@link KernelTlsChannel}, the {@link SSLEngine} is
+     * provided by {@link SslProvider#OPENSSL} or {@link SslProvider#OPENSSL_REFCNT} and the negotiated protocol is
+     * TLS 1.2 with an AES-GCM or ChaCha20-Poly1305 cipher suite. Otherwise the {@link SSLEngine} continues to
+     * encrypt the records, as it does when kernel TLS is not supported by the operating system.
+     * <p>
+     * Once the kernel encrypts the records, all messages (including {@link io.netty.channel.FileRegion}s) written
+     * to this handler are passed to the {@link Channel} as they are, which allows zero-copy file transfers. Inbound
+     * records are still decrypted by the {@link SSLEngine}. The {@code close_notify} alert is encrypted by the kernel
+     * as well, and a renegotiation requested by the remote peer fails the connection.
+     *
+     * @see #isKernelTlsActive()
+     */
+    @UnstableApi
+    public final void setKernelTlsEnabled(boolean kernelTlsEnabled) {
+        this.kernelTlsEnabled = kernelTlsEnabled;
+    }
+
+    /**
+     * Returns {@code true} if the encryption of outbound records should be handed over to the kernel, see
+     * {@link #setKernelTlsEnabled(boolean)}.
+     */
+    @UnstableApi
+    public final boolean isKernelTlsEnabled() {
+        return kernelTlsEnabled;
+    }
+
+    /**
+     * Returns {@code true} if the kernel encrypts the outbound records, see {@link #setKernelTlsEnabled(boolean)}.
+     * This method must be called from the {@link EventExecutor} of the {@link Channel}.
+     */
+    @UnstableApi
+    public final boolean isKernelTlsActive() {
+        return isStateSet(STATE_KERNEL_TLS_TX);
+    }
+
     /**
      * @deprecated use {@link #getCloseNotifyFlushTimeoutMillis()}
      */
@@ -651,7 +760,11 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         setState(STATE_OUTBOUND_CLOSED);
         engine.closeOutbound();
         try {
-            flush(ctx, promise);
+            if (isStateSet(STATE_KERNEL_TLS_TX)) {
+                writeKernelTlsCloseNotify(ctx, promise);
+            } else {
+                flush(ctx, promise);
+            }
         } catch (Exception e) {
             if (!promise.tryFailure(e)) {
                 logger.warn("{} flush() raised a masked exception.", ctx.channel(), e);
@@ -745,7 +858,13 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
     @Override
     public void write(final ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-        if (!(msg instanceof ByteBuf)) {
+        if (isStateSet(STATE_KERNEL_TLS_TX)) {
+            // The kernel encrypts everything we write, keep the order with what may still be queued.
+            if (!pendingUnencryptedWrites.isEmpty()) {
+                pendingUnencryptedWrites.writeAndRemoveAll(ctx);
+            }
+            ctx.write(msg, promise);
+        } else if (!(msg instanceof ByteBuf)) {
             UnsupportedMessageTypeException exception = new UnsupportedMessageTypeException(msg, ByteBuf.class);
             ReferenceCountUtil.safeRelease(msg);
             promise.setFailure(exception);
@@ -812,6 +931,17 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
             // Only continue to loop if the handler was not removed in the meantime.
             // See https://github.com/netty/netty/issues/5860
             outer: while (!ctx.isRemoved()) {
+                if (isStateSet(STATE_KERNEL_TLS_TX)) {
+                    pendingUnencryptedWrites.writeAndRemoveAll(ctx);
+                    break;
+                }
+                if (isStateSet(STATE_KERNEL_TLS_PENDING)) {
+                    // Keep the data queued until we know who encrypts it.
+                    break;
+                }
+                if (canWrapBatch(wrapDataSize) && wrapBatch(ctx, alloc, wrapDataSize)) {
+                    continue;
+                }
                 ChannelPromise promise = ctx.newPromise();
                 ByteBuf buf = wrapDataSize > 0 ?
                         pendingUnencryptedWrites.remove(alloc, wrapDataSize, promise) :
@@ -904,6 +1034,128 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         }
     }
 
+    private boolean canWrapBatch(int wrapDataSize) {
+        return engineType == SslEngineType.TCNATIVE && !jdkCompatibilityMode && wrapBatchSize > 1 &&
+                wrapDataSize > 0 && wrapDataSize <= MAX_PLAINTEXT_LENGTH && handshakePromise.isDone() &&
+                pendingUnencryptedWrites.readableBytes() > wrapDataSize;
+    }
+
+    /**
+     * Encrypts up to {@link #wrapBatchSize} chunks of the pending writes with a single
+     * {@link SSLEngine#wrap(ByteBuffer[], int, int, ByteBuffer)} call and writes the records as one buffer.
+     *
+     * @return {@code true} if something was encrypted and the engine is ready for more data, {@code false} if
+     * the caller needs to wrap the next record by itself to handle the state of the {@link SSLEngine}.
+     */
+    private boolean wrapBatch(ChannelHandlerContext ctx, ByteBufAllocator alloc, int wrapDataSize)
+            throws SSLException {
+        final int batchSize = wrapBatchSize;
+        if (batchBuffers == null || batchBuffers.length != batchSize) {
+            batchBuffers = new ByteBuf[batchSize];
+            batchDirectBuffers = new ByteBuf[batchSize];
+            batchPromises = new ChannelPromise[batchSize];
+            batchNioBuffers = new ByteBuffer[batchSize];
+        }
+        final ByteBuf[] buffers = batchBuffers;
+        final ByteBuf[] directBuffers = batchDirectBuffers;
+        final ChannelPromise[] promises = batchPromises;
+        final ByteBuffer[] nioBuffers = batchNioBuffers;
+        int count = 0;
+        int completed = 0;
+        ByteBuf out = null;
+        try {
+            int pendingBytes = 0;
+            while (count < batchSize) {
+                ChannelPromise promise = ctx.newPromise();
+                ByteBuf buf = pendingUnencryptedWrites.remove(alloc, wrapDataSize, promise);
+                if (buf == null) {
+                    break;
+                }
+                buffers[count] = buf;
+                promises[count] = promise;
+                int readableBytes = buf.readableBytes();
+                if (buf.isDirect() && buf.nioBufferCount() == 1) {
+                    nioBuffers[count] = buf.internalNioBuffer(buf.readerIndex(), readableBytes);
+                } else {
+                    ByteBuf directBuf = alloc.directBuffer(readableBytes);
+                    directBuffers[count] = directBuf;
+                    directBuf.writeBytes(buf, buf.readerIndex(), readableBytes);
+                    nioBuffers[count] = directBuf.internalNioBuffer(directBuf.readerIndex(), readableBytes);
+                }
+                pendingBytes += readableBytes;
+                count++;
+            }
+            if (count == 0) {
+                return false;
+            }
+
+            out = allocateOutNetBuf(ctx, pendingBytes, count);
+            SSLEngineResult result = engine.wrap(nioBuffers, 0, count,
+                    out.internalNioBuffer(out.writerIndex(), out.writableBytes()));
+            out.writerIndex(out.writerIndex() + result.bytesProduced());
+            if (result.bytesConsumed() > 0) {
+                setState(STATE_KERNEL_TLS_UNSAFE);
+            }
+
+            // The engine consumes the chunks in order, so only the tail may be left.
+            for (int i = 0; i < count; i++) {
+                ByteBuf buf = buffers[i];
+                buf.skipBytes(buf.readableBytes() - nioBuffers[i].remaining());
+                if (completed == i && !buf.isReadable()) {
+                    completed++;
+                }
+            }
+            for (int i = count - 1; i >= completed; i--) {
+                pendingUnencryptedWrites.addFirst(buffers[i], promises[i]);
+                buffers[i] = null;
+            }
+
+            final ByteBuf b;
+            if (out.isReadable()) {
+                b = out;
+            } else {
+                out.release();
+                b = Unpooled.EMPTY_BUFFER;
+            }
+            out = null;
+            if (completed == 0) {
+                ctx.write(b);
+            } else if (completed == 1) {
+                ctx.write(b, promises[0]);
+            } else {
+                ctx.write(b).addListener(new PromiseNotifier<Void, ChannelFuture>(
+                        Arrays.copyOf(promises, completed)));
+            }
+            return completed > 0 && result.getStatus() == Status.OK &&
+                    result.getHandshakeStatus() == HandshakeStatus.NOT_HANDSHAKING;
+        } catch (Throwable cause) {
+            for (int i = completed; i < count; i++) {
+                if (buffers[i] != null) {
+                    buffers[i].release();
+                    promises[i].tryFailure(cause);
+                }
+            }
+            PlatformDependent.throwException(cause);
+            return false;
+        } finally {
+            if (out != null) {
+                out.release();
+            }
+            for (int i = 0; i < count; i++) {
+                if (i < completed) {
+                    buffers[i].release();
+                }
+                if (directBuffers[i] != null) {
+                    directBuffers[i].release();
+                    directBuffers[i] = null;
+                }
+                buffers[i] = null;
+                promises[i] = null;
+                nioBuffers[i] = null;
+            }
+        }
+    }
+
     /**
      * This method will not call
      * {@link #setHandshakeFailure(ChannelHandlerContext, Throwable, boolean, boolean, boolean)} or
@@ -911,6 +1163,13 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      * @return {@code true} if this method ends on {@link SSLEngineResult.HandshakeStatus#NOT_HANDSHAKING}.
      */
     private boolean wrapNonAppData(final ChannelHandlerContext ctx, boolean inUnwrap) throws SSLException {
+        if (isStateSet(STATE_KERNEL_TLS_TX)) {
+            // The SSLEngine does not know the record sequence of the kernel anymore, so it can not write any record.
+            if (isStateSet(STATE_OUTBOUND_CLOSED) || engine.isInboundDone()) {
+                return false;
+            }
+            throw new SSLException("renegotiation is not supported with kernel TLS");
+        }
         ByteBuf out = null;
         ByteBufAllocator alloc = ctx.alloc();
         try {
@@ -1040,6 +1299,10 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
                 SSLEngineResult result = engine.wrap(in0, out0);
                 in.skipBytes(result.bytesConsumed());
                 out.writerIndex(out.writerIndex() + result.bytesProduced());
+                if (result.bytesConsumed() > 0 ||
+                        result.bytesProduced() > 0 && isStateSet(STATE_KERNEL_TLS_PENDING)) {
+                    setState(STATE_KERNEL_TLS_UNSAFE);
+                }
 
                 if (result.getStatus() == Status.BUFFER_OVERFLOW) {
                     out.ensureWritable(engine.getSession().getPacketBufferSize());
@@ -1821,6 +2084,11 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
      * was fired. {@code false} otherwise.
      */
     private boolean setHandshakeSuccess() {
+        if (isStateSet(STATE_KERNEL_TLS_PENDING) ||
+                !handshakePromise.isDone() && kernelTlsEnabled && startKernelTls()) {
+            // The handshake is completed once we know if the kernel takes over the encryption.
+            return false;
+        }
         // Our control flow may invoke this method multiple times for a single FINISHED event. For example
         // wrapNonAppData may drain pendingUnencryptedWrites in wrap which transitions to handshake from FINISHED to
         // NOT_HANDSHAKING which invokes setHandshakeSuccess, and then wrapNonAppData also directly invokes this method.
@@ -1845,6 +2113,76 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         return notified;
     }
 
+    /**
+     * Flushes the records that were encrypted by the {@link SSLEngine} so far and hands the encryption over to the
+     * kernel once they are written.
+     *
+     * @return {@code true} if the handshake is completed by {@link #finishKernelTls(ChannelFuture, KernelTlsTxKey)},
+     * {@code false} if kernel TLS can not be used for this connection.
+     */
+    private boolean startKernelTls() {
+        final ChannelHandlerContext ctx = this.ctx;
+        if (!(ctx.channel() instanceof KernelTlsChannel) ||
+                isStateSet(STATE_KERNEL_TLS_UNSAFE) || isStateSet(STATE_OUTBOUND_CLOSED)) {
+            return false;
+        }
+        final KernelTlsTxKey key = KernelTlsTxKey.of(engine);
+        if (key == null) {
+            return false;
+        }
+        setState(STATE_KERNEL_TLS_PENDING);
+        ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(final ChannelFuture future) {
+                // The future may be notified while we are still in wrap(...) or unwrap(...), so hand over later.
+                ctx.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishKernelTls(future, key);
+                    }
+                });
+            }
+        });
+        return true;
+    }
+
+    private void finishKernelTls(ChannelFuture future, KernelTlsTxKey key) {
+        try {
+            clearState(STATE_KERNEL_TLS_PENDING);
+            if (ctx.isRemoved()) {
+                return;
+            }
+            if (!future.isSuccess()) {
+                setHandshakeFailureTransportFailure(ctx, future.cause());
+                return;
+            }
+            try {
+                if (!isStateSet(STATE_KERNEL_TLS_UNSAFE) && !isStateSet(STATE_OUTBOUND_CLOSED) &&
+                        ((KernelTlsChannel) ctx.channel()).enableKernelTlsTx(KernelTlsChannel.TLS_1_2, key.cipher,
+                                key.key, key.iv, KernelTlsTxKey.FIRST_RECORD_SEQUENCE)) {
+                    setState(STATE_KERNEL_TLS_TX);
+                }
+            } catch (ChannelException e) {
+                // The channel was closed as it can not be used without kernel TLS anymore.
+                setHandshakeFailure(ctx, e);
+                return;
+            }
+        } finally {
+            key.destroy();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} Kernel TLS {}", ctx.channel(), isStateSet(STATE_KERNEL_TLS_TX) ? "enabled" : "not used");
+        }
+        setHandshakeSuccess();
+        if (!pendingUnencryptedWrites.isEmpty()) {
+            try {
+                wrapAndFlush(ctx);
+            } catch (Throwable cause) {
+                setHandshakeFailure(ctx, cause);
+            }
+        }
+    }
+
     /**
      * Notify all the handshake futures about the failure during the handshake.
      */
@@ -1937,7 +2275,11 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
 
         ChannelPromise closeNotifyPromise = ctx.newPromise();
         try {
-            flush(ctx, closeNotifyPromise);
+            if (isStateSet(STATE_KERNEL_TLS_TX)) {
+                writeKernelTlsCloseNotify(ctx, closeNotifyPromise);
+            } else {
+                flush(ctx, closeNotifyPromise);
+            }
         } finally {
             if (!isStateSet(STATE_CLOSE_NOTIFY)) {
                 setState(STATE_CLOSE_NOTIFY);
@@ -1962,6 +2304,28 @@ public class SslHandler extends ByteToMessageDecoder implements ChannelOutboundH
         }
     }
 
+    /**
+     * The {@link SSLEngine} does not know the record sequence of the kernel, so let the kernel encrypt the
+     * {@code close_notify} alert after everything that is still queued.
+     */
+    private void writeKernelTlsCloseNotify(ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (pendingUnencryptedWrites == null) {
+            promise.setFailure(newPendingWritesNullException());
+            return;
+        }
+        if (!pendingUnencryptedWrites.isEmpty()) {
+            pendingUnencryptedWrites.writeAndRemoveAll(ctx);
+        }
+        if (isStateSet(STATE_KERNEL_TLS_CLOSE_NOTIFY)) {
+            // Like the SSLEngine, only send the close_notify once.
+            ctx.writeAndFlush(Unpooled.EMPTY_BUFFER, promise);
+        } else {
+            setState(STATE_KERNEL_TLS_CLOSE_NOTIFY);
+            ctx.writeAndFlush(new KernelTlsRecord(KernelTlsRecord.CONTENT_TYPE_ALERT,
+                    Unpooled.wrappedBuffer(CLOSE_NOTIFY_ALERT)), promise);
+        }
+    }
+
     private void flush(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
         if (pendingUnencryptedWrites != null) {
             pendingUnencryptedWrites.add(Unpooled.EMPTY_BUFFER, promise);
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.handler.ssl.OpenSslSessionCache.NativeSslSession;
+import io.netty.util.internal.PlatformDependent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenSslSessionCacheTest {
+    private static final long TIMEOUT_MILLIS = 300 * 1000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testNumShardsIsPowerOfTwo() {
+        assertEquals(4, new RecordingCache(3).numShards());
+        assertEquals(8, new RecordingCache(8).numShards());
+    }
+
+    @Test
+    public void testSizeIsBoundAcrossShards() {
+        RecordingCache cache = new RecordingCache(4);
+        cache.setSessionCacheSize(10);
+        List<TestSession> sessions = new ArrayList<TestSession>();
+        for (int i = 0; i < 100; i++) {
+            TestSession session = newSession(cache, random.nextInt(cache.numShards()), TIMEOUT_MILLIS);
+            sessions.add(session);
+            assertTrue(cache.cacheSession(session));
+            // The new session is never the one which is evicted.
+            assertTrue(cache.containsSessionWithId(session.sessionId()));
+            assertThat(cache.getIds().size(), lessThanOrEqualTo(10));
+        }
+        assertEquals(10, cache.getIds().size());
+        assertEquals(90, cache.evictions());
+        assertEquals(90, cache.removed.size());
+
+        int freed = 0;
+        for (TestSession session : sessions) {
+            freed += session.freed;
+        }
+        assertEquals(90, freed);
+        cache.clear();
+        assertTrue(cache.getIds().isEmpty());
+    }
+
+    @Test
+    public void testEvictsFromOwnShardFirst() {
+        RecordingCache cache = new RecordingCache(4);
+        cache.setSessionCacheSize(2);
+        TestSession a = newSession(cache, 0, TIMEOUT_MILLIS);
+        TestSession b = newSession(cache, 1, TIMEOUT_MILLIS);
+        TestSession c = newSession(cache, 1, TIMEOUT_MILLIS);
+        cache.cacheSession(a);
+        cache.cacheSession(b);
+        cache.cacheSession(c);
+
+        // The eldest session of the shard that c was added to is evicted, even though a is older.
+        assertEquals(Collections.<NativeSslSession>singletonList(b), cache.removed);
+        assertTrue(cache.containsSessionWithId(a.sessionId()));
+        assertTrue(cache.containsSessionWithId(c.sessionId()));
+    }
+
+    @Test
+    public void testEvictsOtherShardsIfOwnShardOnlyHoldsNewSession() {
+        RecordingCache cache = new RecordingCache(4);
+        cache.setSessionCacheSize(2);
+        TestSession a = newSession(cache, 0, TIMEOUT_MILLIS);
+        TestSession b = newSession(cache, 0, TIMEOUT_MILLIS);
+        TestSession c = newSession(cache, 1, TIMEOUT_MILLIS);
+        cache.cacheSession(a);
+        cache.cacheSession(b);
+        cache.cacheSession(c);
+
+        // c is the only session of its shard, so the eldest session of another shard is evicted instead.
+        assertEquals(Collections.<NativeSslSession>singletonList(a), cache.removed);
+        assertTrue(cache.containsSessionWithId(b.sessionId()));
+        assertTrue(cache.containsSessionWithId(c.sessionId()));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvictedWithinShard() {
+        RecordingCache cache = new RecordingCache(4);
+        cache.setSessionCacheSize(3);
+        TestSession a = newSession(cache, 2, TIMEOUT_MILLIS);
+        TestSession b = newSession(cache, 2, TIMEOUT_MILLIS);
+        TestSession c = newSession(cache, 2, TIMEOUT_MILLIS);
+        cache.cacheSession(a);
+        cache.cacheSession(b);
+        cache.cacheSession(c);
+
+        // Resuming a moves it to the end of the access order.
+        assertEquals(a.session(), cache.getSession(0, a.getId()));
+        assertEquals(1, cache.hits());
+        assertEquals(-1, cache.getSession(0, newSession(cache, 2, TIMEOUT_MILLIS).getId()));
+        assertEquals(1, cache.misses());
+
+        cache.cacheSession(newSession(cache, 2, TIMEOUT_MILLIS));
+        assertEquals(Collections.<NativeSslSession>singletonList(b), cache.removed);
+        cache.cacheSession(newSession(cache, 2, TIMEOUT_MILLIS));
+        assertEquals(c, cache.removed.get(1));
+        assertTrue(cache.containsSessionWithId(a.sessionId()));
+        assertEquals(2, cache.evictions());
+    }
+
+    @Test
+    public void testExpiredSessionsAreExpungedPerShard() {
+        RecordingCache cache = new RecordingCache(2);
+        TestSession expired0 = newSession(cache, 0, -1);
+        TestSession expired1 = newSession(cache, 1, -1);
+        cache.cacheSession(expired0);
+        cache.cacheSession(expired1);
+        // Together with expired0 these are 254 sessions of the first shard.
+        for (int i = 0; i < 253; i++) {
+            cache.cacheSession(newSession(cache, 0, TIMEOUT_MILLIS));
+        }
+        assertTrue(cache.containsSessionWithId(expired0.sessionId()));
+        assertEquals(0, cache.evictions());
+
+        // Every 255th new session of a shard expunges the expired sessions of this shard only.
+        cache.cacheSession(newSession(cache, 0, TIMEOUT_MILLIS));
+        assertFalse(cache.containsSessionWithId(expired0.sessionId()));
+        assertTrue(cache.containsSessionWithId(expired1.sessionId()));
+        assertEquals(1, cache.evictions());
+        assertEquals(1, expired0.freed);
+
+        // Looking up an expired session removes it as well.
+        assertNull(cache.getSession(expired1.sessionId()));
+        assertFalse(cache.containsSessionWithId(expired1.sessionId()));
+        assertEquals(1, expired1.freed);
+    }
+
+    @Test
+    public void testConcurrentInsertAndEvict() throws Throwable {
+        final RecordingCache cache = new RecordingCache(4);
+        final int maxSize = 64;
+        cache.setSessionCacheSize(maxSize);
+        final int threads = 8;
+        final int sessionsPerThread = 2000;
+        final List<List<TestSession>> sessions = new ArrayList<List<TestSession>>();
+        for (int i = 0; i < threads; i++) {
+            List<TestSession> list = new ArrayList<TestSession>();
+            for (int j = 0; j < sessionsPerThread; j++) {
+                list.add(newSession(cache, random.nextInt(cache.numShards()), TIMEOUT_MILLIS));
+            }
+            sessions.add(list);
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> workers = new ArrayList<Thread>();
+        for (final List<TestSession> list : sessions) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (TestSession session : list) {
+                            cache.cacheSession(session);
+                            TestSession other = list.get(PlatformDependent.threadLocalRandom().nextInt(list.size()));
+                            cache.getSession(0, other.getId());
+                        }
+                    } catch (Throwable cause) {
+                        error.compareAndSet(null, cause);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+
+        int cached = cache.getIds().size();
+        assertThat(cached, lessThanOrEqualTo(maxSize));
+        int freed = 0;
+        for (List<TestSession> list : sessions) {
+            for (TestSession session : list) {
+                // A session is freed at most once, and only if it is not cached anymore.
+                assertThat(session.freed, lessThanOrEqualTo(1));
+                assertEquals(session.freed == 0, cache.containsSessionWithId(session.sessionId()));
+                freed += session.freed;
+            }
+        }
+        assertEquals(threads * sessionsPerThread, cached + freed);
+        assertEquals(freed, cache.evictions());
+    }
+
+    private TestSession newSession(OpenSslSessionCache cache, int shard, long timeoutMillis) {
+        for (;;) {
+            byte[] bytes = new byte[32];
+            random.nextBytes(bytes);
+            OpenSslSessionId id = new OpenSslSessionId(bytes);
+            if (cache.shardIndex(id) == shard) {
+                return new TestSession(random.nextLong(), id, timeoutMillis);
+            }
+        }
+    }
+
+    private static final class RecordingCache extends OpenSslSessionCache {
+        final List<NativeSslSession> removed = Collections.synchronizedList(new ArrayList<NativeSslSession>());
+
+        RecordingCache(int numShards) {
+            // The engine map is only needed for the native callbacks, which are not used by the tests.
+            super(null, numShards);
+        }
+
+        @Override
+        protected void sessionRemoved(NativeSslSession session) {
+            removed.add(session);
+        }
+    }
+
+    /**
+     * A {@link NativeSslSession} without a native SSL_SESSION*.
+     */
+    private static final class TestSession extends NativeSslSession {
+        volatile int freed;
+
+        TestSession(long session, OpenSslSessionId id, long timeoutMillis) {
+            super(session, id, "netty.io", 443, timeoutMillis);
+        }
+
+        @Override
+        boolean shouldBeSingleUse() {
+            return false;
+        }
+
+        @Override
+        boolean upRef() {
+            return true;
+        }
+
+        @Override
+        synchronized void free() {
+            close();
+            freed++;
+        }
+    }
+}
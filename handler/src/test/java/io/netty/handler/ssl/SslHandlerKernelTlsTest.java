@@ -0,0 +1,369 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.ssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.KernelTlsChannel;
+import io.netty.channel.socket.KernelTlsRecord;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class SslHandlerKernelTlsTest {
+
+    private static SelfSignedCertificate cert;
+
+    @BeforeAll
+    public static void init() throws Exception {
+        cert = new SelfSignedCertificate();
+    }
+
+    @AfterAll
+    public static void destroy() {
+        if (cert != null) {
+            cert.delete();
+        }
+    }
+
+    @Test
+    public void testServerOffloadsAes128Gcm() throws Exception {
+        testOffload(true, "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", KernelTlsChannel.Cipher.AES_128_GCM, 16);
+    }
+
+    @Test
+    public void testServerOffloadsAes256Gcm() throws Exception {
+        testOffload(true, "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384", KernelTlsChannel.Cipher.AES_256_GCM, 32);
+    }
+
+    @Test
+    public void testClientOffloadsAes128Gcm() throws Exception {
+        testOffload(false, "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", KernelTlsChannel.Cipher.AES_128_GCM, 16);
+    }
+
+    private static void testOffload(boolean server, String cipherSuite, KernelTlsChannel.Cipher expectedCipher,
+                                    int expectedKeyLength) throws Exception {
+        assumeTrue(OpenSsl.isAvailable());
+        SslContext kernelTlsContext = newContext(server, SslProvider.OPENSSL, SslProtocols.TLS_v1_2, cipherSuite);
+        SslContext peerContext = newContext(!server, SslProvider.JDK, SslProtocols.TLS_v1_2, cipherSuite);
+        SslHandler handler = kernelTlsContext.newHandler(UnpooledByteBufAllocator.DEFAULT);
+        handler.setKernelTlsEnabled(true);
+        KernelTlsEmbeddedChannel channel = new KernelTlsEmbeddedChannel(true, handler);
+        EmbeddedChannel peer = new EmbeddedChannel(peerContext.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        File file = File.createTempFile("netty-", ".tmp");
+        try {
+            handshake(channel, peer);
+            assertTrue(handler.handshakeFuture().isSuccess());
+            assertTrue(handler.isKernelTlsActive());
+            assertTrue(channel.isKernelTlsTxEnabled());
+            assertSame(expectedCipher, channel.cipher);
+            assertEquals(expectedKeyLength, channel.key.length);
+            assertEquals(4, channel.iv.length);
+            assertEquals(1, channel.recordSequence);
+
+            // The plaintext is passed through and the kernel encrypts it with the keys of the SSLEngine.
+            assertTrue(channel.writeOutbound(Unpooled.copiedBuffer("hello", CharsetUtil.US_ASCII)));
+            ByteBuf plaintext = channel.readOutbound();
+            byte[] bytes = new byte[plaintext.readableBytes()];
+            plaintext.readBytes(bytes);
+            plaintext.release();
+            assertEquals("hello", new String(bytes, CharsetUtil.US_ASCII));
+            peer.writeInbound(encryptRecord(channel, bytes));
+            ByteBuf decrypted = peer.readInbound();
+            assertEquals("hello", decrypted.toString(CharsetUtil.US_ASCII));
+            decrypted.release();
+
+            // Inbound records are still decrypted by the SSLEngine.
+            peer.writeOutbound(Unpooled.copiedBuffer("world", CharsetUtil.US_ASCII));
+            transfer(peer, channel);
+            ByteBuf received = channel.readInbound();
+            assertEquals("world", received.toString(CharsetUtil.US_ASCII));
+            received.release();
+
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(bytes);
+            out.close();
+            FileRegion region = new DefaultFileRegion(file, 0, bytes.length);
+            assertTrue(channel.writeOutbound(region));
+            assertSame(region, channel.readOutbound());
+            region.release();
+        } finally {
+            file.delete();
+            channel.finishAndReleaseAll();
+            peer.finishAndReleaseAll();
+            ReferenceCountUtil.release(kernelTlsContext);
+            ReferenceCountUtil.release(peerContext);
+        }
+    }
+
+    @Test
+    public void testCloseNotifyIsEncryptedByKernel() throws Exception {
+        assumeTrue(OpenSsl.isAvailable());
+        String cipherSuite = "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256";
+        SslContext kernelTlsContext = newContext(true, SslProvider.OPENSSL, SslProtocols.TLS_v1_2, cipherSuite);
+        SslContext peerContext = newContext(false, SslProvider.JDK, SslProtocols.TLS_v1_2, cipherSuite);
+        SslHandler handler = kernelTlsContext.newHandler(UnpooledByteBufAllocator.DEFAULT);
+        handler.setKernelTlsEnabled(true);
+        KernelTlsEmbeddedChannel channel = new KernelTlsEmbeddedChannel(true, handler);
+        SslHandler peerHandler = peerContext.newHandler(UnpooledByteBufAllocator.DEFAULT);
+        EmbeddedChannel peer = new EmbeddedChannel(peerHandler);
+        try {
+            handshake(channel, peer);
+            assertTrue(handler.isKernelTlsActive());
+
+            handler.closeOutbound();
+            KernelTlsRecord record = channel.readOutbound();
+            assertEquals(KernelTlsRecord.CONTENT_TYPE_ALERT, record.contentType());
+            byte[] alert = ByteBufUtil.getBytes(record.content());
+            record.release();
+            // The close_notify is only sent once.
+            channel.close();
+            for (Object msg : channel.outboundMessages()) {
+                assertFalse(msg instanceof KernelTlsRecord);
+            }
+
+            peer.writeInbound(encryptRecord(channel, KernelTlsRecord.CONTENT_TYPE_ALERT, alert));
+            assertTrue(peerHandler.sslCloseFuture().isSuccess());
+        } finally {
+            channel.finishAndReleaseAll();
+            peer.finishAndReleaseAll();
+            ReferenceCountUtil.release(kernelTlsContext);
+            ReferenceCountUtil.release(peerContext);
+        }
+    }
+
+    @Test
+    public void testHandshakeFailsWhenKernelRefusesKey() throws Exception {
+        assumeTrue(OpenSsl.isAvailable());
+        String cipherSuite = "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256";
+        SslContext kernelTlsContext = newContext(true, SslProvider.OPENSSL, SslProtocols.TLS_v1_2, cipherSuite);
+        SslContext peerContext = newContext(false, SslProvider.JDK, SslProtocols.TLS_v1_2, cipherSuite);
+        SslHandler handler = kernelTlsContext.newHandler(UnpooledByteBufAllocator.DEFAULT);
+        handler.setKernelTlsEnabled(true);
+        KernelTlsEmbeddedChannel channel = new KernelTlsEmbeddedChannel(true);
+        channel.refuseKey = true;
+        channel.pipeline().addLast(handler);
+        EmbeddedChannel peer = new EmbeddedChannel(peerContext.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        try {
+            handshake(channel, peer);
+            assertTrue(handler.handshakeFuture().cause() instanceof ChannelException);
+            assertFalse(handler.isKernelTlsActive());
+            assertFalse(channel.isOpen());
+        } finally {
+            channel.finishAndReleaseAll();
+            peer.finishAndReleaseAll();
+            ReferenceCountUtil.release(kernelTlsContext);
+            ReferenceCountUtil.release(peerContext);
+        }
+    }
+
+    @Test
+    public void testFallbackWhenKernelRefuses() throws Exception {
+        testFallback(new KernelTlsEmbeddedChannel(false), SslProvider.OPENSSL, SslProtocols.TLS_v1_2,
+                "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256");
+    }
+
+    @Test
+    public void testFallbackWhenChannelNotSupported() throws Exception {
+        testFallback(new EmbeddedChannel(), SslProvider.OPENSSL, SslProtocols.TLS_v1_2,
+                "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256");
+    }
+
+    @Test
+    public void testFallbackWhenEngineNotSupported() throws Exception {
+        testFallback(new KernelTlsEmbeddedChannel(true), SslProvider.JDK, SslProtocols.TLS_v1_2,
+                "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256");
+    }
+
+    @Test
+    public void testFallbackWhenCipherNotSupported() throws Exception {
+        testFallback(new KernelTlsEmbeddedChannel(true), SslProvider.OPENSSL, SslProtocols.TLS_v1_2,
+                "TLS_RSA_WITH_AES_128_CBC_SHA");
+    }
+
+    @Test
+    public void testFallbackWithTls13() throws Exception {
+        assumeTrue(SslProvider.isTlsv13Supported(SslProvider.OPENSSL));
+        assumeTrue(SslProvider.isTlsv13Supported(SslProvider.JDK));
+        testFallback(new KernelTlsEmbeddedChannel(true), SslProvider.OPENSSL, SslProtocols.TLS_v1_3,
+                "TLS_AES_128_GCM_SHA256");
+    }
+
+    private static void testFallback(EmbeddedChannel channel, SslProvider provider, String protocol,
+                                     String cipherSuite) throws Exception {
+        assumeTrue(provider != SslProvider.OPENSSL || OpenSsl.isAvailable());
+        SslContext serverContext = newContext(true, provider, protocol, cipherSuite);
+        SslContext clientContext = newContext(false, SslProvider.JDK, protocol, cipherSuite);
+        SslHandler handler = serverContext.newHandler(UnpooledByteBufAllocator.DEFAULT);
+        handler.setKernelTlsEnabled(true);
+        channel.pipeline().addLast(handler);
+        EmbeddedChannel peer = new EmbeddedChannel(clientContext.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        try {
+            handshake(channel, peer);
+            assertTrue(handler.handshakeFuture().isSuccess());
+            assertFalse(handler.isKernelTlsActive());
+            if (channel instanceof KernelTlsChannel) {
+                assertFalse(((KernelTlsChannel) channel).isKernelTlsTxEnabled());
+            }
+
+            channel.writeOutbound(Unpooled.copiedBuffer("hello", CharsetUtil.US_ASCII));
+            transfer(channel, peer);
+            ByteBuf decrypted = peer.readInbound();
+            assertEquals("hello", decrypted.toString(CharsetUtil.US_ASCII));
+            decrypted.release();
+        } finally {
+            channel.finishAndReleaseAll();
+            peer.finishAndReleaseAll();
+            ReferenceCountUtil.release(serverContext);
+            ReferenceCountUtil.release(clientContext);
+        }
+    }
+
+    private static SslContext newContext(boolean server, SslProvider provider, String protocol, String cipherSuite)
+            throws Exception {
+        SslContextBuilder builder = server ? SslContextBuilder.forServer(cert.certificate(), cert.privateKey()) :
+                SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE);
+        return builder.sslProvider(provider)
+                .protocols(protocol)
+                .ciphers(Collections.singletonList(cipherSuite))
+                .build();
+    }
+
+    private static void handshake(EmbeddedChannel channel, EmbeddedChannel peer) {
+        for (int i = 0; i < 100; i++) {
+            boolean transferred = transfer(channel, peer) | transfer(peer, channel);
+            channel.runPendingTasks();
+            peer.runPendingTasks();
+            if (!transferred && channel.outboundMessages().isEmpty() && peer.outboundMessages().isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private static boolean transfer(EmbeddedChannel from, EmbeddedChannel to) {
+        boolean transferred = false;
+        for (;;) {
+            Object msg = from.readOutbound();
+            if (msg == null) {
+                return transferred;
+            }
+            to.writeInbound(msg);
+            transferred = true;
+        }
+    }
+
+    /**
+     * Encrypts a TLS 1.2 application data record the same way the kernel does.
+     */
+    private static ByteBuf encryptRecord(KernelTlsEmbeddedChannel channel, byte[] plaintext) throws Exception {
+        return encryptRecord(channel, SslUtils.SSL_CONTENT_TYPE_APPLICATION_DATA, plaintext);
+    }
+
+    /**
+     * Encrypts a TLS 1.2 record of the given content type the same way the kernel does.
+     */
+    private static ByteBuf encryptRecord(KernelTlsEmbeddedChannel channel, int contentType, byte[] plaintext)
+            throws Exception {
+        long sequence = channel.recordSequence++;
+        byte[] nonce = new byte[12];
+        System.arraycopy(channel.iv, 0, nonce, 0, 4);
+        ByteBuffer.wrap(nonce, 4, 8).putLong(sequence);
+        ByteBuffer aad = ByteBuffer.allocate(13);
+        aad.putLong(sequence).put((byte) contentType).putShort((short) 0x0303)
+                .putShort((short) plaintext.length);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(channel.key, "AES"), new GCMParameterSpec(128, nonce));
+        cipher.updateAAD(aad.array());
+        byte[] encrypted = cipher.doFinal(plaintext);
+
+        ByteBuf record = Unpooled.buffer();
+        record.writeByte(contentType);
+        record.writeShort(0x0303);
+        record.writeShort(8 + encrypted.length);
+        record.writeLong(sequence);
+        record.writeBytes(encrypted);
+        return record;
+    }
+
+    private static final class KernelTlsEmbeddedChannel extends EmbeddedChannel implements KernelTlsChannel {
+        private final boolean supported;
+        private boolean enabled;
+        boolean refuseKey;
+        KernelTlsChannel.Cipher cipher;
+        byte[] key;
+        byte[] iv;
+        long recordSequence;
+
+        KernelTlsEmbeddedChannel(boolean supported, ChannelHandler... handlers) {
+            super(handlers);
+            this.supported = supported;
+        }
+
+        @Override
+        public boolean isKernelTlsTxEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public boolean enableKernelTlsTx(int version, KernelTlsChannel.Cipher cipher, byte[] key, byte[] iv,
+                                         long recordSequence) {
+            assertTrue(eventLoop().inEventLoop());
+            assertEquals(TLS_1_2, version);
+            assertNull(this.cipher);
+            if (!supported) {
+                return false;
+            }
+            if (refuseKey) {
+                close();
+                throw new ChannelException("key refused");
+            }
+            // The handler clears the key material once we return, so keep copies.
+            this.cipher = cipher;
+            this.key = key.clone();
+            this.iv = iv.clone();
+            this.recordSequence = recordSequence;
+            enabled = true;
+            return true;
+        }
+    }
+}
@@ -72,6 +72,7 @@ import java.nio.channels.ClosedChannelException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
@@ -1011,6 +1012,95 @@ public class SslHandlerTest {
         }
     }
 
+    @Test
+    public void testWrapBatchOpenSsl() throws Exception {
+        // 32 chunks of 1024 bytes are encrypted into two buffers of 16 records each.
+        testWrapBatch(16, 2);
+    }
+
+    @Test
+    public void testWrapBatchDisabledOpenSsl() throws Exception {
+        testWrapBatch(1, 32);
+    }
+
+    private static void testWrapBatch(int wrapBatchSize, int expectedBuffers) throws Exception {
+        assumeTrue(OpenSsl.isAvailable());
+        SelfSignedCertificate cert = new SelfSignedCertificate();
+        SslContext clientContext = SslContextBuilder.forClient()
+                .sslProvider(SslProvider.OPENSSL)
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .protocols(SslProtocols.TLS_v1_2)
+                .build();
+        SslContext serverContext = SslContextBuilder.forServer(cert.certificate(), cert.privateKey())
+                .sslProvider(SslProvider.JDK)
+                .protocols(SslProtocols.TLS_v1_2)
+                .build();
+        SslHandler clientHandler = clientContext.newHandler(UnpooledByteBufAllocator.DEFAULT);
+        clientHandler.setWrapDataSize(1024);
+        clientHandler.setWrapBatchSize(wrapBatchSize);
+        EmbeddedChannel client = new EmbeddedChannel(clientHandler);
+        EmbeddedChannel server = new EmbeddedChannel(serverContext.newHandler(UnpooledByteBufAllocator.DEFAULT));
+        try {
+            for (int i = 0; i < 10 && !clientHandler.handshakeFuture().isDone(); i++) {
+                transferAll(client, server);
+                transferAll(server, client);
+            }
+            assertTrue(clientHandler.handshakeFuture().isSuccess());
+
+            byte[] expected = new byte[64 * 512];
+            PlatformDependent.threadLocalRandom().nextBytes(expected);
+            List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(client.write(Unpooled.copiedBuffer(expected, i * 512, 512)));
+            }
+            client.flush();
+            for (ChannelFuture future : futures) {
+                assertTrue(future.isSuccess());
+            }
+
+            int buffers = 0;
+            for (;;) {
+                ByteBuf buf = client.readOutbound();
+                if (buf == null) {
+                    break;
+                }
+                if (buf.isReadable()) {
+                    buffers++;
+                }
+                server.writeInbound(buf);
+            }
+            assertEquals(expectedBuffers, buffers);
+
+            ByteBuf received = Unpooled.buffer(expected.length);
+            for (;;) {
+                ByteBuf buf = server.readInbound();
+                if (buf == null) {
+                    break;
+                }
+                received.writeBytes(buf);
+                buf.release();
+            }
+            assertEquals(Unpooled.wrappedBuffer(expected), received);
+            received.release();
+        } finally {
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+            ReferenceCountUtil.release(clientContext);
+            ReferenceCountUtil.release(serverContext);
+            cert.delete();
+        }
+    }
+
+    private static void transferAll(EmbeddedChannel from, EmbeddedChannel to) {
+        for (;;) {
+            Object msg = from.readOutbound();
+            if (msg == null) {
+                return;
+            }
+            to.writeInbound(msg);
+        }
+    }
+
     @Test
     public void testHandshakeWithExecutorThatExecuteDirectlyOpenSsl() throws Throwable {
         OpenSsl.ensureAvailability();
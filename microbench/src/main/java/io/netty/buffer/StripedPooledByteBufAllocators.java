@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+/**
+ * Gives benchmarks access to the number of subpage pools per small size class of a {@link PooledByteBufAllocator},
+ * which is otherwise only configurable via {@code -Dio.netty.allocator.smallSubpageStripes}.
+ */
+public final class StripedPooledByteBufAllocators {
+
+    /**
+     * Returns a new {@link PooledByteBufAllocator} for direct buffers without thread caches.
+     */
+    public static PooledByteBufAllocator newDirectAllocator(int nDirectArena, int subpageStripes) {
+        return new PooledByteBufAllocator(true, 0, nDirectArena, 8192, 9, 0, 0, false, 0, null, subpageStripes);
+    }
+
+    private StripedPooledByteBufAllocators() { }
+}
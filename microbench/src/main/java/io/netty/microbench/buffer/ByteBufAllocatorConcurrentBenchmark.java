@@ -16,12 +16,15 @@
 package io.netty.microbench.buffer;
 
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.StripedPooledByteBufAllocators;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
@@ -32,13 +35,65 @@ import org.openjdk.jmh.annotations.Warmup;
 @Threads(8)
 public class ByteBufAllocatorConcurrentBenchmark  extends AbstractMicrobenchmark {
 
-    private static final ByteBufAllocator unpooledAllocator = new UnpooledByteBufAllocator(true, true);
+    public enum AllocatorType {
+        UNPOOLED,
+        // The benchmark threads have no thread cache, so small allocations contend for the subpage pools of the arena.
+        POOLED,
+        // Like POOLED, but with 8 subpage pools per small size class.
+        POOLED_STRIPED
+    }
+
+    @Param
+    public AllocatorType allocatorType;
 
-    @Param({ "00064", "00256", "01024", "04096" })
+    @Param({ "00016", "00064", "00256", "01024", "04096" })
     public int size;
 
+    private ByteBufAllocator allocator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (allocatorType == AllocatorType.UNPOOLED) {
+            allocator = new UnpooledByteBufAllocator(true, true);
+            return;
+        }
+        // A single arena, so all threads share the same subpage pools.
+        allocator = StripedPooledByteBufAllocators.newDirectAllocator(
+                1, allocatorType == AllocatorType.POOLED_STRIPED ? 8 : 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean allocateReleaseSingleThread() {
+        return allocator.directBuffer(size).release();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public boolean allocateRelease2Threads() {
+        return allocator.directBuffer(size).release();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean allocateRelease4Threads() {
+        return allocator.directBuffer(size).release();
+    }
+
     @Benchmark
     public boolean allocateRelease() {
-        return unpooledAllocator.directBuffer(size).release();
+        return allocator.directBuffer(size).release();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean allocateRelease16Threads() {
+        return allocator.directBuffer(size).release();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean allocateRelease64Threads() {
+        return allocator.directBuffer(size).release();
     }
 }
@@ -20,6 +20,7 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ByteProcessor;
 import io.netty.util.internal.SuppressJava6Requirement;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
@@ -43,7 +44,7 @@ import java.util.concurrent.TimeUnit;
 @Measurement(iterations = 8, time = 1)
 public class ByteBufIndexOfBenchmark extends AbstractMicrobenchmark {
 
-    @Param({ "7", "16", "23", "32" })
+    @Param({ "7", "16", "23", "32", "1024" })
     int size;
 
     @Param({ "4", "11" })
@@ -68,6 +69,10 @@ public class ByteBufIndexOfBenchmark extends AbstractMicrobenchmark {
     @Param({ "false", "true" })
     private boolean pooled;
 
+    // FIND_NUL and FIND_LF are served by the SWAR search, an equivalent custom processor is checked byte by byte
+    private ByteProcessor processor;
+    private ByteProcessor genericProcessor;
+
     @Setup(Level.Trial)
     @SuppressJava6Requirement(reason = "using SplittableRandom to reliably produce data")
     public void init() {
@@ -75,6 +80,9 @@ public class ByteBufIndexOfBenchmark extends AbstractMicrobenchmark {
         SplittableRandom random = new SplittableRandom(seed);
         permutations = 1 << logPermutations;
         this.data = new ByteBuf[permutations];
+        processor = needleByte == 0? ByteProcessor.FIND_NUL :
+                needleByte == '\n'? ByteProcessor.FIND_LF : new ByteProcessor.IndexOfProcessor(needleByte);
+        genericProcessor = new ByteProcessor.IndexOfProcessor(needleByte);
         final ByteBufAllocator allocator = pooled? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
         for (int i = 0; i < permutations; ++i) {
             data[i] = direct? allocator.directBuffer(size, size) : allocator.heapBuffer(size, size);
@@ -104,6 +112,16 @@ public class ByteBufIndexOfBenchmark extends AbstractMicrobenchmark {
         return getData().indexOf(0, size, needleByte);
     }
 
+    @Benchmark
+    public int forEachByte() {
+        return getData().forEachByte(0, size, processor);
+    }
+
+    @Benchmark
+    public int forEachByteGeneric() {
+        return getData().forEachByte(0, size, genericProcessor);
+    }
+
     @TearDown
     public void releaseBuffers() {
         for (ByteBuf buffer : data) {
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DirectChunkAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.unix.HugePageDirectChunkAllocator;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+
+/**
+ * Compares random reads and bulk copies on pooled direct buffers whose chunks are allocated with
+ * {@link java.nio.ByteBuffer#allocateDirect(int)}, with transparent huge pages or with reserved huge pages
+ * (see {@link HugePageDirectChunkAllocator}).
+ */
+public class EpollHugePageChunkBenchmark extends AbstractMicrobenchmark {
+    private static final int RANDOM_READS = 1024;
+
+    public enum ChunkMemory {
+        DIRECT,
+        TRANSPARENT_HUGE_PAGES,
+        HUGE_TLB
+    }
+
+    @Param
+    public ChunkMemory chunkMemory;
+
+    @Param({ "16", "128" })
+    public int chunks;
+
+    private PooledByteBufAllocator allocator;
+    private ByteBuf[] buffers;
+    private int[] readBuffers;
+    private int[] readOffsets;
+    private int copyIndex;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Epoll.ensureAvailability();
+        DirectChunkAllocator chunkAllocator;
+        switch (chunkMemory) {
+            case TRANSPARENT_HUGE_PAGES:
+                chunkAllocator = new HugePageDirectChunkAllocator(false);
+                break;
+            case HUGE_TLB:
+                chunkAllocator = new HugePageDirectChunkAllocator(true);
+                break;
+            default:
+                chunkAllocator = null;
+                break;
+        }
+        allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 9, 0, 0, false, 0, chunkAllocator);
+        int chunkSize = allocator.metric().chunkSize();
+        buffers = new ByteBuf[chunks];
+        for (int i = 0; i < chunks; i++) {
+            // Each buffer occupies a whole chunk, and is filled so that all pages are backed by memory.
+            buffers[i] = allocator.directBuffer(chunkSize, chunkSize);
+            buffers[i].writeZero(chunkSize);
+        }
+
+        Random random = new Random(42);
+        readBuffers = new int[RANDOM_READS];
+        readOffsets = new int[RANDOM_READS];
+        for (int i = 0; i < RANDOM_READS; i++) {
+            readBuffers[i] = random.nextInt(chunks);
+            readOffsets[i] = random.nextInt(chunkSize / 8) * 8;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (ByteBuf buffer : buffers) {
+            buffer.release();
+        }
+    }
+
+    @Benchmark
+    public long randomRead() {
+        long sum = 0;
+        for (int i = 0; i < RANDOM_READS; i++) {
+            sum += buffers[readBuffers[i]].getLong(readOffsets[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public ByteBuf copyChunk() {
+        int src = copyIndex;
+        int dst = src + 1 == chunks ? 0 : src + 1;
+        copyIndex = dst;
+        ByteBuf dstBuffer = buffers[dst];
+        return dstBuffer.setBytes(0, buffers[src], 0, dstBuffer.capacity());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.concurrent.Future;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writes with {@code MSG_ZEROCOPY} against the default {@code writev} path. Each operation writes a payload
+ * and waits until the peer acknowledged that it received all of it.
+ * <p>
+ * Run with {@code -prof perfnorm} (or {@code -prof perf}) to compare the CPU usage as well. Note that the kernel
+ * copies the data anyway if it is sent over the loopback device, so the numbers are only meaningful if the server
+ * is reached via a real network interface, which can be configured via {@code -Dio.netty.microbench.zerocopy.host}.
+ */
+public class EpollSocketZeroCopyBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "65536", "262144", "1048576", "4194304" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean zeroCopy;
+
+    private EpollEventLoopGroup group;
+    private Channel serverChan;
+    private Channel chan;
+    private ByteBuf payload;
+    private AckHandler ackHandler;
+
+    @Setup
+    public void setup() throws Exception {
+        group = new EpollEventLoopGroup(2);
+        final int payloadSize = size;
+        String host = System.getProperty("io.netty.microbench.zerocopy.host", "127.0.0.1");
+        serverChan = new ServerBootstrap()
+            .channel(EpollServerSocketChannel.class)
+            .group(group)
+            .childHandler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                        private long received;
+
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ByteBuf buf = (ByteBuf) msg;
+                            received += buf.readableBytes();
+                            buf.release();
+                            while (received >= payloadSize) {
+                                received -= payloadSize;
+                                ctx.writeAndFlush(ctx.alloc().directBuffer(1).writeByte('a'), ctx.voidPromise());
+                            }
+                        }
+                    });
+                }
+            })
+            .bind(host, 0)
+            .sync()
+            .channel();
+
+        ackHandler = new AckHandler();
+        chan = new Bootstrap()
+            .channel(EpollSocketChannel.class)
+            .option(EpollChannelOption.SO_ZEROCOPY, zeroCopy)
+            .handler(ackHandler)
+            .group(group)
+            .connect(serverChan.localAddress())
+            .sync()
+            .channel();
+
+        payload = chan.alloc().directBuffer(size);
+        for (int i = 0; i < size; i++) {
+            payload.writeByte(i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        chan.close().sync();
+        serverChan.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        payload.release();
+    }
+
+    @Benchmark
+    public Object write() throws Exception {
+        Future<Void> ack = ackHandler.newAck();
+        chan.writeAndFlush(payload.retainedDuplicate(), chan.voidPromise());
+        return ack.sync();
+    }
+
+    private static final class AckHandler extends ChannelInboundHandlerAdapter {
+        private volatile ChannelPromise ack;
+        private Channel channel;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            channel = ctx.channel();
+        }
+
+        ChannelPromise newAck() {
+            ChannelPromise promise = channel.newPromise();
+            ack = promise;
+            return promise;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ((ByteBuf) msg).release();
+            ack.trySuccess();
+        }
+    }
+}
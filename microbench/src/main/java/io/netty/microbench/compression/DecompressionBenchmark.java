@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.ZstdDecoder;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures how fast the content of a response is decompressed, for the encodings that
+ * {@link io.netty.handler.codec.http.HttpContentDecompressor} supports. The compressed content is passed to the
+ * decoder in chunks of {@link #chunkSize} bytes, as it would be received from the network.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DecompressionBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "zstd", "gzip" })
+    public String encoding;
+
+    @Param({ "1024", "65536", "1048576" })
+    public int size;
+
+    @Param({ "16384" })
+    public int chunkSize;
+
+    @Param({ "true", "false" })
+    public boolean direct;
+
+    private ByteBuf compressed;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        byte[] data = new byte[size];
+        Random random = new Random(42);
+        // Compressible data, similar to what is used by the compression tests.
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i % 4 != 0 ? 0 : (byte) random.nextInt();
+        }
+
+        byte[] bytes;
+        if ("zstd".equals(encoding)) {
+            bytes = com.github.luben.zstd.Zstd.compress(data);
+        } else if ("gzip".equals(encoding)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(data);
+            gzip.close();
+            bytes = out.toByteArray();
+        } else {
+            throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+        }
+        ByteBuf buf = direct ? Unpooled.directBuffer(bytes.length) : Unpooled.buffer(bytes.length);
+        compressed = Unpooled.unreleasableBuffer(buf.writeBytes(bytes));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        compressed.unwrap().release();
+    }
+
+    private ChannelHandler newDecoder() {
+        if ("zstd".equals(encoding)) {
+            return new ZstdDecoder();
+        }
+        return ZlibCodecFactory.newZlibDecoder(ZlibWrapper.GZIP);
+    }
+
+    @Benchmark
+    public int decompress() {
+        EmbeddedChannel channel = new EmbeddedChannel(newDecoder());
+        channel.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+        ByteBuf compressed = this.compressed;
+        int length = compressed.readableBytes();
+        for (int i = 0; i < length; i += chunkSize) {
+            channel.writeInbound(compressed.retainedSlice(i, Math.min(chunkSize, length - i)));
+        }
+        int decompressed = 0;
+        for (;;) {
+            ByteBuf buf = channel.readInbound();
+            if (buf == null) {
+                break;
+            }
+            decompressed += buf.readableBytes();
+            buf.release();
+        }
+        channel.finishAndReleaseAll();
+        return decompressed;
+    }
+}
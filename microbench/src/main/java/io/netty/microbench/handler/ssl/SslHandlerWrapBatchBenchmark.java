@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.handler.ssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+
+/**
+ * Flushes many small writes of mixed sizes at once, with and without encrypting several records into one buffer
+ * (see {@link io.netty.handler.ssl.SslHandler#setWrapBatchSize(int)}).
+ */
+public class SslHandlerWrapBatchBenchmark extends AbstractSslHandlerBenchmark {
+    private static final int[] MESSAGE_SIZES = { 32, 100, 256, 700, 1500, 4096 };
+
+    @Param({ "1", "16" })
+    public int wrapBatchSize;
+
+    @Param({ "4096", "16384" })
+    public int wrapDataSize;
+
+    @Param({ "16", "128" })
+    public int numWrites;
+
+    private ByteBuf[] messages;
+
+    @Setup(Level.Iteration)
+    public final void setup() throws Exception {
+        ByteBufAllocator allocator = new PooledByteBufAllocator(true);
+        initSslHandlers(allocator);
+        clientSslHandler.setWrapBatchSize(wrapBatchSize);
+        clientSslHandler.setWrapDataSize(wrapDataSize);
+
+        Random random = new Random(42);
+        messages = new ByteBuf[numWrites];
+        for (int i = 0; i < numWrites; i++) {
+            byte[] bytes = new byte[MESSAGE_SIZES[random.nextInt(MESSAGE_SIZES.length)]];
+            PlatformDependent.threadLocalRandom().nextBytes(bytes);
+            messages[i] = allocator.directBuffer(bytes.length).writeBytes(bytes);
+        }
+
+        // Complete the initial TLS handshake.
+        doHandshake();
+    }
+
+    @TearDown(Level.Iteration)
+    public final void tearDown() throws Exception {
+        destroySslHandlers();
+        for (ByteBuf message : messages) {
+            message.release();
+        }
+        clientCtx.releaseCumulation();
+        serverCtx.releaseCumulation();
+    }
+
+    @Benchmark
+    public ByteBuf wrap() throws Exception {
+        clientCtx.releaseCumulation();
+        for (ByteBuf message : messages) {
+            clientSslHandler.write(clientCtx, message.retainedSlice(), clientCtx.voidPromise());
+        }
+        clientSslHandler.flush(clientCtx);
+        return clientCtx.cumulation();
+    }
+
+    @Benchmark
+    public ByteBuf wrapUnwrap() throws Exception {
+        ByteBuf src = wrap().retainedSlice();
+        do {
+            serverSslHandler.channelRead(serverCtx, src);
+        } while (src.isReadable());
+        serverCtx.releaseCumulation();
+        return src;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.http;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.pool.HttpChannelPool;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Compares {@link HttpChannelPool} with {@link FixedChannelPool}, for acquiring and releasing a connection alone
+ * (from the benchmark thread and from the {@link EventLoop} of the connection), and for whole request/response
+ * exchanges with a local server.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class HttpChannelPoolBenchmark extends AbstractMicrobenchmark {
+
+    private static final int ACQUIRES_PER_TASK = 1000;
+
+    @Param({ "http", "fixed" })
+    public String pool;
+
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private ChannelPool channelPool;
+    private EventLoop loop;
+    private Callable<Channel> acquireReleaseTask;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        group = new DefaultEventLoopGroup(1);
+        loop = group.next();
+        LocalAddress address = new LocalAddress("HttpChannelPoolBenchmark");
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(1024),
+                                new SimpleChannelInboundHandler<FullHttpRequest>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+                                        FullHttpResponse response = new DefaultFullHttpResponse(
+                                                HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.EMPTY_BUFFER);
+                                        HttpUtil.setContentLength(response, 0);
+                                        ctx.writeAndFlush(response);
+                                    }
+                                });
+                    }
+                })
+                .bind(address).sync().channel();
+
+        Bootstrap bootstrap = new Bootstrap().group(group).channel(LocalChannel.class).remoteAddress(address);
+        ChannelPoolHandler handler = new AbstractChannelPoolHandler() {
+            @Override
+            public void channelCreated(Channel ch) {
+                ch.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(1024),
+                        new SimpleChannelInboundHandler<FullHttpResponse>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+                                ResponseFuture.complete(ctx.channel());
+                            }
+                        });
+            }
+        };
+        if ("http".equals(pool)) {
+            channelPool = new HttpChannelPool(bootstrap, handler, 1, 1);
+        } else {
+            channelPool = new FixedChannelPool(bootstrap, handler, 1, 1);
+        }
+        final ChannelPool channelPool = this.channelPool;
+        acquireReleaseTask = new Callable<Channel>() {
+            @Override
+            public Channel call() {
+                Channel channel = null;
+                for (int i = 0; i < ACQUIRES_PER_TASK; i++) {
+                    channel = channelPool.acquire().getNow();
+                    channelPool.release(channel);
+                }
+                return channel;
+            }
+        };
+        // Open the connection up front.
+        channelPool.release(channelPool.acquire().sync().getNow()).sync();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        channelPool.close();
+        serverChannel.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    @Benchmark
+    public Channel acquireRelease() {
+        Channel channel = channelPool.acquire().syncUninterruptibly().getNow();
+        channelPool.release(channel).syncUninterruptibly();
+        return channel;
+    }
+
+    /**
+     * Acquires and releases {@value #ACQUIRES_PER_TASK} times from the {@link EventLoop} of the connection.
+     */
+    @Benchmark
+    public Channel acquireReleaseOnEventLoop() throws Exception {
+        return loop.submit(acquireReleaseTask).sync().getNow();
+    }
+
+    @Benchmark
+    public Channel request() throws Exception {
+        Channel channel = channelPool.acquire().sync().getNow();
+        Future<Channel> response = ResponseFuture.expect(channel);
+        channel.writeAndFlush(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"));
+        response.sync();
+        channelPool.release(channel).sync();
+        return channel;
+    }
+
+    /**
+     * Completes a promise once the response on a connection was received.
+     */
+    private static final class ResponseFuture {
+        private static final AttributeKey<Promise<Channel>> KEY =
+                AttributeKey.valueOf(HttpChannelPoolBenchmark.class, "RESPONSE");
+
+        static Future<Channel> expect(Channel channel) {
+            Promise<Channel> promise = channel.eventLoop().newPromise();
+            channel.attr(KEY).set(promise);
+            return promise;
+        }
+
+        static void complete(Channel channel) {
+            Promise<Channel> promise = channel.attr(KEY).getAndSet(null);
+            if (promise != null) {
+                promise.setSuccess(channel);
+            }
+        }
+    }
+}
@@ -119,7 +119,7 @@ public class SearchBenchmark extends AbstractMicrobenchmark {
     public ByteBufType bufferType;
 
     private Random rnd;
-    private ByteBuf needle, haystack;
+    private ByteBuf needle, haystack, haystackCopy;
     private byte[] needleBytes, haystackBytes;
     private SearchProcessorFactory kmpFactory, bitapFactory, ahoCorasicFactory;
 
@@ -132,6 +132,7 @@ public class SearchBenchmark extends AbstractMicrobenchmark {
 
         needle = Unpooled.wrappedBuffer(needleBytes);
         haystack = bufferType.newBuffer(haystackBytes);
+        haystackCopy = bufferType.newBuffer(haystackBytes.clone());
 
         kmpFactory = AbstractSearchProcessorFactory.newKmpSearchProcessorFactory(needleBytes);
         ahoCorasicFactory = AbstractMultiSearchProcessorFactory.newAhoCorasicSearchProcessorFactory(needleBytes);
@@ -145,6 +146,7 @@ public class SearchBenchmark extends AbstractMicrobenchmark {
     public void teardown() {
         needle.release();
         haystack.release();
+        haystackCopy.release();
     }
 
     @Benchmark
@@ -171,6 +173,18 @@ public class SearchBenchmark extends AbstractMicrobenchmark {
         return haystack.forEachByte(ahoCorasicFactory.newSearchProcessor());
     }
 
+    @Benchmark
+    @CompilerControl(Mode.DONT_INLINE)
+    public boolean bufferEquals() {
+        return ByteBufUtil.equals(haystack, haystackCopy);
+    }
+
+    @Benchmark
+    @CompilerControl(Mode.DONT_INLINE)
+    public int bufferHashCode() {
+        return ByteBufUtil.hashCode(haystack);
+    }
+
     private static byte[] randomBytes(Random rnd, int size, int from, int to) {
         byte[] bytes = new byte[size];
         for (int i = 0; i < size; i++) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.util;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.HierarchicalWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link HashedWheelTimer} with {@link HierarchicalWheelTimer} for the common case of timeouts which are
+ * cancelled before they expire, like I/O timeouts. Each operation schedules a timeout and cancels the one that was
+ * scheduled {@code inFlight} operations earlier, so the timers hold about {@code inFlight} timeouts per thread.
+ */
+@State(Scope.Benchmark)
+public class TimerBenchmark extends AbstractMicrobenchmark {
+
+    private static final TimerTask NO_OP = new TimerTask() {
+        @Override
+        public void run(Timeout timeout) {
+            // NOOP
+        }
+    };
+
+    @Param({ "hashed", "hierarchical" })
+    public String timerType;
+
+    @Param({ "1", "1024" })
+    public int inFlight;
+
+    @Param({ "30000" })
+    public int delayMillis;
+
+    private Timer timer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if ("hashed".equals(timerType)) {
+            timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        } else {
+            timer = new HierarchicalWheelTimer(Executors.defaultThreadFactory(), 10, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        timer.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class TimeoutsHolder {
+        Timeout[] timeouts;
+        int index;
+
+        @Setup(Level.Trial)
+        public void setup(TimerBenchmark benchmark) {
+            timeouts = new Timeout[benchmark.inFlight];
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            for (Timeout timeout : timeouts) {
+                if (timeout != null) {
+                    timeout.cancel();
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Timeout scheduleCancel(TimeoutsHolder holder) {
+        return scheduleCancel0(holder);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Timeout scheduleCancelContended(TimeoutsHolder holder) {
+        return scheduleCancel0(holder);
+    }
+
+    private Timeout scheduleCancel0(TimeoutsHolder holder) {
+        Timeout[] timeouts = holder.timeouts;
+        int index = holder.index;
+        Timeout old = timeouts[index];
+        if (old != null) {
+            old.cancel();
+        }
+        Timeout timeout = timer.newTimeout(NO_OP, delayMillis, TimeUnit.MILLISECONDS);
+        timeouts[index] = timeout;
+        holder.index = index + 1 == timeouts.length ? 0 : index + 1;
+        return timeout;
+    }
+}
@@ -17,11 +17,14 @@ package io.netty.testsuite_native;
 
 import io.netty.channel.epoll.Epoll;
 import io.netty.channel.kqueue.KQueue;
+import io.netty.channel.uring.IOUring;
 import io.netty.resolver.dns.macos.MacOSDnsServerAddressStreamProvider;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledOnOs;
 import org.junit.jupiter.api.condition.OS;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
 public class NativeLoadingTest {
 
     @Test
@@ -41,4 +44,11 @@ public class NativeLoadingTest {
     public void testNativeLoadingEpoll() {
         Epoll.ensureAvailability();
     }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    public void testNativeLoadingIOUring() {
+        // The kernel may not support io_uring at all, but the native library itself must always be loadable.
+        assertFalse(IOUring.unavailabilityCause() instanceof UnsatisfiedLinkError);
+    }
 }
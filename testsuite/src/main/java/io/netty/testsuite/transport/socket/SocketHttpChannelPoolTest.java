@@ -0,0 +1,162 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.testsuite.transport.socket;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.ThreadPerChannelEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.pool.HttpChannelPool;
+import io.netty.handler.codec.http.pool.HttpChannelPoolMap;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SocketHttpChannelPoolTest extends AbstractSocketTest {
+
+    private static final int REQUESTS = 64;
+
+    @Test
+    @Timeout(value = 30000, unit = TimeUnit.MILLISECONDS)
+    public void testKeepAlive(TestInfo testInfo) throws Throwable {
+        run(testInfo, new Runner<ServerBootstrap, Bootstrap>() {
+            @Override
+            public void run(ServerBootstrap serverBootstrap, Bootstrap bootstrap) throws Throwable {
+                testKeepAlive(serverBootstrap, bootstrap);
+            }
+        });
+    }
+
+    public void testKeepAlive(ServerBootstrap sb, Bootstrap cb) throws Throwable {
+        testRequests(sb, cb, 1);
+    }
+
+    @Test
+    @Timeout(value = 30000, unit = TimeUnit.MILLISECONDS)
+    public void testPipelining(TestInfo testInfo) throws Throwable {
+        run(testInfo, new Runner<ServerBootstrap, Bootstrap>() {
+            @Override
+            public void run(ServerBootstrap serverBootstrap, Bootstrap bootstrap) throws Throwable {
+                testPipelining(serverBootstrap, bootstrap);
+            }
+        });
+    }
+
+    public void testPipelining(ServerBootstrap sb, Bootstrap cb) throws Throwable {
+        testRequests(sb, cb, 4);
+    }
+
+    private static void testRequests(ServerBootstrap sb, Bootstrap cb, int maxPipelinedRequests) throws Throwable {
+        // Like the other pools, the promises are created by the EventLoopGroup, which OIO does not support.
+        if (cb.config().group() instanceof ThreadPerChannelEventLoopGroup) {
+            return;
+        }
+        final Set<Channel> accepted = Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+        sb.childHandler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                accepted.add(ch);
+                ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(1024), new UriResponder());
+            }
+        });
+        Channel sc = sb.bind().sync().channel();
+
+        final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+        HttpChannelPoolMap pools = new HttpChannelPoolMap(cb, new AbstractChannelPoolHandler() {
+            @Override
+            public void channelCreated(Channel ch) {
+                ch.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(1024),
+                        new SimpleChannelInboundHandler<FullHttpResponse>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+                                responses.add(msg.content().toString(CharsetUtil.US_ASCII));
+                            }
+                        });
+            }
+        }, 2, REQUESTS, maxPipelinedRequests);
+        HttpChannelPool pool = pools.get(sc.localAddress());
+        assertSame(pool, pools.get(sc.localAddress()));
+        try {
+            // Acquire more channels than there may be connections, so acquires need to wait or pipeline.
+            List<Future<Channel>> acquired = new ArrayList<Future<Channel>>();
+            for (int i = 0; i < REQUESTS; i++) {
+                acquired.add(pool.acquire());
+            }
+            Set<String> expected = new HashSet<String>();
+            for (int i = 0; i < REQUESTS; i++) {
+                Channel channel = acquired.get(i).sync().getNow();
+                String uri = "/" + i;
+                expected.add(uri);
+                channel.writeAndFlush(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri)).sync();
+                // The pool keeps track of the response on its own.
+                pool.release(channel).sync();
+            }
+            Set<String> received = new HashSet<String>();
+            for (int i = 0; i < REQUESTS; i++) {
+                received.add(responses.take());
+            }
+            assertEquals(expected, received);
+            assertTrue(pool.connections() <= 2);
+            assertTrue(accepted.size() <= 2);
+            assertEquals(0, pool.pendingAcquires());
+        } finally {
+            pools.close();
+            sc.close().sync();
+        }
+    }
+
+    private static final class UriResponder extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                    Unpooled.copiedBuffer(msg.uri(), CharsetUtil.US_ASCII));
+            HttpUtil.setContentLength(response, response.content().readableBytes());
+            ctx.writeAndFlush(response);
+        }
+    }
+}
@@ -47,6 +47,7 @@ import io.netty.util.concurrent.ImmediateEventExecutor;
 import io.netty.util.concurrent.ImmediateExecutor;
 import io.netty.util.concurrent.ScheduledFuture;
 import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.concurrent.VirtualThreadEventExecutorGroup;
 import io.netty.util.internal.Hidden.NettyBlockHoundIntegration;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeAll;
@@ -122,6 +123,23 @@ public class NettyBlockHoundIntegrationTest {
         }
     }
 
+    @Test
+    @Timeout(value = 5000, unit = TimeUnit.MILLISECONDS)
+    public void testBlockingCallsInVirtualThreadEventExecutorGroup() throws Exception {
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup();
+        try {
+            // Hand the blocking call over from a Netty thread, which must not block itself.
+            Future<Future<Void>> offloaded = GlobalEventExecutor.INSTANCE.submit(
+                    () -> group.next().submit(() -> {
+                        Thread.sleep(1);
+                        return null;
+                    }));
+            assertNull(offloaded.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+        } finally {
+            group.shutdownGracefully().sync();
+        }
+    }
+
     @Test
     @Timeout(value = 5000, unit = TimeUnit.MILLISECONDS)
     public void testGlobalEventExecutorTakeTask() throws InterruptedException {
@@ -558,6 +558,16 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
             }
         }
 
+        /**
+         * Called once a EPOLLERR event is ready to be processed, before the EPOLLOUT and EPOLLIN events are.
+         *
+         * @return {@code true} if the event was handled completely, so it must not be processed as an EPOLLOUT and
+         * EPOLLIN event, which is how errors are detected otherwise.
+         */
+        boolean epollErrReady() {
+            return false;
+        }
+
         /**
          * Called once a EPOLLOUT event is ready to be processed
          */
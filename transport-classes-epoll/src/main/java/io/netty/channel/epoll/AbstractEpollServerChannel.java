@@ -30,6 +30,9 @@ import java.net.SocketAddress;
 public abstract class AbstractEpollServerChannel extends AbstractEpollChannel implements ServerChannel {
     private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
 
+    // Only written from the EventLoop.
+    private volatile long acceptedChannels;
+
     protected AbstractEpollServerChannel(int fd) {
         this(new LinuxSocket(fd), false);
     }
@@ -52,6 +55,14 @@ public abstract class AbstractEpollServerChannel extends AbstractEpollChannel im
         return loop instanceof EpollEventLoop;
     }
 
+    /**
+     * Returns the number of connections that were accepted by this channel. When several channels share a port via
+     * {@code SO_REUSEPORT} this shows how the connections are spread across the listeners.
+     */
+    public long acceptedChannels() {
+        return acceptedChannels;
+    }
+
     @Override
     protected InetSocketAddress remoteAddress0() {
         return null;
@@ -115,6 +126,7 @@ public abstract class AbstractEpollServerChannel extends AbstractEpollChannel im
                             break;
                         }
                         allocHandle.incMessagesRead(1);
+                        acceptedChannels++;
 
                         readPending = false;
                         pipeline.fireChannelRead(newChildChannel(allocHandle.lastBytesRead(), acceptedAddress, 1,
@@ -46,6 +46,8 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Executor;
 
@@ -75,8 +77,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     private volatile Queue<SpliceInTask> spliceQueue;
     private FileDescriptor pipeIn;
     private FileDescriptor pipeOut;
+    // Channels which splice to this channel and stopped reading until this channel is writable again. Only accessed
+    // from the EventLoop, as splicing requires both channels to be registered to the same EventLoop.
+    private List<AbstractEpollStreamChannel> spliceWaiters;
 
     private WritableByteChannel byteChannel;
+    private ZeroCopyWriteQueue zeroCopyQueue;
 
     protected AbstractEpollStreamChannel(Channel parent, int fd) {
         this(parent, new LinuxSocket(fd));
@@ -129,6 +135,10 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
      *   {@link IllegalArgumentException} is thrown. </li>
      *   <li>{@link EpollChannelConfig#getEpollMode()} must be {@link EpollMode#LEVEL_TRIGGERED} for this and the
      *   target {@link AbstractEpollStreamChannel}</li>
+     *   <li>the spliced bytes count towards the pending outbound bytes of the target
+     *   {@link AbstractEpollStreamChannel}. If {@link ChannelConfig#isAutoRead()} is used, this channel stops reading
+     *   while the target {@link AbstractEpollStreamChannel} is not {@link Channel#isWritable() writable}, and starts
+     *   reading again once it is.</li>
      * </ul>
      *
      */
@@ -147,6 +157,10 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
      *   {@link IllegalArgumentException} is thrown. </li>
      *   <li>{@link EpollChannelConfig#getEpollMode()} must be {@link EpollMode#LEVEL_TRIGGERED} for this and the
      *   target {@link AbstractEpollStreamChannel}</li>
+     *   <li>the spliced bytes count towards the pending outbound bytes of the target
+     *   {@link AbstractEpollStreamChannel}. If {@link ChannelConfig#isAutoRead()} is used, this channel stops reading
+     *   while the target {@link AbstractEpollStreamChannel} is not {@link Channel#isWritable() writable}, and starts
+     *   reading again once it is.</li>
      * </ul>
      *
      */
@@ -252,10 +266,17 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     private int writeBytes(ChannelOutboundBuffer in, ByteBuf buf) throws Exception {
         int readableBytes = buf.readableBytes();
         if (readableBytes == 0) {
-            in.remove();
+            removeBytes(in, 0, false);
             return 0;
         }
 
+        if (isZeroCopyWrite(readableBytes)) {
+            IovArray array = ((EpollEventLoop) eventLoop()).cleanIovArray();
+            array.maxBytes(config().getMaxBytesPerGatheringWrite());
+            array.add(buf, buf.readerIndex(), readableBytes);
+            return writeBytesMultiple(in, array);
+        }
+
         if (buf.hasMemoryAddress() || buf.nioBufferCount() == 1) {
             return doWriteBytes(in, buf);
         } else {
@@ -299,15 +320,78 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         final int cnt = array.count();
         assert cnt != 0;
 
-        final long localWrittenBytes = socket.writevAddresses(array.memoryAddress(0), cnt);
+        boolean zeroCopy = isZeroCopyWrite(expectedWrittenBytes);
+        long localWrittenBytes = -1;
+        if (zeroCopy) {
+            int threshold = zeroCopyThreshold();
+            if (threshold >= 0 && expectedWrittenBytes >= threshold) {
+                localWrittenBytes = socket.writevAddressesZeroCopy(array.memoryAddress(0), cnt);
+            }
+            // Either the write is only ordered after zero copy writes which are still in flight, or the kernel
+            // was not able to pin the memory. In both cases fall back to a normal write.
+            zeroCopy = localWrittenBytes != -1;
+        }
+        if (!zeroCopy) {
+            localWrittenBytes = socket.writevAddresses(array.memoryAddress(0), cnt);
+        }
         if (localWrittenBytes > 0) {
             adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes, array.maxBytes());
-            in.removeBytes(localWrittenBytes);
+            removeBytes(in, localWrittenBytes, zeroCopy);
             return 1;
         }
         return WRITE_STATUS_SNDBUF_FULL;
     }
 
+    /**
+     * Returns the minimal number of bytes a write must have to be done with {@code MSG_ZEROCOPY}, or {@code -1} if
+     * {@code MSG_ZEROCOPY} should not be used.
+     */
+    int zeroCopyThreshold() {
+        return -1;
+    }
+
+    private boolean isZeroCopyPending() {
+        return zeroCopyQueue != null && zeroCopyQueue.isPending();
+    }
+
+    /**
+     * Removes the written bytes from the {@link ChannelOutboundBuffer} like
+     * {@link ChannelOutboundBuffer#removeBytes(long)}, unless they were written with {@code MSG_ZEROCOPY} or need to be
+     * ordered after zero copy writes that are still in flight.
+     */
+    private void removeBytes(ChannelOutboundBuffer in, long writtenBytes, boolean zeroCopy) {
+        if (zeroCopy || isZeroCopyPending()) {
+            ZeroCopyWriteQueue queue = zeroCopyQueue;
+            if (queue == null) {
+                zeroCopyQueue = queue = new ZeroCopyWriteQueue();
+            }
+            queue.removeBytes(in, writtenBytes, zeroCopy);
+        } else {
+            in.removeBytes(writtenBytes);
+        }
+    }
+
+    /**
+     * Removes the current message from the {@link ChannelOutboundBuffer} like {@link ChannelOutboundBuffer#remove()},
+     * unless it needs to be ordered after zero copy writes that are still in flight.
+     */
+    final void remove(ChannelOutboundBuffer in) {
+        if (isZeroCopyPending()) {
+            zeroCopyQueue.remove(in);
+        } else {
+            in.remove();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the given number of bytes should be written with {@code MSG_ZEROCOPY}, or need to be
+     * ordered after zero copy writes that are still in flight.
+     */
+    private boolean isZeroCopyWrite(long bytes) {
+        int threshold = zeroCopyThreshold();
+        return threshold >= 0 && bytes >= threshold || isZeroCopyPending();
+    }
+
     /**
      * Write multiple bytes via {@link ByteBuffer} array.
      * @param in the collection which contains objects to write.
@@ -337,7 +421,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         final long localWrittenBytes = socket.writev(nioBuffers, 0, nioBufferCnt, expectedWrittenBytes);
         if (localWrittenBytes > 0) {
             adjustMaxBytesPerGatheringWrite(expectedWrittenBytes, localWrittenBytes, maxBytesPerGatheringWrite);
-            in.removeBytes(localWrittenBytes);
+            removeBytes(in, localWrittenBytes, false);
             return 1;
         }
         return WRITE_STATUS_SNDBUF_FULL;
@@ -361,7 +445,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         final long offset = region.transferred();
         final long regionCount = region.count();
         if (offset >= regionCount) {
-            in.remove();
+            remove(in);
             return 0;
         }
 
@@ -369,7 +453,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         if (flushedAmount > 0) {
             in.progress(flushedAmount);
             if (region.transferred() >= regionCount) {
-                in.remove();
+                remove(in);
             }
             return 1;
         } else if (flushedAmount == 0) {
@@ -394,7 +478,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
      */
     private int writeFileRegion(ChannelOutboundBuffer in, FileRegion region) throws Exception {
         if (region.transferred() >= region.count()) {
-            in.remove();
+            remove(in);
             return 0;
         }
 
@@ -405,7 +489,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         if (flushedAmount > 0) {
             in.progress(flushedAmount);
             if (region.transferred() >= region.count()) {
-                in.remove();
+                remove(in);
             }
             return 1;
         }
@@ -423,6 +507,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             } else if (msgCount == 0) {
                 // Wrote all messages.
                 clearFlag(Native.EPOLLOUT);
+                resumeSpliceWaitersIfWritable();
                 // Return here so we not set the EPOLLOUT flag.
                 return;
             } else {  // msgCount == 1
@@ -434,6 +519,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             // listeners.
         } while (writeSpinCount > 0);
 
+        resumeSpliceWaitersIfWritable();
         if (writeSpinCount == 0) {
             // It is possible that we have set EPOLLOUT, woken up by EPOLL because the socket is writable, and then use
             // our write quantum. In this case we no longer want to set the EPOLLOUT flag because the socket is still
@@ -474,10 +560,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         } else if (msg instanceof FileRegion) {
             return writeFileRegion(in, (FileRegion) msg);
         } else if (msg instanceof SpliceOutTask) {
-            if (!((SpliceOutTask) msg).spliceOut()) {
+            SpliceOutTask task = (SpliceOutTask) msg;
+            if (!task.spliceOut()) {
                 return WRITE_STATUS_SNDBUF_FULL;
             }
-            in.remove();
+            remove(in);
+            task.spliceOutComplete();
             return 1;
         } else {
             // Should never reach here.
@@ -510,7 +598,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return writeBytesMultiple(in, array);
         }
         // cnt == 0, which means the outbound buffer contained empty buffers only.
-        in.removeBytes(0);
+        removeBytes(in, 0, false);
         return 0;
     }
 
@@ -668,6 +756,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     @Override
     protected void doClose() throws Exception {
         try {
+            completeZeroCopyWritesAfterClose();
             // Calling super.doClose() first so spliceTo(...) will fail on next call.
             super.doClose();
         } finally {
@@ -677,6 +766,99 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
     }
 
+    /**
+     * The kernel keeps sending the data of the zero copy writes which are in flight when the socket is closed, but
+     * their completions can only be read as long as the socket is open. So hand these writes over to a duplicate of
+     * the socket, which is closed once they are complete. Must be called before the socket is closed.
+     */
+    private void completeZeroCopyWritesAfterClose() {
+        ZeroCopyWriteQueue queue = zeroCopyQueue;
+        if (queue == null) {
+            return;
+        }
+        try {
+            queue.readCompletions(socket);
+            if (!queue.isPending()) {
+                return;
+            }
+            LinuxSocket duplicate = socket.dup();
+            zeroCopyQueue = null;
+            queue.completeAfterClose(eventLoop(), duplicate);
+        } catch (IOException e) {
+            logger.debug("Failed to keep the zero copy writes of a closed channel, resetting the connection", e);
+            try {
+                // Make the kernel drop the data and release the memory when the socket is closed, the messages are
+                // released in doDeregister() then.
+                socket.setSoLinger(0);
+            } catch (IOException ignore) {
+                // Nothing more we can do.
+            }
+        }
+    }
+
+    @Override
+    protected void doDeregister() throws Exception {
+        try {
+            super.doDeregister();
+        } finally {
+            ZeroCopyWriteQueue queue = zeroCopyQueue;
+            if (queue != null && !isOpen()) {
+                // The writes which were still in flight when the channel was closed were not handed over, see
+                // completeZeroCopyWritesAfterClose(). Do this here and not in doClose() as we are guaranteed to be on
+                // the EventLoop.
+                queue.failAll(new ClosedChannelException());
+            }
+            if (!isOpen()) {
+                // Let the channels which wait for this channel to become writable read again, so their splice
+                // operations notice that this channel was closed and fail.
+                resumeSpliceWaiters();
+            }
+        }
+    }
+
+    private void addSpliceWaiter(AbstractEpollStreamChannel ch) {
+        assert eventLoop().inEventLoop();
+        List<AbstractEpollStreamChannel> waiters = spliceWaiters;
+        if (waiters == null) {
+            spliceWaiters = waiters = new ArrayList<AbstractEpollStreamChannel>(2);
+        } else if (waiters.contains(ch)) {
+            return;
+        }
+        waiters.add(ch);
+    }
+
+    private void resumeSpliceWaitersIfWritable() {
+        if (spliceWaiters != null && isWritable()) {
+            resumeSpliceWaiters();
+        }
+    }
+
+    private void resumeSpliceWaiters() {
+        List<AbstractEpollStreamChannel> waiters = spliceWaiters;
+        if (waiters == null) {
+            return;
+        }
+        spliceWaiters = null;
+        for (int i = 0; i < waiters.size(); i++) {
+            AbstractEpollStreamChannel ch = waiters.get(i);
+            if (ch.isOpen()) {
+                ch.config().setAutoRead(true);
+            }
+        }
+    }
+
+    /**
+     * Start reading again after the bytes which were spliced to the given {@link AbstractEpollStreamChannel} were
+     * written, or as soon as it becomes writable again.
+     */
+    private void resumeSpliceIn(AbstractEpollStreamChannel ch) {
+        if (ch.isWritable()) {
+            config().setAutoRead(true);
+        } else {
+            ch.addSpliceWaiter(this);
+        }
+    }
+
     private void clearSpliceQueue() {
         Queue<SpliceInTask> sQueue = spliceQueue;
         if (sQueue == null) {
@@ -734,6 +916,24 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             }
         }
 
+        @Override
+        boolean epollErrReady() {
+            ZeroCopyWriteQueue queue = zeroCopyQueue;
+            if (queue == null) {
+                return false;
+            }
+            try {
+                queue.readCompletions(socket);
+                // Only completions were reported unless there is an error left, which the next read or write will
+                // pick up.
+                return !socket.isErrorPending();
+            } catch (IOException e) {
+                pipeline().fireExceptionCaught(e);
+                close(voidPromise());
+                return true;
+            }
+        }
+
         @Override
         EpollRecvByteAllocatorHandle newEpollHandle(RecvByteBufAllocator.ExtendedHandle handle) {
             return new EpollRecvByteAllocatorStreamingHandle(handle);
@@ -891,7 +1091,8 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         @Override
         public void operationComplete(ChannelFuture future) throws Exception {
             if (!future.isSuccess()) {
-                promise.setFailure(future.cause());
+                // Use tryFailure(...) as more than one splice out may fail once the target channel is closed.
+                promise.tryFailure(future.cause());
             }
         }
 
@@ -902,6 +1103,15 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                 promise.setSuccess();
                 return true;
             }
+            if (promise.isDone()) {
+                // Failed because splicing out to the target channel failed.
+                return true;
+            }
+            if (!ch.isOpen()) {
+                // The pipe of the target channel was closed together with the channel, so never try to use it.
+                promise.tryFailure(new ClosedChannelException());
+                return true;
+            }
             try {
                 // We create the pipe on the target channel as this will allow us to just handle pending writes
                 // later in a correct fashion without get into any ordering issues when spliceTo(...) is called
@@ -932,15 +1142,24 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
                     boolean autoRead = config().isAutoRead();
 
-                    // Just call unsafe().write(...) and flush() as we not want to traverse the whole pipeline for this
-                    // case.
-                    ch.unsafe().write(new SpliceOutTask(ch, splicedIn, autoRead), splicePromise);
-                    ch.unsafe().flush();
-                    if (autoRead && !splicePromise.isDone()) {
-                        // Write was not done which means the target channel was not writable. In this case we need to
-                        // disable reading until we are done with splicing to the target channel because:
+                    // Just add the task to the ChannelOutboundBuffer and call unsafe().flush() as we not want to
+                    // traverse the whole pipeline for this case. Adding it directly also allows us to account for the
+                    // spliced bytes, so they are taken into account by the WriteBufferWaterMark of the target channel.
+                    ChannelOutboundBuffer outboundBuffer = ch.unsafe().outboundBuffer();
+                    if (outboundBuffer == null) {
+                        splicePromise.setFailure(new ClosedChannelException());
+                    } else {
+                        outboundBuffer.addMessage(new SpliceOutTask(ch, splicedIn, autoRead), splicedIn,
+                                splicePromise);
+                        ch.unsafe().flush();
+                    }
+                    if (autoRead && (!splicePromise.isDone() || splicePromise.isSuccess() && !ch.isWritable())) {
+                        // Write was not done or the target channel is not writable anymore. In this case we need to
+                        // disable reading until we are done with splicing to the target channel and it is writable
+                        // again because:
                         //
                         // - The user may want to to trigger another splice operation once the splicing was complete.
+                        // - We should not read faster than the target channel is able to write.
                         config().setAutoRead(false);
                     }
                 }
@@ -969,14 +1188,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             try {
                 int splicedOut = Native.splice(ch.pipeIn.intValue(), -1, ch.socket.intValue(), -1, len);
                 len -= splicedOut;
-                if (len == 0) {
-                    if (autoRead) {
-                        // AutoRead was used and we spliced everything so start reading again
-                        config().setAutoRead(true);
-                    }
-                    return true;
-                }
-                return false;
+                return len == 0;
             } catch (IOException e) {
                 if (autoRead) {
                     // AutoRead was used and we spliced everything so start reading again
@@ -985,6 +1197,17 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                 throw e;
             }
         }
+
+        /**
+         * Called once the task was removed from the {@link ChannelOutboundBuffer} of the target channel.
+         */
+        void spliceOutComplete() {
+            if (autoRead) {
+                // AutoRead was used and we spliced everything so start reading again once the target channel is
+                // writable.
+                resumeSpliceIn(ch);
+            }
+        }
     }
 
     private final class SpliceFdTask extends SpliceInTask {
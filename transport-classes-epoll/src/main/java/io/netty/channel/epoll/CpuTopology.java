@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The CPUs the process may run on, grouped by their NUMA node as reported by {@code /sys/devices/system/node}.
+ */
+final class CpuTopology {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(CpuTopology.class);
+    private static final File NODE_DIR = new File("/sys/devices/system/node");
+
+    private final int[] nodeIds;
+    private final int[][] nodeCpus;
+
+    CpuTopology(int[] nodeIds, int[][] nodeCpus) {
+        assert nodeIds.length == nodeCpus.length && nodeIds.length > 0;
+        this.nodeIds = nodeIds;
+        this.nodeCpus = nodeCpus;
+    }
+
+    /**
+     * Returns the number of NUMA nodes which have at least one CPU the process may run on.
+     */
+    int numNodes() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Returns the id of the {@code index}th NUMA node.
+     */
+    int nodeId(int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     * Returns the CPUs of the {@code index}th NUMA node which the process may run on.
+     */
+    int[] cpus(int index) {
+        return nodeCpus[index].clone();
+    }
+
+    /**
+     * Reads the topology of the machine, restricted to the given CPUs. If the NUMA nodes are not exposed, all CPUs
+     * are reported as part of node {@code 0}.
+     */
+    static CpuTopology read(int[] allowedCpus) {
+        List<Integer> ids = new ArrayList<Integer>();
+        List<int[]> cpus = new ArrayList<int[]>();
+        File[] nodes = NODE_DIR.listFiles();
+        if (nodes != null) {
+            Arrays.sort(nodes);
+            for (File node : nodes) {
+                String name = node.getName();
+                if (!name.startsWith("node") || name.length() == 4 || !isDigits(name, 4)) {
+                    continue;
+                }
+                try {
+                    int[] nodeCpus = retain(parseCpuList(readLine(new File(node, "cpulist"))), allowedCpus);
+                    if (nodeCpus.length > 0) {
+                        ids.add(Integer.parseInt(name.substring(4)));
+                        cpus.add(nodeCpus);
+                    }
+                } catch (Exception e) {
+                    logger.debug("Failed to read the CPUs of NUMA node {}", name, e);
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return new CpuTopology(new int[] { 0 }, new int[][] { allowedCpus.clone() });
+        }
+        int[] nodeIds = new int[ids.size()];
+        for (int i = 0; i < nodeIds.length; i++) {
+            nodeIds[i] = ids.get(i);
+        }
+        return new CpuTopology(nodeIds, cpus.toArray(new int[0][]));
+    }
+
+    /**
+     * Parses a list of CPUs in the format used by the kernel, like {@code 0-3,8,10-11}.
+     */
+    static int[] parseCpuList(String list) {
+        List<Integer> cpus = new ArrayList<Integer>();
+        for (String range : list.trim().split(",")) {
+            if (range.isEmpty()) {
+                continue;
+            }
+            int dash = range.indexOf('-');
+            if (dash < 0) {
+                cpus.add(Integer.parseInt(range));
+            } else {
+                int end = Integer.parseInt(range.substring(dash + 1));
+                for (int cpu = Integer.parseInt(range.substring(0, dash)); cpu <= end; cpu++) {
+                    cpus.add(cpu);
+                }
+            }
+        }
+        int[] array = new int[cpus.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = cpus.get(i);
+        }
+        return array;
+    }
+
+    private static int[] retain(int[] cpus, int[] allowedCpus) {
+        int[] retained = new int[cpus.length];
+        int count = 0;
+        for (int cpu : cpus) {
+            for (int allowed : allowedCpus) {
+                if (cpu == allowed) {
+                    retained[count++] = cpu;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(retained, count);
+    }
+
+    private static boolean isDigits(String s, int start) {
+        for (int i = start; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readLine(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), CharsetUtil.US_ASCII));
+        try {
+            String line = reader.readLine();
+            return line == null ? "" : line;
+        } finally {
+            reader.close();
+        }
+    }
+}
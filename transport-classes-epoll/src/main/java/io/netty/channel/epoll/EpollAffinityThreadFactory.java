@@ -0,0 +1,158 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link DefaultThreadFactory} which pins every thread it creates to a CPU, so the scheduler does not migrate
+ * {@link EpollEventLoop}s between CPUs and NUMA nodes. Pass it to the constructor of an {@link EpollEventLoopGroup}.
+ * <p>
+ * The threads are assigned round-robin to the NUMA nodes of the machine and within a node to its CPUs, restricted to
+ * the CPUs the process may run on. Each thread reports its NUMA node via {@link FastThreadLocalThread#numaNode()},
+ * which lets the {@link io.netty.buffer.PooledByteBufAllocator} give the threads of a node their own arenas.
+ */
+@UnstableApi
+public final class EpollAffinityThreadFactory extends DefaultThreadFactory {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollAffinityThreadFactory.class);
+
+    private final CpuTopology topology;
+    private final boolean pinToNode;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    /**
+     * Creates a new instance which pins every thread to a single CPU.
+     */
+    public EpollAffinityThreadFactory(Class<?> poolType) {
+        this(poolType, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param poolType  the type which is used for the names of the threads.
+     * @param pinToNode {@code true} if the threads should be allowed to run on all CPUs of their NUMA node,
+     *                  {@code false} if every thread should be pinned to a single CPU.
+     */
+    public EpollAffinityThreadFactory(Class<?> poolType, boolean pinToNode) {
+        this(DefaultThreadFactory.toPoolName(poolType), pinToNode);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param poolName  the prefix of the names of the threads.
+     * @param pinToNode {@code true} if the threads should be allowed to run on all CPUs of their NUMA node,
+     *                  {@code false} if every thread should be pinned to a single CPU.
+     */
+    public EpollAffinityThreadFactory(String poolName, boolean pinToNode) {
+        super(poolName);
+        Epoll.ensureAvailability();
+        int[] allowedCpus = Native.threadAffinity();
+        if (allowedCpus == null || allowedCpus.length == 0) {
+            allowedCpus = new int[Runtime.getRuntime().availableProcessors()];
+            for (int i = 0; i < allowedCpus.length; i++) {
+                allowedCpus[i] = i;
+            }
+        }
+        topology = CpuTopology.read(allowedCpus);
+        this.pinToNode = pinToNode;
+    }
+
+    /**
+     * Returns the number of NUMA nodes the threads are spread across.
+     */
+    public int numaNodes() {
+        return topology.numNodes();
+    }
+
+    /**
+     * Returns the NUMA node of the {@code index}th thread that is created by this factory, which is the
+     * {@code index}th {@link EpollEventLoop} of an {@link EpollEventLoopGroup} once all of them were started.
+     */
+    public int numaNode(int index) {
+        return topology.nodeId(nodeIndex(index));
+    }
+
+    /**
+     * Returns the CPUs the {@code index}th thread that is created by this factory is pinned to.
+     */
+    public int[] cpus(int index) {
+        int node = nodeIndex(index);
+        int[] nodeCpus = topology.cpus(node);
+        if (pinToNode) {
+            return nodeCpus;
+        }
+        return new int[] { nodeCpus[(index / topology.numNodes()) % nodeCpus.length] };
+    }
+
+    /**
+     * Returns the CPUs the given {@link Thread} is pinned to if it was created by an
+     * {@link EpollAffinityThreadFactory}, {@code null} otherwise.
+     */
+    public static int[] cpus(Thread thread) {
+        if (thread instanceof AffinityThread) {
+            return ((AffinityThread) thread).cpus.clone();
+        }
+        return null;
+    }
+
+    private int nodeIndex(int index) {
+        return index % topology.numNodes();
+    }
+
+    @Override
+    protected Thread newThread(Runnable r, String name) {
+        int index = nextIndex.getAndIncrement();
+        return new AffinityThread(threadGroup, r, name, cpus(index), numaNode(index));
+    }
+
+    private static final class AffinityThread extends FastThreadLocalThread {
+        private final int[] cpus;
+        private volatile int numaNode;
+
+        AffinityThread(ThreadGroup group, Runnable target, String name, int[] cpus, int numaNode) {
+            super(group, target, name);
+            this.cpus = cpus;
+            this.numaNode = numaNode;
+        }
+
+        @Override
+        public int numaNode() {
+            return numaNode;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Native.setThreadAffinity(cpus);
+            } catch (IOException e) {
+                // Keep running unpinned, for example if the CPU set of the process was changed meanwhile.
+                numaNode = -1;
+                logger.debug("Failed to pin thread {} to CPUs {}", getName(), Arrays.toString(cpus), e);
+            }
+            super.run();
+        }
+    }
+}
@@ -65,6 +65,16 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
     private final EpollDatagramChannelConfig config;
     private volatile boolean connected;
 
+    // The number of datagrams to read with the next recvmmsg(...) call if no maximum datagram size is configured.
+    // Only accessed from the EventLoop.
+    private int datagramBatchSize = 1;
+
+    // Only written from the EventLoop.
+    private volatile long datagramsRead;
+    private volatile long readSyscalls;
+    private volatile long datagramsWritten;
+    private volatile long writeSyscalls;
+
     /**
      * Returns {@code true} if {@link io.netty.channel.unix.SegmentedDatagramPacket} is supported natively.
      *
@@ -105,6 +115,37 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
         config = new EpollDatagramChannelConfig(this);
     }
 
+    /**
+     * Returns the number of datagrams that were read from the socket. Together with {@link #readSyscalls()} this
+     * shows how many datagrams are read per syscall.
+     */
+    public long datagramsRead() {
+        return datagramsRead;
+    }
+
+    /**
+     * Returns the number of {@code recvmsg}, {@code recvmmsg} and {@code read} calls that read at least one datagram.
+     */
+    public long readSyscalls() {
+        return readSyscalls;
+    }
+
+    /**
+     * Returns the number of datagrams that were written to the socket. Together with {@link #writeSyscalls()} this
+     * shows how many datagrams are written per syscall.
+     */
+    public long datagramsWritten() {
+        return datagramsWritten;
+    }
+
+    /**
+     * Returns the number of {@code sendmsg}, {@code sendmmsg} and {@code write} calls that wrote at least one
+     * datagram.
+     */
+    public long writeSyscalls() {
+        return writeSyscalls;
+    }
+
     @Override
     public InetSocketAddress remoteAddress() {
         return (InetSocketAddress) super.remoteAddress();
@@ -327,6 +368,8 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                         for (int i = 0; i < send; i++) {
                             in.remove();
                         }
+                        datagramsWritten += send;
+                        writeSyscalls++;
                         maxMessagesPerWrite -= send;
                         continue;
                     }
@@ -341,6 +384,8 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
                 if (done) {
                     in.remove();
+                    datagramsWritten++;
+                    writeSyscalls++;
                     maxMessagesPerWrite --;
                 } else {
                     break;
@@ -478,12 +523,24 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                     do {
                         final boolean read;
                         int datagramSize = config().getMaxDatagramPayloadSize();
-
-                        ByteBuf byteBuf = allocHandle.allocate(allocator);
-                        // Only try to use recvmmsg if its really supported by the running system.
-                        int numDatagram = Native.IS_SUPPORTING_RECVMMSG ?
-                                datagramSize == 0 ? 1 : byteBuf.writableBytes() / datagramSize :
-                                0;
+                        // Without a maximum datagram size we can still read multiple datagrams with one syscall if
+                        // each gets as much space as a single read would get.
+                        int batchSize = datagramSize == 0 && Native.IS_SUPPORTING_RECVMMSG && !config.isUdpGro() ?
+                                Math.min(datagramBatchSize, config.getMaxDatagramBatchSize()) : 0;
+
+                        final ByteBuf byteBuf;
+                        final int numDatagram;
+                        if (batchSize > 1) {
+                            datagramSize = allocHandle.guess();
+                            byteBuf = allocator.directBuffer(batchSize * datagramSize);
+                            numDatagram = batchSize;
+                        } else {
+                            byteBuf = allocHandle.allocate(allocator);
+                            // Only try to use recvmmsg if its really supported by the running system.
+                            numDatagram = Native.IS_SUPPORTING_RECVMMSG ?
+                                    datagramSize == 0 ? 1 : byteBuf.writableBytes() / datagramSize :
+                                    0;
+                        }
                         try {
                             if (numDatagram <= 1) {
                                 if (!connected || config.isUdpGro()) {
@@ -491,10 +548,17 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                                 } else {
                                     read = connectedRead(allocHandle, byteBuf, datagramSize);
                                 }
+                                if (batchSize == 1) {
+                                    adaptDatagramBatchSize(1, read ? 1 : 0, config.getMaxDatagramBatchSize());
+                                }
                             } else {
                                 // Try to use scattering reads via recvmmsg(...) syscall.
-                                read = scatteringRead(allocHandle, cleanDatagramPacketArray(),
+                                int received = scatteringRead(allocHandle, cleanDatagramPacketArray(),
                                         byteBuf, datagramSize, numDatagram);
+                                read = received > 0;
+                                if (batchSize > 1) {
+                                    adaptDatagramBatchSize(batchSize, received, config.getMaxDatagramBatchSize());
+                                }
                             }
                         } catch (NativeIoException e) {
                             if (connected) {
@@ -527,6 +591,18 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
         }
     }
 
+    /**
+     * Doubles the number of datagrams to read with the next call if all slots were filled and halves it if less than
+     * half of them were, so bursts are read in batches while single datagrams do not need a big buffer.
+     */
+    private void adaptDatagramBatchSize(int batchSize, int received, int maxBatchSize) {
+        if (received == batchSize) {
+            datagramBatchSize = Math.min(batchSize << 1, maxBatchSize);
+        } else if (received < batchSize >>> 1) {
+            datagramBatchSize = Math.max(batchSize >>> 1, 1);
+        }
+    }
+
     private boolean connectedRead(EpollRecvByteAllocatorHandle allocHandle, ByteBuf byteBuf, int maxDatagramPacketSize)
             throws Exception {
         try {
@@ -556,6 +632,8 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
             DatagramPacket packet = new DatagramPacket(byteBuf, localAddress(), remoteAddress());
             allocHandle.incMessagesRead(1);
+            datagramsRead++;
+            readSyscalls++;
 
             pipeline().fireChannelRead(packet);
             byteBuf = null;
@@ -645,6 +723,8 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                 return false;
             }
             byteBuf.writerIndex(bytesReceived);
+            datagramsRead++;
+            readSyscalls++;
             InetSocketAddress local = localAddress();
             DatagramPacket packet = msg.newDatagramPacket(byteBuf, local);
             if (!(packet instanceof io.netty.channel.unix.SegmentedDatagramPacket)) {
@@ -671,7 +751,11 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
         }
     }
 
-    private boolean scatteringRead(EpollRecvByteAllocatorHandle allocHandle, NativeDatagramPacketArray array,
+    /**
+     * Reads up to {@code numDatagram} datagrams into slots of {@code datagramSize} bytes and returns the number of
+     * datagrams that were read.
+     */
+    private int scatteringRead(EpollRecvByteAllocatorHandle allocHandle, NativeDatagramPacketArray array,
             ByteBuf byteBuf, int datagramSize, int numDatagram) throws IOException {
         RecyclableArrayList datagramPackets = null;
         try {
@@ -689,36 +773,45 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             int received = socket.recvmmsg(packets, 0, array.count());
             if (received == 0) {
                 allocHandle.lastBytesRead(-1);
-                return false;
+                return 0;
             }
-            int bytesReceived = received * datagramSize;
-            byteBuf.writerIndex(bytesReceived);
+            datagramsRead += received;
+            readSyscalls++;
             InetSocketAddress local = localAddress();
             if (received == 1) {
                 // Single packet fast-path
+                int bytesReceived = packets[0].receivedBytes();
+                byteBuf.writerIndex(byteBuf.writerIndex() + bytesReceived);
                 DatagramPacket packet = packets[0].newDatagramPacket(byteBuf, local);
                 if (!(packet instanceof io.netty.channel.unix.SegmentedDatagramPacket)) {
-                    processPacket(pipeline(), allocHandle, datagramSize, packet);
+                    processPacket(pipeline(), allocHandle, bytesReceived, packet);
                     byteBuf = null;
-                    return true;
+                    return 1;
                 }
+                // Let the loop below slice the segments out of the buffer.
+                byteBuf.writerIndex(byteBuf.writerIndex() - bytesReceived);
             }
             // Its important that we process all received data out of the NativeDatagramPacketArray
             // before we call fireChannelRead(...). This is because the user may call flush()
             // in a channelRead(...) method and so may re-use the NativeDatagramPacketArray again.
             datagramPackets = RecyclableArrayList.newInstance();
-            for (int i = 0; i < received; i++) {
-                DatagramPacket packet = packets[i].newDatagramPacket(byteBuf.readRetainedSlice(datagramSize), local);
+            int bytesReceived = 0;
+            int index = byteBuf.writerIndex();
+            for (int i = 0; i < received; i++, index += datagramSize) {
+                // Only slice the bytes that were actually received into this slot.
+                int length = packets[i].receivedBytes();
+                DatagramPacket packet = packets[i].newDatagramPacket(byteBuf.retainedSlice(index, length), local);
                 addDatagramPacketToOut(packet, datagramPackets);
+                bytesReceived += length;
             }
-            // Ass we did use readRetainedSlice(...) before we should now release the byteBuf and null it out.
+            // Ass we did use retainedSlice(...) before we should now release the byteBuf and null it out.
             byteBuf.release();
             byteBuf = null;
 
             processPacketList(pipeline(), allocHandle, bytesReceived, datagramPackets);
             datagramPackets.recycle();
             datagramPackets = null;
-            return true;
+            return received;
         } finally {
             releaseAndRecycle(byteBuf, datagramPackets);
         }
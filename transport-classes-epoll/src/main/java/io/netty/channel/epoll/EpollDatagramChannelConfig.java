@@ -24,6 +24,7 @@ import io.netty.channel.MessageSizeEstimator;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.DatagramChannelConfig;
+import io.netty.channel.unix.Limits;
 import io.netty.util.internal.ObjectUtil;
 
 import java.io.IOException;
@@ -33,8 +34,10 @@ import java.util.Map;
 
 public final class EpollDatagramChannelConfig extends EpollChannelConfig implements DatagramChannelConfig {
     private static final RecvByteBufAllocator DEFAULT_RCVBUF_ALLOCATOR = new FixedRecvByteBufAllocator(2048);
+    private static final int DEFAULT_MAX_DATAGRAM_BATCH_SIZE = 16;
     private boolean activeOnOpen;
     private volatile int maxDatagramSize;
+    private volatile int maxDatagramBatchSize = DEFAULT_MAX_DATAGRAM_BATCH_SIZE;
 
     EpollDatagramChannelConfig(EpollDatagramChannel channel) {
         super(channel);
@@ -52,7 +55,7 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
                 ChannelOption.IP_TOS, ChannelOption.DATAGRAM_CHANNEL_ACTIVE_ON_REGISTRATION,
                 EpollChannelOption.SO_REUSEPORT, EpollChannelOption.IP_FREEBIND, EpollChannelOption.IP_TRANSPARENT,
                 EpollChannelOption.IP_RECVORIGDSTADDR, EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE,
-                EpollChannelOption.UDP_GRO);
+                EpollChannelOption.UDP_GRO, EpollChannelOption.MAX_DATAGRAM_BATCH_SIZE);
     }
 
     @SuppressWarnings({ "unchecked", "deprecation" })
@@ -106,6 +109,9 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
         if (option == EpollChannelOption.UDP_GRO) {
             return (T) Boolean.valueOf(isUdpGro());
         }
+        if (option == EpollChannelOption.MAX_DATAGRAM_BATCH_SIZE) {
+            return (T) Integer.valueOf(getMaxDatagramBatchSize());
+        }
         return super.getOption(option);
     }
 
@@ -146,6 +152,8 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
             setMaxDatagramPayloadSize((Integer) value);
         } else if (option == EpollChannelOption.UDP_GRO) {
             setUdpGro((Boolean) value);
+        } else if (option == EpollChannelOption.MAX_DATAGRAM_BATCH_SIZE) {
+            setMaxDatagramBatchSize((Integer) value);
         } else {
             return super.setOption(option, value);
         }
@@ -533,6 +541,28 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
         return maxDatagramSize;
     }
 
+    /**
+     * Set the maximum number of {@link io.netty.channel.socket.DatagramPacket}s that are read with one
+     * {@code recvmmsg} call if no {@linkplain #setMaxDatagramPayloadSize(int) maximum datagram size} is set and
+     * {@code UDP_GRO} is disabled. Each datagram gets as much space as the used {@link RecvByteBufAllocator} would
+     * provide for a single read. The number of datagrams per call adapts to the number of datagrams that are ready to
+     * be read, so single datagrams are still read with one {@code recvmsg} call. Use {@code 1} to never batch reads.
+     * The default is {@code 16}.
+     */
+    public EpollDatagramChannelConfig setMaxDatagramBatchSize(int maxDatagramBatchSize) {
+        this.maxDatagramBatchSize = ObjectUtil.checkInRange(maxDatagramBatchSize, 1, Limits.UIO_MAX_IOV,
+                "maxDatagramBatchSize");
+        return this;
+    }
+
+    /**
+     * Get the maximum number of {@link io.netty.channel.socket.DatagramPacket}s that are read with one
+     * {@code recvmmsg} call.
+     */
+    public int getMaxDatagramBatchSize() {
+        return maxDatagramBatchSize;
+    }
+
     private volatile boolean gro;
 
     /**
@@ -17,6 +17,7 @@ package io.netty.channel.epoll;
 
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopMetricsListener;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
@@ -187,6 +188,7 @@ class EpollEventLoop extends SingleThreadEventLoop {
         if (!inEventLoop && nextWakeupNanos.getAndSet(AWAKE) != AWAKE) {
             // write to the evfd which will then wake-up epoll_wait(...)
             Native.eventFdWrite(eventFd.intValue(), 1L);
+            wokenUp();
         }
     }
 
@@ -312,7 +314,11 @@ class EpollEventLoop extends SingleThreadEventLoop {
         long prevDeadlineNanos = NONE;
         for (;;) {
             try {
+                final EventLoopMetricsListener ioMetricsListener = ioMetricsListener();
                 int strategy = selectStrategy.calculateStrategy(selectNowSupplier, hasTasks());
+                // Only measure the time spent in epoll_wait if we may actually block or busy wait.
+                final boolean measureWait = ioMetricsListener != null && strategy < 0;
+                final long waitStartTime = measureWait ? System.nanoTime() : 0;
                 switch (strategy) {
                     case SelectStrategy.CONTINUE:
                         continue;
@@ -368,12 +374,21 @@ class EpollEventLoop extends SingleThreadEventLoop {
                         // fallthrough
                     default:
                 }
+                if (measureWait) {
+                    ioMetricsListener.ioWaited(System.nanoTime() - waitStartTime);
+                }
 
                 final int ioRatio = this.ioRatio;
                 if (ioRatio == 100) {
                     try {
-                        if (strategy > 0 && processReady(events, strategy)) {
-                            prevDeadlineNanos = NONE;
+                        if (strategy > 0) {
+                            final long ioStartTime = ioMetricsListener != null ? System.nanoTime() : 0;
+                            if (processReady(events, strategy)) {
+                                prevDeadlineNanos = NONE;
+                            }
+                            if (ioMetricsListener != null) {
+                                ioMetricsListener.ioProcessed(strategy, System.nanoTime() - ioStartTime);
+                            }
                         }
                     } finally {
                         // Ensure we always run tasks.
@@ -388,6 +403,9 @@ class EpollEventLoop extends SingleThreadEventLoop {
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (ioMetricsListener != null) {
+                            ioMetricsListener.ioProcessed(strategy, ioTime);
+                        }
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 } else {
@@ -454,8 +472,6 @@ class EpollEventLoop extends SingleThreadEventLoop {
             } else if (fd == timerFd.intValue()) {
                 timerFired = true;
             } else {
-                final long ev = events.events(i);
-
                 AbstractEpollChannel ch = channels.get(fd);
                 if (ch != null) {
                     // Don't change the ordering of processing EPOLLOUT | EPOLLRDHUP / EPOLLIN if you're not 100%
@@ -464,6 +480,14 @@ class EpollEventLoop extends SingleThreadEventLoop {
                     // past.
                     AbstractEpollUnsafe unsafe = (AbstractEpollUnsafe) ch.unsafe();
 
+                    // The error queue of the socket may contain completion notifications of MSG_ZEROCOPY writes,
+                    // consume these first so the flush below can make use of the memory that was freed. If that was
+                    // all the EPOLLERR was about, it must not trigger a flush or read on its own.
+                    long ev = events.events(i);
+                    if ((ev & Native.EPOLLERR) != 0 && unsafe.epollErrReady()) {
+                        ev &= ~Native.EPOLLERR;
+                    }
+
                     // First check for EPOLLOUT as we may need to fail the connect ChannelPromise before try
                     // to read from the file descriptor.
                     // See https://github.com/netty/netty/issues/3785
@@ -79,6 +79,11 @@ public final class EpollServerSocketChannel extends AbstractEpollServerChannel i
             socket.setTcpFastOpen(tcpFastopen);
         }
         socket.listen(config.getBacklog());
+        final int reusePortCpuSteering = config.getReusePortCpuSteering();
+        if (reusePortCpuSteering > 0) {
+            // The kernel only allows to attach the program once the socket is part of the SO_REUSEPORT group.
+            socket.setReusePortCpuSteering(reusePortCpuSteering);
+        }
         active = true;
     }
 
@@ -27,8 +27,11 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.util.Map;
 
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
 public final class EpollServerSocketChannelConfig extends EpollServerChannelConfig
         implements ServerSocketChannelConfig {
+    private volatile int reusePortCpuSteering;
 
     EpollServerSocketChannelConfig(EpollServerSocketChannel channel) {
         super(channel);
@@ -42,7 +45,8 @@ public final class EpollServerSocketChannelConfig extends EpollServerChannelConf
     @Override
     public Map<ChannelOption<?>, Object> getOptions() {
         return getOptions(super.getOptions(), EpollChannelOption.SO_REUSEPORT, EpollChannelOption.IP_FREEBIND,
-            EpollChannelOption.IP_TRANSPARENT, EpollChannelOption.TCP_DEFER_ACCEPT);
+            EpollChannelOption.IP_TRANSPARENT, EpollChannelOption.TCP_DEFER_ACCEPT,
+            EpollChannelOption.SO_REUSEPORT_CPU_STEERING);
     }
 
     @SuppressWarnings("unchecked")
@@ -60,6 +64,9 @@ public final class EpollServerSocketChannelConfig extends EpollServerChannelConf
         if (option == EpollChannelOption.TCP_DEFER_ACCEPT) {
             return (T) Integer.valueOf(getTcpDeferAccept());
         }
+        if (option == EpollChannelOption.SO_REUSEPORT_CPU_STEERING) {
+            return (T) Integer.valueOf(getReusePortCpuSteering());
+        }
         return super.getOption(option);
     }
 
@@ -69,6 +76,8 @@ public final class EpollServerSocketChannelConfig extends EpollServerChannelConf
 
         if (option == EpollChannelOption.SO_REUSEPORT) {
             setReusePort((Boolean) value);
+        } else if (option == EpollChannelOption.SO_REUSEPORT_CPU_STEERING) {
+            setReusePortCpuSteering((Integer) value);
         } else if (option == EpollChannelOption.IP_FREEBIND) {
             setFreeBind((Boolean) value);
         } else if (option == EpollChannelOption.IP_TRANSPARENT) {
@@ -213,6 +222,38 @@ public final class EpollServerSocketChannelConfig extends EpollServerChannelConf
         }
     }
 
+    /**
+     * Attaches a classic BPF program with {@code SO_ATTACH_REUSEPORT_CBPF} which lets the kernel pick the socket of
+     * the {@code SO_REUSEPORT} group for a new connection by the CPU that handles it, using the socket with the
+     * index {@code cpu % groupSize}. The index of a socket is the order in which the sockets of the group were bound,
+     * so together with event loops that are pinned to CPUs connections can be accepted on the CPU that received them.
+     *
+     * If the channel is not bound yet the program is attached once it is bound, as the kernel only accepts it for
+     * sockets which are already part of a {@code SO_REUSEPORT} group. The program is shared by the whole group.
+     *
+     * @param groupSize the number of sockets in the {@code SO_REUSEPORT} group.
+     */
+    public EpollServerSocketChannelConfig setReusePortCpuSteering(int groupSize) {
+        checkPositive(groupSize, "groupSize");
+        if (channel.isActive()) {
+            try {
+                ((EpollServerSocketChannel) channel).socket.setReusePortCpuSteering(groupSize);
+            } catch (IOException e) {
+                throw new ChannelException(e);
+            }
+        }
+        reusePortCpuSteering = groupSize;
+        return this;
+    }
+
+    /**
+     * Returns the number of sockets that was passed to {@link #setReusePortCpuSteering(int)} or {@code 0} if no
+     * program should be attached.
+     */
+    public int getReusePortCpuSteering() {
+        return reusePortCpuSteering;
+    }
+
     /**
      * Returns {@code true} if <a href="https://man7.org/linux/man-pages/man7/ip.7.html">IP_FREEBIND</a> is enabled,
      * {@code false} otherwise.
@@ -20,14 +20,20 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.KernelTlsChannel;
+import io.netty.channel.socket.KernelTlsRecord;
 import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.unix.Buffer;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -35,16 +41,27 @@ import java.util.concurrent.Executor;
 
 import static io.netty.channel.epoll.LinuxSocket.newSocketStream;
 import static io.netty.channel.epoll.Native.IS_SUPPORTING_TCP_FASTOPEN_CLIENT;
+import static io.netty.channel.internal.ChannelUtils.WRITE_STATUS_SNDBUF_FULL;
+import static io.netty.channel.unix.Errors.newIOException;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
 
 /**
  * {@link SocketChannel} implementation that uses linux EPOLL Edge-Triggered Mode for
  * maximal performance.
  */
-public final class EpollSocketChannel extends AbstractEpollStreamChannel implements SocketChannel {
+public final class EpollSocketChannel extends AbstractEpollStreamChannel implements SocketChannel, KernelTlsChannel {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollSocketChannel.class);
+
+    // Values of TLS_CIPHER_* in linux/tls.h
+    private static final int TLS_CIPHER_AES_GCM_128 = 51;
+    private static final int TLS_CIPHER_AES_GCM_256 = 52;
+    private static final int TLS_CIPHER_CHACHA20_POLY1305 = 54;
 
     private final EpollSocketChannelConfig config;
 
     private volatile Collection<InetAddress> tcpMd5SigAddresses = Collections.emptyList();
+    private volatile boolean kernelTlsTx;
 
     public EpollSocketChannel() {
         super(newSocketStream(), false);
@@ -121,6 +138,113 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
         return new EpollSocketChannelUnsafe();
     }
 
+    @Override
+    int zeroCopyThreshold() {
+        // MSG_ZEROCOPY is not supported once the kernel encrypts the data.
+        return config.isZeroCopy() && !kernelTlsTx ? config.getZeroCopyThreshold() : -1;
+    }
+
+    @Override
+    public boolean isKernelTlsTxEnabled() {
+        return kernelTlsTx;
+    }
+
+    @Override
+    public boolean enableKernelTlsTx(int version, Cipher cipher, byte[] key, byte[] iv, long recordSequence) {
+        checkNotNull(cipher, "cipher");
+        checkNotNull(key, "key");
+        checkNotNull(iv, "iv");
+        if (!eventLoop().inEventLoop()) {
+            throw new IllegalStateException("must be called from the event loop");
+        }
+        if (kernelTlsTx) {
+            throw new IllegalStateException("kernel TLS is enabled already");
+        }
+        if (!isActive()) {
+            return false;
+        }
+        final int cipherType;
+        switch (cipher) {
+            case AES_128_GCM:
+                cipherType = TLS_CIPHER_AES_GCM_128;
+                break;
+            case AES_256_GCM:
+                cipherType = TLS_CIPHER_AES_GCM_256;
+                break;
+            case CHACHA20_POLY1305:
+                cipherType = TLS_CIPHER_CHACHA20_POLY1305;
+                break;
+            default:
+                return false;
+        }
+        int res = socket.attachTlsUlp();
+        if (res < 0) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} Kernel TLS is not available, errno: {}", this, -res);
+            }
+            return false;
+        }
+        res = socket.setTlsTx(version, cipherType, key, iv, recordSequence);
+        if (res < 0) {
+            // The tls upper layer protocol can not be detached anymore, so make sure nothing else is written.
+            unsafe().close(unsafe().voidPromise());
+            throw new ChannelException("Kernel TLS refused the key for " + cipher,
+                    newIOException("setsockopt(TLS_TX)", res));
+        }
+        kernelTlsTx = true;
+        return true;
+    }
+
+    @Override
+    protected int doWriteSingle(ChannelOutboundBuffer in) throws Exception {
+        Object msg = in.current();
+        if (msg instanceof KernelTlsRecord) {
+            return writeKernelTlsRecord(in, (KernelTlsRecord) msg);
+        }
+        return super.doWriteSingle(in);
+    }
+
+    private int writeKernelTlsRecord(ChannelOutboundBuffer in, KernelTlsRecord record) throws Exception {
+        ByteBuf content = record.content();
+        if (!content.isReadable()) {
+            remove(in);
+            return 0;
+        }
+        final int localFlushedAmount;
+        if (content.hasMemoryAddress()) {
+            localFlushedAmount = socket.sendTlsRecord(record.contentType(), content.memoryAddress(),
+                    content.readerIndex(), content.writerIndex());
+        } else {
+            ByteBuffer nioBuf = content.internalNioBuffer(content.readerIndex(), content.readableBytes());
+            localFlushedAmount = socket.sendTlsRecord(record.contentType(), Buffer.memoryAddress(nioBuf),
+                    nioBuf.position(), nioBuf.limit());
+        }
+        if (localFlushedAmount > 0) {
+            content.skipBytes(localFlushedAmount);
+            in.progress(localFlushedAmount);
+            if (!content.isReadable()) {
+                remove(in);
+            }
+            return 1;
+        }
+        return WRITE_STATUS_SNDBUF_FULL;
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof KernelTlsRecord) {
+            if (!kernelTlsTx) {
+                throw new IllegalStateException("kernel TLS is not enabled");
+            }
+            KernelTlsRecord record = (KernelTlsRecord) msg;
+            ByteBuf content = record.content();
+            // The record is sent with a single sendmsg(...) call, so the content must be a single direct buffer.
+            return content.hasMemoryAddress() || content.isDirect() && content.nioBufferCount() == 1 ?
+                    record : new KernelTlsRecord(record.contentType(), newDirectBuffer(record, content));
+        }
+        return super.filterOutboundMessage(msg);
+    }
+
     @Override
     boolean doConnect0(SocketAddress remote) throws Exception {
         if (IS_SUPPORTING_TCP_FASTOPEN_CLIENT && config.isTcpFastOpenConnect()) {
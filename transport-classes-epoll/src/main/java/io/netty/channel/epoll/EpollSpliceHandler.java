@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * Forwards all the data that is received by the {@link AbstractEpollStreamChannel} it is added to, to another
+ * {@link AbstractEpollStreamChannel} by using
+ * {@link AbstractEpollStreamChannel#spliceTo(AbstractEpollStreamChannel, int)}, so the data never leaves the kernel.
+ * <p>
+ * This is useful for proxies, which only need to look at the data until the handshake is done (for example a
+ * {@code CONNECT} request or a SOCKS handshake), and forward everything else as is. Once the handshake is done, add
+ * an {@link EpollSpliceHandler} to both channels and remove the handlers which took care of the handshake:
+ * <pre>
+ * frontend.pipeline().addLast(new {@link EpollSpliceHandler}(backend));
+ * backend.pipeline().addLast(new {@link EpollSpliceHandler}(frontend));
+ * frontend.pipeline().remove(handshakeHandler);
+ * </pre>
+ * Any data which was already read before the channel was switched to splicing, like the bytes which are left in the
+ * cumulation of a decoder when it is removed, is written to the other channel as well.
+ * <p>
+ * Please note:
+ * <ul>
+ *   <li>both channels need to be registered to the same {@link io.netty.channel.EventLoop} and use
+ *   {@link EpollMode#LEVEL_TRIGGERED}.</li>
+ *   <li>the channel is reading by itself while splicing, and stops doing so while the other channel is not
+ *   {@link Channel#isWritable() writable}.</li>
+ *   <li>the other channel is closed once all the data was written to it, after this channel was closed.</li>
+ * </ul>
+ */
+@UnstableApi
+public final class EpollSpliceHandler extends ChannelInboundHandlerAdapter {
+
+    private final AbstractEpollStreamChannel peer;
+    private boolean splicing;
+
+    /**
+     * Create a new instance.
+     *
+     * @param peer the {@link AbstractEpollStreamChannel} to which the data is spliced.
+     */
+    public EpollSpliceHandler(AbstractEpollStreamChannel peer) {
+        this.peer = ObjectUtil.checkNotNull(peer, "peer");
+    }
+
+    /**
+     * Returns {@code true} if the data is spliced to the other channel.
+     */
+    public boolean isSplicing() {
+        return splicing;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isActive()) {
+            startSplicing(ctx);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        startSplicing(ctx);
+        ctx.fireChannelActive();
+    }
+
+    private void startSplicing(final ChannelHandlerContext ctx) {
+        if (splicing) {
+            return;
+        }
+        if (!(ctx.channel() instanceof AbstractEpollStreamChannel)) {
+            throw new IllegalStateException("channel must be an instance of " +
+                    AbstractEpollStreamChannel.class.getSimpleName() + ": " + ctx.channel());
+        }
+        AbstractEpollStreamChannel ch = (AbstractEpollStreamChannel) ctx.channel();
+        splicing = true;
+        // Integer.MAX_VALUE will splice until one of the channels is closed.
+        ch.spliceTo(peer, Integer.MAX_VALUE).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    Throwable cause = future.cause();
+                    if (!(cause instanceof ClosedChannelException)) {
+                        ctx.fireExceptionCaught(cause);
+                    }
+                    ctx.close();
+                    closeOnFlush(peer);
+                }
+            }
+        });
+        // Splicing takes care of reading from now on, and stops it once the peer is not writable anymore.
+        ch.config().setAutoRead(true);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        // Data that was read before we started splicing.
+        peer.writeAndFlush(msg).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        closeOnFlush(peer);
+        ctx.fireChannelInactive();
+    }
+
+    /**
+     * Closes the specified channel after all queued write requests are flushed.
+     */
+    private static void closeOnFlush(Channel ch) {
+        if (ch.isActive()) {
+            ch.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
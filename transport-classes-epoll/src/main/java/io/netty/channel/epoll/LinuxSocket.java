@@ -33,6 +33,7 @@ import java.net.UnknownHostException;
 import java.util.Enumeration;
 
 import static io.netty.channel.unix.Errors.ioResult;
+import static io.netty.channel.unix.Errors.newIOException;
 
 /**
  * A socket which provides access Linux native methods.
@@ -172,6 +173,10 @@ public final class LinuxSocket extends Socket {
         setTcpQuickAck(intValue(), quickAck ? 1 : 0);
     }
 
+    void setZeroCopy(boolean zeroCopy) throws IOException {
+        setZeroCopy(intValue(), zeroCopy ? 1 : 0);
+    }
+
     void setTcpCork(boolean tcpCork) throws IOException {
         setTcpCork(intValue(), tcpCork ? 1 : 0);
     }
@@ -215,6 +220,10 @@ public final class LinuxSocket extends Socket {
         setIpTransparent(intValue(), enabled ? 1 : 0);
     }
 
+    void setReusePortCpuSteering(int groupSize) throws IOException {
+        setReusePortCpuSteering(intValue(), groupSize);
+    }
+
     void setIpRecvOrigDestAddr(boolean enabled) throws IOException {
         setIpRecvOrigDestAddr(intValue(), enabled ? 1 : 0);
     }
@@ -248,6 +257,10 @@ public final class LinuxSocket extends Socket {
         return isTcpQuickAck(intValue()) != 0;
     }
 
+    boolean isZeroCopy() throws IOException {
+        return isZeroCopy(intValue()) != 0;
+    }
+
     long getTcpNotSentLowAt() throws IOException {
         return getTcpNotSentLowAt(intValue()) & MAX_UINT32_T;
     }
@@ -312,6 +325,93 @@ public final class LinuxSocket extends Socket {
         return ioResult("sendfile", (int) res);
     }
 
+    /**
+     * Write the given iov entries with {@code MSG_ZEROCOPY}, which requires {@code SO_ZEROCOPY} to be enabled.
+     * The memory must not be modified or released until the completion of the write was read via
+     * {@link #recvZeroCopyCompletion(int[])}.
+     *
+     * @return the number of bytes written, or {@code -1} if the kernel could not pin the memory at the moment and
+     * the data should be written without {@code MSG_ZEROCOPY}.
+     */
+    long writevAddressesZeroCopy(long memoryAddress, int length) throws IOException {
+        long res = writevAddressesZeroCopy(intValue(), memoryAddress, length);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == Native.ERRNO_ENOBUFS_NEGATIVE) {
+            return -1;
+        }
+        return ioResult("writevAddressesZeroCopy", (int) res);
+    }
+
+    /**
+     * Read the next completion notification of writes done via {@link #writevAddressesZeroCopy(long, int)} from
+     * the error queue of the socket. The first two elements of the array are set to the (inclusive) range of
+     * writes which are complete, the third to {@code 1} if the kernel copied the data after all.
+     *
+     * @return {@code true} if a notification was read, {@code false} if there are none left.
+     */
+    boolean recvZeroCopyCompletion(int[] completion) throws IOException {
+        int res = recvZeroCopyCompletion(intValue(), completion);
+        if (res < 0) {
+            ioResult("recvZeroCopyCompletion", res);
+            return false;
+        }
+        return res != 0;
+    }
+
+    /**
+     * Returns {@code true} if there is a pending socket error or a notification in the error queue, without
+     * consuming it.
+     */
+    boolean isErrorPending() throws IOException {
+        int res = isErrorPending(intValue());
+        if (res < 0) {
+            ioResult("isErrorPending", res);
+        }
+        return res > 0;
+    }
+
+    /**
+     * Returns a new {@link LinuxSocket} which refers to the same socket, so it stays open when this one is closed.
+     */
+    LinuxSocket dup() throws IOException {
+        int res = dup(intValue());
+        if (res < 0) {
+            throw newIOException("dup", res);
+        }
+        return new LinuxSocket(res);
+    }
+
+    /**
+     * Attach the {@code tls} upper layer protocol, which can not be detached again.
+     *
+     * @return {@code 0} on success, or the negative errno if the kernel refused it.
+     */
+    int attachTlsUlp() {
+        return attachTlsUlp(intValue());
+    }
+
+    /**
+     * Let the {@code tls} upper layer protocol encrypt the outbound records with the given key.
+     *
+     * @return {@code 0} on success, or the negative errno if the kernel refused it.
+     */
+    int setTlsTx(int version, int cipherType, byte[] key, byte[] iv, long recordSequence) {
+        return setTlsTx(intValue(), version, cipherType, key, iv, recordSequence);
+    }
+
+    /**
+     * Send the given bytes as a TLS record of the given content type, once the kernel encrypts the outbound records.
+     */
+    int sendTlsRecord(int recordType, long memoryAddress, int pos, int limit) throws IOException {
+        int res = sendTlsRecord(intValue(), recordType, memoryAddress, pos, limit);
+        if (res >= 0) {
+            return res;
+        }
+        return ioResult("sendTlsRecord", res);
+    }
+
     private static InetAddress deriveInetAddress(NetworkInterface netInterface, boolean ipv6) {
         final InetAddress ipAny = ipv6 ? INET6_ANY : INET_ANY;
         if (netInterface != null) {
@@ -378,8 +478,17 @@ public final class LinuxSocket extends Socket {
     private static native long sendFile(int socketFd, DefaultFileRegion src, long baseOffset,
                                         long offset, long length) throws IOException;
 
+    private static native long writevAddressesZeroCopy(int fd, long memoryAddress, int length);
+    private static native int recvZeroCopyCompletion(int fd, int[] completion);
+    private static native int isErrorPending(int fd);
+    private static native int dup(int fd);
+    private static native int attachTlsUlp(int fd);
+    private static native int setTlsTx(int fd, int version, int cipherType, byte[] key, byte[] iv,
+                                       long recordSequence);
+    private static native int sendTlsRecord(int fd, int recordType, long memoryAddress, int pos, int limit);
     private static native int getTcpDeferAccept(int fd) throws IOException;
     private static native int isTcpQuickAck(int fd) throws IOException;
+    private static native int isZeroCopy(int fd) throws IOException;
     private static native int isTcpCork(int fd) throws IOException;
     private static native int getSoBusyPoll(int fd) throws IOException;
     private static native int getTcpNotSentLowAt(int fd) throws IOException;
@@ -396,6 +505,7 @@ public final class LinuxSocket extends Socket {
 
     private static native void setTcpDeferAccept(int fd, int deferAccept) throws IOException;
     private static native void setTcpQuickAck(int fd, int quickAck) throws IOException;
+    private static native void setZeroCopy(int fd, int zeroCopy) throws IOException;
     private static native void setTcpCork(int fd, int tcpCork) throws IOException;
     private static native void setSoBusyPoll(int fd, int loopMicros) throws IOException;
     private static native void setTcpNotSentLowAt(int fd, int tcpNotSentLowAt) throws IOException;
@@ -405,6 +515,7 @@ public final class LinuxSocket extends Socket {
     private static native void setTcpKeepCnt(int fd, int probes) throws IOException;
     private static native void setTcpUserTimeout(int fd, int milliseconds)throws IOException;
     private static native void setIpFreeBind(int fd, int freeBind) throws IOException;
+    private static native void setReusePortCpuSteering(int fd, int groupSize) throws IOException;
     private static native void setIpTransparent(int fd, int transparent) throws IOException;
     private static native void setIpRecvOrigDestAddr(int fd, int transparent) throws IOException;
     private static native void setTcpMd5Sig(
@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.Selector;
 
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.enobufs;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollerr;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollet;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollin;
@@ -109,6 +110,8 @@ public final class Native {
     public static final int EPOLLET = epollet();
     public static final int EPOLLERR = epollerr();
 
+    static final int ERRNO_ENOBUFS_NEGATIVE = -enobufs();
+
     public static final boolean IS_SUPPORTING_SENDMMSG = isSupportingSendmmsg();
     static final boolean IS_SUPPORTING_RECVMMSG = isSupportingRecvmmsg();
     static final boolean IS_SUPPORTING_UDP_SEGMENT = isSupportingUdpSegment();
@@ -266,6 +269,24 @@ public final class Native {
 
     private static native int splice0(int fd, long offIn, int fdOut, long offOut, long len);
 
+    // Thread affinity
+    static void setThreadAffinity(int[] cpus) throws IOException {
+        int res = setThreadAffinity0(cpus);
+        if (res < 0) {
+            throw newIOException("sched_setaffinity", res);
+        }
+    }
+
+    /**
+     * Returns the CPUs the calling thread is allowed to run on or {@code null} if they could not be retrieved.
+     */
+    static int[] threadAffinity() {
+        return threadAffinity0();
+    }
+
+    private static native int setThreadAffinity0(int[] cpus);
+    private static native int[] threadAffinity0();
+
     @Deprecated
     public static int sendmmsg(int fd, NativeDatagramPacketArray.NativeDatagramPacket[] msgs,
                                int offset, int len) throws IOException {
@@ -209,6 +209,14 @@ final class NativeDatagramPacketArray {
             }
         }
 
+        /**
+         * Returns the number of bytes that were received into this packet by {@code recvmmsg(...)}.
+         */
+        int receivedBytes() {
+            // The native code replaces the number of iovecs with the length of the received datagram.
+            return count;
+        }
+
         DatagramPacket newDatagramPacket(ByteBuf buffer, InetSocketAddress recipient) throws UnknownHostException {
             InetSocketAddress sender = newAddress(senderAddr, senderAddrLen, senderPort, senderScopeId, ipv4Bytes);
             if (recipientAddrLen != 0) {
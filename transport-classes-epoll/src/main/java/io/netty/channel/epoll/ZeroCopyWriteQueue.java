@@ -0,0 +1,260 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.PromiseNotificationUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the messages which were written with {@code MSG_ZEROCOPY} until the kernel reports that it does not need
+ * their memory anymore. Only then the messages are released and their {@link ChannelPromise}s are notified.
+ * <p>
+ * The kernel assigns a sequence number to each write that is done with {@code MSG_ZEROCOPY}, starting with
+ * {@code 0}, and reports the completions as ranges of these sequence numbers via the error queue of the socket.
+ * As long as there are writes in flight, all messages that are written afterwards are kept as well, even if they
+ * were written without {@code MSG_ZEROCOPY}, so that the {@link ChannelPromise}s are still notified in order.
+ * <p>
+ * The kernel keeps sending the data of a closed socket, so the messages are kept after the channel was closed as
+ * well, see {@link #completeAfterClose(EventLoop, LinuxSocket)}.
+ */
+final class ZeroCopyWriteQueue {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ZeroCopyWriteQueue.class);
+    // How long to wait for the completions of a closed channel before its connection is reset, which makes the kernel
+    // drop the data and release the memory.
+    private static final long CLOSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long MAX_CLOSE_POLL_INTERVAL_MILLIS = 1000;
+
+    private final ArrayDeque<PendingWrite> pendingWrites = new ArrayDeque<PendingWrite>();
+    private final int[] completion = new int[3];
+    // Completions which were reported before the ones of earlier writes, stored as [first, last] pairs.
+    private List<int[]> outOfOrderCompletions;
+    // The sequence number the kernel will assign to the next write.
+    private int nextSequence;
+    // All writes with a sequence number lower than this one are complete.
+    private int completedSequence;
+
+    /**
+     * Returns {@code true} if there are writes for which the kernel did not report the completion yet.
+     */
+    boolean isPending() {
+        return nextSequence != completedSequence;
+    }
+
+    /**
+     * Removes the bytes which were written from the {@link ChannelOutboundBuffer} like
+     * {@link ChannelOutboundBuffer#removeBytes(long)} does, but keeps the messages which were written completely
+     * until all writes that were done so far are complete.
+     *
+     * @param zeroCopy {@code true} if the bytes were written with {@code MSG_ZEROCOPY}.
+     */
+    void removeBytes(ChannelOutboundBuffer in, long writtenBytes, boolean zeroCopy) {
+        if (zeroCopy) {
+            nextSequence++;
+        }
+        for (;;) {
+            Object msg = in.current();
+            if (!(msg instanceof ByteBuf)) {
+                assert writtenBytes == 0;
+                break;
+            }
+
+            final ByteBuf buf = (ByteBuf) msg;
+            final int readerIndex = buf.readerIndex();
+            final int readableBytes = buf.writerIndex() - readerIndex;
+
+            if (readableBytes <= writtenBytes) {
+                if (writtenBytes != 0) {
+                    in.progress(readableBytes);
+                    writtenBytes -= readableBytes;
+                }
+                ChannelPromise promise = in.removeDeferred();
+                pendingWrites.add(new PendingWrite(buf, promise, nextSequence));
+            } else { // readableBytes > writtenBytes
+                if (writtenBytes != 0) {
+                    buf.readerIndex(readerIndex + (int) writtenBytes);
+                    in.progress(writtenBytes);
+                }
+                break;
+            }
+        }
+        notifyCompleted();
+    }
+
+    /**
+     * Removes the current message, which is not a {@link ByteBuf} and was written completely, from the
+     * {@link ChannelOutboundBuffer} like {@link ChannelOutboundBuffer#remove()} does, but keeps it until all writes
+     * that were done so far are complete.
+     */
+    void remove(ChannelOutboundBuffer in) {
+        Object msg = in.current();
+        ChannelPromise promise = in.removeDeferred();
+        pendingWrites.add(new PendingWrite(msg, promise, nextSequence));
+        notifyCompleted();
+    }
+
+    /**
+     * Reads all the completion notifications that are queued on the given socket, and releases and notifies the
+     * messages whose writes are complete.
+     */
+    void readCompletions(LinuxSocket socket) throws IOException {
+        final int[] completion = this.completion;
+        while (socket.recvZeroCopyCompletion(completion)) {
+            complete(completion[0], completion[1]);
+        }
+        notifyCompleted();
+    }
+
+    private void complete(int first, int last) {
+        if (first != completedSequence) {
+            if (outOfOrderCompletions == null) {
+                outOfOrderCompletions = new ArrayList<int[]>(2);
+            }
+            outOfOrderCompletions.add(new int[] { first, last });
+            return;
+        }
+        completedSequence = last + 1;
+
+        List<int[]> outOfOrder = outOfOrderCompletions;
+        if (outOfOrder != null) {
+            for (int i = 0; i < outOfOrder.size();) {
+                int[] range = outOfOrder.get(i);
+                if (range[0] == completedSequence) {
+                    completedSequence = range[1] + 1;
+                    outOfOrder.remove(i);
+                    // The range may have filled a gap in front of an earlier reported one, so start again.
+                    i = 0;
+                } else {
+                    i++;
+                }
+            }
+        }
+    }
+
+    private void notifyCompleted() {
+        for (;;) {
+            PendingWrite write = pendingWrites.peek();
+            // Use subtraction, as the sequence numbers may wrap around.
+            if (write == null || completedSequence - write.sequence < 0) {
+                break;
+            }
+            pendingWrites.remove();
+            ReferenceCountUtil.safeRelease(write.msg);
+            PromiseNotificationUtil.trySuccess(write.promise, null, write.promise.isVoid() ? null : logger);
+        }
+    }
+
+    /**
+     * Keeps the messages of the writes which are still in flight after the channel was closed, until the kernel
+     * reported their completion on the given duplicate of the socket of the channel. The output of the socket is
+     * shut down, so the peer still receives all the data followed by a FIN, like it would if the socket was closed.
+     * The duplicate is closed once all writes are complete. If this does not happen within
+     * {@link #CLOSE_TIMEOUT_NANOS}, the connection is reset so that the kernel releases the memory, and the remaining
+     * messages are failed.
+     */
+    void completeAfterClose(final EventLoop loop, final LinuxSocket socket) {
+        try {
+            socket.shutdown(false, true);
+        } catch (IOException e) {
+            logger.debug("Failed to shut down the output of a closed channel with zero copy writes in flight", e);
+        }
+        final long deadline = System.nanoTime() + CLOSE_TIMEOUT_NANOS;
+        loop.schedule(new Runnable() {
+            private long intervalMillis = 1;
+
+            @Override
+            public void run() {
+                try {
+                    readCompletions(socket);
+                } catch (IOException e) {
+                    logger.debug("Failed to read the zero copy completions of a closed channel", e);
+                    closeAndFailAll(socket);
+                    return;
+                }
+                if (!isPending()) {
+                    closeQuietly(socket);
+                } else if (System.nanoTime() - deadline >= 0) {
+                    closeAndFailAll(socket);
+                } else {
+                    intervalMillis = Math.min(intervalMillis << 1, MAX_CLOSE_POLL_INTERVAL_MILLIS);
+                    loop.schedule(this, intervalMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+    }
+
+    private void closeAndFailAll(LinuxSocket socket) {
+        try {
+            // Reset the connection, which drops the data that was not sent yet and so releases the memory which is
+            // still pinned by the kernel, before the messages are released.
+            socket.setSoLinger(0);
+        } catch (IOException e) {
+            logger.debug("Failed to set SO_LINGER of a closed channel with zero copy writes in flight", e);
+        }
+        closeQuietly(socket);
+        failAll(new ClosedChannelException());
+    }
+
+    private static void closeQuietly(LinuxSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close a socket with zero copy writes", e);
+        }
+    }
+
+    /**
+     * Releases all the messages which are kept and fails their {@link ChannelPromise}s, as the completion of their
+     * writes will never be reported.
+     */
+    void failAll(Throwable cause) {
+        for (;;) {
+            PendingWrite write = pendingWrites.poll();
+            if (write == null) {
+                break;
+            }
+            ReferenceCountUtil.safeRelease(write.msg);
+            PromiseNotificationUtil.tryFailure(write.promise, cause, write.promise.isVoid() ? null : logger);
+        }
+        completedSequence = nextSequence;
+        outOfOrderCompletions = null;
+    }
+
+    private static final class PendingWrite {
+        final Object msg;
+        final ChannelPromise promise;
+        // The write is complete once all writes with a lower sequence number are complete.
+        final int sequence;
+
+        PendingWrite(Object msg, ChannelPromise promise, int sequence) {
+            this.msg = msg;
+            this.promise = promise;
+            this.sequence = sequence;
+        }
+    }
+}
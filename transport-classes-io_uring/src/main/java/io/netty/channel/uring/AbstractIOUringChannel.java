@@ -0,0 +1,764 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoop;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.PreferredDirectByteBufAllocator;
+import io.netty.channel.unix.UnixChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.channel.unix.UnixChannelUtil.computeRemoteAddr;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+abstract class AbstractIOUringChannel extends AbstractChannel implements UnixChannel {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringChannel.class);
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+    // Bits of ioState which are set while the matching operation is in flight.
+    static final int READ_SCHEDULED = 1;
+    static final int WRITE_SCHEDULED = 1 << 1;
+    static final int CONNECT_SCHEDULED = 1 << 2;
+    static final int POLL_OUT_SCHEDULED = 1 << 3;
+
+    final LinuxSocket socket;
+    /**
+     * The future of the current connection attempt.  If not null, subsequent
+     * connection attempts will fail.
+     */
+    private ChannelPromise connectPromise;
+    private Future<?> connectTimeoutFuture;
+    private SocketAddress requestedRemoteAddress;
+    // Holds the struct sockaddr which is used by the connect operation, must be kept alive until it completes.
+    private ByteBuffer remoteAddressMemory;
+
+    private volatile SocketAddress local;
+    private volatile SocketAddress remote;
+
+    private int registrationId;
+    int ioState;
+    private int cancelledState;
+    // The number of cancellations whose completion was not received yet.
+    private int pendingCancels;
+    // Set once the channel was closed, the file descriptor itself is only closed once all operations completed.
+    private volatile boolean closed;
+    // The user data of the read operation in flight, as it may be a read, accept or poll.
+    long readUserData;
+    long writeUserData;
+
+    boolean inputClosedSeenErrorOnRead;
+
+    protected volatile boolean active;
+
+    AbstractIOUringChannel(LinuxSocket fd) {
+        this(null, fd, false);
+    }
+
+    AbstractIOUringChannel(Channel parent, LinuxSocket fd, boolean active) {
+        super(parent);
+        this.socket = checkNotNull(fd, "fd");
+        this.active = active;
+        if (active) {
+            // Directly cache the remote and local addresses
+            // See https://github.com/netty/netty/issues/2359
+            this.local = fd.localAddress();
+            this.remote = fd.remoteAddress();
+        }
+    }
+
+    AbstractIOUringChannel(Channel parent, LinuxSocket fd, SocketAddress remote) {
+        super(parent);
+        this.socket = checkNotNull(fd, "fd");
+        this.active = true;
+        // Directly cache the remote and local addresses
+        // See https://github.com/netty/netty/issues/2359
+        this.remote = remote;
+        this.local = fd.localAddress();
+    }
+
+    @Override
+    public final FileDescriptor fd() {
+        return socket;
+    }
+
+    @Override
+    public abstract IOUringChannelConfig config();
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && socket.isOpen();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof IOUringEventLoop;
+    }
+
+    final int registrationId() {
+        return registrationId;
+    }
+
+    /**
+     * Returns {@code true} if the completion of an operation of this channel, including the cancellation of an
+     * operation, is still outstanding.
+     */
+    final boolean hasOutstandingOperations() {
+        return ioState != 0 || pendingCancels != 0;
+    }
+
+    final IOUringSubmissionQueue submissionQueue() {
+        return ((IOUringEventLoop) eventLoop()).submissionQueue();
+    }
+
+    final long userData(byte op, short data) {
+        return UserData.encode(registrationId, op, data);
+    }
+
+    final AbstractIOUringUnsafe ioUringUnsafe() {
+        return (AbstractIOUringUnsafe) unsafe();
+    }
+
+    /**
+     * Cancel all operations of this channel which are still in flight. The completions of these operations will
+     * still be delivered, at the latest with {@link Native#ERRNO_ECANCELED_NEGATIVE} as result.
+     */
+    final void cancelOutstandingOperations() {
+        assert eventLoop().inEventLoop();
+        int toCancel = ioState & ~cancelledState;
+        if (toCancel == 0) {
+            return;
+        }
+        cancelledState |= toCancel;
+        IOUringSubmissionQueue submissionQueue = submissionQueue();
+        long cancelUserData = userData(Native.IORING_OP_ASYNC_CANCEL, (short) 0);
+        if ((toCancel & READ_SCHEDULED) != 0) {
+            submissionQueue.addCancel(readUserData, cancelUserData);
+            pendingCancels++;
+        }
+        if ((toCancel & WRITE_SCHEDULED) != 0) {
+            submissionQueue.addCancel(writeUserData, cancelUserData);
+            pendingCancels++;
+        }
+        if ((toCancel & CONNECT_SCHEDULED) != 0) {
+            submissionQueue.addCancel(userData(Native.IORING_OP_CONNECT, (short) 0), cancelUserData);
+            pendingCancels++;
+        }
+        if ((toCancel & POLL_OUT_SCHEDULED) != 0) {
+            submissionQueue.addCancel(userData(Native.IORING_OP_POLL_ADD, (short) Native.POLLOUT), cancelUserData);
+            pendingCancels++;
+        }
+    }
+
+    /**
+     * Mark the given operation as completed.
+     */
+    final void clearIoState(int state) {
+        ioState &= ~state;
+        cancelledState &= ~state;
+    }
+
+    final void schedulePollOut() {
+        assert (ioState & POLL_OUT_SCHEDULED) == 0;
+        ioState |= POLL_OUT_SCHEDULED;
+        submissionQueue().addPoll(socket.intValue(), Native.POLLOUT,
+                userData(Native.IORING_OP_POLL_ADD, (short) Native.POLLOUT));
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        active = false;
+        // Even if we allow half closed sockets we should give up on reading. Otherwise we may allow a read attempt on a
+        // socket which has not even been connected yet. This has been observed to block during unit tests.
+        inputClosedSeenErrorOnRead = true;
+        try {
+            ChannelPromise promise = connectPromise;
+            if (promise != null) {
+                // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+                promise.tryFailure(new ClosedChannelException());
+                connectPromise = null;
+            }
+
+            Future<?> future = connectTimeoutFuture;
+            if (future != null) {
+                future.cancel(false);
+                connectTimeoutFuture = null;
+            }
+
+            if (isRegistered() && eventLoop().inEventLoop()) {
+                // Closing the file descriptor alone does not complete the operations that are still in flight, as
+                // the kernel holds its own reference to the file.
+                cancelOutstandingOperations();
+            }
+        } finally {
+            closed = true;
+            // The operations and cancellations may not even be submitted yet, and would then use the number of the
+            // file descriptor after it was closed and maybe reused. So only close it once all of them completed, see
+            // AbstractIOUringUnsafe.completed(...).
+            if (!hasOutstandingOperations()) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Called once all operations of the channel completed after it was closed.
+     */
+    void doCloseAfterOperationsCompleted() throws Exception {
+        socket.close();
+    }
+
+    void resetCachedAddresses() {
+        local = socket.localAddress();
+        remote = socket.remoteAddress();
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected void doRegister() throws Exception {
+        cancelledState = 0;
+        registrationId = ((IOUringEventLoop) eventLoop()).add(this);
+    }
+
+    @Override
+    protected void doDeregister() throws Exception {
+        ((IOUringEventLoop) eventLoop()).remove(this);
+    }
+
+    @Override
+    protected final void doBeginRead() throws Exception {
+        // Channel.read() or ChannelHandlerContext.read() was called
+        final AbstractIOUringUnsafe unsafe = ioUringUnsafe();
+        unsafe.readPending = true;
+        // If we are in the middle of processing a read completion, the read will be scheduled once it is done.
+        if (!unsafe.readInProgress && (ioState & READ_SCHEDULED) == 0 && !shouldBreakReadReady(config())) {
+            unsafe.scheduleRead();
+        }
+    }
+
+    final boolean shouldBreakReadReady(ChannelConfig config) {
+        return socket.isInputShutdown() && (inputClosedSeenErrorOnRead || !isAllowHalfClosure(config));
+    }
+
+    private static boolean isAllowHalfClosure(ChannelConfig config) {
+        return config instanceof SocketChannelConfig &&
+                ((SocketChannelConfig) config).isAllowHalfClosure();
+    }
+
+    @Override
+    protected abstract AbstractIOUringUnsafe newUnsafe();
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the original one.
+     */
+    protected final ByteBuf newDirectBuffer(ByteBuf buf) {
+        return newDirectBuffer(buf, buf);
+    }
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the specified holder.
+     * The caller must ensure that the holder releases the original {@link ByteBuf} when the holder is released by
+     * this method.
+     */
+    protected final ByteBuf newDirectBuffer(Object holder, ByteBuf buf) {
+        final int readableBytes = buf.readableBytes();
+        if (readableBytes == 0) {
+            ReferenceCountUtil.release(holder);
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        final ByteBufAllocator alloc = alloc();
+        if (alloc.isDirectBufferPooled()) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        final ByteBuf directBuf = ByteBufUtil.threadLocalDirectBuffer();
+        if (directBuf == null) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        directBuf.writeBytes(buf, buf.readerIndex(), readableBytes);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    private static ByteBuf newDirectBuffer0(Object holder, ByteBuf buf, ByteBufAllocator alloc, int capacity) {
+        final ByteBuf directBuf = alloc.directBuffer(capacity);
+        directBuf.writeBytes(buf, buf.readerIndex(), capacity);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    protected static void checkResolvable(InetSocketAddress addr) {
+        if (addr.isUnresolved()) {
+            throw new UnresolvedAddressException();
+        }
+    }
+
+    /**
+     * Returns the memory address of the given {@link ByteBuf} at the given index.
+     */
+    static long memoryAddress(ByteBuf buf, int index) {
+        if (buf.hasMemoryAddress()) {
+            return buf.memoryAddress() + index;
+        }
+        ByteBuffer nioBuffer = buf.internalNioBuffer(index, 0);
+        return Buffer.memoryAddress(nioBuffer) + nioBuffer.position();
+    }
+
+    protected abstract class AbstractIOUringUnsafe extends AbstractUnsafe {
+        boolean readPending;
+        boolean readInProgress;
+        private final PreferredDirectByteBufAllocator preferredDirectAllocator =
+                new PreferredDirectByteBufAllocator();
+        private RecvByteBufAllocator.ExtendedHandle allocHandle;
+
+        /**
+         * Submit the operation which is used to read from the underlying socket.
+         */
+        abstract void scheduleRead();
+
+        /**
+         * Called once the read operation which was submitted by {@link #scheduleRead()} completed.
+         */
+        abstract void readComplete(int res);
+
+        /**
+         * Called once the write operation completed.
+         */
+        void writeComplete(int res) {
+            throw new IllegalStateException("No write operation was scheduled");
+        }
+
+        /**
+         * Called once the completion of an operation of this channel was received.
+         */
+        final void completed(byte op, int res, short data) {
+            try {
+                completed0(op, res, data);
+            } finally {
+                if (closed && !hasOutstandingOperations() && socket.isOpen()) {
+                    try {
+                        doCloseAfterOperationsCompleted();
+                    } catch (Exception e) {
+                        logger.warn("Failed to close a channel after its operations completed.", e);
+                    }
+                }
+            }
+        }
+
+        private void completed0(byte op, int res, short data) {
+            switch (op) {
+                case Native.IORING_OP_READ:
+                case Native.IORING_OP_ACCEPT:
+                    readComplete(res);
+                    break;
+                case Native.IORING_OP_WRITEV:
+                    writeComplete(res);
+                    break;
+                case Native.IORING_OP_CONNECT:
+                    connectComplete(res);
+                    break;
+                case Native.IORING_OP_POLL_ADD:
+                    if (data == Native.POLLOUT) {
+                        pollOutComplete(res);
+                    } else {
+                        readComplete(res);
+                    }
+                    break;
+                case Native.IORING_OP_ASYNC_CANCEL:
+                    pendingCancels--;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Returns a {@link ByteBufAllocator} which will prefer direct buffers, as io_uring can only read into
+         * native memory.
+         */
+        final ByteBufAllocator readAllocator() {
+            preferredDirectAllocator.updateAllocator(config().getAllocator());
+            return preferredDirectAllocator;
+        }
+
+        @Override
+        public RecvByteBufAllocator.ExtendedHandle recvBufAllocHandle() {
+            if (allocHandle == null) {
+                allocHandle = (RecvByteBufAllocator.ExtendedHandle) super.recvBufAllocHandle();
+            }
+            return allocHandle;
+        }
+
+        /**
+         * Shutdown the input side of the channel.
+         */
+        void shutdownInput(boolean rdHup) {
+            if (!socket.isInputShutdown()) {
+                if (isAllowHalfClosure(config())) {
+                    try {
+                        socket.shutdown(true, false);
+                    } catch (IOException ignored) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                        fireEventAndClose(ChannelInputShutdownEvent.INSTANCE);
+                        return;
+                    } catch (NotYetConnectedException ignore) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                    }
+                    pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+                } else {
+                    close(voidPromise());
+                }
+            } else if (!rdHup) {
+                inputClosedSeenErrorOnRead = true;
+                pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+            }
+        }
+
+        private void fireEventAndClose(Object evt) {
+            pipeline().fireUserEventTriggered(evt);
+            close(voidPromise());
+        }
+
+        @Override
+        protected final void flush0() {
+            // Flush immediately only when there's no pending write.
+            // If there's a pending write operation, its completion will call flush0() again
+            // and thus there's no need to call it now.
+            if ((ioState & (WRITE_SCHEDULED | POLL_OUT_SCHEDULED)) == 0) {
+                super.flush0();
+            }
+        }
+
+        /**
+         * Called once a POLLOUT event was received.
+         */
+        private void pollOutComplete(int res) {
+            clearIoState(POLL_OUT_SCHEDULED);
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                return;
+            }
+            if (connectPromise != null) {
+                // pending connect which is now complete so handle it.
+                finishConnect();
+            } else if (!socket.isOutputShutdown()) {
+                // directly call super.flush0() to force a flush now
+                super.flush0();
+            }
+        }
+
+        private void connectComplete(int res) {
+            clearIoState(CONNECT_SCHEDULED);
+            remoteAddressMemory = null;
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE || connectPromise == null) {
+                // Closed or cancelled via timeout, the promise has been notified already.
+                return;
+            }
+            if (res == Errors.ERRNO_EINPROGRESS_NEGATIVE || res == Errors.ERROR_EALREADY_NEGATIVE) {
+                // connect not complete yet need to wait for the POLLOUT event.
+                schedulePollOut();
+                return;
+            }
+            if (res == 0) {
+                finishConnect();
+                return;
+            }
+            try {
+                throwConnectException(res);
+            } catch (Throwable t) {
+                fulfillConnectPromise(connectPromise, annotateConnectException(t, requestedRemoteAddress));
+                cancelConnectTimeout();
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        private void throwConnectException(int res) throws IOException {
+            Errors.throwConnectException("io_uring connect", res);
+        }
+
+        @Override
+        public void connect(
+                final SocketAddress remoteAddress, final SocketAddress localAddress, final ChannelPromise promise) {
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+
+            try {
+                if (connectPromise != null) {
+                    throw new ConnectionPendingException();
+                }
+
+                boolean wasActive = isActive();
+                if (doConnect(remoteAddress, localAddress)) {
+                    fulfillConnectPromise(promise, wasActive);
+                } else {
+                    connectPromise = promise;
+                    requestedRemoteAddress = remoteAddress;
+
+                    // Schedule connect timeout.
+                    int connectTimeoutMillis = config().getConnectTimeoutMillis();
+                    if (connectTimeoutMillis > 0) {
+                        connectTimeoutFuture = eventLoop().schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                ChannelPromise connectPromise = AbstractIOUringChannel.this.connectPromise;
+                                if (connectPromise != null && !connectPromise.isDone()
+                                        && connectPromise.tryFailure(new ConnectTimeoutException(
+                                        "connection timed out: " + remoteAddress))) {
+                                    close(voidPromise());
+                                }
+                            }
+                        }, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+                    }
+
+                    promise.addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) throws Exception {
+                            if (future.isCancelled()) {
+                                if (connectTimeoutFuture != null) {
+                                    connectTimeoutFuture.cancel(false);
+                                }
+                                connectPromise = null;
+                                close(voidPromise());
+                            }
+                        }
+                    });
+                }
+            } catch (Throwable t) {
+                closeIfClosed();
+                promise.tryFailure(annotateConnectException(t, remoteAddress));
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, boolean wasActive) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+            active = true;
+
+            // Get the state as trySuccess() may trigger an ChannelFutureListener that will close the Channel.
+            // We still need to ensure we call fireChannelActive() in this case.
+            boolean active = isActive();
+
+            // trySuccess() will return false if a user cancelled the connection attempt.
+            boolean promiseSet = promise.trySuccess();
+
+            // Regardless if the connection attempt was cancelled, channelActive() event should be triggered,
+            // because what happened is what happened.
+            if (!wasActive && active) {
+                pipeline().fireChannelActive();
+            }
+
+            // If a user cancelled the connection attempt, close the channel, which is followed by channelInactive().
+            if (!promiseSet) {
+                close(voidPromise());
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, Throwable cause) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+
+            // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+            promise.tryFailure(cause);
+            closeIfClosed();
+        }
+
+        private void cancelConnectTimeout() {
+            // Check for null as the connectTimeoutFuture is only created if a connectTimeoutMillis > 0 is used
+            // See https://github.com/netty/netty/issues/1770
+            if (connectTimeoutFuture != null) {
+                connectTimeoutFuture.cancel(false);
+            }
+            connectPromise = null;
+        }
+
+        private void finishConnect() {
+            // Note this method is invoked by the event loop only if the connection attempt was
+            // neither cancelled nor timed out.
+
+            assert eventLoop().inEventLoop();
+
+            boolean connectStillInProgress = false;
+            try {
+                boolean wasActive = isActive();
+                if (!doFinishConnect()) {
+                    connectStillInProgress = true;
+                    return;
+                }
+                fulfillConnectPromise(connectPromise, wasActive);
+            } catch (Throwable t) {
+                fulfillConnectPromise(connectPromise, annotateConnectException(t, requestedRemoteAddress));
+            } finally {
+                if (!connectStillInProgress) {
+                    cancelConnectTimeout();
+                }
+            }
+        }
+
+        /**
+         * Finish the connect
+         */
+        private boolean doFinishConnect() throws Exception {
+            if (socket.finishConnect()) {
+                if (requestedRemoteAddress instanceof InetSocketAddress) {
+                    remote = computeRemoteAddr((InetSocketAddress) requestedRemoteAddress, socket.remoteAddress());
+                }
+                requestedRemoteAddress = null;
+                local = socket.localAddress();
+                return true;
+            }
+            schedulePollOut();
+            return false;
+        }
+    }
+
+    @Override
+    protected void doBind(SocketAddress local) throws Exception {
+        if (local instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) local);
+        }
+        socket.bind(local);
+        this.local = socket.localAddress();
+    }
+
+    /**
+     * Connect to the remote peer
+     */
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (localAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) localAddress);
+        }
+
+        InetSocketAddress remoteSocketAddr = remoteAddress instanceof InetSocketAddress
+                ? (InetSocketAddress) remoteAddress : null;
+        if (remoteSocketAddr != null) {
+            checkResolvable(remoteSocketAddr);
+        }
+
+        if (remote != null) {
+            // Check if already connected before trying to connect. This is needed as connect(...) will not return -1
+            // and set errno to EISCONN if a previous connect(...) attempt was setting errno to EINPROGRESS and finished
+            // later.
+            throw new AlreadyConnectedException();
+        }
+
+        if (localAddress != null) {
+            socket.bind(localAddress);
+        }
+
+        boolean connected = doConnect0(remoteAddress);
+        if (connected) {
+            remote = remoteSocketAddr == null ?
+                    remoteAddress : computeRemoteAddr(remoteSocketAddr, socket.remoteAddress());
+        }
+        // We always need to set the localAddress even if not connected yet as the bind already took place.
+        //
+        // See https://github.com/netty/netty/issues/3463
+        local = socket.localAddress();
+        return connected;
+    }
+
+    boolean doConnect0(SocketAddress remote) throws Exception {
+        boolean success = false;
+        try {
+            boolean connected;
+            if (remote instanceof InetSocketAddress) {
+                // Submit the connect, its completion will tell us if we are connected.
+                ByteBuffer memory = Buffer.allocateDirectWithNativeOrder(SockaddrIn.IPV6_ADDRESS_LENGTH);
+                long address = Buffer.memoryAddress(memory);
+                int length = SockaddrIn.write(socket.isIpv6(), address, (InetSocketAddress) remote);
+                remoteAddressMemory = memory;
+                ioState |= CONNECT_SCHEDULED;
+                submissionQueue().addConnect(socket.intValue(), address, length,
+                        userData(Native.IORING_OP_CONNECT, (short) 0));
+                connected = false;
+            } else {
+                connected = socket.connect(remote);
+                if (!connected) {
+                    schedulePollOut();
+                }
+            }
+            success = true;
+            return connected;
+        } finally {
+            if (!success) {
+                doClose();
+            }
+        }
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return local;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return remote;
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.EventLoop;
+import io.netty.channel.FileRegion;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.Limits;
+import io.netty.channel.unix.SocketWritableByteChannel;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static io.netty.channel.unix.Errors.newIOException;
+import static java.lang.Math.min;
+
+abstract class AbstractIOUringStreamChannel extends AbstractIOUringChannel implements DuplexChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ", " +
+                    StringUtil.simpleClassName(DefaultFileRegion.class) + ')';
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(AbstractIOUringStreamChannel.class);
+
+    // The buffer the read operation in flight reads into.
+    private ByteBuf readBuffer;
+    // The memory of the iovec array which is used by the writev operation in flight.
+    private ByteBuf iovArrayMemory;
+    // The buffers the writev operation in flight reads from.
+    private final List<ByteBuf> writevBuffers = new ArrayList<ByteBuf>();
+    private final WritevBuffersProcessor writevBuffersProcessor = new WritevBuffersProcessor();
+    // Set if the writev buffers were retained, because the channel was closed while the writev was in flight.
+    private boolean writevBuffersRetained;
+    // Failure of the last writev operation, will be propagated by the next doWrite(...) call.
+    private IOException writeFailure;
+
+    private WritableByteChannel byteChannel;
+
+    AbstractIOUringStreamChannel(Channel parent, LinuxSocket fd, boolean active) {
+        super(parent, fd, active);
+    }
+
+    AbstractIOUringStreamChannel(Channel parent, LinuxSocket fd, SocketAddress remote) {
+        super(parent, fd, remote);
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringStreamUnsafe();
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf): buf;
+        }
+
+        if (msg instanceof FileRegion) {
+            return msg;
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        IOException failure = writeFailure;
+        if (failure != null) {
+            writeFailure = null;
+            throw failure;
+        }
+        if ((ioState & (WRITE_SCHEDULED | POLL_OUT_SCHEDULED)) != 0) {
+            // The completion of the operation in flight will trigger the next write.
+            return;
+        }
+        for (;;) {
+            Object msg = in.current();
+            if (msg == null) {
+                return;
+            }
+            if (msg instanceof ByteBuf) {
+                if (!((ByteBuf) msg).isReadable()) {
+                    in.remove();
+                    continue;
+                }
+                scheduleWritev(in);
+            } else {
+                // There is no io_uring operation to transfer a FileRegion, so write it directly and wait until the
+                // socket is writable again if we could not make any progress.
+                if (writeFileRegion(in, (FileRegion) msg)) {
+                    continue;
+                }
+                schedulePollOut();
+            }
+            return;
+        }
+    }
+
+    private void scheduleWritev(ChannelOutboundBuffer in) throws Exception {
+        // Size the iovec array so it can hold every flushed buffer, but never more than the kernel accepts. Buffers
+        // which are backed by multiple memory regions may not fit completely, which just results in a smaller write.
+        int numIov = min(Limits.IOV_MAX, in.size() * 2);
+        ByteBuf memory = alloc().directBuffer(numIov * IovArray.IOV_SIZE);
+        boolean success = false;
+        IovArray array = new IovArray(memory);
+        try {
+            array.maxBytes(config().getMaxBytesPerGatheringWrite());
+            writevBuffersProcessor.array = array;
+            in.forEachFlushedMessage(writevBuffersProcessor);
+            success = true;
+        } finally {
+            writevBuffersProcessor.array = null;
+            if (!success) {
+                writevBuffers.clear();
+                memory.release();
+            }
+        }
+        iovArrayMemory = memory;
+        writeUserData = userData(Native.IORING_OP_WRITEV, (short) 0);
+        ioState |= WRITE_SCHEDULED;
+        IOUringSubmissionQueue submissionQueue = submissionQueue();
+        submissionQueue.addWritev(socket.intValue(), array.memoryAddress(0), array.count(), writeUserData);
+        // Hand the write over to the kernel directly as flush() is the signal that the data should be written now.
+        // Otherwise the write would only be picked up once the EventLoop iterates again, which never happens if a
+        // handler blocks the EventLoop while waiting for the data to arrive at the remote peer.
+        submissionQueue.submit();
+    }
+
+    /**
+     * Write the given {@link FileRegion} and return {@code true} if some progress was made.
+     */
+    private boolean writeFileRegion(ChannelOutboundBuffer in, FileRegion region) throws Exception {
+        final long offset = region.transferred();
+        final long regionCount = region.count();
+        if (offset >= regionCount) {
+            in.remove();
+            return true;
+        }
+
+        if (byteChannel == null) {
+            byteChannel = new IOUringSocketWritableByteChannel();
+        }
+        final long flushedAmount = region.transferTo(byteChannel, offset);
+        if (flushedAmount == 0 && region instanceof DefaultFileRegion) {
+            validateFileRegion((DefaultFileRegion) region, offset);
+        }
+        if (flushedAmount > 0) {
+            in.progress(flushedAmount);
+            if (region.transferred() >= regionCount) {
+                in.remove();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected final void doShutdownOutput() throws Exception {
+        socket.shutdown(false, true);
+    }
+
+    private void shutdownInput0(final ChannelPromise promise) {
+        if (!isOpen()) {
+            // The file descriptor may still be open until the operations in flight completed.
+            promise.setFailure(new ClosedChannelException());
+            return;
+        }
+        try {
+            socket.shutdown(true, false);
+            promise.setSuccess();
+        } catch (Throwable cause) {
+            promise.setFailure(cause);
+        }
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return socket.isOutputShutdown();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return socket.isInputShutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return socket.isShutdown();
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput() {
+        return shutdownOutput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+                }
+            });
+        }
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdownInput() {
+        return shutdownInput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownInput(final ChannelPromise promise) {
+        Executor closeExecutor = ((IOUringStreamUnsafe) unsafe()).prepareToClose();
+        if (closeExecutor != null) {
+            closeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    shutdownInput0(promise);
+                }
+            });
+        } else {
+            EventLoop loop = eventLoop();
+            if (loop.inEventLoop()) {
+                shutdownInput0(promise);
+            } else {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        shutdownInput0(promise);
+                    }
+                });
+            }
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdown() {
+        return shutdown(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdown(final ChannelPromise promise) {
+        ChannelFuture shutdownOutputFuture = shutdownOutput();
+        if (shutdownOutputFuture.isDone()) {
+            shutdownOutputDone(shutdownOutputFuture, promise);
+        } else {
+            shutdownOutputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture shutdownOutputFuture) throws Exception {
+                    shutdownOutputDone(shutdownOutputFuture, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void shutdownOutputDone(final ChannelFuture shutdownOutputFuture, final ChannelPromise promise) {
+        ChannelFuture shutdownInputFuture = shutdownInput();
+        if (shutdownInputFuture.isDone()) {
+            shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+        } else {
+            shutdownInputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture shutdownInputFuture) throws Exception {
+                    shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+                }
+            });
+        }
+    }
+
+    private static void shutdownDone(ChannelFuture shutdownOutputFuture,
+                              ChannelFuture shutdownInputFuture,
+                              ChannelPromise promise) {
+        Throwable shutdownOutputCause = shutdownOutputFuture.cause();
+        Throwable shutdownInputCause = shutdownInputFuture.cause();
+        if (shutdownOutputCause != null) {
+            if (shutdownInputCause != null) {
+                logger.debug("Exception suppressed because a previous exception occurred.",
+                        shutdownInputCause);
+            }
+            promise.setFailure(shutdownOutputCause);
+        } else if (shutdownInputCause != null) {
+            promise.setFailure(shutdownInputCause);
+        } else {
+            promise.setSuccess();
+        }
+    }
+
+    class IOUringStreamUnsafe extends AbstractIOUringUnsafe {
+        // Overridden here just to be able to access this method from AbstractIOUringStreamChannel
+        @Override
+        protected Executor prepareToClose() {
+            return super.prepareToClose();
+        }
+
+        @Override
+        void scheduleRead() {
+            final ChannelConfig config = config();
+            final RecvByteBufAllocator.ExtendedHandle allocHandle = recvBufAllocHandle();
+            allocHandle.reset(config);
+
+            // we use a direct buffer here as io_uring is only be able to read into native memory.
+            ByteBuf byteBuf = allocHandle.allocate(readAllocator());
+            allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+            readBuffer = byteBuf;
+            readUserData = userData(Native.IORING_OP_READ, (short) 0);
+            ioState |= READ_SCHEDULED;
+            submissionQueue().addRead(socket.intValue(), memoryAddress(byteBuf, 0),
+                    byteBuf.writerIndex(), byteBuf.capacity(), readUserData);
+        }
+
+        @Override
+        void readComplete(int res) {
+            clearIoState(READ_SCHEDULED);
+            ByteBuf byteBuf = readBuffer;
+            readBuffer = null;
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE || !isActive()) {
+                // The read was cancelled because the channel was closed or deregistered.
+                byteBuf.release();
+                return;
+            }
+
+            final ChannelConfig config = config();
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.ExtendedHandle allocHandle = recvBufAllocHandle();
+            boolean close = false;
+            readInProgress = true;
+            try {
+                if (res < 0) {
+                    throw newIOException("read", res);
+                }
+                // The first read was done by the kernel, if the buffer was filled completely we continue with
+                // non-blocking reads until the socket is drained or the allocator tells us to stop. This gives the same
+                // read loop semantics as the other transports without an extra round-trip through the ring.
+                int bytesRead = res == 0 ? -1 : res;
+                for (;;) {
+                    if (bytesRead <= 0) {
+                        // nothing was read. release the buffer.
+                        byteBuf.release();
+                        byteBuf = null;
+                        allocHandle.lastBytesRead(bytesRead);
+                        close = bytesRead < 0;
+                        if (close) {
+                            // There is nothing left to read as we received an EOF.
+                            readPending = false;
+                        }
+                        break;
+                    }
+                    byteBuf.writerIndex(byteBuf.writerIndex() + bytesRead);
+                    allocHandle.lastBytesRead(bytesRead);
+                    allocHandle.incMessagesRead(1);
+                    readPending = false;
+                    pipeline.fireChannelRead(byteBuf);
+                    byteBuf = null;
+
+                    if (shouldBreakReadReady(config) || !allocHandle.continueReading()) {
+                        break;
+                    }
+                    byteBuf = allocHandle.allocate(readAllocator());
+                    allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+                    bytesRead = socket.readAddress(memoryAddress(byteBuf, 0), byteBuf.writerIndex(),
+                            byteBuf.capacity());
+                }
+
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+
+                if (close) {
+                    shutdownInput(false);
+                }
+            } catch (Throwable t) {
+                handleReadException(pipeline, byteBuf, t, close, allocHandle);
+            } finally {
+                readInProgress = false;
+            }
+            if (readPending && isActive() && (ioState & READ_SCHEDULED) == 0 && !shouldBreakReadReady(config)) {
+                // The user called read() while we were processing the completion.
+                scheduleRead();
+            }
+        }
+
+        private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause, boolean close,
+                                         RecvByteBufAllocator.ExtendedHandle allocHandle) {
+            if (byteBuf != null) {
+                if (byteBuf.isReadable()) {
+                    readPending = false;
+                    pipeline.fireChannelRead(byteBuf);
+                } else {
+                    byteBuf.release();
+                }
+            }
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+            pipeline.fireExceptionCaught(cause);
+
+            // If oom will close the read event, release connection.
+            // See https://github.com/netty/netty/issues/10434
+            if (close || cause instanceof OutOfMemoryError || cause instanceof IOException) {
+                shutdownInput(false);
+            }
+        }
+
+        @Override
+        void writeComplete(int res) {
+            iovArrayMemory.release();
+            iovArrayMemory = null;
+            releaseWritevBuffers();
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                clearIoState(WRITE_SCHEDULED);
+                return;
+            }
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (res >= 0) {
+                if (in != null) {
+                    // Only clear the state after the written bytes were removed, as removing them may trigger a
+                    // writability change which in turn may flush again before the outbound buffer is up to date.
+                    in.removeBytes(res);
+                }
+            } else {
+                writeFailure = newIOException("writev", res);
+            }
+            clearIoState(WRITE_SCHEDULED);
+            // Continue with the remaining messages or propagate the failure.
+            flush0();
+        }
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if ((ioState & WRITE_SCHEDULED) != 0 && !writevBuffersRetained) {
+            // The flushed messages are released once the channel is closed, but the kernel may still read from them
+            // until the writev completed.
+            for (int i = 0; i < writevBuffers.size(); i++) {
+                writevBuffers.get(i).retain();
+            }
+            writevBuffersRetained = true;
+        }
+        super.doClose();
+    }
+
+    private void releaseWritevBuffers() {
+        if (writevBuffersRetained) {
+            writevBuffersRetained = false;
+            for (int i = 0; i < writevBuffers.size(); i++) {
+                writevBuffers.get(i).release();
+            }
+        }
+        writevBuffers.clear();
+    }
+
+    /**
+     * Adds the flushed buffers to the {@link IovArray} of the writev and remembers them.
+     */
+    private final class WritevBuffersProcessor implements ChannelOutboundBuffer.MessageProcessor {
+        IovArray array;
+
+        @Override
+        public boolean processMessage(Object msg) throws Exception {
+            if (!(msg instanceof ByteBuf)) {
+                return false;
+            }
+            // Remember the buffer even if it only fits partially, as the kernel reads from the part that fits.
+            writevBuffers.add((ByteBuf) msg);
+            return array.processMessage(msg);
+        }
+    }
+
+    private final class IOUringSocketWritableByteChannel extends SocketWritableByteChannel {
+        IOUringSocketWritableByteChannel() {
+            super(socket);
+        }
+
+        @Override
+        protected ByteBufAllocator alloc() {
+            return AbstractIOUringStreamChannel.this.alloc();
+        }
+    }
+}
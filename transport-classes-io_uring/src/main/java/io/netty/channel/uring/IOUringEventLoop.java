@@ -0,0 +1,442 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopMetricsListener;
+import io.netty.channel.EventLoopTaskQueueFactory;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.IovArray;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.RejectedExecutionHandler;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link EventLoop} which uses io_uring under the covers. Only works on Linux!
+ */
+final class IOUringEventLoop extends SingleThreadEventLoop implements IOUringCompletionQueueCallback {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IOUringEventLoop.class);
+
+    static {
+        // Ensure JNI is initialized by the time this class is loaded by this time!
+        // We use unix-common methods in this class which are backed by JNI methods.
+        IOUring.ensureAvailability();
+    }
+
+    // The id that is used for all the operations which are submitted by the EventLoop itself.
+    private static final int EVENT_LOOP_ID = 0;
+    private static final short EVENTFD_READ_DATA = 1;
+    private static final short CANCEL_DATA = 2;
+
+    private static final long AWAKE = -1L;
+    private static final long NONE = Long.MAX_VALUE;
+
+    // The maximum time we wait for outstanding operations to complete when the EventLoop is shutdown.
+    private static final long CLEANUP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long CLEANUP_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final RingBuffer ringBuffer;
+    private final FileDescriptor eventFd;
+    // Used as target of the read on the eventfd.
+    private final long eventFdReadBuffer;
+    private final IntObjectMap<AbstractIOUringChannel> channels =
+            new IntObjectHashMap<AbstractIOUringChannel>(4096);
+    private int lastChannelId;
+    private IovArray iovArray;
+
+    // nextWakeupNanos is:
+    //    AWAKE            when EL is awake
+    //    NONE             when EL is waiting with no wakeup scheduled
+    //    other value T    when EL is waiting with wakeup scheduled at time T
+    private final AtomicLong nextWakeupNanos = new AtomicLong(AWAKE);
+    private volatile int ioRatio = 50;
+
+    private boolean eventFdReadPending;
+    private boolean timeoutPending;
+    // Incremented each time a new timeout is submitted, so we can tell if a completed timeout is still the current one.
+    private short timeoutGeneration;
+    private long prevDeadlineNanos = NONE;
+
+    IOUringEventLoop(EventLoopGroup parent, Executor executor, int ringSize,
+                     RejectedExecutionHandler rejectedExecutionHandler,
+                     EventLoopTaskQueueFactory taskQueueFactory, EventLoopTaskQueueFactory tailTaskQueueFactory) {
+        super(parent, executor, false, newTaskQueue(taskQueueFactory), newTaskQueue(tailTaskQueueFactory),
+                rejectedExecutionHandler);
+        boolean success = false;
+        RingBuffer ringBuffer = null;
+        FileDescriptor eventFd = null;
+        try {
+            this.ringBuffer = ringBuffer = Native.createRingBuffer(ringSize);
+            this.eventFd = eventFd = Native.newEventFd();
+            eventFdReadBuffer = PlatformDependent.allocateMemory(8);
+            success = true;
+        } finally {
+            if (!success) {
+                if (ringBuffer != null) {
+                    ringBuffer.close();
+                }
+                if (eventFd != null) {
+                    try {
+                        eventFd.close();
+                    } catch (Exception e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+    }
+
+    private static Queue<Runnable> newTaskQueue(
+            EventLoopTaskQueueFactory queueFactory) {
+        if (queueFactory == null) {
+            return newTaskQueue0(DEFAULT_MAX_PENDING_TASKS);
+        }
+        return queueFactory.newTaskQueue(DEFAULT_MAX_PENDING_TASKS);
+    }
+
+    @Override
+    protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        return newTaskQueue0(maxPendingTasks);
+    }
+
+    private static Queue<Runnable> newTaskQueue0(int maxPendingTasks) {
+        // This event loop never calls takeTask()
+        return maxPendingTasks == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
+                : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
+    }
+
+    /**
+     * Returns the {@link IOUringSubmissionQueue} which must be used to submit operations from this {@link EventLoop}.
+     */
+    IOUringSubmissionQueue submissionQueue() {
+        return ringBuffer.submissionQueue();
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && nextWakeupNanos.getAndSet(AWAKE) != AWAKE) {
+            // write to the evfd which will then complete the outstanding read and so wake-up io_uring_enter(...)
+            Native.eventFdWrite(eventFd.intValue(), 1L);
+            wokenUp();
+        }
+    }
+
+    @Override
+    protected boolean beforeScheduledTaskSubmitted(long deadlineNanos) {
+        // Note this is also correct for the nextWakeupNanos == -1 (AWAKE) case
+        return deadlineNanos < nextWakeupNanos.get();
+    }
+
+    @Override
+    protected boolean afterScheduledTaskSubmitted(long deadlineNanos) {
+        // Note this is also correct for the nextWakeupNanos == -1 (AWAKE) case
+        return deadlineNanos < nextWakeupNanos.get();
+    }
+
+    /**
+     * Return a cleared {@link IovArray} that can be used for synchronous writes in this {@link EventLoop}.
+     */
+    IovArray cleanIovArray() {
+        if (iovArray == null) {
+            iovArray = new IovArray();
+        } else {
+            iovArray.clear();
+        }
+        return iovArray;
+    }
+
+    /**
+     * Register the given channel with this {@link EventLoop} and return the id that must be used as part of the
+     * user data of all its submissions.
+     */
+    int add(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        int id;
+        do {
+            id = ++lastChannelId;
+        } while (id == EVENT_LOOP_ID || channels.containsKey(id));
+        channels.put(id, ch);
+        return id;
+    }
+
+    /**
+     * Deregister the given channel from this {@link EventLoop}. All outstanding operations are cancelled and the
+     * channel will be removed once all of them completed.
+     */
+    void remove(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        ch.cancelOutstandingOperations();
+        if (!ch.hasOutstandingOperations()) {
+            channels.remove(ch.registrationId());
+        }
+    }
+
+    /**
+     * Returns the percentage of the desired amount of time spent for I/O in the event loop.
+     */
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * Sets the percentage of the desired amount of time spent for I/O in the event loop.  The default value is
+     * {@code 50}, which means the event loop will try to spend the same amount of time for I/O as for non-I/O tasks.
+     */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    @Override
+    public int registeredChannels() {
+        return channels.size();
+    }
+
+    @Override
+    protected void run() {
+        final IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+        final IOUringCompletionQueue completionQueue = ringBuffer.completionQueue();
+        addEventFdRead(submissionQueue);
+        for (;;) {
+            try {
+                final EventLoopMetricsListener ioMetricsListener = ioMetricsListener();
+                long curDeadlineNanos = nextScheduledTaskDeadlineNanos();
+                if (curDeadlineNanos == -1L) {
+                    curDeadlineNanos = NONE; // nothing on the calendar
+                }
+                nextWakeupNanos.set(curDeadlineNanos);
+                try {
+                    if (!hasTasks() && !completionQueue.hasCompletions()) {
+                        if (curDeadlineNanos != prevDeadlineNanos) {
+                            prevDeadlineNanos = curDeadlineNanos;
+                            updateTimeout(submissionQueue, curDeadlineNanos);
+                        }
+                        // Submit everything that was queued up and wait for the next completion.
+                        final long waitStartTime = ioMetricsListener != null ? System.nanoTime() : 0;
+                        submissionQueue.submitAndWait();
+                        if (ioMetricsListener != null) {
+                            ioMetricsListener.ioWaited(System.nanoTime() - waitStartTime);
+                        }
+                    } else {
+                        submissionQueue.submit();
+                    }
+                } finally {
+                    nextWakeupNanos.lazySet(AWAKE);
+                }
+
+                final int ioRatio = this.ioRatio;
+                if (ioRatio == 100) {
+                    try {
+                        final long ioStartTime = ioMetricsListener != null ? System.nanoTime() : 0;
+                        int completions = processCompletions(completionQueue);
+                        if (ioMetricsListener != null && completions > 0) {
+                            ioMetricsListener.ioProcessed(completions, System.nanoTime() - ioStartTime);
+                        }
+                    } finally {
+                        // Ensure we always run tasks.
+                        runAllTasks();
+                    }
+                } else {
+                    final long ioStartTime = System.nanoTime();
+                    int completions = 0;
+                    try {
+                        completions = processCompletions(completionQueue);
+                    } finally {
+                        // Ensure we always run tasks.
+                        final long ioTime = System.nanoTime() - ioStartTime;
+                        if (ioMetricsListener != null && completions > 0) {
+                            ioMetricsListener.ioProcessed(completions, ioTime);
+                        }
+                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                    }
+                }
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                handleLoopException(t);
+            } finally {
+                // Always handle shutdown even if the loop processing threw an exception.
+                try {
+                    if (isShuttingDown()) {
+                        closeAll();
+                        if (confirmShutdown()) {
+                            break;
+                        }
+                    }
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    handleLoopException(t);
+                }
+            }
+        }
+    }
+
+    private int processCompletions(IOUringCompletionQueue completionQueue) {
+        int completions = 0;
+        int processed;
+        while ((processed = completionQueue.process(this)) > 0) {
+            completions += processed;
+            // Hand the operations that were submitted while processing over to the kernel, which may produce
+            // more completions without the need to block.
+            ringBuffer.submissionQueue().submit();
+        }
+        return completions;
+    }
+
+    private void updateTimeout(IOUringSubmissionQueue submissionQueue, long deadlineNanos) {
+        if (timeoutPending) {
+            submissionQueue.addTimeoutRemove(timeoutUserData(),
+                    UserData.encode(EVENT_LOOP_ID, Native.IORING_OP_TIMEOUT_REMOVE, (short) 0));
+            timeoutPending = false;
+        }
+        if (deadlineNanos != NONE) {
+            timeoutGeneration++;
+            submissionQueue.addTimeout(deadlineToDelayNanos(deadlineNanos), timeoutUserData());
+            timeoutPending = true;
+        }
+    }
+
+    private long timeoutUserData() {
+        return UserData.encode(EVENT_LOOP_ID, Native.IORING_OP_TIMEOUT, timeoutGeneration);
+    }
+
+    private void addEventFdRead(IOUringSubmissionQueue submissionQueue) {
+        submissionQueue.addRead(eventFd.intValue(), eventFdReadBuffer, 0, 8,
+                UserData.encode(EVENT_LOOP_ID, Native.IORING_OP_READ, EVENTFD_READ_DATA));
+        eventFdReadPending = true;
+    }
+
+    @Override
+    public void handle(int res, int flags, long udata) {
+        int id = UserData.decodeId(udata);
+        byte op = UserData.decodeOp(udata);
+        short data = UserData.decodeData(udata);
+        if (id == EVENT_LOOP_ID) {
+            handleEventLoopCompletion(res, op, data);
+            return;
+        }
+        AbstractIOUringChannel ch = channels.get(id);
+        if (ch == null) {
+            // Completion of an operation that belonged to a channel that was already removed, for example
+            // the completion of the cancellation request itself.
+            return;
+        }
+        try {
+            ch.ioUringUnsafe().completed(op, res, data);
+        } finally {
+            if (!ch.hasOutstandingOperations() && (!ch.isOpen() || !ch.isRegistered())) {
+                channels.remove(id);
+            }
+        }
+    }
+
+    private void handleEventLoopCompletion(int res, byte op, short data) {
+        if (op == Native.IORING_OP_READ && data == EVENTFD_READ_DATA) {
+            eventFdReadPending = false;
+            if (!isShuttingDown()) {
+                // Re-arm so we are notified about the next wakeup.
+                addEventFdRead(ringBuffer.submissionQueue());
+            }
+        } else if (op == Native.IORING_OP_TIMEOUT) {
+            if (data == timeoutGeneration) {
+                timeoutPending = false;
+                // Ensure we submit a new timeout for the next deadline.
+                prevDeadlineNanos = NONE;
+            }
+        }
+    }
+
+    private void closeAll() {
+        // Using the intermediate collection to prevent ConcurrentModificationException.
+        // In the `close()` method, the channel is deleted from `channels` map.
+        AbstractIOUringChannel[] localChannels = channels.values().toArray(new AbstractIOUringChannel[0]);
+
+        for (AbstractIOUringChannel ch: localChannels) {
+            ch.unsafe().close(ch.unsafe().voidPromise());
+        }
+    }
+
+    void handleLoopException(Throwable t) {
+        logger.warn("Unexpected exception in the io_uring loop.", t);
+
+        // Prevent possible consecutive immediate failures that lead to
+        // excessive CPU consumption.
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            // Ignore.
+        }
+    }
+
+    @Override
+    protected void cleanup() {
+        try {
+            IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+            IOUringCompletionQueue completionQueue = ringBuffer.completionQueue();
+            long cancelUdata = UserData.encode(EVENT_LOOP_ID, Native.IORING_OP_ASYNC_CANCEL, CANCEL_DATA);
+            if (eventFdReadPending) {
+                submissionQueue.addCancel(UserData.encode(EVENT_LOOP_ID, Native.IORING_OP_READ, EVENTFD_READ_DATA),
+                        cancelUdata);
+            }
+            if (timeoutPending) {
+                submissionQueue.addTimeoutRemove(timeoutUserData(),
+                        UserData.encode(EVENT_LOOP_ID, Native.IORING_OP_TIMEOUT_REMOVE, (short) 0));
+                timeoutPending = false;
+            }
+
+            // Ensure all outstanding operations completed before we unmap the ring, as otherwise the kernel may
+            // still write into memory which is already released.
+            long deadline = System.nanoTime() + CLEANUP_TIMEOUT_NANOS;
+            while ((eventFdReadPending || !channels.isEmpty()) && System.nanoTime() - deadline < 0) {
+                try {
+                    timeoutGeneration++;
+                    submissionQueue.addTimeout(CLEANUP_POLL_NANOS, timeoutUserData());
+                    submissionQueue.submitAndWait();
+                    completionQueue.process(this);
+                } catch (Throwable t) {
+                    logger.debug("Failed to process outstanding operations during cleanup.", t);
+                    break;
+                }
+            }
+            try {
+                eventFd.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close the event fd.", e);
+            }
+        } finally {
+            ringBuffer.close();
+            PlatformDependent.freeMemory(eventFdReadBuffer);
+            if (iovArray != null) {
+                iovArray.release();
+                iovArray = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.ChannelException;
+import io.netty.util.internal.PlatformDependent;
+
+import static io.netty.channel.unix.Errors.newIOException;
+
+/**
+ * The submission queue of an io_uring instance. Operations are only written into the shared memory when they are
+ * added and are handed over to the kernel in batches once {@link #submit()} or {@link #submitAndWait()} is called.
+ */
+final class IOUringSubmissionQueue {
+
+    private static final long SQE_SIZE = 64;
+    private static final int INT_SIZE = 4;
+    private static final int KERNEL_TIMESPEC_SIZE = 16;
+    private static final int KERNEL_TIMESPEC_TV_SEC_FIELD = 0;
+    private static final int KERNEL_TIMESPEC_TV_NSEC_FIELD = 8;
+
+    // Offsets within a struct io_uring_sqe
+    private static final int SQE_OP_CODE_FIELD = 0;
+    private static final int SQE_FLAGS_FIELD = 1;
+    private static final int SQE_IOPRIO_FIELD = 2;
+    private static final int SQE_FD_FIELD = 4;
+    private static final int SQE_OFFSET_FIELD = 8;
+    private static final int SQE_ADDRESS_FIELD = 16;
+    private static final int SQE_LEN_FIELD = 24;
+    private static final int SQE_RW_FLAGS_FIELD = 28;
+    private static final int SQE_USER_DATA_FIELD = 32;
+    private static final int SQE_PAD_FIELD = 40;
+
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final long submissionQueueArrayAddress;
+
+    final int ringEntries;
+    final int ringMask;
+    final int ringFd;
+
+    private final long timeoutMemoryAddress;
+
+    private int head;
+    private int tail;
+
+    IOUringSubmissionQueue(long kHeadAddress, long kTailAddress, long kRingMaskAddress, long kRingEntriesAddress,
+                           long kArrayAddress,
+                           long submissionQueueArrayAddress, int ringFd) {
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.submissionQueueArrayAddress = submissionQueueArrayAddress;
+        this.ringFd = ringFd;
+        ringEntries = PlatformDependent.getIntVolatile(kRingEntriesAddress);
+        ringMask = PlatformDependent.getIntVolatile(kRingMaskAddress);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        tail = PlatformDependent.getIntVolatile(kTailAddress);
+
+        timeoutMemoryAddress = PlatformDependent.allocateMemory(KERNEL_TIMESPEC_SIZE);
+
+        // Fill the array with the identity mapping so we never need to touch it again.
+        for (int i = 0; i < ringEntries; i++) {
+            PlatformDependent.putInt(kArrayAddress + (long) i * INT_SIZE, i);
+        }
+    }
+
+    /**
+     * Returns the number of operations that were added but not submitted yet.
+     */
+    int pending() {
+        return tail - head;
+    }
+
+    private void enqueueSqe(byte op, int flags, int rwFlags, int fd, long address, int len, long offset,
+                            long udata) {
+        if (tail - head == ringEntries) {
+            // The ring is full, so hand over everything we have to the kernel to free up slots.
+            submit();
+        }
+        long sqe = submissionQueueArrayAddress + (tail++ & ringMask) * SQE_SIZE;
+        PlatformDependent.putByte(sqe + SQE_OP_CODE_FIELD, op);
+        PlatformDependent.putByte(sqe + SQE_FLAGS_FIELD, (byte) flags);
+        PlatformDependent.putShort(sqe + SQE_IOPRIO_FIELD, (short) 0);
+        PlatformDependent.putInt(sqe + SQE_FD_FIELD, fd);
+        PlatformDependent.putLong(sqe + SQE_OFFSET_FIELD, offset);
+        PlatformDependent.putLong(sqe + SQE_ADDRESS_FIELD, address);
+        PlatformDependent.putInt(sqe + SQE_LEN_FIELD, len);
+        PlatformDependent.putInt(sqe + SQE_RW_FLAGS_FIELD, rwFlags);
+        PlatformDependent.putLong(sqe + SQE_USER_DATA_FIELD, udata);
+        PlatformDependent.setMemory(sqe + SQE_PAD_FIELD, SQE_SIZE - SQE_PAD_FIELD, (byte) 0);
+    }
+
+    void addRead(int fd, long bufferAddress, int pos, int limit, long udata) {
+        enqueueSqe(Native.IORING_OP_READ, 0, 0, fd, bufferAddress + pos, limit - pos, 0, udata);
+    }
+
+    void addWritev(int fd, long iovecArrayAddress, int length, long udata) {
+        enqueueSqe(Native.IORING_OP_WRITEV, 0, 0, fd, iovecArrayAddress, length, 0, udata);
+    }
+
+    void addPoll(int fd, int pollMask, long udata) {
+        enqueueSqe(Native.IORING_OP_POLL_ADD, 0, pollMask, fd, 0, 0, 0, udata);
+    }
+
+    void addPollRemove(long pollUdata, long udata) {
+        enqueueSqe(Native.IORING_OP_POLL_REMOVE, 0, 0, -1, pollUdata, 0, 0, udata);
+    }
+
+    void addAccept(int fd, long udata) {
+        enqueueSqe(Native.IORING_OP_ACCEPT, 0, Native.SOCK_NONBLOCK | Native.SOCK_CLOEXEC, fd, 0, 0, 0, udata);
+    }
+
+    void addConnect(int fd, long socketAddress, int socketAddressLength, long udata) {
+        enqueueSqe(Native.IORING_OP_CONNECT, 0, 0, fd, socketAddress, 0, socketAddressLength, udata);
+    }
+
+    void addTimeout(long nanoSeconds, long udata) {
+        PlatformDependent.putLong(timeoutMemoryAddress + KERNEL_TIMESPEC_TV_SEC_FIELD,
+                nanoSeconds / 1000000000L);
+        PlatformDependent.putLong(timeoutMemoryAddress + KERNEL_TIMESPEC_TV_NSEC_FIELD,
+                nanoSeconds % 1000000000L);
+        enqueueSqe(Native.IORING_OP_TIMEOUT, 0, 0, -1, timeoutMemoryAddress, 1, 0, udata);
+    }
+
+    void addTimeoutRemove(long timeoutUdata, long udata) {
+        enqueueSqe(Native.IORING_OP_TIMEOUT_REMOVE, 0, 0, -1, timeoutUdata, 0, 0, udata);
+    }
+
+    void addCancel(long udataToCancel, long udata) {
+        enqueueSqe(Native.IORING_OP_ASYNC_CANCEL, 0, 0, -1, udataToCancel, 0, 0, udata);
+    }
+
+    /**
+     * Submit all pending operations without waiting for any completion.
+     */
+    int submit() {
+        int submit = tail - head;
+        return submit > 0 ? submit(submit, 0, 0) : 0;
+    }
+
+    /**
+     * Submit all pending operations and wait until at least one completion is available.
+     */
+    int submitAndWait() {
+        return submit(tail - head, 1, Native.IORING_ENTER_GETEVENTS);
+    }
+
+    private int submit(int toSubmit, int minComplete, int flags) {
+        // Make the new tail visible to the kernel before we enter.
+        PlatformDependent.putIntOrdered(kTailAddress, tail);
+        int ret = Native.ioUringEnter(ringFd, toSubmit, minComplete, flags);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        if (ret < 0) {
+            throw new ChannelException(newIOException("io_uring_enter", ret));
+        }
+        return ret;
+    }
+
+    void release() {
+        PlatformDependent.freeMemory(timeoutMemoryAddress);
+    }
+}
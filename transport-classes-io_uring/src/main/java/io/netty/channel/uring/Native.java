@@ -0,0 +1,183 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.ChannelException;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.Unix;
+import io.netty.util.internal.ClassInitializerUtil;
+import io.netty.util.internal.NativeLibraryLoader;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * Native helper methods
+ * <p><strong>Internal usage only!</strong>
+ * <p>Static members which call JNI methods must be defined in {@link NativeStaticallyReferencedJniMethods}.
+ */
+final class Native {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Native.class);
+
+    static {
+        Selector selector = null;
+        try {
+            // We call Selector.open() as this will under the hood cause IOUtil to be loaded.
+            // This is a workaround for a possible classloader deadlock that could happen otherwise:
+            //
+            // See https://github.com/netty/netty/issues/10187
+            selector = Selector.open();
+        } catch (IOException ignore) {
+            // Just ignore
+        }
+
+        // Preload all classes that will be used in the OnLoad(...) function of JNI to eliminate the possiblity of a
+        // class-loader deadlock. This is a workaround for https://github.com/netty/netty/issues/11209.
+        ClassInitializerUtil.tryLoadClasses(Native.class, ChannelException.class);
+
+        try {
+            // First, try calling a side-effect free JNI method to see if the library was already
+            // loaded by the application.
+            NativeStaticallyReferencedJniMethods.kernelVersion();
+        } catch (UnsatisfiedLinkError ignore) {
+            // The library was not previously loaded, load it now.
+            loadNativeLibrary();
+        } finally {
+            try {
+                if (selector != null) {
+                    selector.close();
+                }
+            } catch (IOException ignore) {
+                // Just ignore
+            }
+        }
+        Unix.registerInternal(new Runnable() {
+            @Override
+            public void run() {
+                registerUnix();
+            }
+        });
+    }
+
+    // These values are part of the stable io_uring ABI and so are not looked up via JNI.
+    static final byte IORING_OP_NOP = 0;
+    static final byte IORING_OP_WRITEV = 2;
+    static final byte IORING_OP_POLL_ADD = 6;
+    static final byte IORING_OP_POLL_REMOVE = 7;
+    static final byte IORING_OP_TIMEOUT = 11;
+    static final byte IORING_OP_TIMEOUT_REMOVE = 12;
+    static final byte IORING_OP_ACCEPT = 13;
+    static final byte IORING_OP_ASYNC_CANCEL = 14;
+    static final byte IORING_OP_CONNECT = 16;
+    static final byte IORING_OP_READ = 22;
+
+    static final int IORING_ENTER_GETEVENTS = 1;
+
+    static final int POLLIN = 0x0001;
+    static final int POLLOUT = 0x0004;
+    static final int POLLERR = 0x0008;
+    static final int POLLHUP = 0x0010;
+    static final int POLLRDHUP = 0x2000;
+
+    static final int SOCK_NONBLOCK = 04000;
+    static final int SOCK_CLOEXEC = 02000000;
+
+    static final int ERRNO_ECANCELED_NEGATIVE = -125;
+
+    /**
+     * All the operations the transport submits, the kernel must support each of them to be usable.
+     */
+    static final int[] REQUIRED_OPS = {
+            IORING_OP_NOP,
+            IORING_OP_WRITEV,
+            IORING_OP_POLL_ADD,
+            IORING_OP_POLL_REMOVE,
+            IORING_OP_TIMEOUT,
+            IORING_OP_TIMEOUT_REMOVE,
+            IORING_OP_ACCEPT,
+            IORING_OP_ASYNC_CANCEL,
+            IORING_OP_CONNECT,
+            IORING_OP_READ
+    };
+
+    static final String KERNEL_VERSION = NativeStaticallyReferencedJniMethods.kernelVersion();
+
+    /**
+     * The number of entries of the submission queue of each ring, the completion queue will be twice as big.
+     */
+    static final int DEFAULT_RING_SIZE = Math.max(64, SystemPropertyUtil.getInt("io.netty.iouring.ringSize", 4096));
+
+    private static final int RING_SETUP_RESULT_LENGTH = 21;
+
+    static RingBuffer createRingBuffer(int ringSize) {
+        long[] values = ioUringSetup(ringSize);
+        assert values.length == RING_SETUP_RESULT_LENGTH;
+        int ringFd = (int) values[0];
+        IOUringSubmissionQueue submissionQueue = new IOUringSubmissionQueue(
+                values[1], values[2], values[3], values[4], values[7], values[8], ringFd);
+        IOUringCompletionQueue completionQueue = new IOUringCompletionQueue(
+                values[11], values[12], values[13], values[14], values[15], values[16], ringFd);
+        return new RingBuffer(ringFd, submissionQueue, completionQueue,
+                values[10], values[9], values[18], values[17], values[8], values[19], (int) values[20]);
+    }
+
+    static boolean isSupported(RingBuffer ringBuffer) {
+        return ioUringProbe(ringBuffer.fd(), REQUIRED_OPS);
+    }
+
+    static FileDescriptor newEventFd() {
+        return new FileDescriptor(eventFd());
+    }
+
+    private static native long[] ioUringSetup(int entries);
+    static native void ioUringExit(int ringFd, long sqRing, long sqRingSize, long cqRing, long cqRingSize,
+                                   long sqes, long sqesSize);
+    static native int ioUringEnter(int ringFd, int toSubmit, int minComplete, int flags);
+    private static native boolean ioUringProbe(int ringFd, int[] ops);
+    private static native int eventFd();
+    static native void eventFdWrite(int fd, long value);
+    private static native int registerUnix();
+
+    private static void loadNativeLibrary() {
+        String name = PlatformDependent.normalizedOs();
+        if (!"linux".equals(name)) {
+            throw new IllegalStateException("Only supported on Linux");
+        }
+        String staticLibName = "netty_transport_native_io_uring";
+        String sharedLibName = staticLibName + '_' + PlatformDependent.normalizedArch();
+        ClassLoader cl = PlatformDependent.getClassLoader(Native.class);
+        try {
+            NativeLibraryLoader.load(sharedLibName, cl);
+        } catch (UnsatisfiedLinkError e1) {
+            try {
+                NativeLibraryLoader.load(staticLibName, cl);
+                logger.debug("Failed to load {}", sharedLibName, e1);
+            } catch (UnsatisfiedLinkError e2) {
+                ThrowableUtil.addSuppressed(e1, e2);
+                throw e1;
+            }
+        }
+    }
+
+    private Native() {
+        // utility
+    }
+}
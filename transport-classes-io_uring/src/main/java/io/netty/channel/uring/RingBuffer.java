@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * The mapped memory of an io_uring instance, which consists of a {@link IOUringSubmissionQueue} and a
+ * {@link IOUringCompletionQueue}.
+ */
+final class RingBuffer {
+    private final int ringFd;
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+    private final long sqRingAddress;
+    private final long sqRingSize;
+    private final long cqRingAddress;
+    private final long cqRingSize;
+    private final long sqesAddress;
+    private final long sqesSize;
+    private final int features;
+    private boolean closed;
+
+    RingBuffer(int ringFd, IOUringSubmissionQueue submissionQueue, IOUringCompletionQueue completionQueue,
+               long sqRingAddress, long sqRingSize, long cqRingAddress, long cqRingSize,
+               long sqesAddress, long sqesSize, int features) {
+        this.ringFd = ringFd;
+        this.submissionQueue = submissionQueue;
+        this.completionQueue = completionQueue;
+        this.sqRingAddress = sqRingAddress;
+        this.sqRingSize = sqRingSize;
+        this.cqRingAddress = cqRingAddress;
+        this.cqRingSize = cqRingSize;
+        this.sqesAddress = sqesAddress;
+        this.sqesSize = sqesSize;
+        this.features = features;
+    }
+
+    int fd() {
+        return ringFd;
+    }
+
+    int features() {
+        return features;
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return submissionQueue;
+    }
+
+    IOUringCompletionQueue completionQueue() {
+        return completionQueue;
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        submissionQueue.release();
+        Native.ioUringExit(ringFd, sqRingAddress, sqRingSize, cqRingAddress, cqRingSize, sqesAddress, sqesSize);
+    }
+}
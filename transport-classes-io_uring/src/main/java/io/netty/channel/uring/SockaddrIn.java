@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Writes {@code struct sockaddr_in} and {@code struct sockaddr_in6} into native memory so they can be passed to the
+ * kernel as part of a submission.
+ */
+final class SockaddrIn {
+    static final int IPV4_ADDRESS_LENGTH = 16;
+    static final int IPV6_ADDRESS_LENGTH = 28;
+
+    private static final short AF_INET = 2;
+    private static final short AF_INET6 = 10;
+
+    // Offsets within struct sockaddr_in / struct sockaddr_in6
+    private static final int SIN_FAMILY_FIELD = 0;
+    private static final int SIN_PORT_FIELD = 2;
+    private static final int SIN_ADDR_FIELD = 4;
+    private static final int SIN6_ADDR_FIELD = 8;
+    private static final int SIN6_SCOPE_ID_FIELD = 24;
+
+    private static final byte[] IPV4_MAPPED_IPV6_PREFIX = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff };
+
+    private SockaddrIn() { }
+
+    /**
+     * Write the given {@link InetSocketAddress} to the memory address and return the number of bytes written.
+     * If {@code ipv6} is {@code true} IPv4 addresses are written as IPv4-mapped IPv6 addresses.
+     */
+    static int write(boolean ipv6, long memory, InetSocketAddress address) {
+        InetAddress addr = address.getAddress();
+        if (ipv6) {
+            return writeIPv6(memory, addr, address.getPort());
+        }
+        if (!(addr instanceof Inet4Address)) {
+            throw new IllegalArgumentException("Can not use an IPv6 address on an IPv4 socket: " + address);
+        }
+        return writeIPv4(memory, addr.getAddress(), address.getPort());
+    }
+
+    private static int writeIPv4(long memory, byte[] address, int port) {
+        PlatformDependent.setMemory(memory, IPV4_ADDRESS_LENGTH, (byte) 0);
+        PlatformDependent.putShort(memory + SIN_FAMILY_FIELD, AF_INET);
+        PlatformDependent.putShort(memory + SIN_PORT_FIELD, htons((short) port));
+        PlatformDependent.copyMemory(address, 0, memory + SIN_ADDR_FIELD, address.length);
+        return IPV4_ADDRESS_LENGTH;
+    }
+
+    private static int writeIPv6(long memory, InetAddress address, int port) {
+        PlatformDependent.setMemory(memory, IPV6_ADDRESS_LENGTH, (byte) 0);
+        PlatformDependent.putShort(memory + SIN_FAMILY_FIELD, AF_INET6);
+        PlatformDependent.putShort(memory + SIN_PORT_FIELD, htons((short) port));
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet6Address) {
+            PlatformDependent.copyMemory(bytes, 0, memory + SIN6_ADDR_FIELD, bytes.length);
+            PlatformDependent.putInt(memory + SIN6_SCOPE_ID_FIELD, ((Inet6Address) address).getScopeId());
+        } else {
+            PlatformDependent.copyMemory(IPV4_MAPPED_IPV6_PREFIX, 0, memory + SIN6_ADDR_FIELD,
+                    IPV4_MAPPED_IPV6_PREFIX.length);
+            PlatformDependent.copyMemory(bytes, 0, memory + SIN6_ADDR_FIELD + IPV4_MAPPED_IPV6_PREFIX.length,
+                    bytes.length);
+        }
+        return IPV6_ADDRESS_LENGTH;
+    }
+
+    private static short htons(short value) {
+        return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? value : Short.reverseBytes(value);
+    }
+}
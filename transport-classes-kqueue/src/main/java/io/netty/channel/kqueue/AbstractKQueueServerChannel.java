@@ -31,6 +31,9 @@ import java.net.SocketAddress;
 public abstract class AbstractKQueueServerChannel extends AbstractKQueueChannel implements ServerChannel {
     private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
 
+    // Only written from the EventLoop.
+    private volatile long acceptedChannels;
+
     AbstractKQueueServerChannel(BsdSocket fd) {
         this(fd, isSoErrorZero(fd));
     }
@@ -49,6 +52,14 @@ public abstract class AbstractKQueueServerChannel extends AbstractKQueueChannel
         return loop instanceof KQueueEventLoop;
     }
 
+    /**
+     * Returns the number of connections that were accepted by this channel. When several channels share a port via
+     * {@code SO_REUSEPORT} this shows how the connections are spread across the listeners.
+     */
+    public long acceptedChannels() {
+        return acceptedChannels;
+    }
+
     @Override
     protected InetSocketAddress remoteAddress0() {
         return null;
@@ -107,6 +118,7 @@ public abstract class AbstractKQueueServerChannel extends AbstractKQueueChannel
                         }
                         allocHandle.lastBytesRead(1);
                         allocHandle.incMessagesRead(1);
+                        acceptedChannels++;
 
                         readPending = false;
                         pipeline.fireChannelRead(newChildChannel(acceptFd, acceptedAddress, 1,
@@ -17,6 +17,7 @@ package io.netty.channel.kqueue;
 
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopMetricsListener;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
@@ -146,6 +147,7 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
     protected void wakeup(boolean inEventLoop) {
         if (!inEventLoop && WAKEN_UP_UPDATER.compareAndSet(this, 0, 1)) {
             wakeup();
+            wokenUp();
         }
     }
 
@@ -226,6 +228,7 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
     protected void run() {
         for (;;) {
             try {
+                final EventLoopMetricsListener ioMetricsListener = ioMetricsListener();
                 int strategy = selectStrategy.calculateStrategy(selectNowSupplier, hasTasks());
                 switch (strategy) {
                     case SelectStrategy.CONTINUE:
@@ -235,7 +238,11 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                         // fall-through to SELECT since the busy-wait is not supported with kqueue
 
                     case SelectStrategy.SELECT:
+                        final long waitStartTime = ioMetricsListener != null ? System.nanoTime() : 0;
                         strategy = kqueueWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+                        if (ioMetricsListener != null) {
+                            ioMetricsListener.ioWaited(System.nanoTime() - waitStartTime);
+                        }
 
                         // 'wakenUp.compareAndSet(false, true)' is always evaluated
                         // before calling 'selector.wakeup()' to reduce the wake-up
@@ -276,7 +283,11 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                 if (ioRatio == 100) {
                     try {
                         if (strategy > 0) {
+                            final long ioStartTime = ioMetricsListener != null ? System.nanoTime() : 0;
                             processReady(strategy);
+                            if (ioMetricsListener != null) {
+                                ioMetricsListener.ioProcessed(strategy, System.nanoTime() - ioStartTime);
+                            }
                         }
                     } finally {
                         runAllTasks();
@@ -290,6 +301,9 @@ final class KQueueEventLoop extends SingleThreadEventLoop {
                         }
                     } finally {
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (ioMetricsListener != null && strategy > 0) {
+                            ioMetricsListener.ioProcessed(strategy, ioTime);
+                        }
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 }
@@ -24,10 +24,14 @@
 #include <stdlib.h>
 #include <string.h>
 #include <errno.h>
+#include <poll.h>
+#include <unistd.h>
 #include <netinet/in.h>
 #include <netinet/udp.h> // SOL_UDP
 #include <sys/sendfile.h>
 #include <linux/tcp.h> // TCP_NOTSENT_LOWAT is a linux specific define
+#include <linux/errqueue.h> // struct sock_extended_err
+#include <linux/filter.h> // struct sock_fprog
 #include "netty_epoll_linuxsocket.h"
 #include "netty_unix_errors.h"
 #include "netty_unix_filedescriptor.h"
@@ -57,11 +61,76 @@
 #define SO_BUSY_POLL 46
 #endif
 
+// SO_ATTACH_REUSEPORT_CBPF is defined in linux 4.5. We define this here so older kernels can compile.
+#ifndef SO_ATTACH_REUSEPORT_CBPF
+#define SO_ATTACH_REUSEPORT_CBPF 51
+#endif
+
 // UDP_GRO is defined in linux 5. We define this here so older kernels can compile.
 #ifndef UDP_GRO
 #define UDP_GRO 104
 #endif
 
+// SO_ZEROCOPY and MSG_ZEROCOPY are defined in linux 4.14. We define these here so older kernels can compile.
+#ifndef SO_ZEROCOPY
+#define SO_ZEROCOPY 60
+#endif
+
+#ifndef MSG_ZEROCOPY
+#define MSG_ZEROCOPY 0x4000000
+#endif
+
+#ifndef SO_EE_ORIGIN_ZEROCOPY
+#define SO_EE_ORIGIN_ZEROCOPY 5
+#endif
+
+#ifndef SO_EE_CODE_ZEROCOPY_COPIED
+#define SO_EE_CODE_ZEROCOPY_COPIED 1
+#endif
+
+#ifndef TCP_ULP
+#define TCP_ULP 31
+#endif
+
+#ifndef SOL_TLS
+#define SOL_TLS 282
+#endif
+
+// Defined in linux/tls.h which may not be present on the build host, the values are part of the kernel ABI.
+#define NETTY_TLS_TX 1
+#define NETTY_TLS_SET_RECORD_TYPE 1
+#define NETTY_TLS_CIPHER_AES_GCM_128 51
+#define NETTY_TLS_CIPHER_AES_GCM_256 52
+#define NETTY_TLS_CIPHER_CHACHA20_POLY1305 54
+
+struct netty_tls_crypto_info {
+    unsigned short version;
+    unsigned short cipher_type;
+};
+
+struct netty_tls12_crypto_info_aes_gcm_128 {
+    struct netty_tls_crypto_info info;
+    unsigned char iv[8];
+    unsigned char key[16];
+    unsigned char salt[4];
+    unsigned char rec_seq[8];
+};
+
+struct netty_tls12_crypto_info_aes_gcm_256 {
+    struct netty_tls_crypto_info info;
+    unsigned char iv[8];
+    unsigned char key[32];
+    unsigned char salt[4];
+    unsigned char rec_seq[8];
+};
+
+struct netty_tls12_crypto_info_chacha20_poly1305 {
+    struct netty_tls_crypto_info info;
+    unsigned char iv[12];
+    unsigned char key[32];
+    unsigned char rec_seq[8];
+};
+
 static jclass peerCredentialsClass = NULL;
 static jmethodID peerCredentialsMethodId = NULL;
 
@@ -117,6 +186,10 @@ static void netty_epoll_linuxsocket_setTcpQuickAck(JNIEnv* env, jclass clazz, ji
     netty_unix_socket_setOption(env, fd, IPPROTO_TCP, TCP_QUICKACK, &optval, sizeof(optval));
 }
 
+static void netty_epoll_linuxsocket_setZeroCopy(JNIEnv* env, jclass clazz, jint fd, jint optval) {
+    netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_ZEROCOPY, &optval, sizeof(optval));
+}
+
 static void netty_epoll_linuxsocket_setTcpDeferAccept(JNIEnv* env, jclass clazz, jint fd, jint optval) {
     netty_unix_socket_setOption(env, fd, IPPROTO_TCP, TCP_DEFER_ACCEPT, &optval, sizeof(optval));
 }
@@ -149,6 +222,18 @@ static void netty_epoll_linuxsocket_setIpFreeBind(JNIEnv* env, jclass clazz, jin
     netty_unix_socket_setOption(env, fd, IPPROTO_IP, IP_FREEBIND, &optval, sizeof(optval));
 }
 
+static void netty_epoll_linuxsocket_setReusePortCpuSteering(JNIEnv* env, jclass clazz, jint fd, jint groupSize) {
+    // Select the socket of the SO_REUSEPORT group with the index cpu % groupSize. The index of a socket is the
+    // order in which the sockets of the group were bound.
+    struct sock_filter code[] = {
+        { BPF_LD | BPF_W | BPF_ABS, 0, 0, SKF_AD_OFF + SKF_AD_CPU },
+        { BPF_ALU | BPF_MOD | BPF_K, 0, 0, (__u32) groupSize },
+        { BPF_RET | BPF_A, 0, 0, 0 }
+    };
+    struct sock_fprog prog = { sizeof(code) / sizeof(code[0]), code };
+    netty_unix_socket_setOption(env, fd, SOL_SOCKET, SO_ATTACH_REUSEPORT_CBPF, &prog, sizeof(prog));
+}
+
 static void netty_epoll_linuxsocket_setIpTransparent(JNIEnv* env, jclass clazz, jint fd, jint optval) {
     netty_unix_socket_setOption(env, fd, SOL_IP, IP_TRANSPARENT, &optval, sizeof(optval));
 }
@@ -597,6 +682,14 @@ static jint netty_epoll_linuxsocket_isTcpQuickAck(JNIEnv* env, jclass clazz, jin
     return optval;
 }
 
+static jint netty_epoll_linuxsocket_isZeroCopy(JNIEnv* env, jclass clazz, jint fd) {
+    int optval;
+    if (netty_unix_socket_getOption(env, fd, SOL_SOCKET, SO_ZEROCOPY, &optval, sizeof(optval)) == -1) {
+        return -1;
+    }
+    return optval;
+}
+
 static jint netty_epoll_linuxsocket_getTcpNotSentLowAt(JNIEnv* env, jclass clazz, jint fd) {
     int optval;
     if (netty_unix_socket_getOption(env, fd, IPPROTO_TCP, TCP_NOTSENT_LOWAT, &optval, sizeof(optval)) == -1) {
@@ -661,6 +754,216 @@ static jlong netty_epoll_linuxsocket_sendFile(JNIEnv* env, jclass clazz, jint fd
     return res;
 }
 
+static jlong netty_epoll_linuxsocket_writevAddressesZeroCopy(JNIEnv* env, jclass clazz, jint fd, jlong memoryAddress, jint length) {
+    struct msghdr m = { 0 };
+    m.msg_iov = (struct iovec*) (intptr_t) memoryAddress;
+    m.msg_iovlen = length;
+
+    ssize_t res;
+    int err;
+    do {
+        res = sendmsg(fd, &m, MSG_ZEROCOPY);
+        // keep on writing if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+    return (jlong) res;
+}
+
+static void netty_epoll_linuxsocket_writeRecordSequence(unsigned char* dst, jlong recordSequence) {
+    int i;
+    // The record sequence is stored in network byte order.
+    for (i = 7; i >= 0; i--) {
+        dst[i] = (unsigned char) (recordSequence & 0xff);
+        recordSequence >>= 8;
+    }
+}
+
+static jint netty_epoll_linuxsocket_attachTlsUlp(JNIEnv* env, jclass clazz, jint fd) {
+    // Fails with ENOENT if the tls module is not available, and with EEXIST if it was attached before.
+    if (setsockopt(fd, IPPROTO_TCP, TCP_ULP, "tls", sizeof("tls")) < 0 && errno != EEXIST) {
+        return -errno;
+    }
+    return 0;
+}
+
+static jint netty_epoll_linuxsocket_sendTlsRecord(JNIEnv* env, jclass clazz, jint fd, jint recordType,
+        jlong memoryAddress, jint pos, jint limit) {
+    char control[CMSG_SPACE(sizeof(unsigned char))];
+    struct msghdr m;
+    struct cmsghdr* cmsg;
+    struct iovec iov;
+    ssize_t res;
+    int err = 0;
+
+    iov.iov_base = (void*) (memoryAddress + pos);
+    iov.iov_len = (size_t) (limit - pos);
+
+    memset(&m, 0, sizeof(m));
+    memset(control, 0, sizeof(control));
+    m.msg_iov = &iov;
+    m.msg_iovlen = 1;
+    m.msg_control = control;
+    m.msg_controllen = sizeof(control);
+
+    // The record type is passed as ancillary data, the kernel closes the current record if it has another type.
+    cmsg = CMSG_FIRSTHDR(&m);
+    cmsg->cmsg_level = SOL_TLS;
+    cmsg->cmsg_type = NETTY_TLS_SET_RECORD_TYPE;
+    cmsg->cmsg_len = CMSG_LEN(sizeof(unsigned char));
+    *CMSG_DATA(cmsg) = (unsigned char) recordType;
+
+    do {
+        res = sendmsg(fd, &m, 0);
+        // keep on writing if it was interrupted
+    } while (res == -1 && ((err = errno) == EINTR));
+
+    if (res < 0) {
+        return -err;
+    }
+    return (jint) res;
+}
+
+static jint netty_epoll_linuxsocket_setTlsTx(JNIEnv* env, jclass clazz, jint fd, jint version, jint cipherType,
+        jbyteArray key, jbyteArray iv, jlong recordSequence) {
+    union {
+        struct netty_tls12_crypto_info_aes_gcm_128 aes128;
+        struct netty_tls12_crypto_info_aes_gcm_256 aes256;
+        struct netty_tls12_crypto_info_chacha20_poly1305 chacha20;
+    } info;
+    socklen_t infoLen;
+    jint keyLen = (*env)->GetArrayLength(env, key);
+    jint ivLen = (*env)->GetArrayLength(env, iv);
+
+    memset(&info, 0, sizeof(info));
+    switch (cipherType) {
+    case NETTY_TLS_CIPHER_AES_GCM_128:
+        if (keyLen != sizeof(info.aes128.key) || ivLen != sizeof(info.aes128.salt)) {
+            return -EINVAL;
+        }
+        info.aes128.info.version = (unsigned short) version;
+        info.aes128.info.cipher_type = (unsigned short) cipherType;
+        (*env)->GetByteArrayRegion(env, key, 0, keyLen, (jbyte*) info.aes128.key);
+        (*env)->GetByteArrayRegion(env, iv, 0, ivLen, (jbyte*) info.aes128.salt);
+        // The explicit part of the nonce only needs to be unique, so just start with the record sequence.
+        netty_epoll_linuxsocket_writeRecordSequence(info.aes128.iv, recordSequence);
+        netty_epoll_linuxsocket_writeRecordSequence(info.aes128.rec_seq, recordSequence);
+        infoLen = sizeof(info.aes128);
+        break;
+    case NETTY_TLS_CIPHER_AES_GCM_256:
+        if (keyLen != sizeof(info.aes256.key) || ivLen != sizeof(info.aes256.salt)) {
+            return -EINVAL;
+        }
+        info.aes256.info.version = (unsigned short) version;
+        info.aes256.info.cipher_type = (unsigned short) cipherType;
+        (*env)->GetByteArrayRegion(env, key, 0, keyLen, (jbyte*) info.aes256.key);
+        (*env)->GetByteArrayRegion(env, iv, 0, ivLen, (jbyte*) info.aes256.salt);
+        netty_epoll_linuxsocket_writeRecordSequence(info.aes256.iv, recordSequence);
+        netty_epoll_linuxsocket_writeRecordSequence(info.aes256.rec_seq, recordSequence);
+        infoLen = sizeof(info.aes256);
+        break;
+    case NETTY_TLS_CIPHER_CHACHA20_POLY1305:
+        if (keyLen != sizeof(info.chacha20.key) || ivLen != sizeof(info.chacha20.iv)) {
+            return -EINVAL;
+        }
+        info.chacha20.info.version = (unsigned short) version;
+        info.chacha20.info.cipher_type = (unsigned short) cipherType;
+        (*env)->GetByteArrayRegion(env, key, 0, keyLen, (jbyte*) info.chacha20.key);
+        (*env)->GetByteArrayRegion(env, iv, 0, ivLen, (jbyte*) info.chacha20.iv);
+        netty_epoll_linuxsocket_writeRecordSequence(info.chacha20.rec_seq, recordSequence);
+        infoLen = sizeof(info.chacha20);
+        break;
+    default:
+        return -EINVAL;
+    }
+    if ((*env)->ExceptionCheck(env) == JNI_TRUE) {
+        return -EINVAL;
+    }
+
+    if (setsockopt(fd, SOL_TLS, NETTY_TLS_TX, &info, infoLen) < 0) {
+        int err = errno;
+        memset(&info, 0, sizeof(info));
+        return -err;
+    }
+    memset(&info, 0, sizeof(info));
+    return 0;
+}
+
+static jint netty_epoll_linuxsocket_recvZeroCopyCompletion(JNIEnv* env, jclass clazz, jint fd, jintArray completion) {
+    // Large enough for a struct sock_extended_err followed by the address of the offender.
+    char control[CMSG_SPACE(sizeof(struct sock_extended_err) + sizeof(struct sockaddr_in6))];
+    struct msghdr m;
+    struct cmsghdr* cmsg;
+    struct sock_extended_err* serr;
+    jint values[3];
+    ssize_t res;
+    int err;
+
+    for (;;) {
+        memset(&m, 0, sizeof(m));
+        m.msg_control = control;
+        m.msg_controllen = sizeof(control);
+
+        do {
+            res = recvmsg(fd, &m, MSG_ERRQUEUE);
+            // keep on reading if it was interrupted
+        } while (res == -1 && ((err = errno) == EINTR));
+
+        if (res < 0) {
+            if (err == EAGAIN || err == EWOULDBLOCK) {
+                // The error queue is empty.
+                return 0;
+            }
+            return -err;
+        }
+
+        for (cmsg = CMSG_FIRSTHDR(&m); cmsg != NULL; cmsg = CMSG_NXTHDR(&m, cmsg)) {
+            if ((cmsg->cmsg_level == SOL_IP && cmsg->cmsg_type == IP_RECVERR) ||
+                    (cmsg->cmsg_level == SOL_IPV6 && cmsg->cmsg_type == IPV6_RECVERR)) {
+                serr = (struct sock_extended_err*) CMSG_DATA(cmsg);
+                if (serr->ee_errno == 0 && serr->ee_origin == SO_EE_ORIGIN_ZEROCOPY) {
+                    // The notification covers all the sends in the range [ee_info, ee_data].
+                    values[0] = (jint) serr->ee_info;
+                    values[1] = (jint) serr->ee_data;
+                    values[2] = (serr->ee_code & SO_EE_CODE_ZEROCOPY_COPIED) != 0 ? 1 : 0;
+                    (*env)->SetIntArrayRegion(env, completion, 0, 3, values);
+                    return 1;
+                }
+            }
+        }
+        // Not a notification we are interested in, try the next one.
+    }
+}
+
+static jint netty_epoll_linuxsocket_isErrorPending(JNIEnv* env, jclass clazz, jint fd) {
+    // POLLERR is reported if there is a pending socket error or the error queue is not empty, without consuming
+    // either of them.
+    struct pollfd pfd;
+    int res;
+    pfd.fd = fd;
+    pfd.events = 0;
+    pfd.revents = 0;
+
+    do {
+        res = poll(&pfd, 1, 0);
+    } while (res == -1 && errno == EINTR);
+
+    if (res < 0) {
+        return -errno;
+    }
+    return (pfd.revents & POLLERR) != 0 ? 1 : 0;
+}
+
+static jint netty_epoll_linuxsocket_dup(JNIEnv* env, jclass clazz, jint fd) {
+    int res = dup(fd);
+    if (res < 0) {
+        return -errno;
+    }
+    return res;
+}
+
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
@@ -675,12 +978,14 @@ static const JNINativeMethod fixed_method_table[] = {
   { "setSoBusyPoll", "(II)V", (void *) netty_epoll_linuxsocket_setSoBusyPoll },
   { "setTcpQuickAck", "(II)V", (void *) netty_epoll_linuxsocket_setTcpQuickAck },
   { "setTcpDeferAccept", "(II)V", (void *) netty_epoll_linuxsocket_setTcpDeferAccept },
+  { "setZeroCopy", "(II)V", (void *) netty_epoll_linuxsocket_setZeroCopy },
   { "setTcpNotSentLowAt", "(II)V", (void *) netty_epoll_linuxsocket_setTcpNotSentLowAt },
   { "isTcpCork", "(I)I", (void *) netty_epoll_linuxsocket_isTcpCork },
   { "getSoBusyPoll", "(I)I", (void *) netty_epoll_linuxsocket_getSoBusyPoll },
   { "getTcpDeferAccept", "(I)I", (void *) netty_epoll_linuxsocket_getTcpDeferAccept },
   { "getTcpNotSentLowAt", "(I)I", (void *) netty_epoll_linuxsocket_getTcpNotSentLowAt },
   { "isTcpQuickAck", "(I)I", (void *) netty_epoll_linuxsocket_isTcpQuickAck },
+  { "isZeroCopy", "(I)I", (void *) netty_epoll_linuxsocket_isZeroCopy },
   { "setTcpFastOpen", "(II)V", (void *) netty_epoll_linuxsocket_setTcpFastOpen },
   { "setTcpKeepIdle", "(II)V", (void *) netty_epoll_linuxsocket_setTcpKeepIdle },
   { "setTcpKeepIntvl", "(II)V", (void *) netty_epoll_linuxsocket_setTcpKeepIntvl },
@@ -688,6 +993,7 @@ static const JNINativeMethod fixed_method_table[] = {
   { "setTcpUserTimeout", "(II)V", (void *) netty_epoll_linuxsocket_setTcpUserTimeout },
   { "setIpFreeBind", "(II)V", (void *) netty_epoll_linuxsocket_setIpFreeBind },
   { "setIpTransparent", "(II)V", (void *) netty_epoll_linuxsocket_setIpTransparent },
+  { "setReusePortCpuSteering", "(II)V", (void *) netty_epoll_linuxsocket_setReusePortCpuSteering },
   { "setIpRecvOrigDestAddr", "(II)V", (void *) netty_epoll_linuxsocket_setIpRecvOrigDestAddr },
   { "getTcpKeepIdle", "(I)I", (void *) netty_epoll_linuxsocket_getTcpKeepIdle },
   { "getTcpKeepIntvl", "(I)I", (void *) netty_epoll_linuxsocket_getTcpKeepIntvl },
@@ -703,7 +1009,14 @@ static const JNINativeMethod fixed_method_table[] = {
   { "leaveGroup", "(IZ[B[BII)V", (void *) netty_epoll_linuxsocket_leaveGroup },
   { "leaveSsmGroup", "(IZ[B[BII[B)V", (void *) netty_epoll_linuxsocket_leaveSsmGroup },
   { "isUdpGro", "(I)I", (void *) netty_epoll_linuxsocket_isUdpGro },
-  { "setUdpGro", "(II)V", (void *) netty_epoll_linuxsocket_setUdpGro }
+  { "setUdpGro", "(II)V", (void *) netty_epoll_linuxsocket_setUdpGro },
+  { "writevAddressesZeroCopy", "(IJI)J", (void *) netty_epoll_linuxsocket_writevAddressesZeroCopy },
+  { "recvZeroCopyCompletion", "(I[I)I", (void *) netty_epoll_linuxsocket_recvZeroCopyCompletion },
+  { "isErrorPending", "(I)I", (void *) netty_epoll_linuxsocket_isErrorPending },
+  { "dup", "(I)I", (void *) netty_epoll_linuxsocket_dup },
+  { "attachTlsUlp", "(I)I", (void *) netty_epoll_linuxsocket_attachTlsUlp },
+  { "setTlsTx", "(III[B[BJ)I", (void *) netty_epoll_linuxsocket_setTlsTx },
+  { "sendTlsRecord", "(IIJII)I", (void *) netty_epoll_linuxsocket_sendTlsRecord }
 
   // "sendFile" has a dynamic signature
 };
@@ -36,6 +36,7 @@
 #include <inttypes.h>
 #include <link.h>
 #include <time.h>
+#include <sched.h>
 // Needed to be able to use syscalls directly and so not depend on newer GLIBC versions
 #include <linux/net.h>
 #include <sys/syscall.h>
@@ -621,6 +622,10 @@ static jint netty_epoll_native_epollerr(JNIEnv* env, jclass clazz) {
     return EPOLLERR;
 }
 
+static jint netty_epoll_native_enobufs(JNIEnv* env, jclass clazz) {
+    return ENOBUFS;
+}
+
 static jint netty_epoll_native_sizeofEpollEvent(JNIEnv* env, jclass clazz) {
     return sizeof(struct epoll_event);
 }
@@ -649,6 +654,87 @@ static jint netty_epoll_native_splice0(JNIEnv* env, jclass clazz, jint fd, jlong
     return (jint) res;
 }
 
+static jint netty_epoll_native_setThreadAffinity0(JNIEnv* env, jclass clazz, jintArray cpus) {
+    jsize len = (*env)->GetArrayLength(env, cpus);
+    jint* elements = (*env)->GetIntArrayElements(env, cpus, NULL);
+    if (elements == NULL) {
+        return -ENOMEM;
+    }
+    int maxCpu = 0;
+    int i;
+    for (i = 0; i < len; i++) {
+        if (elements[i] < 0) {
+            (*env)->ReleaseIntArrayElements(env, cpus, elements, JNI_ABORT);
+            return -EINVAL;
+        }
+        if (elements[i] > maxCpu) {
+            maxCpu = elements[i];
+        }
+    }
+    cpu_set_t* set = CPU_ALLOC(maxCpu + 1);
+    if (set == NULL) {
+        (*env)->ReleaseIntArrayElements(env, cpus, elements, JNI_ABORT);
+        return -ENOMEM;
+    }
+    size_t size = CPU_ALLOC_SIZE(maxCpu + 1);
+    CPU_ZERO_S(size, set);
+    for (i = 0; i < len; i++) {
+        CPU_SET_S(elements[i], size, set);
+    }
+    (*env)->ReleaseIntArrayElements(env, cpus, elements, JNI_ABORT);
+
+    // Using 0 as pid applies the mask to the calling thread only.
+    int res = sched_setaffinity(0, size, set);
+    int err = errno;
+    CPU_FREE(set);
+    return res == -1 ? -err : 0;
+}
+
+static jintArray netty_epoll_native_threadAffinity0(JNIEnv* env, jclass clazz) {
+    int numCpus = CPU_SETSIZE;
+    cpu_set_t* set;
+    size_t size;
+    for (;;) {
+        set = CPU_ALLOC(numCpus);
+        if (set == NULL) {
+            return NULL;
+        }
+        size = CPU_ALLOC_SIZE(numCpus);
+        if (sched_getaffinity(0, size, set) == 0) {
+            break;
+        }
+        int err = errno;
+        CPU_FREE(set);
+        // EINVAL means the mask of the kernel is bigger than our set.
+        if (err != EINVAL || numCpus >= (1 << 20)) {
+            return NULL;
+        }
+        numCpus <<= 1;
+    }
+
+    int count = CPU_COUNT_S(size, set);
+    jint* elements = malloc(sizeof(jint) * (count == 0 ? 1 : count));
+    if (elements == NULL) {
+        CPU_FREE(set);
+        return NULL;
+    }
+    int i;
+    int j = 0;
+    for (i = 0; i < numCpus && j < count; i++) {
+        if (CPU_ISSET_S(i, size, set)) {
+            elements[j++] = i;
+        }
+    }
+    CPU_FREE(set);
+
+    jintArray array = (*env)->NewIntArray(env, count);
+    if (array != NULL) {
+        (*env)->SetIntArrayRegion(env, array, 0, count, elements);
+    }
+    free(elements);
+    return array;
+}
+
 static jint netty_epoll_native_tcpMd5SigMaxKeyLen(JNIEnv* env, jclass clazz) {
     struct tcp_md5sig md5sig;
 
@@ -674,6 +760,7 @@ static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "epollout", "()I", (void *) netty_epoll_native_epollout },
   { "epollrdhup", "()I", (void *) netty_epoll_native_epollrdhup },
   { "epollerr", "()I", (void *) netty_epoll_native_epollerr },
+  { "enobufs", "()I", (void *) netty_epoll_native_enobufs },
   { "tcpMd5SigMaxKeyLen", "()I", (void *) netty_epoll_native_tcpMd5SigMaxKeyLen },
   { "isSupportingSendmmsg", "()Z", (void *) netty_epoll_native_isSupportingSendmmsg },
   { "isSupportingRecvmmsg", "()Z", (void *) netty_epoll_native_isSupportingRecvmmsg },
@@ -699,6 +786,8 @@ static const JNINativeMethod fixed_method_table[] = {
   { "splice0", "(IJIJJ)I", (void *) netty_epoll_native_splice0 },
   { "isSupportingUdpSegment", "()Z", (void *) netty_epoll_native_isSupportingUdpSegment },
   { "registerUnix", "()I", (void *) netty_epoll_native_registerUnix },
+  { "setThreadAffinity0", "([I)I", (void *) netty_epoll_native_setThreadAffinity0 },
+  { "threadAffinity0", "()[I", (void *) netty_epoll_native_threadAffinity0 },
 
 };
 static const jint fixed_method_table_size = sizeof(fixed_method_table) / sizeof(fixed_method_table[0]);
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EpollAffinityThreadFactoryTest {
+
+    @Test
+    public void testParseCpuList() {
+        assertArrayEquals(new int[] { 0 }, CpuTopology.parseCpuList("0"));
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 8, 10, 11 }, CpuTopology.parseCpuList("0-3,8,10-11\n"));
+        assertArrayEquals(new int[0], CpuTopology.parseCpuList(""));
+    }
+
+    @Test
+    public void testThreadsArePinned() throws Exception {
+        final EpollAffinityThreadFactory factory = new EpollAffinityThreadFactory(EpollEventLoopGroup.class);
+        int numThreads = 3;
+        EpollEventLoopGroup group = new EpollEventLoopGroup(numThreads, factory);
+        try {
+            Iterator<EventExecutor> executors = group.iterator();
+            // Start the threads one after another, so the nth loop gets the nth thread of the factory.
+            for (int i = 0; i < numThreads; i++) {
+                EventLoop loop = (EventLoop) executors.next();
+                int[] affinity = loop.submit(new Callable<int[]>() {
+                    @Override
+                    public int[] call() {
+                        Thread current = Thread.currentThread();
+                        assertArrayEquals(EpollAffinityThreadFactory.cpus(current), Native.threadAffinity());
+                        assertTrue(((FastThreadLocalThread) current).numaNode() >= 0);
+                        return Native.threadAffinity();
+                    }
+                }).get();
+                assertNotNull(affinity);
+                int[] expected = factory.cpus(i);
+                Arrays.sort(expected);
+                assertArrayEquals(expected, affinity);
+                assertEquals(1, affinity.length);
+            }
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        }
+    }
+}
@@ -21,6 +21,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.testsuite.transport.TestsuitePermutation;
@@ -304,4 +305,138 @@ public class EpollDatagramScatteringReadTest extends AbstractDatagramTest  {
             }
         }
     }
+
+    @Test
+    public void testAdaptiveBatchRead(TestInfo testInfo) throws Throwable {
+        run(testInfo, new Runner<Bootstrap, Bootstrap>() {
+            @Override
+            public void run(Bootstrap bootstrap, Bootstrap bootstrap2) throws Throwable {
+                testBatchRead(bootstrap, bootstrap2, false, 0);
+            }
+        });
+    }
+
+    @Test
+    public void testAdaptiveBatchConnectedRead(TestInfo testInfo) throws Throwable {
+        run(testInfo, new Runner<Bootstrap, Bootstrap>() {
+            @Override
+            public void run(Bootstrap bootstrap, Bootstrap bootstrap2) throws Throwable {
+                testBatchRead(bootstrap, bootstrap2, true, 0);
+            }
+        });
+    }
+
+    @Test
+    public void testScatteringReadDifferentSizes(TestInfo testInfo) throws Throwable {
+        run(testInfo, new Runner<Bootstrap, Bootstrap>() {
+            @Override
+            public void run(Bootstrap bootstrap, Bootstrap bootstrap2) throws Throwable {
+                testBatchRead(bootstrap, bootstrap2, false, 1024);
+            }
+        });
+    }
+
+    private void testBatchRead(Bootstrap sb, Bootstrap cb, boolean connected, int maxDatagramPayloadSize)
+            throws Throwable {
+        final int numPackets = 64;
+        final int maxPacketSize = 1024;
+
+        sb.option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(
+                maxDatagramPayloadSize == 0 ? maxPacketSize : maxDatagramPayloadSize * 8));
+        sb.option(ChannelOption.SO_RCVBUF, 1024 * 1024);
+        sb.option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, maxDatagramPayloadSize);
+        sb.option(EpollChannelOption.MAX_DATAGRAM_BATCH_SIZE, 32);
+
+        Channel sc = null;
+        Channel cc = null;
+
+        try {
+            cb.handler(new SimpleChannelInboundHandler<Object>() {
+                @Override
+                public void channelRead0(ChannelHandlerContext ctx, Object msgs) {
+                    // Nothing will be sent.
+                }
+            });
+            cc = cb.bind(newSocketAddress()).sync().channel();
+            final SocketAddress ccAddress = cc.localAddress();
+
+            // Each packet has a different size and starts with its index.
+            final byte[][] packets = new byte[numPackets][];
+            for (int i = 0; i < numPackets; i++) {
+                packets[i] = new byte[4 + PlatformDependent.threadLocalRandom().nextInt(maxPacketSize - 4)];
+                PlatformDependent.threadLocalRandom().nextBytes(packets[i]);
+                packets[i][0] = (byte) i;
+            }
+
+            final AtomicReference<Throwable> errorRef = new AtomicReference<Throwable>();
+            final CountDownLatch latch = new CountDownLatch(numPackets);
+            sb.handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+                @Override
+                protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                    assertEquals(ccAddress, msg.sender());
+
+                    byte[] expected = packets[msg.content().getByte(msg.content().readerIndex())];
+                    byte[] receivedBytes = new byte[msg.content().readableBytes()];
+                    msg.content().readBytes(receivedBytes);
+                    assertArrayEquals(expected, receivedBytes);
+
+                    latch.countDown();
+                }
+
+                @Override
+                public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)  {
+                    errorRef.compareAndSet(null, cause);
+                }
+            });
+
+            sb.option(ChannelOption.AUTO_READ, false);
+            sc = sb.bind(newSocketAddress()).sync().channel();
+
+            if (connected) {
+                sc.connect(cc.localAddress()).syncUninterruptibly();
+            }
+
+            InetSocketAddress addr = (InetSocketAddress) sc.localAddress();
+
+            List<ChannelFuture> futures = new ArrayList<ChannelFuture>(numPackets);
+            for (byte[] packet : packets) {
+                futures.add(cc.write(new DatagramPacket(cc.alloc().directBuffer().writeBytes(packet), addr)));
+            }
+            cc.flush();
+            for (ChannelFuture f: futures) {
+                f.sync();
+            }
+
+            // Enable autoread now which also triggers a read of all the datagrams that are queued.
+            sc.config().setAutoRead(true);
+
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                Throwable error = errorRef.get();
+                if (error != null) {
+                    throw error;
+                }
+                fail("Timeout while waiting for packets");
+            }
+            Throwable error = errorRef.get();
+            if (error != null) {
+                throw error;
+            }
+
+            EpollDatagramChannel channel = (EpollDatagramChannel) sc;
+            assertEquals(numPackets, channel.datagramsRead());
+            assertTrue(channel.readSyscalls() < numPackets, "read syscalls: " + channel.readSyscalls());
+            if (Native.IS_SUPPORTING_SENDMMSG) {
+                EpollDatagramChannel client = (EpollDatagramChannel) cc;
+                assertEquals(numPackets, client.datagramsWritten());
+                assertTrue(client.writeSyscalls() < numPackets, "write syscalls: " + client.writeSyscalls());
+            }
+        } finally {
+            if (cc != null) {
+                cc.close().syncUninterruptibly();
+            }
+            if (sc != null) {
+                sc.close().syncUninterruptibly();
+            }
+        }
+    }
 }
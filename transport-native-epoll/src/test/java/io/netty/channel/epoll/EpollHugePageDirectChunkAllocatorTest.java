@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.unix.HugePageDirectChunkAllocator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EpollHugePageDirectChunkAllocatorTest {
+
+    @BeforeAll
+    public static void loadNativeLibrary() {
+        Epoll.ensureAvailability();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { true, false })
+    public void testChunksAreMappedAndUnmapped(boolean hugeTlb) {
+        HugePageDirectChunkAllocator chunkAllocator = new HugePageDirectChunkAllocator(hugeTlb);
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 9, 0, 0, false, 0,
+                chunkAllocator);
+        int chunkSize = allocator.metric().chunkSize();
+        long hugePageSize = HugePageDirectChunkAllocator.hugePageSize();
+
+        ByteBuf buffer = allocator.directBuffer(chunkSize);
+        assertEquals(1, chunkAllocator.hugeTlbChunks() + chunkAllocator.transparentHugePageChunks());
+        if (!hugeTlb) {
+            assertEquals(0, chunkAllocator.hugeTlbChunks());
+        }
+        assertEquals((chunkSize + hugePageSize - 1) / hugePageSize * hugePageSize, chunkAllocator.mappedBytes());
+        if (buffer.hasMemoryAddress()) {
+            assertEquals(0, buffer.memoryAddress() % hugePageSize);
+        }
+
+        for (int i = 0; i < chunkSize; i += 8) {
+            buffer.writeLong(i);
+        }
+        for (int i = 0; i < chunkSize; i += 8) {
+            assertEquals(i, buffer.readLong());
+        }
+        assertTrue(buffer.release());
+        assertEquals(0, chunkAllocator.mappedBytes());
+    }
+}
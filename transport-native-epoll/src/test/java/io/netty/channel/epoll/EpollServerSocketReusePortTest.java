@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.util.NetUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EpollServerSocketReusePortTest {
+    private static final int NUM_LOOPS = 4;
+    private static EventLoopGroup GROUP;
+
+    @BeforeAll
+    public static void beforeClass() {
+        GROUP = new EpollEventLoopGroup(NUM_LOOPS);
+    }
+
+    @AfterAll
+    public static void afterClass() {
+        GROUP.shutdownGracefully();
+    }
+
+    @Test
+    @Timeout(value = 10000, unit = TimeUnit.MILLISECONDS)
+    public void testBindPerChildEventLoop() throws Exception {
+        AcceptingHandler handler = new AcceptingHandler();
+        ChannelGroup channels = newServerBootstrap(handler)
+                .bindPerChildEventLoop(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync().getNow();
+        try {
+            assertListeners(channels);
+            InetSocketAddress address = (InetSocketAddress) channels.iterator().next().localAddress();
+            // The kernel picks the listener by the hash of the connection, so connect until all of them accepted one.
+            int connections = 0;
+            while (acceptingListeners(channels) < NUM_LOOPS) {
+                connect(address);
+                connections++;
+                handler.await(connections);
+            }
+            assertEquals(connections, acceptedChannels(channels));
+            assertEquals(0, handler.childrenOnOtherLoop.get());
+        } finally {
+            channels.close().sync();
+        }
+    }
+
+    @Test
+    @Timeout(value = 10000, unit = TimeUnit.MILLISECONDS)
+    public void testCpuSteering() throws Exception {
+        AcceptingHandler handler = new AcceptingHandler();
+        ChannelGroup channels = newServerBootstrap(handler)
+                .option(EpollChannelOption.SO_REUSEPORT_CPU_STEERING, NUM_LOOPS)
+                .bindPerChildEventLoop(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).sync().getNow();
+        try {
+            assertListeners(channels);
+            for (Channel channel : channels) {
+                assertEquals(NUM_LOOPS, ((EpollServerSocketChannel) channel).config().getReusePortCpuSteering());
+            }
+            InetSocketAddress address = (InetSocketAddress) channels.iterator().next().localAddress();
+            int connections = 16;
+            for (int i = 1; i <= connections; i++) {
+                connect(address);
+                handler.await(i);
+            }
+            assertEquals(connections, acceptedChannels(channels));
+            assertEquals(0, handler.childrenOnOtherLoop.get());
+        } finally {
+            channels.close().sync();
+        }
+    }
+
+    private static ServerBootstrap newServerBootstrap(AcceptingHandler handler) {
+        return new ServerBootstrap().group(GROUP)
+                .channel(EpollServerSocketChannel.class)
+                .option(EpollChannelOption.SO_REUSEPORT, true)
+                .childHandler(handler);
+    }
+
+    private static void assertListeners(ChannelGroup channels) {
+        assertEquals(NUM_LOOPS, channels.size());
+        Set<Object> loops = new HashSet<Object>();
+        Set<Object> addresses = new HashSet<Object>();
+        for (Channel channel : channels) {
+            assertTrue(channel.isActive());
+            loops.add(channel.eventLoop());
+            addresses.add(channel.localAddress());
+        }
+        assertEquals(NUM_LOOPS, loops.size());
+        assertEquals(1, addresses.size());
+    }
+
+    private static void connect(InetSocketAddress address) throws Exception {
+        Socket socket = new Socket(address.getAddress(), address.getPort());
+        socket.close();
+    }
+
+    private static int acceptingListeners(ChannelGroup channels) {
+        int listeners = 0;
+        for (Channel channel : channels) {
+            if (((AbstractEpollServerChannel) channel).acceptedChannels() > 0) {
+                listeners++;
+            }
+        }
+        return listeners;
+    }
+
+    private static long acceptedChannels(ChannelGroup channels) {
+        long accepted = 0;
+        for (Channel channel : channels) {
+            accepted += ((AbstractEpollServerChannel) channel).acceptedChannels();
+        }
+        return accepted;
+    }
+
+    @Sharable
+    private static final class AcceptingHandler extends ChannelInboundHandlerAdapter {
+        final AtomicInteger childrenOnOtherLoop = new AtomicInteger();
+        private int accepted;
+
+        @Override
+        public void channelRegistered(ChannelHandlerContext ctx) {
+            Channel child = ctx.channel();
+            if (child.eventLoop() != child.parent().eventLoop()) {
+                childrenOnOtherLoop.incrementAndGet();
+            }
+            synchronized (this) {
+                accepted++;
+                notifyAll();
+            }
+            ctx.fireChannelRegistered();
+        }
+
+        synchronized void await(int count) throws InterruptedException {
+            while (accepted < count) {
+                wait();
+            }
+        }
+    }
+}
@@ -140,6 +140,28 @@ public class EpollSocketChannelConfigTest {
         assertTrue(ch.config().isTcpQuickAck());
     }
 
+    @Test
+    public void testZeroCopy() throws Exception {
+        try {
+            ch.config().setZeroCopy(true);
+        } catch (ChannelException e) {
+            throw new TestAbortedException("assumeNoException", e);
+        }
+        assertTrue(ch.config().isZeroCopy());
+        assertTrue(ch.socket.isZeroCopy());
+        ch.config().setZeroCopy(false);
+        assertFalse(ch.config().isZeroCopy());
+
+        ch.config().setZeroCopyThreshold(1024);
+        assertEquals(1024, ch.config().getZeroCopyThreshold());
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                ch.config().setZeroCopyThreshold(-1);
+            }
+        });
+    }
+
     // For this test to pass, we are relying on the sockets file descriptor not being reused after the socket is closed.
     // This is inherently racy, so we allow getSoLinger to throw ChannelException a few of times, but eventually we do
     // want to see a ClosedChannelException for the test to pass.
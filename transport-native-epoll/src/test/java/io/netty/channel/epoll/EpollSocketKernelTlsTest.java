@@ -0,0 +1,211 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.KernelTlsChannel;
+import io.netty.channel.socket.KernelTlsRecord;
+import io.netty.util.CharsetUtil;
+import io.netty.util.NetUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EpollSocketKernelTlsTest {
+    private static final byte[] KEY = new byte[16];
+    private static final byte[] SALT = { 1, 2, 3, 4 };
+    private static final long RECORD_SEQUENCE = 1;
+    private static final byte[] DATA = "hello".getBytes(CharsetUtil.US_ASCII);
+    private static EventLoopGroup GROUP;
+
+    @BeforeAll
+    public static void beforeClass() {
+        GROUP = new EpollEventLoopGroup(1);
+        Arrays.fill(KEY, (byte) 42);
+    }
+
+    @AfterAll
+    public static void afterClass() {
+        GROUP.shutdownGracefully();
+    }
+
+    @Test
+    public void testEnableFromOutsideEventLoop() throws Exception {
+        final ReceivingHandler receiver = new ReceivingHandler();
+        Channel server = newServer(receiver);
+        final EpollSocketChannel client = newClient(server);
+        try {
+            assertThrows(IllegalStateException.class, new Executable() {
+                @Override
+                public void execute() {
+                    client.enableKernelTlsTx(KernelTlsChannel.TLS_1_2, KernelTlsChannel.Cipher.AES_128_GCM, KEY,
+                            SALT, RECORD_SEQUENCE);
+                }
+            });
+        } finally {
+            client.close().syncUninterruptibly();
+            server.close().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testWriteWithKernelTls() throws Throwable {
+        ReceivingHandler receiver = new ReceivingHandler();
+        Channel server = newServer(receiver);
+        final EpollSocketChannel client = newClient(server);
+        try {
+            boolean enabled = client.eventLoop().submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return client.enableKernelTlsTx(KernelTlsChannel.TLS_1_2, KernelTlsChannel.Cipher.AES_128_GCM,
+                            KEY, SALT, RECORD_SEQUENCE);
+                }
+            }).get();
+            assertEquals(enabled, client.isKernelTlsTxEnabled());
+
+            client.writeAndFlush(Unpooled.wrappedBuffer(DATA)).syncUninterruptibly();
+            if (enabled) {
+                // 5 bytes header, 8 bytes explicit nonce and 16 bytes tag.
+                byte[] record = receiver.await(5 + 8 + DATA.length + 16);
+                assertEquals(23, record[0]);
+                assertEquals(3, record[1]);
+                assertEquals(3, record[2]);
+                assertArrayEquals(DATA, decrypt(record));
+            } else {
+                // The kernel does not support TLS, so the channel is unchanged and writes the plaintext.
+                assertArrayEquals(DATA, receiver.await(DATA.length));
+            }
+        } finally {
+            client.close().syncUninterruptibly();
+            server.close().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testWriteAlertWithKernelTls() throws Throwable {
+        ReceivingHandler receiver = new ReceivingHandler();
+        Channel server = newServer(receiver);
+        final EpollSocketChannel client = newClient(server);
+        try {
+            boolean enabled = client.eventLoop().submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return client.enableKernelTlsTx(KernelTlsChannel.TLS_1_2, KernelTlsChannel.Cipher.AES_128_GCM,
+                            KEY, SALT, RECORD_SEQUENCE);
+                }
+            }).get();
+
+            byte[] closeNotify = { 1, 0 };
+            ChannelFuture future = client.writeAndFlush(new KernelTlsRecord(KernelTlsRecord.CONTENT_TYPE_ALERT,
+                    Unpooled.wrappedBuffer(closeNotify))).awaitUninterruptibly();
+            if (enabled) {
+                assertTrue(future.isSuccess());
+                byte[] record = receiver.await(5 + 8 + closeNotify.length + 16);
+                assertEquals(KernelTlsRecord.CONTENT_TYPE_ALERT, record[0]);
+                assertArrayEquals(closeNotify, decrypt(record));
+            } else {
+                // Records of other content types can only be written once the kernel encrypts the records.
+                assertTrue(future.cause() instanceof IllegalStateException);
+            }
+        } finally {
+            client.close().syncUninterruptibly();
+            server.close().syncUninterruptibly();
+        }
+    }
+
+    private static byte[] decrypt(byte[] record) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.position(5);
+        byte[] nonce = new byte[12];
+        System.arraycopy(SALT, 0, nonce, 0, SALT.length);
+        buffer.get(nonce, 4, 8);
+        int length = record.length - 5 - 8 - 16;
+        ByteBuffer aad = ByteBuffer.allocate(13);
+        aad.putLong(RECORD_SEQUENCE).put(record[0]).put(record[1]).put(record[2]).putShort((short) length);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(KEY, "AES"), new GCMParameterSpec(128, nonce));
+        cipher.updateAAD(aad.array());
+        return cipher.doFinal(record, 5 + 8, record.length - 5 - 8);
+    }
+
+    private static Channel newServer(final ReceivingHandler receiver) {
+        return new ServerBootstrap().group(GROUP)
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(receiver)
+                .bind(new InetSocketAddress(NetUtil.LOCALHOST4, 0)).syncUninterruptibly().channel();
+    }
+
+    private static EpollSocketChannel newClient(Channel server) {
+        return (EpollSocketChannel) new Bootstrap().group(GROUP)
+                .channel(EpollSocketChannel.class)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(server.localAddress()).syncUninterruptibly().channel();
+    }
+
+    @Sharable
+    private static final class ReceivingHandler extends ChannelInboundHandlerAdapter {
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf) msg;
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            buf.release();
+            synchronized (this) {
+                received.write(bytes, 0, bytes.length);
+                notifyAll();
+            }
+        }
+
+        synchronized byte[] await(int length) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (received.size() < length) {
+                long waitMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                assertTrue(waitMillis > 0, "received only " + received.size() + " bytes");
+                wait(waitMillis);
+            }
+            assertEquals(length, received.size());
+            return received.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.NetUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.opentest4j.TestAbortedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EpollSocketZeroCopyTest {
+
+    private static final Random random = new Random();
+    private static final byte[] data = new byte[4 * 1024 * 1024];
+
+    private static EventLoopGroup group;
+
+    static {
+        random.nextBytes(data);
+    }
+
+    @BeforeAll
+    public static void setupGroup() {
+        group = new EpollEventLoopGroup(2);
+    }
+
+    @AfterAll
+    public static void destroyGroup() {
+        group.shutdownGracefully();
+    }
+
+    @Test
+    @Timeout(value = 30000, unit = TimeUnit.MILLISECONDS)
+    public void testZeroCopyWrites() throws Throwable {
+        testZeroCopyWrites(EpollMode.EDGE_TRIGGERED);
+    }
+
+    @Test
+    @Timeout(value = 30000, unit = TimeUnit.MILLISECONDS)
+    public void testZeroCopyWritesLevelTriggered() throws Throwable {
+        testZeroCopyWrites(EpollMode.LEVEL_TRIGGERED);
+    }
+
+    @Test
+    @Timeout(value = 30000, unit = TimeUnit.MILLISECONDS)
+    public void testCloseWithZeroCopyWritesInFlight() throws Throwable {
+        final ByteBuf received = Unpooled.buffer(data.length);
+        final CountDownLatch inactiveLatch = new CountDownLatch(1);
+        Channel sc = new ServerBootstrap()
+                .group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                        received.writeBytes(msg);
+                    }
+
+                    @Override
+                    public void channelInactive(ChannelHandlerContext ctx) {
+                        inactiveLatch.countDown();
+                    }
+                })
+                .bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        final Channel cc = new Bootstrap()
+                .group(group)
+                .channel(EpollSocketChannel.class)
+                .option(ChannelOption.SO_SNDBUF, 1024 * 1024)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(sc.localAddress()).syncUninterruptibly().channel();
+        try {
+            try {
+                cc.config().setOption(EpollChannelOption.SO_ZEROCOPY, true);
+            } catch (ChannelException e) {
+                throw new TestAbortedException("SO_ZEROCOPY not supported", e);
+            }
+            cc.config().setOption(EpollChannelOption.ZEROCOPY_THRESHOLD, 1024);
+
+            final int length = 64 * 1024;
+            final List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+            final List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+            // Write and close in the same task, so the completions of the writes were not read before the close.
+            cc.eventLoop().submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int offset = 0; offset < data.length; offset += length) {
+                        ByteBuf buf = cc.alloc().directBuffer(length).writeBytes(data, offset, length);
+                        buffers.add(buf);
+                        futures.add(cc.writeAndFlush(buf));
+                    }
+                    cc.close();
+                }
+            }).syncUninterruptibly();
+
+            int written = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                ChannelFuture future = futures.get(i).awaitUninterruptibly();
+                // The buffers are only released once the kernel is done with them, even after the close.
+                assertEquals(0, buffers.get(i).refCnt());
+                if (future.isSuccess()) {
+                    assertEquals(i * length, written);
+                    written += length;
+                }
+            }
+            // The writes which were in flight when the channel was closed still complete successfully.
+            assertTrue(written > 0);
+
+            // The peer receives all the data which was written, followed by a FIN.
+            assertTrue(inactiveLatch.await(10, TimeUnit.SECONDS));
+            assertTrue(received.readableBytes() >= written);
+            byte[] expected = new byte[received.readableBytes()];
+            System.arraycopy(data, 0, expected, 0, expected.length);
+            assertArrayEquals(expected, ByteBufUtil.getBytes(received));
+        } finally {
+            cc.close().syncUninterruptibly();
+            sc.close().syncUninterruptibly();
+            received.release();
+        }
+    }
+
+    private static void testZeroCopyWrites(EpollMode mode) throws Throwable {
+        final ByteBuf received = Unpooled.buffer(data.length);
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
+        Channel sc = new ServerBootstrap()
+                .group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                        received.writeBytes(msg);
+                        if (!received.isWritable()) {
+                            receivedLatch.countDown();
+                        }
+                    }
+                })
+                .bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Channel cc = new Bootstrap()
+                .group(group)
+                .channel(EpollSocketChannel.class)
+                .option(EpollChannelOption.EPOLL_MODE, mode)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(sc.localAddress()).syncUninterruptibly().channel();
+        try {
+            try {
+                cc.config().setOption(EpollChannelOption.SO_ZEROCOPY, true);
+            } catch (ChannelException e) {
+                throw new TestAbortedException("SO_ZEROCOPY not supported", e);
+            }
+            cc.config().setOption(EpollChannelOption.ZEROCOPY_THRESHOLD, 1024);
+
+            // Mix writes above and below the threshold, which need to be completed in order as well.
+            final List<Integer> completed = Collections.synchronizedList(new ArrayList<Integer>());
+            final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+            List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+            int offset = 0;
+            int index = 0;
+            while (offset < data.length) {
+                int length = Math.min(data.length - offset, index % 3 == 0 ? 512 : 64 * 1024 + random.nextInt(1024));
+                final ByteBuf buf = cc.alloc().directBuffer(length).writeBytes(data, offset, length);
+                final int writeIndex = index++;
+                offset += length;
+
+                ChannelFuture future = cc.write(buf).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (buf.refCnt() != 0) {
+                            errors.add(new AssertionError("buffer not released before the promise was notified"));
+                        }
+                        completed.add(writeIndex);
+                    }
+                });
+                futures.add(future);
+                if (index % 8 == 0) {
+                    cc.flush();
+                }
+            }
+            cc.flush();
+
+            for (ChannelFuture future : futures) {
+                future.syncUninterruptibly();
+            }
+            assertTrue(receivedLatch.await(10, TimeUnit.SECONDS));
+            assertTrue(errors.isEmpty(), errors.toString());
+
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int i = 0; i < index; i++) {
+                expected.add(i);
+            }
+            assertEquals(expected, completed);
+            assertArrayEquals(data, received.array());
+        } finally {
+            cc.close().syncUninterruptibly();
+            sc.close().syncUninterruptibly();
+            received.release();
+        }
+    }
+}
@@ -24,8 +24,10 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.unix.FileDescriptor;
 import io.netty.util.NetUtil;
 import io.netty.util.internal.PlatformDependent;
@@ -36,11 +38,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class EpollSpliceTest {
 
@@ -192,6 +198,195 @@ public class EpollSpliceTest {
         }
     }
 
+    @Test
+    @Timeout(value = 10000, unit = TimeUnit.MILLISECONDS)
+    public void spliceToSocketStopsReadingWhileNotWritable() throws Throwable {
+        final EchoHandler sh = new EchoHandler();
+        final BlockingQueue<EpollSocketChannel> proxyChannels = new LinkedBlockingQueue<EpollSocketChannel>();
+
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        ServerBootstrap bs = new ServerBootstrap();
+        bs.channel(EpollServerSocketChannel.class);
+        bs.childOption(ChannelOption.AUTO_READ, false);
+        bs.group(group).childHandler(sh);
+        final Channel sc = bs.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        ServerBootstrap bs2 = new ServerBootstrap();
+        bs2.channel(EpollServerSocketChannel.class);
+        bs2.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED);
+        bs2.childOption(ChannelOption.AUTO_READ, false);
+        bs2.group(group).childHandler(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+                Bootstrap bs = new Bootstrap();
+                bs.option(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED);
+                bs.option(ChannelOption.SO_SNDBUF, 8192);
+                bs.option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(8192, 16384));
+                bs.channel(EpollSocketChannel.class);
+                bs.group(ctx.channel().eventLoop()).handler(new ChannelInboundHandlerAdapter());
+                bs.connect(sc.localAddress()).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (!future.isSuccess()) {
+                            ctx.close();
+                            return;
+                        }
+                        EpollSocketChannel ch = (EpollSocketChannel) ctx.channel();
+                        EpollSocketChannel ch2 = (EpollSocketChannel) future.channel();
+                        ch.spliceTo(ch2, Integer.MAX_VALUE);
+                        ch.config().setAutoRead(true);
+                        proxyChannels.add(ch);
+                        proxyChannels.add(ch2);
+                    }
+                });
+            }
+        });
+        Channel pc = bs2.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Bootstrap cb = new Bootstrap();
+        cb.group(group);
+        cb.channel(EpollSocketChannel.class);
+        cb.handler(new ChannelInboundHandlerAdapter());
+        Channel cc = cb.connect(pc.localAddress()).syncUninterruptibly().channel();
+        EpollSocketChannel frontend = proxyChannels.take();
+        EpollSocketChannel backend = proxyChannels.take();
+
+        for (int i = 0; i < data.length;) {
+            int length = Math.min(random.nextInt(1024 * 64), data.length - i);
+            ByteBuf buf = Unpooled.wrappedBuffer(data, i, length);
+            cc.writeAndFlush(buf);
+            i += length;
+        }
+
+        // The sink does not read, so the backend becomes unwritable as the spliced bytes count towards its
+        // pending bytes, and the frontend must stop reading.
+        while (backend.isWritable() || frontend.config().isAutoRead()) {
+            Thread.sleep(10);
+        }
+
+        // Start reading in the sink, which should also let the frontend read again.
+        sh.channel.config().setAutoRead(true);
+        while (sh.counter < data.length) {
+            if (sh.exception.get() != null) {
+                throw sh.exception.get();
+            }
+            Thread.sleep(10);
+        }
+        while (!frontend.config().isAutoRead()) {
+            Thread.sleep(10);
+        }
+        assertTrue(backend.isWritable());
+
+        cc.close().sync();
+        sh.channel.close().sync();
+        sc.close().sync();
+        pc.close().sync();
+        group.shutdownGracefully();
+    }
+
+    @Test
+    @Timeout(value = 10000, unit = TimeUnit.MILLISECONDS)
+    public void spliceHandler() throws Throwable {
+        final byte[] handshake = { 'P', 'R', 'X', 'Y' };
+        final EchoHandler sh = new EchoHandler();
+        final EchoHandler ch = new EchoHandler();
+        final BlockingQueue<Channel> backendChannels = new LinkedBlockingQueue<Channel>();
+
+        EventLoopGroup group = new EpollEventLoopGroup(1);
+        ServerBootstrap bs = new ServerBootstrap();
+        bs.channel(EpollServerSocketChannel.class);
+        bs.group(group).childHandler(sh);
+        final Channel sc = bs.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        ServerBootstrap bs2 = new ServerBootstrap();
+        bs2.channel(EpollServerSocketChannel.class);
+        bs2.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED);
+        bs2.group(group).childHandler(new ChannelInboundHandlerAdapter() {
+            private ByteBuf cumulation;
+            private boolean connecting;
+
+            @Override
+            public void channelRead(final ChannelHandlerContext ctx, Object msg) throws Exception {
+                ByteBuf buf = (ByteBuf) msg;
+                if (cumulation == null) {
+                    cumulation = buf;
+                } else {
+                    cumulation = Unpooled.wrappedBuffer(cumulation, buf);
+                }
+                if (connecting || cumulation.readableBytes() < handshake.length) {
+                    return;
+                }
+                connecting = true;
+                byte[] received = new byte[handshake.length];
+                cumulation.readBytes(received);
+                assertArrayEquals(handshake, received);
+
+                // Stop reading until we are connected to the backend.
+                ctx.channel().config().setAutoRead(false);
+                Bootstrap bs = new Bootstrap();
+                bs.option(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED);
+                bs.channel(EpollSocketChannel.class);
+                bs.group(ctx.channel().eventLoop()).handler(new ChannelInboundHandlerAdapter());
+                bs.connect(sc.localAddress()).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (!future.isSuccess()) {
+                            cumulation.release();
+                            ctx.close();
+                            return;
+                        }
+                        EpollSocketChannel frontend = (EpollSocketChannel) ctx.channel();
+                        EpollSocketChannel backend = (EpollSocketChannel) future.channel();
+                        backend.pipeline().addLast(new EpollSpliceHandler(frontend));
+                        ctx.pipeline().addLast(new EpollSpliceHandler(backend));
+                        ctx.pipeline().remove(ctx.handler());
+                        // Forward the data which was received together with the handshake.
+                        ctx.fireChannelRead(cumulation);
+                        cumulation = null;
+                        backendChannels.add(backend);
+                    }
+                });
+            }
+        });
+        Channel pc = bs2.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Bootstrap cb = new Bootstrap();
+        cb.group(group);
+        cb.channel(EpollSocketChannel.class);
+        cb.handler(ch);
+        Channel cc = cb.connect(pc.localAddress()).syncUninterruptibly().channel();
+
+        cc.write(Unpooled.wrappedBuffer(handshake));
+        for (int i = 0; i < data.length;) {
+            int length = Math.min(random.nextInt(1024 * 64), data.length - i);
+            ByteBuf buf = Unpooled.wrappedBuffer(data, i, length);
+            cc.writeAndFlush(buf);
+            i += length;
+        }
+
+        Channel backend = backendChannels.take();
+        while (ch.counter < data.length || sh.counter < data.length) {
+            if (sh.exception.get() != null) {
+                throw sh.exception.get();
+            }
+            if (ch.exception.get() != null) {
+                throw ch.exception.get();
+            }
+            Thread.sleep(10);
+        }
+        assertTrue(backend.pipeline().get(EpollSpliceHandler.class).isSplicing());
+
+        // Closing the client must close the connection to the backend as well.
+        cc.close().sync();
+        backend.closeFuture().sync();
+        assertFalse(backend.isOpen());
+
+        sh.channel.close().sync();
+        sc.close().sync();
+        pc.close().sync();
+        group.shutdownGracefully();
+    }
+
     @Test
     @Timeout(value = 10000, unit = TimeUnit.MILLISECONDS)
     public void spliceToFile() throws Throwable {
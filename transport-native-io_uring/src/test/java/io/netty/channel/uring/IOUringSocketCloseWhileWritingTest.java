@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.NetUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class IOUringSocketCloseWhileWritingTest {
+
+    private static EventLoopGroup group;
+
+    @BeforeAll
+    public static void setupGroup() {
+        assumeTrue(IOUring.isAvailable());
+        group = new IOUringEventLoopGroup(1);
+    }
+
+    @AfterAll
+    public static void destroyGroup() {
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    @Timeout(value = 30000, unit = TimeUnit.MILLISECONDS)
+    public void testCloseWithWritevInFlight() throws Throwable {
+        // The peer never reads, so the writev can not complete before the channel is closed.
+        Channel sc = new ServerBootstrap()
+                .group(group)
+                .channel(IOUringServerSocketChannel.class)
+                .childOption(ChannelOption.AUTO_READ, false)
+                .childHandler(new ChannelInboundHandlerAdapter())
+                .bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+        final IOUringSocketChannel cc = (IOUringSocketChannel) new Bootstrap()
+                .group(group)
+                .channel(IOUringSocketChannel.class)
+                .handler(new ChannelInboundHandlerAdapter())
+                .connect(sc.localAddress()).syncUninterruptibly().channel();
+        try {
+            final int length = 32 * 1024 * 1024;
+            final ByteBuf buf = cc.alloc().directBuffer(length).writerIndex(length);
+            final ChannelFuture writeFuture = cc.eventLoop().submit(new Callable<ChannelFuture>() {
+                @Override
+                public ChannelFuture call() {
+                    ChannelFuture future = cc.writeAndFlush(buf);
+                    // The writev was submitted to the kernel, but its completion can not have been processed yet.
+                    assertTrue((cc.ioState & AbstractIOUringChannel.WRITE_SCHEDULED) != 0);
+                    cc.close();
+
+                    assertFalse(cc.isOpen());
+                    // The kernel may still read from the buffer and use the file descriptor, so both are kept until
+                    // the completions of the writev and its cancellation arrived.
+                    assertTrue(cc.fd().isOpen());
+                    assertEquals(1, buf.refCnt());
+                    return future;
+                }
+            }).get();
+
+            assertTrue(writeFuture.awaitUninterruptibly().cause() instanceof ClosedChannelException);
+            cc.closeFuture().syncUninterruptibly();
+            while (cc.eventLoop().submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return cc.hasOutstandingOperations();
+                }
+            }).get()) {
+                Thread.sleep(10);
+            }
+            assertFalse(cc.fd().isOpen());
+            assertEquals(0, buf.refCnt());
+        } finally {
+            cc.close().syncUninterruptibly();
+            sc.close().syncUninterruptibly();
+        }
+    }
+}
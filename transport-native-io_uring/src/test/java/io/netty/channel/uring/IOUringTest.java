@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class IOUringTest {
+
+    @BeforeAll
+    public static void loadJNI() {
+        assumeTrue(IOUring.isAvailable());
+    }
+
+    @Test
+    public void testUserDataEncoding() {
+        long udata = UserData.encode(Integer.MAX_VALUE, Native.IORING_OP_POLL_ADD, (short) Native.POLLOUT);
+        assertEquals(Integer.MAX_VALUE, UserData.decodeId(udata));
+        assertEquals(Native.IORING_OP_POLL_ADD, UserData.decodeOp(udata));
+        assertEquals(Native.POLLOUT, UserData.decodeData(udata));
+    }
+
+    @Test
+    public void testSubmitAndComplete() throws Exception {
+        RingBuffer ringBuffer = Native.createRingBuffer(8);
+        try {
+            IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+            IOUringCompletionQueue completionQueue = ringBuffer.completionQueue();
+            assertFalse(completionQueue.hasCompletions());
+
+            final long udata = UserData.encode(1, Native.IORING_OP_TIMEOUT, (short) 0);
+            submissionQueue.addTimeout(TimeUnit.MILLISECONDS.toNanos(10), udata);
+            assertEquals(1, submissionQueue.submitAndWait());
+            assertTrue(completionQueue.hasCompletions());
+
+            final long[] completed = new long[1];
+            assertEquals(1, completionQueue.process(new IOUringCompletionQueueCallback() {
+                @Override
+                public void handle(int res, int flags, long data) {
+                    completed[0] = data;
+                }
+            }));
+            assertEquals(udata, completed[0]);
+            assertFalse(completionQueue.hasCompletions());
+        } finally {
+            ringBuffer.close();
+        }
+    }
+}
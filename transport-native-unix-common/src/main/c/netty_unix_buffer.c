@@ -13,6 +13,8 @@
  * License for the specific language governing permissions and limitations
  * under the License.
  */
+#include <errno.h>
+#include <sys/mman.h>
 #include "netty_unix_jni.h"
 #include "netty_unix_util.h"
 #include "netty_unix_buffer.h"
@@ -29,12 +31,60 @@ static jint netty_unix_buffer_addressSize0(JNIEnv* env, jclass clazz) {
    return (jint) sizeof(int*);
 }
 
+static jlong netty_unix_buffer_mmapAnonymous0(JNIEnv* env, jclass clazz, jlong length, jboolean hugeTlb) {
+#ifdef MAP_ANONYMOUS
+    int flags = MAP_PRIVATE | MAP_ANONYMOUS;
+#else
+    int flags = MAP_PRIVATE | MAP_ANON;
+#endif
+    void* address;
+
+    if (hugeTlb == JNI_TRUE) {
+#ifdef MAP_HUGETLB
+        flags |= MAP_HUGETLB;
+#else
+        return -ENOTSUP;
+#endif
+    }
+    address = mmap(NULL, (size_t) length, PROT_READ | PROT_WRITE, flags, -1, 0);
+    if (address == MAP_FAILED) {
+        return -errno;
+    }
+    return (jlong) address;
+}
+
+static jint netty_unix_buffer_munmap0(JNIEnv* env, jclass clazz, jlong address, jlong length) {
+    if (munmap((void*) address, (size_t) length) == -1) {
+        return -errno;
+    }
+    return 0;
+}
+
+static jint netty_unix_buffer_madviseHugePage0(JNIEnv* env, jclass clazz, jlong address, jlong length) {
+#ifdef MADV_HUGEPAGE
+    if (madvise((void*) address, (size_t) length, MADV_HUGEPAGE) == -1) {
+        return -errno;
+    }
+    return 0;
+#else
+    return -ENOTSUP;
+#endif
+}
+
+static jobject netty_unix_buffer_wrapMemoryAddress0(JNIEnv* env, jclass clazz, jlong address, jint capacity) {
+    return (*env)->NewDirectByteBuffer(env, (void*) address, (jlong) capacity);
+}
+
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
 static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "memoryAddress0", "(Ljava/nio/ByteBuffer;)J", (void *) netty_unix_buffer_memoryAddress0 },
-  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 }
+  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 },
+  { "mmapAnonymous0", "(JZ)J", (void *) netty_unix_buffer_mmapAnonymous0 },
+  { "munmap0", "(JJ)I", (void *) netty_unix_buffer_munmap0 },
+  { "madviseHugePage0", "(JJ)I", (void *) netty_unix_buffer_madviseHugePage0 },
+  { "wrapMemoryAddress0", "(JI)Ljava/nio/ByteBuffer;", (void *) netty_unix_buffer_wrapMemoryAddress0 }
 };
 static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
 // JNI Method Registration Table End
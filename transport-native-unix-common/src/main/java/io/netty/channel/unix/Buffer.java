@@ -65,4 +65,10 @@ public final class Buffer {
     // If Unsafe can not be used we will need to do JNI calls.
     private static native int addressSize0();
     private static native long memoryAddress0(ByteBuffer buffer);
+
+    // Used by HugePageDirectChunkAllocator, these return the negative errno on failure.
+    static native long mmapAnonymous0(long length, boolean hugeTlb);
+    static native int munmap0(long address, long length);
+    static native int madviseHugePage0(long address, long length);
+    static native ByteBuffer wrapMemoryAddress0(long address, int capacity);
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.unix;
+
+import io.netty.buffer.DirectChunkAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link DirectChunkAllocator} which backs the chunks of a {@link PooledByteBufAllocator} with anonymous memory
+ * mappings that use huge pages, which reduces the TLB misses when the buffers are accessed randomly.
+ * <p>
+ * Each chunk is first mapped with {@code MAP_HUGETLB}, which needs huge pages that were reserved via
+ * {@code /proc/sys/vm/nr_hugepages}. If there are none left, the chunk is mapped with normal pages that are aligned
+ * to the huge page size and marked with {@code madvise(MADV_HUGEPAGE)}, so the kernel may back them with transparent
+ * huge pages. The memory is released with {@code munmap} once the chunk is destroyed.
+ * <p>
+ * The mapped memory is not accounted for by {@code io.netty.maxDirectMemory}, and is only released if the chunks are
+ * destroyed by the {@link PooledByteBufAllocator}. A native transport must be loaded before this allocator is used,
+ * for example via {@code Epoll.ensureAvailability()}.
+ */
+@UnstableApi
+public final class HugePageDirectChunkAllocator implements DirectChunkAllocator {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HugePageDirectChunkAllocator.class);
+
+    private static final long DEFAULT_HUGE_PAGE_SIZE = 2 * 1024 * 1024;
+    private static final long HUGE_PAGE_SIZE = readHugePageSize();
+
+    private final boolean hugeTlb;
+    private final AtomicLong hugeTlbChunks = new AtomicLong();
+    private final AtomicLong transparentHugePageChunks = new AtomicLong();
+    private final AtomicLong mappedBytes = new AtomicLong();
+
+    /**
+     * Creates a new instance which tries to use reserved huge pages before it falls back to transparent huge pages.
+     */
+    public HugePageDirectChunkAllocator() {
+        this(true);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param hugeTlb {@code true} if reserved huge pages should be tried before falling back to transparent huge
+     *                pages, {@code false} to only use transparent huge pages.
+     */
+    public HugePageDirectChunkAllocator(boolean hugeTlb) {
+        this.hugeTlb = hugeTlb;
+    }
+
+    /**
+     * Returns the size of a huge page, to which the size of each mapping is rounded up.
+     */
+    public static long hugePageSize() {
+        return HUGE_PAGE_SIZE;
+    }
+
+    /**
+     * Returns the number of chunks that were mapped with reserved huge pages.
+     */
+    public long hugeTlbChunks() {
+        return hugeTlbChunks.get();
+    }
+
+    /**
+     * Returns the number of chunks that were mapped with normal pages and marked as eligible for transparent huge
+     * pages, because no reserved huge pages were available.
+     */
+    public long transparentHugePageChunks() {
+        return transparentHugePageChunks.get();
+    }
+
+    /**
+     * Returns the number of bytes that are currently mapped by this allocator.
+     */
+    public long mappedBytes() {
+        return mappedBytes.get();
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        long length = mappedLength(capacity);
+        long address = -1;
+        if (hugeTlb) {
+            address = Buffer.mmapAnonymous0(length, true);
+            if (address >= 0) {
+                hugeTlbChunks.incrementAndGet();
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("Failed to map {} bytes with huge pages, falling back to transparent huge pages",
+                        length, Errors.newIOException("mmap", (int) address));
+            }
+        }
+        if (address < 0) {
+            address = mapAligned(length);
+            int res = Buffer.madviseHugePage0(address, length);
+            if (res < 0) {
+                logger.debug("Failed to enable transparent huge pages for {} bytes", length,
+                        Errors.newIOException("madvise", res));
+            }
+            transparentHugePageChunks.incrementAndGet();
+        }
+        mappedBytes.addAndGet(length);
+        return Buffer.wrapMemoryAddress0(address, capacity);
+    }
+
+    @Override
+    public void free(ByteBuffer buffer) {
+        long length = mappedLength(buffer.capacity());
+        int res = Buffer.munmap0(Buffer.memoryAddress(buffer), length);
+        if (res < 0) {
+            logger.warn("Failed to unmap {} bytes", length, Errors.newIOException("munmap", res));
+        } else {
+            mappedBytes.addAndGet(-length);
+        }
+    }
+
+    /**
+     * Maps {@code length} bytes at an address which is aligned to the huge page size, as the kernel only uses
+     * transparent huge pages for aligned ranges. This maps one more huge page than needed and unmaps the unaligned
+     * head and tail of the mapping again.
+     */
+    private static long mapAligned(long length) {
+        long mapped = length + HUGE_PAGE_SIZE;
+        long address = Buffer.mmapAnonymous0(mapped, false);
+        if (address < 0) {
+            OutOfMemoryError error = new OutOfMemoryError("failed to map " + length + " bytes");
+            error.initCause(Errors.newIOException("mmap", (int) address));
+            throw error;
+        }
+        long aligned = PlatformDependent.align(address, (int) HUGE_PAGE_SIZE);
+        if (aligned > address) {
+            Buffer.munmap0(address, aligned - address);
+        }
+        long tail = address + mapped - (aligned + length);
+        if (tail > 0) {
+            Buffer.munmap0(aligned + length, tail);
+        }
+        return aligned;
+    }
+
+    private static long mappedLength(int capacity) {
+        return (capacity + HUGE_PAGE_SIZE - 1) & -HUGE_PAGE_SIZE;
+    }
+
+    private static long readHugePageSize() {
+        File meminfo = new File("/proc/meminfo");
+        if (!meminfo.canRead()) {
+            return DEFAULT_HUGE_PAGE_SIZE;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(meminfo), CharsetUtil.US_ASCII));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // Hugepagesize:       2048 kB
+                    if (line.startsWith("Hugepagesize:")) {
+                        String size = line.substring("Hugepagesize:".length()).trim();
+                        if (size.endsWith("kB")) {
+                            return Long.parseLong(size.substring(0, size.length() - 2).trim()) * 1024;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to read the huge page size from {}", meminfo, e);
+        } catch (NumberFormatException e) {
+            logger.debug("Failed to parse the huge page size from {}", meminfo, e);
+        }
+        return DEFAULT_HUGE_PAGE_SIZE;
+    }
+}
@@ -25,14 +25,26 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -127,14 +139,101 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
         return this;
     }
 
+    /**
+     * Create one {@link ServerChannel} per {@link EventLoop} of the child {@link EventLoopGroup} and bind all of them
+     * to the same port, see {@link #bindPerChildEventLoop(SocketAddress)}.
+     */
+    public Future<ChannelGroup> bindPerChildEventLoop(int inetPort) {
+        return bindPerChildEventLoop(new InetSocketAddress(inetPort));
+    }
+
+    /**
+     * Create one {@link ServerChannel} per {@link EventLoop} of the child {@link EventLoopGroup} and bind all of them
+     * to the same {@link SocketAddress}. Each of the channels is registered to its own {@link EventLoop} and the
+     * accepted channels are registered to the same {@link EventLoop} as the channel which accepted them, so no
+     * connection is handed over to another thread. The parent {@link EventLoopGroup} is not used.
+     * <p>
+     * This needs a transport which lets several sockets listen on the same port, like the native transports when
+     * {@code SO_REUSEPORT} is set via {@link #option(ChannelOption, Object)}. The channels are bound one after another
+     * in the order in which the child {@link EventLoopGroup} iterates its {@link EventLoop}s. If the given
+     * {@link SocketAddress} uses port {@code 0} all channels are bound to the port that was picked for the first one.
+     *
+     * @return the {@link Future} which is notified with the {@link ChannelGroup} of the bound channels once all of
+     *         them are bound. If one of them fails to bind, all of them are closed again.
+     */
+    public Future<ChannelGroup> bindPerChildEventLoop(SocketAddress localAddress) {
+        validate();
+        ObjectUtil.checkNotNull(localAddress, "localAddress");
+        List<EventLoop> loops = new ArrayList<EventLoop>();
+        for (EventExecutor executor : childGroup) {
+            loops.add((EventLoop) executor);
+        }
+        Promise<ChannelGroup> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        bindNext(loops.iterator(), localAddress, new DefaultChannelGroup(GlobalEventExecutor.INSTANCE), promise);
+        return promise;
+    }
+
+    private void bindNext(final Iterator<EventLoop> loops, final SocketAddress localAddress,
+                          final ChannelGroup channels, final Promise<ChannelGroup> promise) {
+        if (!loops.hasNext()) {
+            promise.setSuccess(channels);
+            return;
+        }
+        EventLoop loop = loops.next();
+        final Channel channel;
+        try {
+            channel = channelFactory().newChannel();
+        } catch (Throwable t) {
+            failBind(channels, promise, t);
+            return;
+        }
+        try {
+            init(channel, loop);
+        } catch (Throwable t) {
+            channel.unsafe().closeForcibly();
+            failBind(channels, promise, t);
+            return;
+        }
+        channels.add(channel);
+        loop.register(channel).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    failBind(channels, promise, future.cause());
+                    return;
+                }
+                channel.bind(localAddress).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (future.isSuccess()) {
+                            // Use the bound address, so an ephemeral port is shared by all channels.
+                            bindNext(loops, channel.localAddress(), channels, promise);
+                        } else {
+                            failBind(channels, promise, future.cause());
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static void failBind(ChannelGroup channels, Promise<ChannelGroup> promise, Throwable cause) {
+        channels.close();
+        promise.setFailure(cause);
+    }
+
     @Override
     void init(Channel channel) {
+        init(channel, childGroup);
+    }
+
+    private void init(Channel channel, EventLoopGroup acceptorChildGroup) {
         setChannelOptions(channel, newOptionsArray(), logger);
         setAttributes(channel, newAttributesArray());
 
         ChannelPipeline p = channel.pipeline();
 
-        final EventLoopGroup currentChildGroup = childGroup;
+        final EventLoopGroup currentChildGroup = acceptorChildGroup;
         final ChannelHandler currentChildHandler = childHandler;
         final Entry<ChannelOption<?>, Object>[] currentChildOptions = newOptionsArray(childOptions);
         final Entry<AttributeKey<?>, Object>[] currentChildAttrs = newAttributesArray(childAttrs);
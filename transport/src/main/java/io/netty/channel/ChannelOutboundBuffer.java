@@ -279,6 +279,35 @@ public final class ChannelOutboundBuffer {
         return true;
     }
 
+    /**
+     * Will remove the current message without releasing it or notifying its {@link ChannelPromise}, and return the
+     * {@link ChannelPromise}. The caller takes over the responsibility to release the message that was returned by
+     * {@link #current()} and to notify the {@link ChannelPromise}. This is useful for transports which only learn
+     * asynchronously that the operating system is done with a message. If no flushed message exists at the time
+     * this method is called it will return {@code null}.
+     */
+    public ChannelPromise removeDeferred() {
+        Entry e = flushedEntry;
+        if (e == null) {
+            clearNioBuffers();
+            return null;
+        }
+        ChannelPromise promise = e.promise;
+        int size = e.pendingSize;
+
+        removeEntry(e);
+
+        if (!e.cancelled) {
+            // only decrement if it was not canceled before.
+            decrementPendingOutboundBytes(size, false, true);
+        }
+
+        // recycle the entry
+        e.recycle();
+
+        return promise;
+    }
+
     /**
      * Will remove the current message, mark its {@link ChannelPromise} as failure using the given {@link Throwable}
      * and return {@code true}. If no   flushed message exists at the time this method is called it will return
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An {@link EventLoopMetricsListener} which records the measurements in counters and histograms, and exposes them
+ * as an {@link EventLoopMetric}. Use one instance per {@link EventLoop}, for example via
+ * {@link #install(EventExecutorGroup)}.
+ */
+@UnstableApi
+public final class DefaultEventLoopMetrics implements EventLoopMetricsListener, EventLoopMetric {
+
+    private final Log2Histogram ioWaitTime = new Log2Histogram();
+    private final Log2Histogram ioProcessingTime = new Log2Histogram();
+    private final AtomicLong ioEvents = new AtomicLong();
+    private final Log2Histogram taskExecutionTime = new Log2Histogram();
+    private final AtomicLong executedTasks = new AtomicLong();
+    private final Log2Histogram taskQueueDepth = new Log2Histogram();
+    private final Log2Histogram scheduledTaskDelay = new Log2Histogram();
+    private final LongCounter wakeups = PlatformDependent.newLongCounter();
+
+    /**
+     * Sets a new {@link DefaultEventLoopMetrics} on each {@link SingleThreadEventExecutor} of the given
+     * {@link EventExecutorGroup}, and returns them in the iteration order of the group.
+     */
+    public static List<DefaultEventLoopMetrics> install(EventExecutorGroup group) {
+        List<DefaultEventLoopMetrics> metrics = new ArrayList<DefaultEventLoopMetrics>();
+        for (EventExecutor executor : group) {
+            if (executor instanceof SingleThreadEventExecutor) {
+                DefaultEventLoopMetrics metric = new DefaultEventLoopMetrics();
+                ((SingleThreadEventExecutor) executor).setMetricsListener(metric);
+                metrics.add(metric);
+            }
+        }
+        return Collections.unmodifiableList(metrics);
+    }
+
+    @Override
+    public void ioWaited(long nanos) {
+        ioWaitTime.record(nanos);
+    }
+
+    @Override
+    public void ioProcessed(int readyEvents, long nanos) {
+        ioEvents.addAndGet(readyEvents);
+        ioProcessingTime.record(nanos);
+    }
+
+    @Override
+    public void tasksRan(int queuedTasks, int ranTasks, long nanos) {
+        taskQueueDepth.record(queuedTasks);
+        if (ranTasks > 0) {
+            executedTasks.addAndGet(ranTasks);
+            taskExecutionTime.record(nanos);
+        }
+    }
+
+    @Override
+    public void scheduledTaskDelayed(long delayNanos) {
+        scheduledTaskDelay.record(delayNanos);
+    }
+
+    @Override
+    public void wakeup() {
+        wakeups.increment();
+    }
+
+    @Override
+    public Histogram ioWaitTime() {
+        return ioWaitTime;
+    }
+
+    @Override
+    public Histogram ioProcessingTime() {
+        return ioProcessingTime;
+    }
+
+    @Override
+    public long ioEvents() {
+        return ioEvents.get();
+    }
+
+    @Override
+    public Histogram taskExecutionTime() {
+        return taskExecutionTime;
+    }
+
+    @Override
+    public long executedTasks() {
+        return executedTasks.get();
+    }
+
+    @Override
+    public Histogram taskQueueDepth() {
+        return taskQueueDepth;
+    }
+
+    @Override
+    public Histogram scheduledTaskDelay() {
+        return scheduledTaskDelay;
+    }
+
+    @Override
+    public long wakeups() {
+        return wakeups.value();
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) +
+                "(ioWaitTime: " + ioWaitTime +
+                ", ioProcessingTime: " + ioProcessingTime +
+                ", ioEvents: " + ioEvents() +
+                ", taskExecutionTime: " + taskExecutionTime +
+                ", executedTasks: " + executedTasks() +
+                ", taskQueueDepth: " + taskQueueDepth +
+                ", scheduledTaskDelay: " + scheduledTaskDelay +
+                ", wakeups: " + wakeups() + ')';
+    }
+
+    /**
+     * Bucket {@code 0} counts the values {@code <= 0}, bucket {@code i} counts the values in
+     * {@code [2^(i - 1), 2^i)}.
+     */
+    static final class Log2Histogram implements Histogram {
+        private static final int BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+            sum.addAndGet(value);
+            for (;;) {
+                long max = this.max.get();
+                if (value <= max || this.max.compareAndSet(max, value)) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        @Override
+        public long sum() {
+            return sum.get();
+        }
+
+        @Override
+        public long max() {
+            return max.get();
+        }
+
+        @Override
+        public long valueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile: " + percentile + " (expected: 0-100)");
+            }
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                count += counts[i];
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0 || seen == count) {
+                    long upperBound = i == 0 ? 0 : i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(upperBound, max());
+                }
+            }
+            return max();
+        }
+
+        @Override
+        public String toString() {
+            return "(count: " + count() + ", sum: " + sum() + ", p50: " + valueAtPercentile(50) +
+                    ", p99: " + valueAtPercentile(99) + ", max: " + max() + ')';
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Metrics of a single {@link EventLoop}, as collected by {@link DefaultEventLoopMetrics}. All values are cumulative
+ * since the metrics were created, so rates are computed by comparing two snapshots.
+ */
+@UnstableApi
+public interface EventLoopMetric {
+
+    /**
+     * Returns the time spent waiting for I/O events, in nanoseconds.
+     */
+    Histogram ioWaitTime();
+
+    /**
+     * Returns the time spent processing ready I/O events, in nanoseconds.
+     */
+    Histogram ioProcessingTime();
+
+    /**
+     * Returns the number of I/O events that were processed.
+     */
+    long ioEvents();
+
+    /**
+     * Returns the time spent running each batch of tasks, in nanoseconds.
+     */
+    Histogram taskExecutionTime();
+
+    /**
+     * Returns the number of tasks that were run.
+     */
+    long executedTasks();
+
+    /**
+     * Returns the number of pending tasks, sampled each time the {@link EventLoop} starts to run its tasks.
+     */
+    Histogram taskQueueDepth();
+
+    /**
+     * Returns how late scheduled tasks were taken for execution compared to their deadline, in nanoseconds.
+     */
+    Histogram scheduledTaskDelay();
+
+    /**
+     * Returns the number of times the {@link EventLoop} was woken up by another thread.
+     */
+    long wakeups();
+
+    /**
+     * A histogram of non-negative values, with buckets whose bounds are powers of two.
+     */
+    interface Histogram {
+
+        /**
+         * Returns the number of recorded values.
+         */
+        long count();
+
+        /**
+         * Returns the sum of the recorded values.
+         */
+        long sum();
+
+        /**
+         * Returns the largest recorded value, or {@code 0} if none was recorded.
+         */
+        long max();
+
+        /**
+         * Returns an upper bound of the value below which the given percentage of the recorded values fall, which is
+         * at most twice the actual value.
+         *
+         * @param percentile the percentage, between {@code 0} and {@code 100}.
+         */
+        long valueAtPercentile(double percentile);
+    }
+}
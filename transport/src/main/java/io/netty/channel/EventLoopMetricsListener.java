@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutorMetricsListener;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * An {@link EventExecutorMetricsListener} which also receives measurements of the I/O done by an {@link EventLoop}.
+ * Set it via {@link SingleThreadEventLoop#setMetricsListener(EventExecutorMetricsListener)}.
+ * <p>
+ * All methods are called by the thread of the {@link EventLoop}, so implementations must be cheap and must never
+ * block.
+ */
+@UnstableApi
+public interface EventLoopMetricsListener extends EventExecutorMetricsListener {
+
+    /**
+     * Called after the {@link EventLoop} waited for I/O events, like in {@code select()} or {@code epoll_wait()}.
+     *
+     * @param nanos the time spent waiting, in nanoseconds.
+     */
+    void ioWaited(long nanos);
+
+    /**
+     * Called after the {@link EventLoop} processed the I/O events it found ready.
+     *
+     * @param readyEvents the number of ready events, like the number of selected keys.
+     * @param nanos       the time it took to process the events, in nanoseconds.
+     */
+    void ioProcessed(int readyEvents, long nanos);
+}
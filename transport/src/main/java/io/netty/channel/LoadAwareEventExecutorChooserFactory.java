@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
+import io.netty.util.concurrent.EventExecutorMetricsListener;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EventExecutorChooserFactory} which picks the less loaded of two randomly sampled {@link EventExecutor}s
+ * ("power of two choices"), so long-lived busy channels do not pile up on some {@link EventLoop}s while others idle.
+ * <p>
+ * The load of an {@link EventExecutor} is {@code (1 + registeredChannels + pendingTasks) * (1 + busyRatio)}, where
+ * {@code busyRatio} is the share of the last {@value #BUSY_RATIO_INTERVAL_MILLIS} milliseconds the executor spent
+ * processing I/O and running tasks. The busy ratio is only known if the executor has an {@link EventLoopMetric}
+ * installed as its {@link SingleThreadEventExecutor#metricsListener()}, for example via
+ * {@link DefaultEventLoopMetrics#install(io.netty.util.concurrent.EventExecutorGroup)}, and is {@code 0} otherwise.
+ * Likewise the registered channels are only counted for {@link SingleThreadEventLoop}s which support
+ * {@link SingleThreadEventLoop#registeredChannels()}.
+ */
+@UnstableApi
+public final class LoadAwareEventExecutorChooserFactory implements EventExecutorChooserFactory {
+
+    public static final LoadAwareEventExecutorChooserFactory INSTANCE = new LoadAwareEventExecutorChooserFactory();
+
+    private static final long BUSY_RATIO_INTERVAL_MILLIS = 100;
+    private static final long BUSY_RATIO_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(BUSY_RATIO_INTERVAL_MILLIS);
+
+    private LoadAwareEventExecutorChooserFactory() { }
+
+    @Override
+    public EventExecutorChooser newChooser(EventExecutor[] executors) {
+        return new LoadAwareEventExecutorChooser(executors);
+    }
+
+    private static final class LoadAwareEventExecutorChooser implements EventExecutorChooser {
+        private final EventExecutor[] executors;
+        private final BusyRatio[] busyRatios;
+
+        LoadAwareEventExecutorChooser(EventExecutor[] executors) {
+            this.executors = executors;
+            busyRatios = new BusyRatio[executors.length];
+            for (int i = 0; i < busyRatios.length; i++) {
+                busyRatios[i] = new BusyRatio();
+            }
+        }
+
+        @Override
+        public EventExecutor next() {
+            int length = executors.length;
+            if (length == 1) {
+                return executors[0];
+            }
+            Random random = PlatformDependent.threadLocalRandom();
+            int first = random.nextInt(length);
+            int second = random.nextInt(length - 1);
+            if (second >= first) {
+                second++;
+            }
+            return load(second) < load(first) ? executors[second] : executors[first];
+        }
+
+        private double load(int index) {
+            EventExecutor executor = executors[index];
+            int load = 1;
+            double busyRatio = 0;
+            if (executor instanceof SingleThreadEventExecutor) {
+                SingleThreadEventExecutor singleThreadExecutor = (SingleThreadEventExecutor) executor;
+                load += singleThreadExecutor.pendingTasks();
+                EventExecutorMetricsListener listener = singleThreadExecutor.metricsListener();
+                if (listener instanceof EventLoopMetric) {
+                    busyRatio = busyRatios[index].update((EventLoopMetric) listener);
+                }
+            }
+            if (executor instanceof SingleThreadEventLoop) {
+                // -1 if the transport does not support counting its channels.
+                load += Math.max(0, ((SingleThreadEventLoop) executor).registeredChannels());
+            }
+            return load * (1 + busyRatio);
+        }
+    }
+
+    /**
+     * The busy ratio of one {@link EventExecutor}, which is updated at most once per interval.
+     */
+    private static final class BusyRatio {
+        private EventLoopMetric metric;
+        private long lastUpdateNanos;
+        private long lastBusyNanos;
+        private double ratio;
+
+        synchronized double update(EventLoopMetric metric) {
+            long now = System.nanoTime();
+            if (metric != this.metric) {
+                // The metrics are cumulative, so start measuring from now on.
+                this.metric = metric;
+                lastBusyNanos = busyNanos(metric);
+                lastUpdateNanos = now;
+                ratio = 0;
+            } else {
+                long elapsed = now - lastUpdateNanos;
+                if (elapsed >= BUSY_RATIO_INTERVAL_NANOS) {
+                    long busy = busyNanos(metric);
+                    ratio = Math.min(1, (double) (busy - lastBusyNanos) / elapsed);
+                    lastBusyNanos = busy;
+                    lastUpdateNanos = now;
+                }
+            }
+            return ratio;
+        }
+
+        private static long busyNanos(EventLoopMetric metric) {
+            return metric.ioProcessingTime().sum() + metric.taskExecutionTime().sum();
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package io.netty.channel;
 
+import io.netty.util.concurrent.EventExecutorMetricsListener;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
 import io.netty.util.concurrent.SingleThreadEventExecutor;
@@ -145,6 +146,16 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return super.pendingTasks() + tailTasks.size();
     }
 
+    /**
+     * Returns the {@link #metricsListener()} if it is an {@link EventLoopMetricsListener}, so implementations can
+     * report the measurements of their I/O to it, or {@code null} otherwise.
+     */
+    @UnstableApi
+    protected final EventLoopMetricsListener ioMetricsListener() {
+        EventExecutorMetricsListener metricsListener = metricsListener();
+        return metricsListener instanceof EventLoopMetricsListener ? (EventLoopMetricsListener) metricsListener : null;
+    }
+
     /**
      * Returns the number of {@link Channel}s registered with this {@link EventLoop} or {@code -1}
      * if operation is not supported. The returned value is not guaranteed to be exact accurate and
@@ -19,6 +19,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopException;
+import io.netty.channel.EventLoopMetricsListener;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
@@ -439,6 +440,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         int selectCnt = 0;
         for (;;) {
             try {
+                final EventLoopMetricsListener ioMetricsListener = ioMetricsListener();
                 int strategy;
                 try {
                     strategy = selectStrategy.calculateStrategy(selectNowSupplier, hasTasks());
@@ -457,7 +459,11 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                         nextWakeupNanos.set(curDeadlineNanos);
                         try {
                             if (!hasTasks()) {
+                                final long waitStartTime = ioMetricsListener != null ? System.nanoTime() : 0;
                                 strategy = select(curDeadlineNanos);
+                                if (ioMetricsListener != null) {
+                                    ioMetricsListener.ioWaited(System.nanoTime() - waitStartTime);
+                                }
                             }
                         } finally {
                             // This update is just to help block unnecessary selector wakeups
@@ -484,7 +490,11 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                 if (ioRatio == 100) {
                     try {
                         if (strategy > 0) {
+                            final long ioStartTime = ioMetricsListener != null ? System.nanoTime() : 0;
                             processSelectedKeys();
+                            if (ioMetricsListener != null) {
+                                ioMetricsListener.ioProcessed(strategy, System.nanoTime() - ioStartTime);
+                            }
                         }
                     } finally {
                         // Ensure we always run tasks.
@@ -497,6 +507,9 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
+                        if (ioMetricsListener != null) {
+                            ioMetricsListener.ioProcessed(strategy, ioTime);
+                        }
                         ranTasks = runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 } else {
@@ -785,6 +798,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     protected void wakeup(boolean inEventLoop) {
         if (!inEventLoop && nextWakeupNanos.getAndSet(AWAKE) != AWAKE) {
             selector.wakeup();
+            wokenUp();
         }
     }
 
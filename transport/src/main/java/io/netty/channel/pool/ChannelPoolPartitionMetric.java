@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.channel.EventLoop;
+
+/**
+ * Metrics of a single partition of a {@link PartitionedChannelPool}. The values are updated by the {@link EventLoop}
+ * of the partition, so they may be slightly behind when read from another thread.
+ */
+public interface ChannelPoolPartitionMetric {
+
+    /**
+     * Returns the {@link EventLoop} the {@link io.netty.channel.Channel}s of this partition are registered to.
+     */
+    EventLoop eventLoop();
+
+    /**
+     * Returns the number of {@link io.netty.channel.Channel}s that are open or being opened, whether they are idle or
+     * acquired.
+     */
+    int connections();
+
+    /**
+     * Returns the number of {@link io.netty.channel.Channel}s that are idle in this partition.
+     */
+    int idleChannels();
+
+    /**
+     * Returns the number of {@link io.netty.channel.Channel}s of this partition that are acquired and not released
+     * yet.
+     */
+    int leasedChannels();
+
+    /**
+     * Returns the number of acquires that wait for a {@link io.netty.channel.Channel} in this partition.
+     */
+    int pendingAcquires();
+
+    /**
+     * Returns the number of acquires from other partitions that were served with an idle
+     * {@link io.netty.channel.Channel} of this partition.
+     */
+    long stolenChannels();
+}
@@ -0,0 +1,603 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.ThreadExecutorMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * {@link ChannelPool} implementation which keeps a partition per {@link EventLoop} of the {@link EventLoopGroup} of
+ * the {@link Bootstrap}. Each partition has its own {@link Channel}s, which are registered to its {@link EventLoop},
+ * and its own limits, and its state is only ever touched by its {@link EventLoop}. So unlike {@link FixedChannelPool},
+ * acquires from different {@link EventLoop}s never contend with each other.
+ * <p>
+ * An acquire is served by the partition of the {@link EventLoop} it is called from, or by the next partition in a
+ * round-robin fashion if it is not called from one of them. If the partition has no idle {@link Channel} and may not
+ * open another one, an idle {@link Channel} is stolen from another partition. Only if there is none either, the
+ * acquire waits until a {@link Channel} is released, and the {@link Channel}s that are released are handed to the
+ * acquires that wait in other partitions if there are none waiting in their own.
+ * <p>
+ * Like {@link SimpleChannelPool}, this implementation uses LIFO order for the idle {@link Channel}s.
+ */
+public class PartitionedChannelPool implements ChannelPool {
+    private static final AttributeKey<PartitionedChannelPool> POOL_KEY =
+            AttributeKey.newInstance("io.netty.channel.pool.PartitionedChannelPool");
+
+    private final Bootstrap bootstrap;
+    private final ChannelPoolHandler handler;
+    private final ChannelHealthChecker healthCheck;
+    private final int maxConnectionsPerPartition;
+    private final int maxPendingAcquiresPerPartition;
+    private final Partition[] partitions;
+    private final Map<EventExecutor, Partition> partitionsByLoop;
+    private final List<ChannelPoolPartitionMetric> partitionMetrics;
+    private final AtomicInteger nextPartition = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE}.
+     *
+     * @param bootstrap                      the {@link Bootstrap} that is used for connections
+     * @param handler                        the {@link ChannelPoolHandler} that will be notified for the different
+     *                                       pool actions
+     * @param maxConnectionsPerPartition     the number of maximal active connections of each partition
+     * @param maxPendingAcquiresPerPartition the maximum number of pending acquires of each partition, once it is
+     *                                       exceed acquire tries will be failed
+     */
+    public PartitionedChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, int maxConnectionsPerPartition,
+                                  int maxPendingAcquiresPerPartition) {
+        this(bootstrap, handler, ChannelHealthChecker.ACTIVE, maxConnectionsPerPartition,
+                maxPendingAcquiresPerPartition);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap                      the {@link Bootstrap} that is used for connections
+     * @param handler                        the {@link ChannelPoolHandler} that will be notified for the different
+     *                                       pool actions
+     * @param healthCheck                    the {@link ChannelHealthChecker} that will be used to check if a
+     *                                       {@link Channel} is still healthy when obtain from the
+     *                                       {@link ChannelPool}
+     * @param maxConnectionsPerPartition     the number of maximal active connections of each partition
+     * @param maxPendingAcquiresPerPartition the maximum number of pending acquires of each partition, once it is
+     *                                       exceed acquire tries will be failed
+     */
+    public PartitionedChannelPool(Bootstrap bootstrap, final ChannelPoolHandler handler,
+                                  ChannelHealthChecker healthCheck, int maxConnectionsPerPartition,
+                                  int maxPendingAcquiresPerPartition) {
+        this.handler = checkNotNull(handler, "handler");
+        this.healthCheck = checkNotNull(healthCheck, "healthCheck");
+        this.maxConnectionsPerPartition = checkPositive(maxConnectionsPerPartition, "maxConnectionsPerPartition");
+        this.maxPendingAcquiresPerPartition =
+                checkPositiveOrZero(maxPendingAcquiresPerPartition, "maxPendingAcquiresPerPartition");
+        // Clone the original Bootstrap as we want to set our own handler
+        this.bootstrap = checkNotNull(bootstrap, "bootstrap").clone();
+        this.bootstrap.handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                assert ch.eventLoop().inEventLoop();
+                handler.channelCreated(ch);
+            }
+        });
+
+        EventLoopGroup group = this.bootstrap.config().group();
+        List<Partition> partitions = new ArrayList<Partition>();
+        for (EventExecutor executor : group) {
+            if (!(executor instanceof EventLoop)) {
+                throw new IllegalArgumentException("group must only consist of EventLoops: " + group);
+            }
+            partitions.add(new Partition((EventLoop) executor, partitions.size()));
+        }
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("group does not consist of any EventLoop: " + group);
+        }
+        this.partitions = partitions.toArray(new Partition[0]);
+        partitionsByLoop = new IdentityHashMap<EventExecutor, Partition>(partitions.size());
+        for (Partition partition : this.partitions) {
+            partitionsByLoop.put(partition.loop, partition);
+        }
+        partitionMetrics = Collections.<ChannelPoolPartitionMetric>unmodifiableList(Arrays.asList(this.partitions));
+    }
+
+    /**
+     * Returns the metrics of all partitions, one per {@link EventLoop}.
+     */
+    public List<ChannelPoolPartitionMetric> partitionMetrics() {
+        return partitionMetrics;
+    }
+
+    @Override
+    public final Future<Channel> acquire() {
+        Partition partition = callerPartition();
+        return acquire(partition, partition.loop.<Channel>newPromise());
+    }
+
+    @Override
+    public Future<Channel> acquire(Promise<Channel> promise) {
+        return acquire(callerPartition(), checkNotNull(promise, "promise"));
+    }
+
+    private Future<Channel> acquire(final Partition partition, final Promise<Channel> promise) {
+        try {
+            if (partition.loop.inEventLoop()) {
+                partition.acquire(promise);
+            } else {
+                partition.loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        partition.acquire(promise);
+                    }
+                });
+            }
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+        }
+        return promise;
+    }
+
+    private Partition callerPartition() {
+        EventExecutor executor = ThreadExecutorMap.currentExecutor();
+        Partition partition = executor == null ? null : partitionsByLoop.get(executor);
+        if (partition == null) {
+            partition = partitions[(nextPartition.getAndIncrement() & Integer.MAX_VALUE) % partitions.length];
+        }
+        return partition;
+    }
+
+    @Override
+    public final Future<Void> release(Channel channel) {
+        return release(channel, channel.eventLoop().<Void>newPromise());
+    }
+
+    @Override
+    public Future<Void> release(final Channel channel, final Promise<Void> promise) {
+        try {
+            checkNotNull(channel, "channel");
+            checkNotNull(promise, "promise");
+            final Partition partition = partitionsByLoop.get(channel.eventLoop());
+            if (partition == null) {
+                promise.setFailure(new IllegalArgumentException(
+                        "Channel " + channel + " was not acquired from this ChannelPool"));
+            } else if (partition.loop.inEventLoop()) {
+                partition.release(channel, promise);
+            } else {
+                partition.loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        partition.release(channel, promise);
+                    }
+                });
+            }
+        } catch (Throwable cause) {
+            closeAndFail(channel, cause, promise);
+        }
+        return promise;
+    }
+
+    private static void closeAndFail(Channel channel, Throwable cause, Promise<?> promise) {
+        if (channel != null) {
+            channel.attr(POOL_KEY).set(null);
+            channel.close();
+        }
+        promise.tryFailure(cause);
+    }
+
+    /**
+     * Fails all pending acquires and closes all idle {@link Channel}s. {@link Channel}s that are acquired are closed
+     * once they are released. This method does not wait for the {@link Channel}s to be closed, use
+     * {@link #closeAsync()} for this.
+     */
+    @Override
+    public void close() {
+        closeAsync();
+    }
+
+    /**
+     * Closes the pool in an async manner.
+     *
+     * @return Future which represents completion of the close task
+     */
+    public Future<Void> closeAsync() {
+        closed = true;
+        final Promise<Void> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        final AtomicInteger remaining = new AtomicInteger(partitions.length);
+        for (final Partition partition : partitions) {
+            partition.loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        partition.close();
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            promise.trySuccess(null);
+                        }
+                    }
+                }
+            });
+        }
+        return promise;
+    }
+
+    /**
+     * The {@link Channel}s of a single {@link EventLoop}. Everything but the metrics is only accessed by this
+     * {@link EventLoop}.
+     */
+    private final class Partition implements ChannelPoolPartitionMetric {
+        final EventLoop loop;
+        private final int index;
+        private final ArrayDeque<Channel> idle = new ArrayDeque<Channel>();
+        private final ArrayDeque<Promise<Channel>> pending = new ArrayDeque<Promise<Channel>>();
+
+        // Only written by the EventLoop, so they can be read by other threads without a lock.
+        private volatile int connections;
+        private volatile int idleChannels;
+        private volatile int leasedChannels;
+        private volatile int pendingAcquires;
+        private volatile long stolenChannels;
+
+        Partition(EventLoop loop, int index) {
+            this.loop = loop;
+            this.index = index;
+        }
+
+        void acquire(Promise<Channel> promise) {
+            assert loop.inEventLoop();
+            if (closed) {
+                promise.tryFailure(new IllegalStateException("ChannelPool was closed"));
+                return;
+            }
+            Channel channel = pollIdle();
+            if (channel != null) {
+                doHealthCheck(channel, promise);
+            } else if (connections < maxConnectionsPerPartition) {
+                connect(promise);
+            } else {
+                Partition victim = idleSibling();
+                if (victim != null) {
+                    victim.steal(this, promise);
+                } else {
+                    addPending(promise);
+                }
+            }
+        }
+
+        private Channel pollIdle() {
+            Channel channel = idle.pollFirst();
+            if (channel != null) {
+                idleChannels--;
+            }
+            return channel;
+        }
+
+        private void addPending(Promise<Channel> promise) {
+            assert loop.inEventLoop();
+            if (closed) {
+                promise.tryFailure(new IllegalStateException("ChannelPool was closed"));
+            } else if (pending.size() >= maxPendingAcquiresPerPartition) {
+                promise.tryFailure(new IllegalStateException("Too many outstanding acquire operations"));
+            } else {
+                pending.add(promise);
+                pendingAcquires++;
+            }
+        }
+
+        private Promise<Channel> pollPending() {
+            assert loop.inEventLoop();
+            Promise<Channel> promise = pending.poll();
+            if (promise != null) {
+                pendingAcquires--;
+            }
+            return promise;
+        }
+
+        /**
+         * Returns another partition which has an idle {@link Channel}, starting with the next one so not all
+         * partitions steal from the same one.
+         */
+        private Partition idleSibling() {
+            for (int i = 1; i < partitions.length; i++) {
+                Partition partition = partitions[(index + i) % partitions.length];
+                if (partition.idleChannels > 0) {
+                    return partition;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns another partition which has pending acquires.
+         */
+        private Partition starvingSibling() {
+            for (int i = 1; i < partitions.length; i++) {
+                Partition partition = partitions[(index + i) % partitions.length];
+                if (partition.pendingAcquires > 0) {
+                    return partition;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Serves the acquire of the given other partition with an idle {@link Channel} of this partition, or hands
+         * it back to wait in the other partition if there is none anymore.
+         */
+        private void steal(final Partition thief, final Promise<Channel> promise) {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Channel channel = pollIdle();
+                    if (channel != null) {
+                        stolenChannels++;
+                        doHealthCheck(channel, promise);
+                    } else {
+                        thief.loop.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                thief.addPending(promise);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+
+        private void connect(final Promise<Channel> promise) {
+            connections++;
+            Bootstrap bs = bootstrap.clone(loop);
+            ChannelFuture f;
+            try {
+                f = bs.connect();
+            } catch (Throwable cause) {
+                connectionClosed();
+                promise.tryFailure(cause);
+                return;
+            }
+            if (f.isDone()) {
+                notifyConnect(f, promise);
+            } else {
+                f.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        notifyConnect(future, promise);
+                    }
+                });
+            }
+        }
+
+        private void notifyConnect(ChannelFuture future, Promise<Channel> promise) {
+            assert loop.inEventLoop();
+            if (future.isSuccess()) {
+                notifyAcquired(future.channel(), promise);
+            } else {
+                connectionClosed();
+                promise.tryFailure(future.cause());
+            }
+        }
+
+        private void doHealthCheck(final Channel channel, final Promise<Channel> promise) {
+            try {
+                Future<Boolean> f = healthCheck.isHealthy(channel);
+                if (f.isDone()) {
+                    notifyHealthCheck(f, channel, promise);
+                } else {
+                    f.addListener(new FutureListener<Boolean>() {
+                        @Override
+                        public void operationComplete(Future<Boolean> future) {
+                            notifyHealthCheck(future, channel, promise);
+                        }
+                    });
+                }
+            } catch (Throwable cause) {
+                closeChannel(channel);
+                promise.tryFailure(cause);
+            }
+        }
+
+        private void notifyHealthCheck(Future<Boolean> future, Channel channel, Promise<Channel> promise) {
+            if (future.isSuccess() && future.getNow()) {
+                notifyAcquired(channel, promise);
+            } else {
+                closeChannel(channel);
+                acquire(promise);
+            }
+        }
+
+        private void notifyAcquired(Channel channel, Promise<Channel> promise) {
+            assert loop.inEventLoop();
+            channel.attr(POOL_KEY).set(PartitionedChannelPool.this);
+            leasedChannels++;
+            try {
+                handler.channelAcquired(channel);
+            } catch (Throwable cause) {
+                leasedChannels--;
+                closeChannel(channel);
+                promise.tryFailure(cause);
+                return;
+            }
+            if (!promise.trySuccess(channel)) {
+                // Promise was completed in the meantime (like cancelled), just release the channel again
+                release(channel, loop.<Void>newPromise());
+            }
+        }
+
+        void release(Channel channel, Promise<Void> promise) {
+            assert loop.inEventLoop();
+            // Remove the POOL_KEY attribute from the Channel and check if it was acquired from this pool, if not fail.
+            if (channel.attr(POOL_KEY).getAndSet(null) != PartitionedChannelPool.this) {
+                closeAndFail(channel,
+                             // Better include a stacktrace here as this is an user error.
+                             new IllegalArgumentException(
+                                     "Channel " + channel + " was not acquired from this ChannelPool"),
+                             promise);
+                return;
+            }
+            leasedChannels--;
+            try {
+                handler.channelReleased(channel);
+            } catch (Throwable cause) {
+                closeChannel(channel);
+                promise.tryFailure(cause);
+                return;
+            }
+            if (channel.isActive()) {
+                offer(channel, true);
+            } else {
+                closeChannel(channel);
+            }
+            promise.setSuccess(null);
+        }
+
+        /**
+         * Hands the {@link Channel} to the next pending acquire of this partition, of another partition if there is
+         * none and {@code handOver} is {@code true}, or keeps it idle.
+         */
+        private void offer(final Channel channel, boolean handOver) {
+            assert loop.inEventLoop();
+            if (closed) {
+                closeChannel(channel);
+                return;
+            }
+            Promise<Channel> promise = pollPending();
+            if (promise != null) {
+                doHealthCheck(channel, promise);
+                return;
+            }
+            final Partition starving = handOver ? starvingSibling() : null;
+            if (starving != null) {
+                starving.loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        final Promise<Channel> promise = starving.pollPending();
+                        loop.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (promise != null) {
+                                    doHealthCheck(channel, promise);
+                                } else {
+                                    offer(channel, false);
+                                }
+                            }
+                        });
+                    }
+                });
+                return;
+            }
+            idle.offerFirst(channel);
+            idleChannels++;
+        }
+
+        private void closeChannel(Channel channel) {
+            channel.attr(POOL_KEY).set(null);
+            channel.close();
+            connectionClosed();
+        }
+
+        /**
+         * A connection was closed or could not be opened, so the acquires that wait may open a new one.
+         */
+        private void connectionClosed() {
+            connections--;
+            while (connections < maxConnectionsPerPartition && !closed) {
+                Promise<Channel> promise = pollPending();
+                if (promise == null) {
+                    break;
+                }
+                connect(promise);
+            }
+        }
+
+        void close() {
+            assert loop.inEventLoop();
+            for (;;) {
+                Promise<Channel> promise = pollPending();
+                if (promise == null) {
+                    break;
+                }
+                promise.tryFailure(new IllegalStateException("ChannelPool was closed"));
+            }
+            for (;;) {
+                Channel channel = pollIdle();
+                if (channel == null) {
+                    break;
+                }
+                closeChannel(channel);
+            }
+        }
+
+        @Override
+        public EventLoop eventLoop() {
+            return loop;
+        }
+
+        @Override
+        public int connections() {
+            return connections;
+        }
+
+        @Override
+        public int idleChannels() {
+            return idleChannels;
+        }
+
+        @Override
+        public int leasedChannels() {
+            return leasedChannels;
+        }
+
+        @Override
+        public int pendingAcquires() {
+            return pendingAcquires;
+        }
+
+        @Override
+        public long stolenChannels() {
+            return stolenChannels;
+        }
+
+        @Override
+        public String toString() {
+            return "Partition(" + loop + ", connections: " + connections + ", idle: " + idleChannels +
+                    ", leased: " + leasedChannels + ", pending: " + pendingAcquires + ", stolen: " +
+                    stolenChannels + ')';
+        }
+    }
+}
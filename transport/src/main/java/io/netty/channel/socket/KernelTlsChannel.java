@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.EventLoop;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * A {@link Channel} which can hand the encryption of outbound TLS records over to the kernel, once the TLS handshake
+ * was done in userspace. Everything written to the channel afterwards is sent as the payload of TLS application data
+ * records, which allows zero-copy writes of {@link io.netty.channel.FileRegion}s over TLS. Records of other content
+ * types, like the {@code close_notify} alert, are written as {@link KernelTlsRecord}s.
+ */
+@UnstableApi
+public interface KernelTlsChannel extends Channel {
+
+    /**
+     * The version number of TLS 1.2.
+     */
+    int TLS_1_2 = 0x0303;
+
+    /**
+     * The ciphers that may be used for kernel TLS.
+     */
+    enum Cipher {
+        AES_128_GCM,
+        AES_256_GCM,
+        CHACHA20_POLY1305
+    }
+
+    /**
+     * Returns {@code true} if the outbound TLS records of this channel are encrypted by the kernel.
+     */
+    boolean isKernelTlsTxEnabled();
+
+    /**
+     * Lets the kernel encrypt all bytes that are written to this channel from now on. This method must be called
+     * from the {@link EventLoop} of the channel, after everything that was encrypted in userspace has been written
+     * to the socket.
+     *
+     * @param version        the TLS version, like {@link #TLS_1_2}.
+     * @param cipher         the negotiated cipher.
+     * @param key            the write key.
+     * @param iv             the implicit part of the nonce, which is the 4 byte salt for AES-GCM and the 12 byte IV
+     *                       for ChaCha20-Poly1305.
+     * @param recordSequence the sequence number of the next record.
+     * @return {@code true} if the kernel encrypts the outbound records now, {@code false} if the kernel does not
+     *         support it because the {@code tls} upper layer protocol is not available, in which case the channel is
+     *         left unchanged.
+     * @throws ChannelException if the kernel attached the {@code tls} upper layer protocol but refused the key, for
+     *         example because the cipher is not supported. The socket can not be restored to its previous state, so
+     *         the channel is closed and nothing else is written to it.
+     */
+    boolean enableKernelTlsTx(int version, Cipher cipher, byte[] key, byte[] iv, long recordSequence);
+}
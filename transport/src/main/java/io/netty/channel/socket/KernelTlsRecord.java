@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.socket;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * A TLS record with another content type than application data, like an alert, which can be written to a
+ * {@link KernelTlsChannel} once the kernel encrypts its outbound records. The content is the plaintext of the record.
+ */
+@UnstableApi
+public final class KernelTlsRecord extends DefaultByteBufHolder {
+
+    /**
+     * The content type of alert records.
+     */
+    public static final byte CONTENT_TYPE_ALERT = 21;
+
+    private final byte contentType;
+
+    /**
+     * Creates a new record.
+     *
+     * @param contentType the content type of the record, like {@link #CONTENT_TYPE_ALERT}.
+     * @param content     the plaintext of the record.
+     */
+    public KernelTlsRecord(byte contentType, ByteBuf content) {
+        super(content);
+        this.contentType = contentType;
+    }
+
+    /**
+     * Returns the content type of the record.
+     */
+    public byte contentType() {
+        return contentType;
+    }
+
+    @Override
+    public KernelTlsRecord copy() {
+        return replace(content().copy());
+    }
+
+    @Override
+    public KernelTlsRecord duplicate() {
+        return replace(content().duplicate());
+    }
+
+    @Override
+    public KernelTlsRecord retainedDuplicate() {
+        return replace(content().retainedDuplicate());
+    }
+
+    @Override
+    public KernelTlsRecord replace(ByteBuf content) {
+        return new KernelTlsRecord(contentType, content);
+    }
+
+    @Override
+    public KernelTlsRecord retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public KernelTlsRecord retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public KernelTlsRecord touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public KernelTlsRecord touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof KernelTlsRecord)) {
+            return false;
+        }
+        return contentType == ((KernelTlsRecord) o).contentType && super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + contentType;
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(contentType=" + contentType +
+                ", content=" + contentToString() + ')';
+    }
+}
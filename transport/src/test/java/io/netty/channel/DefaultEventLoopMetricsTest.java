@@ -0,0 +1,109 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DefaultEventLoopMetricsTest {
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    @Test
+    public void testHistogram() {
+        DefaultEventLoopMetrics.Log2Histogram histogram = new DefaultEventLoopMetrics.Log2Histogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.valueAtPercentile(99));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-1);
+        assertEquals(101, histogram.count());
+        assertEquals(5050, histogram.sum());
+        assertEquals(100, histogram.max());
+        assertEquals(0, histogram.valueAtPercentile(0));
+        // 50 is in the bucket [32, 64).
+        assertEquals(63, histogram.valueAtPercentile(50));
+        // Never larger than the largest recorded value.
+        assertEquals(100, histogram.valueAtPercentile(100));
+    }
+
+    @Test
+    public void testNioEventLoop() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            List<DefaultEventLoopMetrics> metrics = DefaultEventLoopMetrics.install(group);
+            assertEquals(1, metrics.size());
+            DefaultEventLoopMetrics metric = metrics.get(0);
+            EventExecutor loop = group.next();
+            assertSame(metric, ((SingleThreadEventLoop) loop).metricsListener());
+
+            // Start the loop and let it block in select() before submitting a task from outside, so it needs to be
+            // woken up.
+            loop.submit(NOOP).sync();
+            Thread.sleep(100);
+            loop.submit(NOOP).sync();
+            loop.schedule(NOOP, 10, TimeUnit.MILLISECONDS).sync();
+
+            Channel server = new ServerBootstrap()
+                    .group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter())
+                    .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+            Channel client = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(server.localAddress()).sync().channel();
+            client.close().sync();
+            server.close().sync();
+
+            assertTrue(metric.executedTasks() >= 2, metric.toString());
+            assertTrue(metric.taskExecutionTime().count() > 0, metric.toString());
+            assertTrue(metric.taskQueueDepth().count() > 0, metric.toString());
+            assertTrue(metric.scheduledTaskDelay().count() > 0, metric.toString());
+            assertTrue(metric.scheduledTaskDelay().max() < TimeUnit.SECONDS.toNanos(10), metric.toString());
+            assertTrue(metric.wakeups() > 0, metric.toString());
+            assertTrue(metric.ioWaitTime().count() > 0, metric.toString());
+            assertTrue(metric.ioProcessingTime().count() > 0, metric.toString());
+            assertTrue(metric.ioEvents() > 0, metric.toString());
+
+            ((SingleThreadEventLoop) loop).setMetricsListener(null);
+            assertNull(((SingleThreadEventLoop) loop).metricsListener());
+        } finally {
+            group.shutdownGracefully().sync();
+        }
+    }
+}
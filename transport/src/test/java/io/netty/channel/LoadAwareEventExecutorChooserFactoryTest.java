@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory.EventExecutorChooser;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoadAwareEventExecutorChooserFactoryTest {
+
+    @Test
+    public void testSingleExecutor() {
+        EventExecutor executor = new DefaultEventExecutor();
+        try {
+            EventExecutorChooser chooser =
+                    LoadAwareEventExecutorChooserFactory.INSTANCE.newChooser(new EventExecutor[] { executor });
+            assertSame(executor, chooser.next());
+        } finally {
+            executor.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testPrefersExecutorWithLessPendingTasks() throws Exception {
+        SingleThreadEventExecutor busy = new DefaultEventExecutor();
+        EventExecutor idle = new DefaultEventExecutor();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            busy.execute(new Runnable() {
+                @Override
+                public void run() {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            blocked.await();
+            for (int i = 0; i < 8; i++) {
+                busy.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                });
+            }
+            assertTrue(busy.pendingTasks() > 0);
+
+            EventExecutorChooser chooser =
+                    LoadAwareEventExecutorChooserFactory.INSTANCE.newChooser(new EventExecutor[] { busy, idle });
+            // With two executors both are sampled every time.
+            for (int i = 0; i < 100; i++) {
+                assertSame(idle, chooser.next());
+            }
+        } finally {
+            release.countDown();
+            busy.shutdownGracefully();
+            idle.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testSpreadsChannelsAcrossEventLoops() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(2, (Executor) null,
+                LoadAwareEventExecutorChooserFactory.INSTANCE, SelectorProvider.provider(),
+                DefaultSelectStrategyFactory.INSTANCE);
+        List<Channel> channels = new ArrayList<Channel>();
+        try {
+            // Occupy the first loop, so all following channels are registered to the second one until it caught up.
+            SingleThreadEventLoop first = (SingleThreadEventLoop) group.iterator().next();
+            for (int i = 0; i < 4; i++) {
+                Channel channel = new NioSocketChannel();
+                first.register(channel).sync();
+                channels.add(channel);
+            }
+            for (int i = 0; i < 6; i++) {
+                Channel channel = new NioSocketChannel();
+                group.register(channel).sync();
+                channels.add(channel);
+            }
+            for (EventExecutor executor : group) {
+                assertEquals(5, ((SingleThreadEventLoop) executor).registeredChannels());
+            }
+        } finally {
+            for (Channel channel : channels) {
+                channel.close().sync();
+            }
+            group.shutdownGracefully().sync();
+        }
+    }
+}
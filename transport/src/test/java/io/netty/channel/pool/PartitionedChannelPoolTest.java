@@ -0,0 +1,208 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Callable;
+
+import static io.netty.channel.pool.ChannelPoolTestUtils.getLocalAddrId;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class PartitionedChannelPoolTest {
+
+    private EventLoopGroup group;
+    private EventLoop loop1;
+    private EventLoop loop2;
+    private Channel serverChannel;
+    private Bootstrap bootstrap;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(2);
+        loop1 = group.next();
+        loop2 = group.next();
+        LocalAddress addr = new LocalAddress(getLocalAddrId());
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    public void initChannel(LocalChannel ch) throws Exception {
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+                    }
+                })
+                .bind(addr).sync().channel();
+        bootstrap = new Bootstrap().group(group).channel(LocalChannel.class).remoteAddress(addr);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        serverChannel.close().sync();
+        group.shutdownGracefully().sync();
+    }
+
+    private static Future<Channel> acquireOn(EventLoop loop, final ChannelPool pool) throws Exception {
+        return loop.submit(new Callable<Future<Channel>>() {
+            @Override
+            public Future<Channel> call() {
+                return pool.acquire();
+            }
+        }).sync().getNow();
+    }
+
+    private static ChannelPoolPartitionMetric metric(PartitionedChannelPool pool, EventLoop loop) {
+        for (ChannelPoolPartitionMetric metric : pool.partitionMetrics()) {
+            if (metric.eventLoop() == loop) {
+                return metric;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    @Test
+    public void testAcquireFromOwnPartition() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        PartitionedChannelPool pool = new PartitionedChannelPool(bootstrap, handler, 2, 0);
+        assertEquals(2, pool.partitionMetrics().size());
+
+        Channel channel = acquireOn(loop1, pool).sync().getNow();
+        assertSame(loop1, channel.eventLoop());
+        assertEquals(1, metric(pool, loop1).leasedChannels());
+        pool.release(channel).sync();
+        assertEquals(1, metric(pool, loop1).idleChannels());
+
+        Channel channel2 = acquireOn(loop2, pool).sync().getNow();
+        // The idle channel of the other partition is not stolen while a new one may be opened.
+        assertSame(loop2, channel2.eventLoop());
+        Channel channel3 = acquireOn(loop1, pool).sync().getNow();
+        assertSame(channel, channel3);
+        pool.release(channel2).sync();
+        pool.release(channel3).sync();
+
+        assertEquals(2, handler.channelCount());
+        assertEquals(3, handler.acquiredCount());
+        assertEquals(3, handler.releasedCount());
+        pool.closeAsync().sync();
+        assertFalse(channel.isOpen());
+        assertFalse(channel2.isOpen());
+    }
+
+    @Test
+    public void testStealFromSibling() throws Exception {
+        PartitionedChannelPool pool = new PartitionedChannelPool(bootstrap, new CountingChannelPoolHandler(), 1, 0);
+        Channel channel1 = acquireOn(loop1, pool).sync().getNow();
+        pool.release(channel1).sync();
+        Channel channel2 = acquireOn(loop2, pool).sync().getNow();
+        assertSame(loop2, channel2.eventLoop());
+
+        // The partition of loop2 may not open another connection, so it takes the idle one of loop1.
+        Channel stolen = acquireOn(loop2, pool).sync().getNow();
+        assertSame(channel1, stolen);
+        assertEquals(1, metric(pool, loop1).stolenChannels());
+        assertEquals(1, metric(pool, loop1).leasedChannels());
+        assertEquals(0, metric(pool, loop1).idleChannels());
+
+        // Nothing left to steal.
+        assertThat(acquireOn(loop2, pool).await().cause(), instanceOf(IllegalStateException.class));
+
+        // The stolen channel goes back to its own partition.
+        pool.release(stolen).sync();
+        assertEquals(1, metric(pool, loop1).idleChannels());
+        pool.release(channel2).sync();
+        pool.closeAsync().sync();
+    }
+
+    @Test
+    public void testPendingAcquireServedBySibling() throws Exception {
+        PartitionedChannelPool pool = new PartitionedChannelPool(bootstrap, new CountingChannelPoolHandler(), 1, 1);
+        Channel channel1 = acquireOn(loop1, pool).sync().getNow();
+        Channel channel2 = acquireOn(loop2, pool).sync().getNow();
+
+        Future<Channel> pending = acquireOn(loop2, pool);
+        assertThat(acquireOn(loop2, pool).await().cause(), instanceOf(IllegalStateException.class));
+        assertFalse(pending.isDone());
+        assertEquals(1, metric(pool, loop2).pendingAcquires());
+
+        // Nobody waits in the partition of loop1, so the channel is handed to the one waiting for loop2.
+        pool.release(channel1).sync();
+        assertSame(channel1, pending.sync().getNow());
+        assertEquals(0, metric(pool, loop2).pendingAcquires());
+
+        pool.release(channel1).sync();
+        pool.release(channel2).sync();
+        pool.closeAsync().sync();
+    }
+
+    @Test
+    public void testReleaseClosedChannel() throws Exception {
+        PartitionedChannelPool pool = new PartitionedChannelPool(bootstrap, new CountingChannelPoolHandler(), 1, 1);
+        Channel channel = acquireOn(loop1, pool).sync().getNow();
+        Future<Channel> pending = acquireOn(loop1, pool);
+        // Only the idle channels of other partitions would be stolen.
+        assertFalse(pending.isDone());
+
+        channel.close().sync();
+        pool.release(channel).sync();
+        // A new connection is opened for the pending acquire.
+        Channel channel2 = pending.sync().getNow();
+        assertNotSame(channel, channel2);
+        assertEquals(1, metric(pool, loop1).connections());
+        pool.release(channel2).sync();
+        pool.closeAsync().sync();
+    }
+
+    @Test
+    public void testReleaseTwice() throws Exception {
+        PartitionedChannelPool pool = new PartitionedChannelPool(bootstrap, new CountingChannelPoolHandler(), 1, 0);
+        Channel channel = acquireOn(loop1, pool).sync().getNow();
+        pool.release(channel).sync();
+        assertThat(pool.release(channel).await().cause(), instanceOf(IllegalArgumentException.class));
+        pool.closeAsync().sync();
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        PartitionedChannelPool pool = new PartitionedChannelPool(bootstrap, new CountingChannelPoolHandler(), 1, 1);
+        Channel channel = acquireOn(loop1, pool).sync().getNow();
+        Future<Channel> pending = acquireOn(loop1, pool);
+        pool.closeAsync().sync();
+        assertThat(pending.await().cause(), instanceOf(IllegalStateException.class));
+        assertThat(acquireOn(loop1, pool).await().cause(), instanceOf(IllegalStateException.class));
+        // Acquired channels are closed once they are released.
+        pool.release(channel).sync();
+        channel.closeFuture().sync();
+    }
+}